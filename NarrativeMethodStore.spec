@@ -6,11 +6,18 @@ module NarrativeMethodStore {
     /* Returns the current running version of the NarrativeMethodStore. */
     funcdef ver() returns (string);
     
+    /*
+        catalog_version - opaque version of the whole catalog, it changes every time
+            either spec-repo commit or any dynamically registered repo (including its
+            beta/release tags) changes. It could be passed as if_not_modified to listing
+            methods.
+    */
     typedef structure {
     	string git_spec_url;
     	string git_spec_branch;
     	string git_spec_commit;
     	string update_interval;
+    	string catalog_version;
     } Status;
     
     /* Simply check the status of this service to see what Spec repository it is
@@ -588,12 +595,16 @@ module NarrativeMethodStore {
         information about all the methods and apps is provided.  This is important
         load_methods - optional field (default value is 1).
         tag - optional access level for dynamic repos (one of 'dev', 'beta' or 'release').
+        if_not_modified - optional catalog_version (see Status) known to client, in case
+            it's equal to current version nothing is loaded and all four returned values
+            are null.
     */
     typedef structure {
         boolean load_methods;
         boolean load_apps;
         boolean load_types;
         string tag;
+        string if_not_modified;
     } ListCategoriesParams;
 
     funcdef list_categories(ListCategoriesParams params) 
@@ -614,11 +625,19 @@ module NarrativeMethodStore {
         limit - optional field (default value is 0)
         offset - optional field (default value is 0)
         tag - optional access level for dynamic repos (one of 'dev', 'beta' or 'release').
+        if_not_modified - optional catalog_version (see Status) known to client, in case
+            it's equal to current version null is returned instead of the list.
+        catalog_version - optional catalog_version (see Status) the page should be taken
+            from, it keeps offsets stable while client pages through the list even if
+            catalog is updated meanwhile. Only last few versions are kept by server, an
+            error is returned for older ones (so paging should be started again).
     */
     typedef structure {
         int limit;
         int offset;
         string tag;
+        string if_not_modified;
+        string catalog_version;
     } ListParams;
     
     funcdef list_methods(ListParams params) returns (list<MethodBriefInfo>);
@@ -629,9 +648,15 @@ module NarrativeMethodStore {
 
     /*
         tag - optional access level for dynamic repos (one of 'dev', 'beta' or 'release').
+        if_not_modified - optional catalog_version (see Status) known to client, in case
+            it's equal to current version null is returned instead of the mapping.
+        catalog_version - optional catalog_version (see Status) the mapping should be
+            taken from, an error is returned in case server doesn't keep it anymore.
     */
     typedef structure {
         string tag;
+        string if_not_modified;
+        string catalog_version;
     } ListMethodIdsAndNamesParams;
 
     funcdef list_method_ids_and_names(ListMethodIdsAndNamesParams params) returns (mapping<string,string>);
@@ -779,4 +804,54 @@ module NarrativeMethodStore {
     funcdef push_repo_to_tag(PushRepoToTagParams params) returns () 
         authentication required;
 
+    /*
+        Starts registration of repository in background (cloning, validation of
+        methods and storing of files), returns id of job which could be checked
+        with get_register_repo_job_status. Repository already registered before
+        stays in 'building' state while job is running. Number of jobs waiting
+        for their turn is limited, extra ones are rejected.
+    */
+    funcdef register_repo_async(RegisterRepoParams params) returns (string job_id)
+        authentication required;
+
+    typedef structure {
+        string job_id;
+    } GetRegisterRepoJobStatusParams;
+
+    /*
+        Describes state of registration job.
+        job_id - id of job returned by register_repo_async;
+        git_url - url of repository being registered;
+        module_name - name of module, it's known once repository is cloned;
+        stage - one of 'queued', 'cloning', 'validating', 'saving', 'complete' or 
+            'error';
+        progress - number of methods validated so far (at 'validating' stage);
+        total - number of methods in repository;
+        error - error message in case stage is 'error';
+        version - version of registered repository in case stage is 'complete';
+        start_time - time job was queued (in milliseconds since epoch);
+        finish_time - time job was complete or failed (in milliseconds since epoch).
+        Jobs are kept in memory of the service instance they were started at and
+        forgotten one day after last check.
+    */
+    typedef structure {
+        string job_id;
+        string git_url;
+        string module_name;
+        string stage;
+        int progress;
+        int total;
+        string error;
+        int version;
+        int start_time;
+        int finish_time;
+    } RegisterRepoJobStatus;
+
+    /*
+        Returns state of registration job, it's available only to user who
+        started the job and to global admins.
+    */
+    funcdef get_register_repo_job_status(GetRegisterRepoJobStatusParams params) 
+        returns (RegisterRepoJobStatus) authentication required;
+
 };
@@ -5303,6 +5303,205 @@ PushRepoToTagParams is a reference to a hash where the following keys are define
     }
 }
  
+
+=head2 register_repo_async
+
+  $job_id = $obj->register_repo_async($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a NarrativeMethodStore.RegisterRepoParams
+$job_id is a string
+RegisterRepoParams is a reference to a hash where the following keys are defined:
+	git_url has a value which is a string
+	git_commit_hash has a value which is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a NarrativeMethodStore.RegisterRepoParams
+$job_id is a string
+RegisterRepoParams is a reference to a hash where the following keys are defined:
+	git_url has a value which is a string
+	git_commit_hash has a value which is a string
+
+
+=end text
+
+=item Description
+
+Starts registration of repository in background (cloning, validation of
+methods and storing of files), returns id of job which could be checked
+with get_register_repo_job_status. Repository already registered before
+stays in 'building' state while job is running. Number of jobs waiting
+for their turn is limited, extra ones are rejected.
+
+=back
+
+=cut
+
+ sub register_repo_async
+{
+    my($self, @args) = @_;
+
+# Authentication: required
+
+    if ((my $n = @args) != 1)
+    {
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error =>
+							       "Invalid argument count for function register_repo_async (received $n, expecting 1)");
+    }
+    {
+	my($params) = @args;
+
+	my @_bad_arguments;
+        (ref($params) eq 'HASH') or push(@_bad_arguments, "Invalid type for argument 1 \"params\" (value was \"$params\")");
+        if (@_bad_arguments) {
+	    my $msg = "Invalid arguments passed to register_repo_async:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	    Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+								   method_name => 'register_repo_async');
+	}
+    }
+
+    my $url = $self->{url};
+    my $result = $self->{client}->call($url, $self->{headers}, {
+	    method => "NarrativeMethodStore.register_repo_async",
+	    params => \@args,
+    });
+    if ($result) {
+	if ($result->is_error) {
+	    Bio::KBase::Exceptions::JSONRPC->throw(error => $result->error_message,
+					       code => $result->content->{error}->{code},
+					       method_name => 'register_repo_async',
+					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
+					      );
+	} else {
+	    return wantarray ? @{$result->result} : $result->result->[0];
+	}
+    } else {
+        Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method register_repo_async",
+					    status_line => $self->{client}->status_line,
+					    method_name => 'register_repo_async',
+				       );
+    }
+}
+ 
+
+=head2 get_register_repo_job_status
+
+  $return = $obj->get_register_repo_job_status($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a NarrativeMethodStore.GetRegisterRepoJobStatusParams
+$return is a NarrativeMethodStore.RegisterRepoJobStatus
+GetRegisterRepoJobStatusParams is a reference to a hash where the following keys are defined:
+	job_id has a value which is a string
+RegisterRepoJobStatus is a reference to a hash where the following keys are defined:
+	job_id has a value which is a string
+	git_url has a value which is a string
+	module_name has a value which is a string
+	stage has a value which is a string
+	progress has a value which is an int
+	total has a value which is an int
+	error has a value which is a string
+	version has a value which is an int
+	start_time has a value which is an int
+	finish_time has a value which is an int
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a NarrativeMethodStore.GetRegisterRepoJobStatusParams
+$return is a NarrativeMethodStore.RegisterRepoJobStatus
+GetRegisterRepoJobStatusParams is a reference to a hash where the following keys are defined:
+	job_id has a value which is a string
+RegisterRepoJobStatus is a reference to a hash where the following keys are defined:
+	job_id has a value which is a string
+	git_url has a value which is a string
+	module_name has a value which is a string
+	stage has a value which is a string
+	progress has a value which is an int
+	total has a value which is an int
+	error has a value which is a string
+	version has a value which is an int
+	start_time has a value which is an int
+	finish_time has a value which is an int
+
+
+=end text
+
+=item Description
+
+Returns state of registration job, it's available only to user who
+started the job and to global admins.
+
+=back
+
+=cut
+
+ sub get_register_repo_job_status
+{
+    my($self, @args) = @_;
+
+# Authentication: required
+
+    if ((my $n = @args) != 1)
+    {
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error =>
+							       "Invalid argument count for function get_register_repo_job_status (received $n, expecting 1)");
+    }
+    {
+	my($params) = @args;
+
+	my @_bad_arguments;
+        (ref($params) eq 'HASH') or push(@_bad_arguments, "Invalid type for argument 1 \"params\" (value was \"$params\")");
+        if (@_bad_arguments) {
+	    my $msg = "Invalid arguments passed to get_register_repo_job_status:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	    Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+								   method_name => 'get_register_repo_job_status');
+	}
+    }
+
+    my $url = $self->{url};
+    my $result = $self->{client}->call($url, $self->{headers}, {
+	    method => "NarrativeMethodStore.get_register_repo_job_status",
+	    params => \@args,
+    });
+    if ($result) {
+	if ($result->is_error) {
+	    Bio::KBase::Exceptions::JSONRPC->throw(error => $result->error_message,
+					       code => $result->content->{error}->{code},
+					       method_name => 'get_register_repo_job_status',
+					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
+					      );
+	} else {
+	    return wantarray ? @{$result->result} : $result->result->[0];
+	}
+    } else {
+        Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method get_register_repo_job_status",
+					    status_line => $self->{client}->status_line,
+					    method_name => 'get_register_repo_job_status',
+				       );
+    }
+}
+ 
    
 
 sub version {
@@ -5316,16 +5515,16 @@ sub version {
             Bio::KBase::Exceptions::JSONRPC->throw(
                 error => $result->error_message,
                 code => $result->content->{code},
-                method_name => 'push_repo_to_tag',
+                method_name => 'get_register_repo_job_status',
             );
         } else {
             return wantarray ? @{$result->result} : $result->result->[0];
         }
     } else {
         Bio::KBase::Exceptions::HTTP->throw(
-            error => "Error invoking method push_repo_to_tag",
+            error => "Error invoking method get_register_repo_job_status",
             status_line => $self->{client}->status_line,
-            method_name => 'push_repo_to_tag',
+            method_name => 'get_register_repo_job_status',
         );
     }
 }
@@ -7752,6 +7951,102 @@ tag has a value which is a string
 
 
 
+=head2 GetRegisterRepoJobStatusParams
+
+=over 4
+
+
+
+=item Definition
+
+=begin html
+
+<pre>
+a reference to a hash where the following keys are defined:
+job_id has a value which is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+a reference to a hash where the following keys are defined:
+job_id has a value which is a string
+
+
+=end text
+
+=back
+
+
+
+=head2 RegisterRepoJobStatus
+
+=over 4
+
+
+
+=item Description
+
+Describes state of registration job.
+job_id - id of job returned by register_repo_async;
+git_url - url of repository being registered;
+module_name - name of module, it's known once repository is cloned;
+stage - one of 'queued', 'cloning', 'validating', 'saving', 'complete' or 
+    'error';
+progress - number of methods validated so far (at 'validating' stage);
+total - number of methods in repository;
+error - error message in case stage is 'error';
+version - version of registered repository in case stage is 'complete';
+start_time - time job was queued (in milliseconds since epoch);
+finish_time - time job was complete or failed (in milliseconds since epoch).
+Jobs are kept in memory of the service instance they were started at and
+forgotten one day after last check.
+
+
+=item Definition
+
+=begin html
+
+<pre>
+a reference to a hash where the following keys are defined:
+job_id has a value which is a string
+git_url has a value which is a string
+module_name has a value which is a string
+stage has a value which is a string
+progress has a value which is an int
+total has a value which is an int
+error has a value which is a string
+version has a value which is an int
+start_time has a value which is an int
+finish_time has a value which is an int
+
+</pre>
+
+=end html
+
+=begin text
+
+a reference to a hash where the following keys are defined:
+job_id has a value which is a string
+git_url has a value which is a string
+module_name has a value which is a string
+stage has a value which is a string
+progress has a value which is an int
+total has a value which is an int
+error has a value which is a string
+version has a value which is an int
+start_time has a value which is an int
+finish_time has a value which is an int
+
+
+=end text
+
+=back
+
+
+
 =cut
 
 package Bio::KBase::NarrativeMethodStore::Client::RpcClient;
@@ -2134,3 +2134,50 @@ class NarrativeMethodStore(object):
         return self._client.call_method(
             'NarrativeMethodStore.push_repo_to_tag',
             [params], self._service_ver, context)
+
+    def register_repo_async(self, params, context=None):
+        """
+        Starts registration of repository in background (cloning,
+        validation of methods and storing of files), returns id of job
+        which could be checked with get_register_repo_job_status.
+        Repository already registered before stays in 'building' state
+        while job is running. Number of jobs waiting for their turn is
+        limited, extra ones are rejected.
+        :param params: instance of type "RegisterRepoParams"
+           (***************************** Dynamic Repos API
+           ******************************) -> structure: parameter "git_url"
+           of String, parameter "git_commit_hash" of String
+        :returns: instance of String
+        """
+        return self._client.call_method(
+            'NarrativeMethodStore.register_repo_async',
+            [params], self._service_ver, context)
+
+    def get_register_repo_job_status(self, params, context=None):
+        """
+        Returns state of registration job, it's available only to user who
+        started the job and to global admins.
+        :param params: instance of type "GetRegisterRepoJobStatusParams" ->
+           structure: parameter "job_id" of String
+        :returns: instance of type "RegisterRepoJobStatus" (Describes state of
+           registration job. job_id - id of job returned by
+           register_repo_async; git_url - url of repository being registered;
+           module_name - name of module, it's known once repository is cloned;
+           stage - one of 'queued', 'cloning', 'validating', 'saving',
+           'complete' or 'error'; progress - number of methods validated so
+           far (at 'validating' stage); total - number of methods in
+           repository; error - error message in case stage is 'error'; version
+           - version of registered repository in case stage is 'complete';
+           start_time - time job was queued (in milliseconds since epoch);
+           finish_time - time job was complete or failed (in milliseconds
+           since epoch). Jobs are kept in memory of the service instance they
+           were started at and forgotten one day after last check.) ->
+           structure: parameter "job_id" of String, parameter "git_url" of
+           String, parameter "module_name" of String, parameter "stage" of
+           String, parameter "progress" of Long, parameter "total" of Long,
+           parameter "error" of String, parameter "version" of Long, parameter
+           "start_time" of Long, parameter "finish_time" of Long
+        """
+        return self._client.call_method(
+            'NarrativeMethodStore.get_register_repo_job_status',
+            [params], self._service_ver, context)
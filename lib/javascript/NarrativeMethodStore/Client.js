@@ -379,6 +379,32 @@ function NarrativeMethodStore(url, auth, auth_cb, timeout, async_job_check_time_
         return json_call_ajax(_url, "NarrativeMethodStore.push_repo_to_tag",
             [params], 0, _callback, _errorCallback);
     };
+ 
+     this.register_repo_async = function (params, _callback, _errorCallback) {
+        if (typeof params === 'function')
+            throw 'Argument params can not be a function';
+        if (_callback && typeof _callback !== 'function')
+            throw 'Argument _callback must be a function if defined';
+        if (_errorCallback && typeof _errorCallback !== 'function')
+            throw 'Argument _errorCallback must be a function if defined';
+        if (typeof arguments === 'function' && arguments.length > 1+2)
+            throw 'Too many arguments ('+arguments.length+' instead of '+(1+2)+')';
+        return json_call_ajax(_url, "NarrativeMethodStore.register_repo_async",
+            [params], 1, _callback, _errorCallback);
+    };
+ 
+     this.get_register_repo_job_status = function (params, _callback, _errorCallback) {
+        if (typeof params === 'function')
+            throw 'Argument params can not be a function';
+        if (_callback && typeof _callback !== 'function')
+            throw 'Argument _callback must be a function if defined';
+        if (_errorCallback && typeof _errorCallback !== 'function')
+            throw 'Argument _errorCallback must be a function if defined';
+        if (typeof arguments === 'function' && arguments.length > 1+2)
+            throw 'Too many arguments ('+arguments.length+' instead of '+(1+2)+')';
+        return json_call_ajax(_url, "NarrativeMethodStore.get_register_repo_job_status",
+            [params], 1, _callback, _errorCallback);
+    };
   
 
     /*
@@ -0,0 +1,391 @@
+package us.kbase.common.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs external commands sharing a bounded pool of threads pumping their output,
+ * every command has a timeout after which it's killed, captured output is limited
+ * in size and durations of commands are collected by command name.
+ */
+public class ProcessExecutor {
+    public static final int DEFAULT_PUMP_THREADS = 8;
+    public static final int DEFAULT_MAX_PUMP_THREADS = 64;
+    public static final long DEFAULT_TIMEOUT_MS = 10 * 60 * 1000L;
+    public static final int DEFAULT_MAX_OUTPUT_SIZE = 10 * 1024 * 1024;
+
+    private static final ProcessExecutor defaultInstance = new ProcessExecutor(
+            DEFAULT_PUMP_THREADS, DEFAULT_MAX_PUMP_THREADS, DEFAULT_TIMEOUT_MS, 
+            DEFAULT_MAX_OUTPUT_SIZE);
+
+    private final ThreadPoolExecutor pumpPool;
+    private final long defaultTimeoutMs;
+    private final int maxOutputSize;
+    private final Map<String, CommandStats> stats = new ConcurrentHashMap<String, CommandStats>();
+
+    /**
+     * Creates executor which allows up to DEFAULT_MAX_PUMP_THREADS (but not less than
+     * pumpThreads) threads reading output of commands.
+     */
+    public ProcessExecutor(int pumpThreads, long defaultTimeoutMs, int maxOutputSize) {
+        this(pumpThreads, Math.max(pumpThreads, DEFAULT_MAX_PUMP_THREADS), defaultTimeoutMs,
+                maxOutputSize);
+    }
+
+    /**
+     * @param pumpThreads number of threads reading output of commands which are kept in
+     * pool while they are idle.
+     * @param maxPumpThreads maximum number of threads reading output of commands, when
+     * all of them are busy new commands are rejected (so that commands never wait for 
+     * each other), all threads are stopped after 60 seconds of idling.
+     * @param defaultTimeoutMs time after which command is killed unless other timeout is
+     * given for it, 0 means no timeout.
+     * @param maxOutputSize maximum number of bytes of stdout (and separately of stderr)
+     * kept for each command, the rest is read and dropped.
+     */
+    public ProcessExecutor(int pumpThreads, int maxPumpThreads, long defaultTimeoutMs, 
+            int maxOutputSize) {
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        this.maxOutputSize = maxOutputSize;
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread ret = new Thread(r, "ProcessExecutor-pump-" + counter.incrementAndGet());
+                ret.setDaemon(true);
+                return ret;
+            }
+        };
+        this.pumpPool = new ThreadPoolExecutor(pumpThreads, maxPumpThreads, 60, 
+                TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+        this.pumpPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return instance shared by all code of service running external commands.
+     */
+    public static ProcessExecutor getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * Runs command line (split into arguments by spaces) with default timeout.
+     */
+    public Result exec(String cmdLine, File workDir) throws IOException, InterruptedException {
+        return exec(cmdLine.trim().split("\\s+"), workDir, defaultTimeoutMs);
+    }
+
+    /**
+     * Runs command and waits until it's finished or timeout (in milliseconds, 0 means no
+     * timeout) is reached. In the latter case process is destroyed and result is marked
+     * as timed out. In case calling thread is interrupted process is destroyed too.
+     * IOException is thrown in case all threads reading output of commands are busy.
+     */
+    public Result exec(String[] cmdParts, File workDir, long timeoutMs)
+            throws IOException, InterruptedException {
+        String name = cmdParts.length > 1 ? (cmdParts[0] + " " + cmdParts[1]) : cmdParts[0];
+        long start = System.currentTimeMillis();
+        Process process = Runtime.getRuntime().exec(cmdParts, null, workDir);
+        boolean timedOut = false;
+        boolean finished = false;
+        try {
+            process.getOutputStream().close();
+            LimitedBuffer out = new LimitedBuffer(maxOutputSize);
+            LimitedBuffer err = new LimitedBuffer(maxOutputSize);
+            Future<?> outPump;
+            Future<?> errPump;
+            try {
+                outPump = pump(process.getInputStream(), out);
+                errPump = pump(process.getErrorStream(), err);
+            } catch (RejectedExecutionException ex) {
+                throw new IOException("Command " + name + " couldn't be started cause all " + 
+                        pumpPool.getMaximumPoolSize() + " threads reading output of " +
+                        "commands are busy", ex);
+            }
+            long deadline = timeoutMs > 0 ? start + timeoutMs : Long.MAX_VALUE;
+            try {
+                waitFor(outPump, deadline);
+                waitFor(errPump, deadline);
+            } catch (TimeoutException ex) {
+                timedOut = true;
+            }
+            Integer exitCode = timedOut ? null : waitForExit(process, deadline);
+            if (exitCode == null) {
+                timedOut = true;
+                destroy(process);
+                outPump.cancel(true);
+                errPump.cancel(true);
+                exitCode = -1;
+            }
+            finished = true;
+            long duration = System.currentTimeMillis() - start;
+            getStats(name).add(duration, exitCode == 0, timedOut);
+            return new Result(exitCode, out.toString(), err.toString(),
+                    out.isTruncated() || err.isTruncated(), timedOut, duration);
+        } finally {
+            if (!finished) {
+                destroy(process);
+                getStats(name).add(System.currentTimeMillis() - start, false, false);
+            }
+        }
+    }
+
+    /**
+     * Kills process and closes its output streams. Child processes started by command
+     * may survive and keep streams open, closing makes pumps stop as soon as their 
+     * current read returns (and such children get broken pipe on next write) instead 
+     * of reading until the children exit.
+     */
+    private static void destroy(Process process) {
+        process.destroy();
+        closeQuietly(process.getInputStream());
+        closeQuietly(process.getErrorStream());
+    }
+
+    private static void closeQuietly(InputStream is) {
+        try {
+            is.close();
+        } catch (IOException ignore) {}
+    }
+
+    /**
+     * Copies stream to given output on pump pool, stream is closed at the end.
+     * @throws RejectedExecutionException in case all pump threads are busy.
+     */
+    public Future<?> pump(final InputStream is, final OutputStream os) {
+        return runPump(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    byte[] buffer = new byte[8192];
+                    while (!Thread.currentThread().isInterrupted()) {
+                        int n = is.read(buffer);
+                        if (n < 0)
+                            break;
+                        os.write(buffer, 0, n);
+                    }
+                    os.flush();
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Error reading data from executed process", ex);
+                } finally {
+                    closeQuietly(is);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs task reading output of some process on pump pool.
+     * @throws RejectedExecutionException in case all pump threads are busy.
+     */
+    public Future<?> runPump(Runnable task) {
+        FutureTask<Object> ret = new FutureTask<Object>(task, null);
+        pumpPool.execute(ret);
+        return ret;
+    }
+
+    private static void waitFor(Future<?> pump, long deadline)
+            throws InterruptedException, TimeoutException, IOException {
+        long timeout = deadline == Long.MAX_VALUE ? Long.MAX_VALUE :
+            Math.max(1, deadline - System.currentTimeMillis());
+        try {
+            pump.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    /**
+     * Java 7 Process has no waitFor with timeout, output is already drained at this
+     * point so process should be just about to exit.
+     */
+    private static Integer waitForExit(Process process, long deadline) throws InterruptedException {
+        long sleep = 1;
+        while (true) {
+            try {
+                return process.exitValue();
+            } catch (IllegalThreadStateException ex) {
+                if (System.currentTimeMillis() >= deadline)
+                    return null;
+                Thread.sleep(sleep);
+                sleep = Math.min(sleep * 2, 100);
+            }
+        }
+    }
+
+    private CommandStats getStats(String name) {
+        CommandStats ret = stats.get(name);
+        if (ret == null) {
+            synchronized (stats) {
+                ret = stats.get(name);
+                if (ret == null) {
+                    ret = new CommandStats();
+                    stats.put(name, ret);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return copy of statistics of executed commands by name (program and its first
+     * argument, like "git fetch").
+     */
+    public Map<String, CommandStats> getStats() {
+        Map<String, CommandStats> ret = new TreeMap<String, CommandStats>();
+        for (Map.Entry<String, CommandStats> entry : stats.entrySet())
+            ret.put(entry.getKey(), entry.getValue().copy());
+        return ret;
+    }
+
+    public static class Result {
+        private final int exitCode;
+        private final String output;
+        private final String errors;
+        private final boolean truncated;
+        private final boolean timedOut;
+        private final long durationMs;
+
+        public Result(int exitCode, String output, String errors, boolean truncated,
+                boolean timedOut, long durationMs) {
+            this.exitCode = exitCode;
+            this.output = output;
+            this.errors = errors;
+            this.truncated = truncated;
+            this.timedOut = timedOut;
+            this.durationMs = durationMs;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public String getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return true in case part of output or errors was dropped because of size limit.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+    }
+
+    public static class CommandStats {
+        private long count = 0;
+        private long failures = 0;
+        private long timeouts = 0;
+        private long totalMs = 0;
+        private long maxMs = 0;
+
+        private synchronized void add(long durationMs, boolean success, boolean timedOut) {
+            count++;
+            if (!success)
+                failures++;
+            if (timedOut)
+                timeouts++;
+            totalMs += durationMs;
+            maxMs = Math.max(maxMs, durationMs);
+        }
+
+        private synchronized CommandStats copy() {
+            CommandStats ret = new CommandStats();
+            ret.count = count;
+            ret.failures = failures;
+            ret.timeouts = timeouts;
+            ret.totalMs = totalMs;
+            ret.maxMs = maxMs;
+            return ret;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getTotalMs() {
+            return totalMs;
+        }
+
+        public long getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", failures=" + failures + ", timeouts=" + timeouts +
+                    ", avgMs=" + (count == 0 ? 0 : totalMs / count) + ", maxMs=" + maxMs;
+        }
+    }
+
+    private static class LimitedBuffer extends OutputStream {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final int maxSize;
+        private volatile boolean truncated = false;
+
+        LimitedBuffer(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            int room = maxSize - data.size();
+            if (len > room) {
+                truncated = true;
+                len = Math.max(room, 0);
+            }
+            data.write(b, off, len);
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return new String(data.toByteArray(), Charset.defaultCharset());
+        }
+    }
+}
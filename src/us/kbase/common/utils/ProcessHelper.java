@@ -4,6 +4,9 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * User: Roman
@@ -78,8 +81,16 @@ public class ProcessHelper {
             errPw = error;
         process = cmd.cmdLine != null ? Runtime.getRuntime().exec(cmd.cmdLine, null, workDir) :
                 Runtime.getRuntime().exec(cmd.cmdParts, null, workDir);
-        Thread outTh = readInNewThread(process.getInputStream(), outType);
-        Thread errTh = readInNewThread(process.getErrorStream(), errType);
+        Future<?> outTh;
+        Future<?> errTh;
+        try {
+            outTh = readInPump(process.getInputStream(), outType);
+            errTh = readInPump(process.getErrorStream(), errType);
+        } catch (RejectedExecutionException e) {
+            process.destroy();
+            throw new IOException("Process couldn't be started cause all threads reading " +
+                    "output of processes are busy", e);
+        }
         if (input != null) {
             PrintWriter pw = new PrintWriter(new OutputStreamWriter(process.getOutputStream()));
             while (true) {
@@ -91,14 +102,18 @@ public class ProcessHelper {
             pw.close();
         }
         try {
-            outTh.join();
+            outTh.get();
         } catch (InterruptedException e) {
             e.printStackTrace();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
         }
         try {
-            errTh.join();
+            errTh.get();
         } catch (InterruptedException e) {
             e.printStackTrace();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
         }
         if (waitFor)
             try {
@@ -112,8 +127,11 @@ public class ProcessHelper {
 		return process;
 	}
     
-    private Thread readInNewThread(final InputStream is, final OutType outType) {
-        Thread ret = new Thread(new Runnable() {
+    /**
+     * Reads output of process on pump pool shared with ProcessExecutor.
+     */
+    private Future<?> readInPump(final InputStream is, final OutType outType) {
+        return ProcessExecutor.getDefault().runPump(new Runnable() {
             public void run() {
                 try {
                     BufferedReader br = new BufferedReader(new InputStreamReader(is));
@@ -141,8 +159,6 @@ public class ProcessHelper {
                 }
             }
         });
-        ret.start();
-        return ret;
     }
 
     public int getExitCode() {
@@ -0,0 +1,122 @@
+package us.kbase.common.utils.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import us.kbase.common.utils.ProcessExecutor;
+
+public class ProcessExecutorTest {
+
+    @Test
+    public void testOutput() throws Exception {
+        ProcessExecutor pe = new ProcessExecutor(2, 10000, 1000);
+        ProcessExecutor.Result res = pe.exec("echo hello", new File("."));
+        Assert.assertEquals(0, res.getExitCode());
+        Assert.assertEquals("hello\n", res.getOutput());
+        Assert.assertFalse(res.isTruncated());
+        res = pe.exec(new String[] {"sh", "-c", "echo oops >&2; exit 3"}, new File("."), 0);
+        Assert.assertEquals(3, res.getExitCode());
+        Assert.assertEquals("oops\n", res.getErrors());
+        Assert.assertEquals(1, pe.getStats().get("echo hello").getCount());
+        Assert.assertEquals(1, pe.getStats().get("sh -c").getFailures());
+    }
+
+    @Test
+    public void testOutputLimit() throws Exception {
+        ProcessExecutor pe = new ProcessExecutor(2, 10000, 1000);
+        ProcessExecutor.Result res = pe.exec(new String[] {"sh", "-c",
+                "yes | head -c 100000"}, new File("."), 0);
+        Assert.assertEquals(0, res.getExitCode());
+        Assert.assertEquals(1000, res.getOutput().length());
+        Assert.assertTrue(res.isTruncated());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        ProcessExecutor pe = new ProcessExecutor(1, 10000, 1000);
+        long time = System.currentTimeMillis();
+        ProcessExecutor.Result res = pe.exec(new String[] {"sleep", "10"}, new File("."), 300);
+        Assert.assertTrue(res.isTimedOut());
+        Assert.assertTrue(System.currentTimeMillis() - time < 5000);
+        Assert.assertEquals(1, pe.getStats().get("sleep 10").getTimeouts());
+    }
+
+    @Test
+    public void testParallelCommands() throws Exception {
+        // More commands than pooled pump threads, extra pumps run in threads above core size
+        final ProcessExecutor pe = new ProcessExecutor(1, 10000, 1000);
+        Thread[] threads = new Thread[4];
+        final int[] exitCodes = new int[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int pos = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        exitCodes[pos] = pe.exec(new String[] {"sleep", "0.2"},
+                                new File("."), 0).getExitCode();
+                    } catch (Exception ex) {
+                        exitCodes[pos] = -100;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        for (int exitCode : exitCodes)
+            Assert.assertEquals(0, exitCode);
+        Assert.assertEquals(threads.length, pe.getStats().get("sleep 0.2").getCount());
+    }
+
+    @Test
+    public void testPumpThreadLimit() throws Exception {
+        // One command takes two pumps, so second one can't be started in parallel
+        final ProcessExecutor pe = new ProcessExecutor(1, 2, 10000, 1000);
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pe.exec(new String[] {"sleep", "2"}, new File("."), 0);
+                } catch (Exception ignore) {}
+            }
+        });
+        t.start();
+        Thread.sleep(500);
+        try {
+            pe.exec("echo hello", new File("."));
+            Assert.fail("Command shouldn't be started when all pumps are busy");
+        } catch (IOException ex) {
+            Assert.assertEquals("Command echo hello couldn't be started cause all 2 threads " +
+                    "reading output of commands are busy", ex.getMessage());
+        }
+        Assert.assertEquals(1, pe.getStats().get("echo hello").getFailures());
+        t.join();
+        Assert.assertEquals(0, pe.exec("echo hello", new File(".")).getExitCode());
+    }
+
+    @Test
+    public void testTimeoutReleasesPumps() throws Exception {
+        // Child process outlives killed shell and keeps writing into its stdout, pumps 
+        // should be released anyway
+        ProcessExecutor pe = new ProcessExecutor(1, 2, 10000, 1000);
+        ProcessExecutor.Result res = pe.exec(new String[] {"sh", "-c", "yes & sleep 10"},
+                new File("."), 300);
+        Assert.assertTrue(res.isTimedOut());
+        long time = System.currentTimeMillis();
+        while (true) {
+            try {
+                Assert.assertEquals(0, pe.exec("echo hello", new File(".")).getExitCode());
+                break;
+            } catch (IOException ex) {
+                if (System.currentTimeMillis() - time > 5000)
+                    throw ex;
+                Thread.sleep(100);
+            }
+        }
+    }
+}
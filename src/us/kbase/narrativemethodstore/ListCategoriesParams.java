@@ -18,6 +18,9 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * information about all the methods and apps is provided.  This is important
  * load_methods - optional field (default value is 1).
  * tag - optional access level for dynamic repos (one of 'dev', 'beta' or 'release').
+ * if_not_modified - optional catalog_version (see Status) known to client, in case
+ *     it's equal to current version nothing is loaded and all four returned values
+ *     are null.
  * </pre>
  * 
  */
@@ -27,7 +30,8 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
     "load_methods",
     "load_apps",
     "load_types",
-    "tag"
+    "tag",
+    "if_not_modified"
 })
 public class ListCategoriesParams {
 
@@ -39,6 +43,8 @@ public class ListCategoriesParams {
     private Long loadTypes;
     @JsonProperty("tag")
     private String tag;
+    @JsonProperty("if_not_modified")
+    private String ifNotModified;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("load_methods")
@@ -101,6 +107,21 @@ public class ListCategoriesParams {
         return this;
     }
 
+    @JsonProperty("if_not_modified")
+    public String getIfNotModified() {
+        return ifNotModified;
+    }
+
+    @JsonProperty("if_not_modified")
+    public void setIfNotModified(String ifNotModified) {
+        this.ifNotModified = ifNotModified;
+    }
+
+    public ListCategoriesParams withIfNotModified(String ifNotModified) {
+        this.ifNotModified = ifNotModified;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -113,7 +134,7 @@ public class ListCategoriesParams {
 
     @Override
     public String toString() {
-        return ((((((((((("ListCategoriesParams"+" [loadMethods=")+ loadMethods)+", loadApps=")+ loadApps)+", loadTypes=")+ loadTypes)+", tag=")+ tag)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((((((("ListCategoriesParams"+" [loadMethods=")+ loadMethods)+", loadApps=")+ loadApps)+", loadTypes=")+ loadTypes)+", tag=")+ tag)+", ifNotModified=")+ ifNotModified)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
@@ -15,18 +15,28 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * <p>Original spec-file type: ListMethodIdsAndNamesParams</p>
  * <pre>
  * tag - optional access level for dynamic repos (one of 'dev', 'beta' or 'release').
+ * if_not_modified - optional catalog_version (see Status) known to client, in case
+ *     it's equal to current version null is returned instead of the mapping.
+ * catalog_version - optional catalog_version (see Status) the mapping should be
+ *     taken from, an error is returned in case server doesn't keep it anymore.
  * </pre>
  * 
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Generated("com.googlecode.jsonschema2pojo")
 @JsonPropertyOrder({
-    "tag"
+    "tag",
+    "if_not_modified",
+    "catalog_version"
 })
 public class ListMethodIdsAndNamesParams {
 
     @JsonProperty("tag")
     private String tag;
+    @JsonProperty("if_not_modified")
+    private String ifNotModified;
+    @JsonProperty("catalog_version")
+    private String catalogVersion;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("tag")
@@ -44,6 +54,36 @@ public class ListMethodIdsAndNamesParams {
         return this;
     }
 
+    @JsonProperty("if_not_modified")
+    public String getIfNotModified() {
+        return ifNotModified;
+    }
+
+    @JsonProperty("if_not_modified")
+    public void setIfNotModified(String ifNotModified) {
+        this.ifNotModified = ifNotModified;
+    }
+
+    public ListMethodIdsAndNamesParams withIfNotModified(String ifNotModified) {
+        this.ifNotModified = ifNotModified;
+        return this;
+    }
+
+    @JsonProperty("catalog_version")
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    @JsonProperty("catalog_version")
+    public void setCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public ListMethodIdsAndNamesParams withCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -56,7 +96,7 @@ public class ListMethodIdsAndNamesParams {
 
     @Override
     public String toString() {
-        return ((((("ListMethodIdsAndNamesParams"+" [tag=")+ tag)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((("ListMethodIdsAndNamesParams"+" [tag=")+ tag)+", ifNotModified=")+ ifNotModified)+", catalogVersion=")+ catalogVersion)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
@@ -19,6 +19,12 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * limit - optional field (default value is 0)
  * offset - optional field (default value is 0)
  * tag - optional access level for dynamic repos (one of 'dev', 'beta' or 'release').
+ * if_not_modified - optional catalog_version (see Status) known to client, in case
+ *     it's equal to current version null is returned instead of the list.
+ * catalog_version - optional catalog_version (see Status) the page should be taken
+ *     from, it keeps offsets stable while client pages through the list even if
+ *     catalog is updated meanwhile. Only last few versions are kept by server, an
+ *     error is returned for older ones (so paging should be started again).
  * </pre>
  * 
  */
@@ -27,7 +33,9 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 @JsonPropertyOrder({
     "limit",
     "offset",
-    "tag"
+    "tag",
+    "if_not_modified",
+    "catalog_version"
 })
 public class ListParams {
 
@@ -37,6 +45,10 @@ public class ListParams {
     private Long offset;
     @JsonProperty("tag")
     private String tag;
+    @JsonProperty("if_not_modified")
+    private String ifNotModified;
+    @JsonProperty("catalog_version")
+    private String catalogVersion;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("limit")
@@ -84,6 +96,36 @@ public class ListParams {
         return this;
     }
 
+    @JsonProperty("if_not_modified")
+    public String getIfNotModified() {
+        return ifNotModified;
+    }
+
+    @JsonProperty("if_not_modified")
+    public void setIfNotModified(String ifNotModified) {
+        this.ifNotModified = ifNotModified;
+    }
+
+    public ListParams withIfNotModified(String ifNotModified) {
+        this.ifNotModified = ifNotModified;
+        return this;
+    }
+
+    @JsonProperty("catalog_version")
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    @JsonProperty("catalog_version")
+    public void setCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public ListParams withCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -96,7 +138,7 @@ public class ListParams {
 
     @Override
     public String toString() {
-        return ((((((((("ListParams"+" [limit=")+ limit)+", offset=")+ offset)+", tag=")+ tag)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((((((("ListParams"+" [limit=")+ limit)+", offset=")+ offset)+", tag=")+ tag)+", ifNotModified=")+ ifNotModified)+", catalogVersion=")+ catalogVersion)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
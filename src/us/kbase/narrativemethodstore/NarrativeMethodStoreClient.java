@@ -661,4 +661,45 @@ public class NarrativeMethodStoreClient {
         TypeReference<Object> retType = new TypeReference<Object>() {};
         caller.jsonrpcCall("NarrativeMethodStore.push_repo_to_tag", args, retType, false, true, jsonRpcContext, this.serviceVersion);
     }
+
+    /**
+     * <p>Original spec-file function name: register_repo_async</p>
+     * <pre>
+     * Starts registration of repository in background (cloning, validation of
+     * methods and storing of files), returns id of job which could be checked
+     * with get_register_repo_job_status. Repository already registered before
+     * stays in 'building' state while job is running. Number of jobs waiting
+     * for their turn is limited, extra ones are rejected.
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.narrativemethodstore.RegisterRepoParams RegisterRepoParams}
+     * @return   parameter "job_id" of String
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public String registerRepoAsync(RegisterRepoParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<String>> retType = new TypeReference<List<String>>() {};
+        List<String> res = caller.jsonrpcCall("NarrativeMethodStore.register_repo_async", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Original spec-file function name: get_register_repo_job_status</p>
+     * <pre>
+     * Returns state of registration job, it's available only to user who
+     * started the job and to global admins.
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.narrativemethodstore.GetRegisterRepoJobStatusParams GetRegisterRepoJobStatusParams}
+     * @return   instance of type {@link us.kbase.narrativemethodstore.RegisterRepoJobStatus RegisterRepoJobStatus}
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public RegisterRepoJobStatus getRegisterRepoJobStatus(GetRegisterRepoJobStatusParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<RegisterRepoJobStatus>> retType = new TypeReference<List<RegisterRepoJobStatus>>() {};
+        List<RegisterRepoJobStatus> res = caller.jsonrpcCall("NarrativeMethodStore.get_register_repo_job_status", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
 }
@@ -27,9 +27,14 @@ import us.kbase.auth.AuthService;
 import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
 import us.kbase.narrativemethodstore.db.ServiceUrlTemplateEvaluater;
 import us.kbase.narrativemethodstore.db.Validator;
+import us.kbase.narrativemethodstore.db.github.CatalogSnapshot;
+import us.kbase.narrativemethodstore.db.github.CatalogSnapshotFile;
 import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+import us.kbase.narrativemethodstore.db.github.LocalGitDBOptions;
 import us.kbase.narrativemethodstore.db.github.RepoTag;
 import us.kbase.narrativemethodstore.db.mongo.MongoDynamicRepoDB;
+import us.kbase.narrativemethodstore.util.PreserializedList;
+import us.kbase.narrativemethodstore.util.PreserializedMap;
 //END_HEADER
 
 /**
@@ -68,13 +73,24 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     public static final String      CFG_PROP_DEFAULT_TAG = "method-spec-default-tag";
     public static final String CFG_PROP_AUTH_SERVICE_URL = "auth-service-url";
     public static final String    CFG_PROP_AUTH_INSECURE = "auth-service-url-allow-insecure";
+    public static final String CFG_PROP_INDEX_BUILD_THREADS = "method-spec-index-build-threads";
+    public static final String    CFG_PROP_SNAPSHOT_FILE = "method-spec-snapshot-file";
+    public static final String CFG_PROP_GIT_REUSE_LOCAL_DIR = "method-spec-git-repo-reuse-local-dir";
+    public static final String CFG_PROP_GIT_IN_PROCESS_READS = "method-spec-git-repo-in-process-reads";
+    public static final String CFG_PROP_SNAPSHOT_WITH_DATA = "method-spec-snapshot-with-data";
+    public static final String CFG_PROP_RESPONSE_CACHE_SIZE = "method-spec-response-cache-size";
+    public static final String CFG_PROP_RETAINED_SNAPSHOTS = "method-spec-retained-snapshots";
+    public static final String CFG_PROP_DATA_LOAD_THREADS = "method-spec-data-load-threads";
+    public static final String CFG_PROP_FILE_CACHE_SIZE = "method-spec-file-cache-size";
+    public static final String CFG_PROP_DYNAMIC_REPO_POLL_SECONDS = "method-spec-dynamic-repo-poll-seconds";
+    public static final String CFG_PROP_DYNAMIC_REPO_SHALLOW_CLONE = "method-spec-dynamic-repo-shallow-clone";
     
     public static final String VERSION = "0.3.6";
     
     private static Throwable configError = null;
     private static Map<String, String> config = null;
 
-    private static LocalGitDB localGitDB;
+    private static volatile LocalGitDB localGitDB;
 
     public static Map<String, String> config() {
     	if (config != null)
@@ -166,6 +182,66 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     private static String getDefaultTag() {
         return config().get(CFG_PROP_DEFAULT_TAG);
     }
+    private static int getIndexBuildThreads() {
+        String ret = config().get(CFG_PROP_INDEX_BUILD_THREADS);
+        if (ret == null)
+            return Runtime.getRuntime().availableProcessors();
+        try {
+            return Integer.parseInt(ret);
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_INDEX_BUILD_THREADS + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    private static long getResponseCacheSize() {
+        String ret = config().get(CFG_PROP_RESPONSE_CACHE_SIZE);
+        if (ret == null)
+            return 100000000L;
+        try {
+            return Long.parseLong(ret);
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_RESPONSE_CACHE_SIZE + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    private static int getRetainedSnapshots() {
+        String ret = config().get(CFG_PROP_RETAINED_SNAPSHOTS);
+        if (ret == null)
+            return 3;
+        try {
+            return Integer.parseInt(ret);
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_RETAINED_SNAPSHOTS + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    private static int getDataLoadThreads() {
+        String ret = config().get(CFG_PROP_DATA_LOAD_THREADS);
+        if (ret == null)
+            return 8;
+        try {
+            return Integer.parseInt(ret);
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_DATA_LOAD_THREADS + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    private static long getFileCacheSize() {
+        String ret = config().get(CFG_PROP_FILE_CACHE_SIZE);
+        if (ret == null)
+            return 100000000L;
+        try {
+            return Long.parseLong(ret);
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_FILE_CACHE_SIZE + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    private static int getDynamicRepoPollSeconds() {
+        String ret = config().get(CFG_PROP_DYNAMIC_REPO_POLL_SECONDS);
+        if (ret == null)
+            return 5;
+        try {
+            return Integer.parseInt(ret);
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_DYNAMIC_REPO_POLL_SECONDS + " is not defined in configuration as integer: " + ret);
+        }
+    }
     
     private static <T> List<T> trim(List<T> data, ListParams params) {
     	if (params.getOffset() == null && params.getLimit() == null)
@@ -174,12 +250,45 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     	int to = data.size();
     	if (params.getLimit() != null && params.getLimit() > 0 && from + params.getLimit() < to)
     		to = from + (int)(long)params.getLimit();
+    	if (from > to)
+    		from = to;
+    	// Lists coming from index are random access, so this is O(1)
     	return data.subList(from, to);
     }
     
-    public static synchronized LocalGitDB getLocalGitDB() throws Exception {
+    /**
+     * Listing methods return the same data until catalog snapshot changes, so their 
+     * responses are kept in the snapshot already serialized into JSON.
+     */
+    private static <T> List<T> cachedList(String method, ListParams params, 
+            CatalogSnapshot.ResponseLoader<PreserializedList<T>> loader) throws Exception {
+        return getLocalGitDB().getSnapshot(params.getCatalogVersion()).getResponse(method + 
+                ":" + params.getTag() + ":" + params.getOffset() + ":" + params.getLimit(), loader);
+    }
+    
+    private static <V> Map<String, V> cachedMap(String catalogVersion, String key, 
+            CatalogSnapshot.ResponseLoader<PreserializedMap<String, V>> loader) throws Exception {
+        return getLocalGitDB().getSnapshot(catalogVersion).getResponse(key, loader);
+    }
+    
+    /**
+     * @return true in case client passed the same catalog version as the current one,
+     * listing methods return null in this case.
+     */
+    private static boolean isNotModified(String ifNotModified) throws Exception {
+        return ifNotModified != null && 
+                ifNotModified.equals(getLocalGitDB().getSnapshot().getCatalogVersion());
+    }
+    
+    public static LocalGitDB getLocalGitDB() throws Exception {
+        // Every RPC comes through here, so there is no locking once instance is created.
+        // LocalGitDB itself is safe to share between servlet threads (including ImageServlet).
+        LocalGitDB ret = localGitDB;
+        return ret != null ? ret : initLocalGitDB();
+    }
+    
+    private static synchronized LocalGitDB initLocalGitDB() throws Exception {
         if (localGitDB == null) {
-            // TODO: Make sure LocalGitDB doesn't require synchronization for when shared between servlet threads (including ImageServlet).
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_REPO +" = " + getGitRepo());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_BRANCH +" = " + getGitBranch());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_LOCAL_DIR +" = " + getGitLocalDir());
@@ -228,6 +337,49 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
             String authAllowInsecure = config().get(CFG_PROP_AUTH_INSECURE);
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_AUTH_INSECURE +" = " + 
                     (authAllowInsecure == null ? "<not-set> ('false' will be used)" : authAllowInsecure));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_INDEX_BUILD_THREADS +" = " + 
+                    (config().get(CFG_PROP_INDEX_BUILD_THREADS) == null ? "<not-set> (" + getIndexBuildThreads() + 
+                            " will be used)" : getIndexBuildThreads()));
+            String snapshotFile = config().get(CFG_PROP_SNAPSHOT_FILE);
+            if (snapshotFile != null && snapshotFile.trim().isEmpty())
+                snapshotFile = null;
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_SNAPSHOT_FILE +" = " + 
+                    (snapshotFile == null ? "<not-set>" : snapshotFile));
+            String snapshotWithDataText = config().get(CFG_PROP_SNAPSHOT_WITH_DATA);
+            boolean snapshotWithData = snapshotWithDataText != null && (snapshotWithDataText.equals("1") || 
+                    snapshotWithDataText.equals("true") || snapshotWithDataText.equals("y") || 
+                    snapshotWithDataText.equals("yes"));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_SNAPSHOT_WITH_DATA +" = " + snapshotWithData);
+            String reuseLocalDirText = config().get(CFG_PROP_GIT_REUSE_LOCAL_DIR);
+            boolean reuseLocalDir = reuseLocalDirText != null && (reuseLocalDirText.equals("1") || 
+                    reuseLocalDirText.equals("true") || reuseLocalDirText.equals("y") || 
+                    reuseLocalDirText.equals("yes"));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_REUSE_LOCAL_DIR +" = " + reuseLocalDir);
+            String inProcessReadsText = config().get(CFG_PROP_GIT_IN_PROCESS_READS);
+            boolean inProcessReads = inProcessReadsText != null && (inProcessReadsText.equals("1") || 
+                    inProcessReadsText.equals("true") || inProcessReadsText.equals("y") || 
+                    inProcessReadsText.equals("yes"));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_IN_PROCESS_READS +" = " + inProcessReads);
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_RESPONSE_CACHE_SIZE +" = " + 
+                    (config().get(CFG_PROP_RESPONSE_CACHE_SIZE) == null ? "<not-set> (" + getResponseCacheSize() + 
+                            " will be used)" : getResponseCacheSize()));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_RETAINED_SNAPSHOTS +" = " + 
+                    (config().get(CFG_PROP_RETAINED_SNAPSHOTS) == null ? "<not-set> (" + getRetainedSnapshots() + 
+                            " will be used)" : getRetainedSnapshots()));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_DATA_LOAD_THREADS +" = " + 
+                    (config().get(CFG_PROP_DATA_LOAD_THREADS) == null ? "<not-set> (" + getDataLoadThreads() + 
+                            " will be used)" : getDataLoadThreads()));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_FILE_CACHE_SIZE +" = " + 
+                    (config().get(CFG_PROP_FILE_CACHE_SIZE) == null ? "<not-set> (" + getFileCacheSize() + 
+                            " will be used)" : getFileCacheSize()));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_DYNAMIC_REPO_POLL_SECONDS +" = " + 
+                    (config().get(CFG_PROP_DYNAMIC_REPO_POLL_SECONDS) == null ? "<not-set> (" + getDynamicRepoPollSeconds() + 
+                            " will be used)" : getDynamicRepoPollSeconds()));
+            String shallowCloneText = config().get(CFG_PROP_DYNAMIC_REPO_SHALLOW_CLONE);
+            boolean shallowClone = shallowCloneText != null && (shallowCloneText.equals("1") || 
+                    shallowCloneText.equals("true") || shallowCloneText.equals("y") || 
+                    shallowCloneText.equals("yes"));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_DYNAMIC_REPO_SHALLOW_CLONE +" = " + shallowClone);
             AuthToken shockToken = null;
             if (shockUser != null || shockTokenText != null) {
                 ConfigurableAuthService authService = new ConfigurableAuthService(
@@ -241,8 +393,20 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
             }
             localGitDB = new LocalGitDB(new URL(getGitRepo()), getGitBranch(), new File(getGitLocalDir()), getGitRefreshRate(), getCacheSize(), 
                     new MongoDynamicRepoDB(getMongoHost(), getMongoDbname(), dbUser, dbPwd, adminUsers, mongoRO, 
-                            shockUrl == null ? null : new URL(shockUrl), shockToken), new File(getTempDir()),
-                            new ServiceUrlTemplateEvaluater(endpointHost, endpointBase), RepoTag.valueOf(defaultTag));
+                            shockUrl == null ? null : new URL(shockUrl), shockToken, getFileCacheSize()), 
+                            new File(getTempDir()),
+                            new ServiceUrlTemplateEvaluater(endpointHost, endpointBase), RepoTag.valueOf(defaultTag),
+                            new LocalGitDBOptions().withIndexBuildThreads(getIndexBuildThreads())
+                            .withSnapshotFile(snapshotFile == null ? null : 
+                                new CatalogSnapshotFile(new File(snapshotFile), VERSION))
+                            .withSnapshotWithData(snapshotWithData)
+                            .withReuseLocalClone(reuseLocalDir)
+                            .withInProcessGitReads(inProcessReads)
+                            .withResponseCacheSize(getResponseCacheSize())
+                            .withRetainedSnapshots(getRetainedSnapshots())
+                            .withDataLoadThreads(getDataLoadThreads())
+                            .withDynamicRepoPollSeconds(getDynamicRepoPollSeconds())
+                            .withShallowRepoClone(shallowClone));
         }
         return localGitDB;
     }
@@ -289,7 +453,8 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         				.withGitSpecUrl(getGitRepo())
         				.withGitSpecBranch(getGitBranch())
         				.withGitSpecCommit(getLocalGitDB().getCommitInfo())
-        				.withUpdateInterval(Integer.toString(getGitRefreshRate()));
+        				.withUpdateInterval(Integer.toString(getGitRefreshRate()))
+        				.withCatalogVersion(getLocalGitDB().getSnapshot().getCatalogVersion());
         //END status
         return returnVal;
     }
@@ -309,6 +474,8 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         Map<String,TypeInfo> return4 = null;
         //BEGIN list_categories
         config();
+        if (isNotModified(params.getIfNotModified()))
+            return new Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>>();
         boolean returnLoadedMethods = false;
         if(params.getLoadMethods()!=null) {
         	if(params.getLoadMethods()==1) {
@@ -327,20 +494,46 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         		returnLoadedTypes = true;
         	}
         }
-        NarrativeCategoriesIndex narCatIndex = getLocalGitDB().getCategoriesIndex();
-        return1 = narCatIndex.getCategories();
+        // All four parts are taken from the same snapshot
+        CatalogSnapshot snapshot = getLocalGitDB().getSnapshot();
+        return1 = snapshot.getResponse("list_categories.categories", 
+                new CatalogSnapshot.ResponseLoader<PreserializedMap<String, Category>>() {
+            @Override
+            public PreserializedMap<String, Category> load(NarrativeCategoriesIndex index) {
+                return new PreserializedMap<String, Category>(index.getCategories());
+            }
+        });
         if(returnLoadedMethods) {
-        	return2 = narCatIndex.getMethods(params.getTag());
+        	final String tag = params.getTag();
+        	return2 = snapshot.getResponse("list_categories.methods:" + tag, 
+        	        new CatalogSnapshot.ResponseLoader<PreserializedMap<String, MethodBriefInfo>>() {
+        	    @Override
+        	    public PreserializedMap<String, MethodBriefInfo> load(NarrativeCategoriesIndex index) {
+        	        return new PreserializedMap<String, MethodBriefInfo>(index.getMethods(tag));
+        	    }
+        	});
         } else {
         	return2 = new HashMap<String,MethodBriefInfo>();
         }
         if (returnLoadedApps) {
-        	return3 = narCatIndex.getApps();
+        	return3 = snapshot.getResponse("list_categories.apps", 
+        	        new CatalogSnapshot.ResponseLoader<PreserializedMap<String, AppBriefInfo>>() {
+        	    @Override
+        	    public PreserializedMap<String, AppBriefInfo> load(NarrativeCategoriesIndex index) {
+        	        return new PreserializedMap<String, AppBriefInfo>(index.getApps());
+        	    }
+        	});
         } else {
         	return3 = new HashMap<String, AppBriefInfo>();
         }
         if (returnLoadedTypes) {
-        	return4 = narCatIndex.getTypes();
+        	return4 = snapshot.getResponse("list_categories.types", 
+        	        new CatalogSnapshot.ResponseLoader<PreserializedMap<String, TypeInfo>>() {
+        	    @Override
+        	    public PreserializedMap<String, TypeInfo> load(NarrativeCategoriesIndex index) {
+        	        return new PreserializedMap<String, TypeInfo>(index.getTypes());
+        	    }
+        	});
         } else {
         	return4 = new HashMap<String, TypeInfo>();
         }
@@ -388,8 +581,17 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodBriefInfo> returnVal = null;
         //BEGIN list_methods
         config();
-        returnVal = new ArrayList<MethodBriefInfo>(getLocalGitDB().getCategoriesIndex().getMethods(params.getTag()).values());
-        returnVal = trim(returnVal, params);
+        if (isNotModified(params.getIfNotModified()))
+            return null;
+        final ListParams listParams = params;
+        returnVal = cachedList("list_methods", params, 
+                new CatalogSnapshot.ResponseLoader<PreserializedList<MethodBriefInfo>>() {
+            @Override
+            public PreserializedList<MethodBriefInfo> load(NarrativeCategoriesIndex index) {
+                return new PreserializedList<MethodBriefInfo>(trim(
+                        index.getMethodList(listParams.getTag()), listParams));
+            }
+        });
         //END list_methods
         return returnVal;
     }
@@ -406,9 +608,11 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodFullInfo> returnVal = null;
         //BEGIN list_methods_full_info
         config();
-        List<String> methodIds = new ArrayList<String>(getLocalGitDB().listMethodIds(false, params.getTag()));
-        methodIds = trim(methodIds, params);
-        returnVal = getMethodFullInfo(new GetMethodParams().withIds(methodIds).withTag(params.getTag()), jsonRpcContext);
+        if (isNotModified(params.getIfNotModified()))
+            return null;
+        CatalogSnapshot snapshot = getLocalGitDB().getSnapshot(params.getCatalogVersion());
+        List<String> methodIds = trim(snapshot.getIndex().getValidMethodIds(params.getTag()), params);
+        returnVal = getLocalGitDB().getMethodFullInfos(snapshot, methodIds, params.getTag());
         //END list_methods_full_info
         return returnVal;
     }
@@ -425,9 +629,11 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodSpec> returnVal = null;
         //BEGIN list_methods_spec
         config();
-        List<String> methodIds = new ArrayList<String>(getLocalGitDB().listMethodIds(false, params.getTag()));
-        methodIds = trim(methodIds, params);
-        returnVal = getMethodSpec(new GetMethodParams().withIds(methodIds).withTag(params.getTag()), jsonRpcContext);
+        if (isNotModified(params.getIfNotModified()))
+            return null;
+        CatalogSnapshot snapshot = getLocalGitDB().getSnapshot(params.getCatalogVersion());
+        List<String> methodIds = trim(snapshot.getIndex().getValidMethodIds(params.getTag()), params);
+        returnVal = getLocalGitDB().getMethodSpecs(snapshot, methodIds, params.getTag());
         //END list_methods_spec
         return returnVal;
     }
@@ -444,9 +650,19 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         Map<String,String> returnVal = null;
         //BEGIN list_method_ids_and_names
         config();
-        returnVal = new TreeMap<String, String>();
-        for (Map.Entry<String, MethodBriefInfo> entry : getLocalGitDB().getCategoriesIndex().getMethods(params.getTag()).entrySet())
-        	returnVal.put(entry.getKey(), entry.getValue().getName());
+        if (isNotModified(params.getIfNotModified()))
+            return null;
+        final String tag = params.getTag();
+        returnVal = cachedMap(params.getCatalogVersion(), "list_method_ids_and_names:" + tag, 
+                new CatalogSnapshot.ResponseLoader<PreserializedMap<String, String>>() {
+            @Override
+            public PreserializedMap<String, String> load(NarrativeCategoriesIndex index) {
+                Map<String, String> ret = new TreeMap<String, String>();
+                for (Map.Entry<String, MethodBriefInfo> entry : index.getMethods(tag).entrySet())
+                    ret.put(entry.getKey(), entry.getValue().getName());
+                return new PreserializedMap<String, String>(ret);
+            }
+        });
         //END list_method_ids_and_names
         return returnVal;
     }
@@ -463,8 +679,16 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppBriefInfo> returnVal = null;
         //BEGIN list_apps
         config();
-        returnVal = new ArrayList<AppBriefInfo>(getLocalGitDB().getCategoriesIndex().getApps().values());
-        returnVal = trim(returnVal, params);
+        if (isNotModified(params.getIfNotModified()))
+            return null;
+        final ListParams listParams = params;
+        returnVal = cachedList("list_apps", params, 
+                new CatalogSnapshot.ResponseLoader<PreserializedList<AppBriefInfo>>() {
+            @Override
+            public PreserializedList<AppBriefInfo> load(NarrativeCategoriesIndex index) {
+                return new PreserializedList<AppBriefInfo>(trim(index.getAppList(), listParams));
+            }
+        });
         //END list_apps
         return returnVal;
     }
@@ -481,9 +705,11 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppFullInfo> returnVal = null;
         //BEGIN list_apps_full_info
         config();
-        List<String> appIds = new ArrayList<String>(getLocalGitDB().listAppIds(false));
-        appIds = trim(appIds, params);
-        returnVal = getAppFullInfo(new GetAppParams().withIds(appIds), jsonRpcContext);
+        if (isNotModified(params.getIfNotModified()))
+            return null;
+        CatalogSnapshot snapshot = getLocalGitDB().getSnapshot(params.getCatalogVersion());
+        List<String> appIds = trim(snapshot.getIndex().getValidAppIds(), params);
+        returnVal = getLocalGitDB().getAppFullInfos(snapshot, appIds);
         //END list_apps_full_info
         return returnVal;
     }
@@ -500,9 +726,11 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppSpec> returnVal = null;
         //BEGIN list_apps_spec
         config();
-        List<String> appIds = new ArrayList<String>(getLocalGitDB().listAppIds(false));
-        appIds = trim(appIds, params);
-        returnVal = getAppSpec(new GetAppParams().withIds(appIds), jsonRpcContext);
+        if (isNotModified(params.getIfNotModified()))
+            return null;
+        CatalogSnapshot snapshot = getLocalGitDB().getSnapshot(params.getCatalogVersion());
+        List<String> appIds = trim(snapshot.getIndex().getValidAppIds(), params);
+        returnVal = getLocalGitDB().getAppSpecs(snapshot, appIds);
         //END list_apps_spec
         return returnVal;
     }
@@ -537,8 +765,16 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<TypeInfo> returnVal = null;
         //BEGIN list_types
         config();
-        returnVal = new ArrayList<TypeInfo>(getLocalGitDB().getCategoriesIndex().getTypes().values());
-        returnVal = trim(returnVal, params);
+        if (isNotModified(params.getIfNotModified()))
+            return null;
+        final ListParams listParams = params;
+        returnVal = cachedList("list_types", params, 
+                new CatalogSnapshot.ResponseLoader<PreserializedList<TypeInfo>>() {
+            @Override
+            public PreserializedList<TypeInfo> load(NarrativeCategoriesIndex index) {
+                return new PreserializedList<TypeInfo>(trim(index.getTypeList(), listParams));
+            }
+        });
         //END list_types
         return returnVal;
     }
@@ -576,11 +812,8 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodFullInfo> returnVal = null;
         //BEGIN get_method_full_info
         config();
-        List <String> methodIds = params.getIds();
-        returnVal = new ArrayList<MethodFullInfo>(methodIds.size());
-        for(String id: methodIds) {
-        	returnVal.add(getLocalGitDB().getMethodFullInfo(id, params.getTag()));
-        }
+        returnVal = getLocalGitDB().getMethodFullInfos(getLocalGitDB().getSnapshot(), 
+                params.getIds(), params.getTag());
         //END get_method_full_info
         return returnVal;
     }
@@ -597,10 +830,8 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodSpec> returnVal = null;
         //BEGIN get_method_spec
         config();
-        List<String> methodIds = params.getIds();
-        returnVal = new ArrayList<MethodSpec>(methodIds.size());
-        for (String id : methodIds)
-        	returnVal.add(getLocalGitDB().getMethodSpec(id, params.getTag()));
+        returnVal = getLocalGitDB().getMethodSpecs(getLocalGitDB().getSnapshot(), 
+                params.getIds(), params.getTag());
         //END get_method_spec
         return returnVal;
     }
@@ -637,11 +868,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppFullInfo> returnVal = null;
         //BEGIN get_app_full_info
         config();
-        List <String> appIds = params.getIds();
-        returnVal = new ArrayList<AppFullInfo>(appIds.size());
-        for(String id: appIds) {
-        	returnVal.add(getLocalGitDB().getAppFullInfo(id));
-        }
+        returnVal = getLocalGitDB().getAppFullInfos(getLocalGitDB().getSnapshot(), params.getIds());
         //END get_app_full_info
         return returnVal;
     }
@@ -658,10 +885,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppSpec> returnVal = null;
         //BEGIN get_app_spec
         config();
-        List<String> appIds = params.getIds();
-        returnVal = new ArrayList<AppSpec>(appIds.size());
-        for (String id : appIds)
-        	returnVal.add(getLocalGitDB().getAppSpec(id));
+        returnVal = getLocalGitDB().getAppSpecs(getLocalGitDB().getSnapshot(), params.getIds());
         //END get_app_spec
         return returnVal;
     }
@@ -803,6 +1027,47 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         //END push_repo_to_tag
     }
 
+    /**
+     * <p>Original spec-file function name: register_repo_async</p>
+     * <pre>
+     * Starts registration of repository in background (cloning, validation of
+     * methods and storing of files), returns id of job which could be checked
+     * with get_register_repo_job_status. Repository already registered before
+     * stays in 'building' state while job is running. Number of jobs waiting
+     * for their turn is limited, extra ones are rejected.
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.narrativemethodstore.RegisterRepoParams RegisterRepoParams}
+     * @return   parameter "job_id" of String
+     */
+    @JsonServerMethod(rpc = "NarrativeMethodStore.register_repo_async", async=true)
+    public String registerRepoAsync(RegisterRepoParams params, AuthToken authPart, RpcContext jsonRpcContext) throws Exception {
+        String returnVal = null;
+        //BEGIN register_repo_async
+        returnVal = getLocalGitDB().registerRepoAsync(authPart.getUserName(), params.getGitUrl(), 
+                params.getGitCommitHash());
+        //END register_repo_async
+        return returnVal;
+    }
+
+    /**
+     * <p>Original spec-file function name: get_register_repo_job_status</p>
+     * <pre>
+     * Returns state of registration job, it's available only to user who
+     * started the job and to global admins.
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.narrativemethodstore.GetRegisterRepoJobStatusParams GetRegisterRepoJobStatusParams}
+     * @return   instance of type {@link us.kbase.narrativemethodstore.RegisterRepoJobStatus RegisterRepoJobStatus}
+     */
+    @JsonServerMethod(rpc = "NarrativeMethodStore.get_register_repo_job_status", async=true)
+    public RegisterRepoJobStatus getRegisterRepoJobStatus(GetRegisterRepoJobStatusParams params, AuthToken authPart, RpcContext jsonRpcContext) throws Exception {
+        RegisterRepoJobStatus returnVal = null;
+        //BEGIN get_register_repo_job_status
+        returnVal = getLocalGitDB().getRegisterRepoJobStatus(authPart.getUserName(), 
+                params.getJobId());
+        //END get_register_repo_job_status
+        return returnVal;
+    }
+
     public static void main(String[] args) throws Exception {
         if (args.length == 1) {
             new NarrativeMethodStoreServer().startupServer(Integer.parseInt(args[0]));
@@ -13,7 +13,12 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 /**
  * <p>Original spec-file type: Status</p>
- * 
+ * <pre>
+ * catalog_version - opaque version of the whole catalog, it changes every time
+ *     either spec-repo commit or any dynamically registered repo (including its
+ *     beta/release tags) changes. It could be passed as if_not_modified to listing
+ *     methods.
+ * </pre>
  * 
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -22,7 +27,8 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
     "git_spec_url",
     "git_spec_branch",
     "git_spec_commit",
-    "update_interval"
+    "update_interval",
+    "catalog_version"
 })
 public class Status {
 
@@ -34,6 +40,8 @@ public class Status {
     private String gitSpecCommit;
     @JsonProperty("update_interval")
     private String updateInterval;
+    @JsonProperty("catalog_version")
+    private String catalogVersion;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("git_spec_url")
@@ -96,6 +104,21 @@ public class Status {
         return this;
     }
 
+    @JsonProperty("catalog_version")
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    @JsonProperty("catalog_version")
+    public void setCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public Status withCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -108,7 +131,7 @@ public class Status {
 
     @Override
     public String toString() {
-        return ((((((((((("Status"+" [gitSpecUrl=")+ gitSpecUrl)+", gitSpecBranch=")+ gitSpecBranch)+", gitSpecCommit=")+ gitSpecCommit)+", updateInterval=")+ updateInterval)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((((((("Status"+" [gitSpecUrl=")+ gitSpecUrl)+", gitSpecBranch=")+ gitSpecBranch)+", gitSpecCommit=")+ gitSpecCommit)+", updateInterval=")+ updateInterval)+", catalogVersion=")+ catalogVersion)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
@@ -3,8 +3,11 @@ package us.kbase.narrativemethodstore.db;
 import java.io.File;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import com.google.common.cache.CacheStats;
+
 import us.kbase.narrativemethodstore.db.github.RepoTag;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 
@@ -30,16 +33,37 @@ public interface DynamicRepoDB {
     
     public boolean isRepoOwner(String repoModuleName, String userId) throws NarrativeMethodStoreException;
     
+    public boolean isGlobalAdmin(String userId) throws NarrativeMethodStoreException;
+    
     public RepoState getRepoState(String repoModuleName) throws NarrativeMethodStoreException;
     
     public void setRepoState(String userId, String repoModuleName, RepoState state) throws NarrativeMethodStoreException;
     
+    /**
+     * Returns a stamp for every registered repository (including disabled ones) which 
+     * is changed whenever state of repository or version behind any of its tags is changed.
+     */
+    public Map<String, String> getRepoVersionStamps() throws NarrativeMethodStoreException;
+    
+    /**
+     * Returns counter which is incremented by every change of registered repositories
+     * (made by any instance of service working with the same storage). It's cheap to 
+     * read so it could be polled often to detect changes made by other instances.
+     */
+    public long getCatalogVersion() throws NarrativeMethodStoreException;
+    
     public FileId saveFile(String moduleName, File file) throws NarrativeMethodStoreException;
 
     public FileId saveFile(String moduleName, FileProvider file) throws NarrativeMethodStoreException;
 
     public FilePointer loadFile(FileId fileId) throws NarrativeMethodStoreException;
     
+    /**
+     * @return hit/miss/eviction statistics of in-memory cache of files or null in case 
+     * files are not cached.
+     */
+    public CacheStats getFileCacheStats();
+    
     public enum RepoState {
         ready(true), building(true), testing(true), disabled(false);
         
@@ -1,6 +1,7 @@
 package us.kbase.narrativemethodstore.db;
 
 import java.io.File;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
@@ -17,4 +18,10 @@ public interface FilePointer {
     
     public void saveToStream(OutputStream os) throws NarrativeMethodStoreException;
 
+    /**
+     * Opens stream reading content of file as it's stored (without making a copy of it
+     * in memory), caller is responsible for closing it.
+     */
+    public InputStream openStream() throws NarrativeMethodStoreException;
+
 }
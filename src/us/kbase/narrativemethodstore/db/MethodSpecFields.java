@@ -0,0 +1,837 @@
+package us.kbase.narrativemethodstore.db;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+import us.kbase.common.service.UObject;
+import us.kbase.narrativemethodstore.AutoGeneratedValue;
+import us.kbase.narrativemethodstore.CheckboxOptions;
+import us.kbase.narrativemethodstore.FloatSliderOptions;
+import us.kbase.narrativemethodstore.IntSliderOptions;
+import us.kbase.narrativemethodstore.OutputMapping;
+import us.kbase.narrativemethodstore.RegexMatcher;
+import us.kbase.narrativemethodstore.ServiceMethodInputMapping;
+import us.kbase.narrativemethodstore.ServiceMethodOutputMapping;
+import us.kbase.narrativemethodstore.SubdataSelection;
+import us.kbase.narrativemethodstore.TextAreaOptions;
+import us.kbase.narrativemethodstore.TextOptions;
+import us.kbase.narrativemethodstore.TextSubdataOptions;
+import us.kbase.narrativemethodstore.WidgetSpec;
+
+/**
+ * Fields of method spec.json read by streaming parser in one pass (no JsonNode tree
+ * is built). Values are coerced the same way as JsonNode.asText/asLong/asBoolean
+ * coerce them, null field means that property is absent in spec.json. Options and
+ * mappings are built straight into objects of method spec. Errors found in mappings
+ * are kept and thrown by NarrativeMethodData at the point where they were reported
+ * by tree walking, so messages don't depend on order of properties in file.
+ */
+class MethodSpecFields {
+    private static final Set<String> INPUT_MAPPING_FIELDS = new HashSet<String>(Arrays.asList(
+            "target_argument_position", "target_property", "target_type_transform", 
+            "input_parameter", "narrative_system_variable", "constant_value", 
+            "generated_value", "direct-mapping"));
+
+    List<String> categories;
+    String ver;
+    List<String> authors;
+    List<String> kbContributors;
+    String appType;
+    String contact;
+    WidgetSpec widgets;
+    Behavior behavior;
+    List<Param> parameters;
+    List<Group> parameterGroups;
+    String jobIdOutputField;
+
+    static class Behavior {
+        ServiceMapping serviceMapping;
+        NoneMapping none;
+    }
+
+    static class ServiceMapping {
+        List<ServiceMethodInputMapping> inputMapping;
+        DeferredError inputMappingError = new DeferredError();
+        List<ServiceMethodOutputMapping> outputMapping;
+        DeferredError outputMappingError = new DeferredError();
+        String name;
+        String url;
+        String method;
+    }
+
+    static class NoneMapping {
+        List<OutputMapping> outputMapping;
+        DeferredError outputMappingError = new DeferredError();
+    }
+
+    static class Param {
+        String id;
+        TextOptions textOptions;
+        TextSubdataOptions textsubdataOptions;
+        CheckboxOptions checkboxOptions;
+        Options dropdownOptions;
+        FloatSliderOptions floatsliderOptions;
+        IntSliderOptions intsliderOptions;
+        Options radioOptions;
+        TextAreaOptions textareaOptions;
+        Options tabOptions;
+        Long disabled;
+        Long optional;
+        Long advanced;
+        Long allowMultiple;
+        List<String> defaultValues;
+        String fieldType;
+    }
+
+    /**
+     * Dropdown, radio or tab options, items are null in case "options" is absent.
+     */
+    static class Options {
+        List<OptionItem> items;
+    }
+
+    static class OptionItem {
+        String id;
+        String uiName;
+        String uiTooltip;
+        String value;
+        String display;
+        List<String> paramIds;
+    }
+
+    static class Group {
+        String id;
+        List<String> parameters;
+        Map<String, String> mapping;
+        Long advanced;
+        Long allowMultiple;
+        Long optional;
+    }
+
+    /**
+     * First error found while reading list of mappings, the rest of list is skipped.
+     */
+    static class DeferredError {
+        RuntimeException error;
+
+        void set(RuntimeException ex) {
+            if (error == null)
+                error = ex;
+        }
+
+        void throwIfSet() {
+            if (error != null)
+                throw error;
+        }
+    }
+
+    /**
+     * Reads one JSON value from parser. Parser should have codec set (it's used for
+     * constant values of mappings).
+     */
+    static MethodSpecFields read(JsonParser p) throws IOException {
+        if (p.nextToken() == null)
+            throw new JsonMappingException("No content to map due to end-of-input",
+                    p.getCurrentLocation());
+        MethodSpecFields ret = new MethodSpecFields();
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("categories")) {
+                ret.categories = readStringList(p);
+            } else if (field.equals("ver")) {
+                ret.ver = readText(p);
+            } else if (field.equals("authors")) {
+                ret.authors = readStringList(p);
+            } else if (field.equals("kb_contributors")) {
+                ret.kbContributors = readStringList(p);
+            } else if (field.equals("app_type")) {
+                ret.appType = readText(p);
+            } else if (field.equals("contact")) {
+                ret.contact = readText(p);
+            } else if (field.equals("widgets")) {
+                ret.widgets = readWidgets(p);
+            } else if (field.equals("behavior")) {
+                ret.behavior = readBehavior(p);
+            } else if (field.equals("parameters")) {
+                ret.parameters = new ArrayList<Param>();
+                if (startArray(p))
+                    while (p.nextToken() != JsonToken.END_ARRAY)
+                        ret.parameters.add(readParam(p));
+            } else if (field.equals("parameter-groups")) {
+                ret.parameterGroups = new ArrayList<Group>();
+                if (startArray(p))
+                    while (p.nextToken() != JsonToken.END_ARRAY)
+                        ret.parameterGroups.add(readGroup(p));
+            } else if (field.equals("job_id_output_field")) {
+                ret.jobIdOutputField = readText(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    private static WidgetSpec readWidgets(JsonParser p) throws IOException {
+        WidgetSpec ret = new WidgetSpec();
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("input")) {
+                ret.withInput(readText(p));
+            } else if (field.equals("output")) {
+                ret.withOutput(readText(p));
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    private static Behavior readBehavior(JsonParser p) throws IOException {
+        Behavior ret = new Behavior();
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("service-mapping")) {
+                ret.serviceMapping = readServiceMapping(p);
+            } else if (field.equals("none")) {
+                NoneMapping none = new NoneMapping();
+                ret.none = none;
+                if (!startObject(p))
+                    continue;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field2 = p.getCurrentName();
+                    p.nextToken();
+                    if (field2.equals("output_mapping")) {
+                        none.outputMapping = new ArrayList<OutputMapping>();
+                        none.outputMappingError = new DeferredError();
+                        if (!startArray(p))
+                            continue;
+                        for (int j = 0; p.nextToken() != JsonToken.END_ARRAY; j++) {
+                            OutputMapping mapping = readOutputMapping(p,
+                                    "behavior/none/output_mapping/" + j,
+                                    none.outputMappingError);
+                            if (mapping != null)
+                                none.outputMapping.add(mapping);
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    private static ServiceMapping readServiceMapping(JsonParser p) throws IOException {
+        ServiceMapping ret = new ServiceMapping();
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("input_mapping")) {
+                ret.inputMapping = new ArrayList<ServiceMethodInputMapping>();
+                ret.inputMappingError = new DeferredError();
+                if (!startArray(p))
+                    continue;
+                for (int j = 0; p.nextToken() != JsonToken.END_ARRAY; j++)
+                    readInputMapping(p, "behavior/service-mapping/input_mapping/" + j,
+                            ret.inputMapping, ret.inputMappingError);
+            } else if (field.equals("output_mapping")) {
+                ret.outputMapping = new ArrayList<ServiceMethodOutputMapping>();
+                ret.outputMappingError = new DeferredError();
+                if (!startArray(p))
+                    continue;
+                for (int j = 0; p.nextToken() != JsonToken.END_ARRAY; j++) {
+                    ServiceMethodOutputMapping mapping = readServiceOutputMapping(p,
+                            "behavior/service-mapping/output_mapping/" + j,
+                            ret.outputMappingError);
+                    if (mapping != null)
+                        ret.outputMapping.add(mapping);
+                }
+            } else if (field.equals("name")) {
+                ret.name = readText(p);
+            } else if (field.equals("url")) {
+                ret.url = readText(p);
+            } else if (field.equals("method")) {
+                ret.method = readText(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    private static void readInputMapping(JsonParser p, String path,
+            List<ServiceMethodInputMapping> target, DeferredError error) throws IOException {
+        ServiceMethodInputMapping paramMapping = new ServiceMethodInputMapping();
+        if (error.error != null || !startObject(p)) {
+            p.skipChildren();
+            if (error.error == null)
+                target.add(paramMapping);
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (error.error != null) {
+                p.skipChildren();
+            } else if (paramMapping == null && INPUT_MAPPING_FIELDS.contains(field)) {
+                error.set(new IllegalStateException("Unexpected field [" + field + "] " +
+                		"after direct-mapping in method parameter mapping structure within " +
+                		"path " + path));
+                p.skipChildren();
+            } else if (field.equals("target_argument_position")) {
+                paramMapping.withTargetArgumentPosition(p.getCurrentToken() ==
+                        JsonToken.VALUE_NULL ? null : readLong(p));
+            } else if (field.equals("target_property")) {
+                paramMapping.withTargetProperty(readText(p));
+            } else if (field.equals("target_type_transform")) {
+                paramMapping.withTargetTypeTransform(readText(p));
+            } else if (field.equals("input_parameter")) {
+                paramMapping.withInputParameter(readText(p));
+            } else if (field.equals("narrative_system_variable")) {
+                paramMapping.withNarrativeSystemVariable(readText(p));
+            } else if (field.equals("constant_value")) {
+                paramMapping.withConstantValue(readConstant(p));
+            } else if (field.equals("generated_value")) {
+                AutoGeneratedValue agv = new AutoGeneratedValue();
+                if (!startObject(p))
+                    continue;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field3 = p.getCurrentName();
+                    p.nextToken();
+                    if (error.error != null) {
+                        p.skipChildren();
+                        continue;
+                    }
+                    if (field3.equals("prefix")) {
+                        agv.withPrefix(readText(p));
+                    } else if (field3.equals("symbols")) {
+                        agv.withSymbols(readLong(p));
+                    } else if (field3.equals("suffix")) {
+                        agv.withSuffix(readText(p));
+                    } else {
+                        error.set(new IllegalStateException("Unknown field [" + field + "] in " +
+                        		"generated value structure within path " + path +
+                        		"/generated_value"));
+                        p.skipChildren();
+                        continue;
+                    }
+                    paramMapping.withGeneratedValue(agv);
+                }
+            } else if (field.equals("direct-mapping")) {
+                paramMapping = null;
+                for (String item : readStringList(p))
+                    target.add(new ServiceMethodInputMapping().withInputParameter(item)
+                            .withTargetProperty(item));
+            } else {
+                error.set(new IllegalStateException("Unknown field [" + field + "] in method " +
+                		"parameter mapping structure within path " + path));
+                p.skipChildren();
+            }
+        }
+        if (paramMapping != null && error.error == null)
+            target.add(paramMapping);
+    }
+
+    private static ServiceMethodOutputMapping readServiceOutputMapping(JsonParser p,
+            String path, DeferredError error) throws IOException {
+        ServiceMethodOutputMapping paramMapping = new ServiceMethodOutputMapping();
+        if (error.error != null || !startObject(p)) {
+            p.skipChildren();
+            return error.error == null ? paramMapping : null;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (error.error != null) {
+                p.skipChildren();
+            } else if (field.equals("target_property")) {
+                paramMapping.withTargetProperty(readText(p));
+            } else if (field.equals("target_type_transform")) {
+                paramMapping.withTargetTypeTransform(readText(p));
+            } else if (field.equals("input_parameter")) {
+                paramMapping.withInputParameter(readText(p));
+            } else if (field.equals("narrative_system_variable")) {
+                paramMapping.withNarrativeSystemVariable(readText(p));
+            } else if (field.equals("constant_value")) {
+                paramMapping.withConstantValue(readConstant(p));
+            } else if (field.equals("service_method_output_path")) {
+                paramMapping.withServiceMethodOutputPath(readStringList(p));
+            } else {
+                error.set(new IllegalStateException("Unknown field [" + field + "] in method " +
+                		"output mapping structure within path " + path));
+                p.skipChildren();
+            }
+        }
+        return error.error == null ? paramMapping : null;
+    }
+
+    private static OutputMapping readOutputMapping(JsonParser p, String path,
+            DeferredError error) throws IOException {
+        OutputMapping paramMapping = new OutputMapping();
+        if (error.error != null || !startObject(p)) {
+            p.skipChildren();
+            return error.error == null ? paramMapping : null;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (error.error != null) {
+                p.skipChildren();
+            } else if (field.equals("target_property")) {
+                paramMapping.withTargetProperty(readText(p));
+            } else if (field.equals("target_type_transform")) {
+                paramMapping.withTargetTypeTransform(readText(p));
+            } else if (field.equals("input_parameter")) {
+                paramMapping.withInputParameter(readText(p));
+            } else if (field.equals("narrative_system_variable")) {
+                paramMapping.withNarrativeSystemVariable(readText(p));
+            } else if (field.equals("constant_value")) {
+                paramMapping.withConstantValue(readConstant(p));
+            } else {
+                error.set(new IllegalStateException("Unknown field [" + field + "] in method " +
+                		"output mapping structure within path " + path));
+                p.skipChildren();
+            }
+        }
+        return error.error == null ? paramMapping : null;
+    }
+
+    private static Param readParam(JsonParser p) throws IOException {
+        Param ret = new Param();
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("id")) {
+                ret.id = readText(p);
+            } else if (field.equals("text_options")) {
+                ret.textOptions = readTextOptions(p);
+            } else if (field.equals("textsubdata_options")) {
+                ret.textsubdataOptions = readTextSubdataOptions(p);
+            } else if (field.equals("checkbox_options")) {
+                CheckboxOptions opt = new CheckboxOptions();
+                ret.checkboxOptions = opt;
+                if (!startObject(p))
+                    continue;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field2 = p.getCurrentName();
+                    p.nextToken();
+                    if (field2.equals("checked_value")) {
+                        opt.withCheckedValue(readLong(p));
+                    } else if (field2.equals("unchecked_value")) {
+                        opt.withUncheckedValue(readLong(p));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else if (field.equals("dropdown_options")) {
+                ret.dropdownOptions = readOptions(p);
+            } else if (field.equals("floatslider_options")) {
+                FloatSliderOptions opt = new FloatSliderOptions();
+                ret.floatsliderOptions = opt;
+                if (!startObject(p))
+                    continue;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field2 = p.getCurrentName();
+                    p.nextToken();
+                    if (field2.equals("min")) {
+                        opt.withMin(readDouble(p));
+                    } else if (field2.equals("max")) {
+                        opt.withMax(readDouble(p));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else if (field.equals("intslider_options")) {
+                IntSliderOptions opt = new IntSliderOptions();
+                ret.intsliderOptions = opt;
+                if (!startObject(p))
+                    continue;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field2 = p.getCurrentName();
+                    p.nextToken();
+                    if (field2.equals("min")) {
+                        opt.withMin(readLong(p));
+                    } else if (field2.equals("max")) {
+                        opt.withMax(readLong(p));
+                    } else if (field2.equals("step")) {
+                        opt.withStep(readLong(p));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else if (field.equals("radio_options")) {
+                ret.radioOptions = readOptions(p);
+            } else if (field.equals("textarea_options")) {
+                TextAreaOptions opt = new TextAreaOptions();
+                ret.textareaOptions = opt;
+                if (!startObject(p))
+                    continue;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field2 = p.getCurrentName();
+                    p.nextToken();
+                    if (field2.equals("n_rows")) {
+                        opt.withNRows(readLong(p));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else if (field.equals("tab_options")) {
+                ret.tabOptions = readOptions(p);
+            } else if (field.equals("disabled")) {
+                ret.disabled = readBoolean(p);
+            } else if (field.equals("optional")) {
+                ret.optional = readBoolean(p);
+            } else if (field.equals("advanced")) {
+                ret.advanced = readBoolean(p);
+            } else if (field.equals("allow_multiple")) {
+                ret.allowMultiple = readBoolean(p);
+            } else if (field.equals("default_values")) {
+                ret.defaultValues = readStringList(p);
+            } else if (field.equals("field_type")) {
+                ret.fieldType = readText(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Reads text options except placeholder (it comes from display.yaml).
+     */
+    private static TextOptions readTextOptions(JsonParser p) throws IOException {
+        long isOutputNameFlag = 0L;
+        List<String> types = null;
+        String validateAs = null;
+        List<RegexMatcher> regexList = new ArrayList<RegexMatcher>();
+        TextOptions ret = new TextOptions();
+        if (startObject(p)) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+                if (field.equals("is_output_name")) {
+                    isOutputNameFlag = readBoolean(p);
+                } else if (field.equals("valid_ws_types")) {
+                    types = readStringList(p);
+                } else if (field.equals("validate_as")) {
+                    validateAs = readText(p);
+                } else if (field.equals("min_int")) {
+                    ret.withMinInt(readLong(p));
+                } else if (field.equals("max_int")) {
+                    ret.withMaxInt(readLong(p));
+                } else if (field.equals("min_float")) {
+                    ret.withMinFloat(readDouble(p));
+                } else if (field.equals("max_float")) {
+                    ret.withMaxFloat(readDouble(p));
+                } else if (field.equals("regex_constraint")) {
+                    regexList = new ArrayList<RegexMatcher>();
+                    if (!startArray(p))
+                        continue;
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        RegexMatcher regex = readRegex(p);
+                        if (regex != null)
+                            regexList.add(regex);
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return ret.withValidWsTypes(types).withValidateAs(validateAs)
+                .withIsOutputName(isOutputNameFlag).withRegexConstraint(regexList);
+    }
+
+    private static RegexMatcher readRegex(JsonParser p) throws IOException {
+        String regex = null;
+        String errorText = null;
+        Long match = 1L;
+        if (!startObject(p))
+            return null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("regex")) {
+                regex = readText(p);
+            } else if (field.equals("error_text")) {
+                errorText = readText(p);
+            } else if (field.equals("match")) {
+                match = readBoolean(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        if (regex == null || errorText == null)
+            return null;
+        return new RegexMatcher().withMatch(match).withRegex(regex).withErrorText(errorText);
+    }
+
+    /**
+     * Reads text subdata options except placeholder (it comes from display.yaml),
+     * subdata selection is null in case it's absent.
+     */
+    private static TextSubdataOptions readTextSubdataOptions(JsonParser p)
+            throws IOException {
+        // multiselection and allow_custom are false by default, show_src_obj is true
+        TextSubdataOptions ret = new TextSubdataOptions().withMultiselection(0L)
+                .withShowSrcObj(1L).withAllowCustom(0L);
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("multiselection")) {
+                ret.withMultiselection(readBoolean(p));
+            } else if (field.equals("show_src_obj")) {
+                ret.withShowSrcObj(readBoolean(p));
+            } else if (field.equals("allow_custom")) {
+                ret.withAllowCustom(readBoolean(p));
+            } else if (field.equals("subdata_selection")) {
+                ret.withSubdataSelection(readSubdataSelection(p));
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    private static SubdataSelection readSubdataSelection(JsonParser p) throws IOException {
+        SubdataSelection ret = new SubdataSelection()
+                .withSubdataIncluded(new ArrayList<String>())
+                .withPathToSubdata(new ArrayList<String>());
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("constant_ref")) {
+                ret.withConstantRef(readStringList(p));
+            } else if (field.equals("parameter_id")) {
+                ret.withParameterId(readText(p));
+            } else if (field.equals("subdata_included")) {
+                ret.withSubdataIncluded(readStringList(p));
+            } else if (field.equals("path_to_subdata")) {
+                ret.withPathToSubdata(readStringList(p));
+            } else if (field.equals("selection_id")) {
+                ret.withSelectionId(readText(p));
+            } else if (field.equals("selection_description")) {
+                ret.withSelectionDescription(readStringList(p));
+            } else if (field.equals("description_template")) {
+                ret.withDescriptionTemplate(readText(p));
+            } else if (field.equals("service_function")) {
+                ret.withServiceFunction(readText(p));
+            } else if (field.equals("service_version")) {
+                ret.withServiceVersion(readText(p));
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    private static Options readOptions(JsonParser p) throws IOException {
+        Options ret = new Options();
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("options")) {
+                ret.items = new ArrayList<OptionItem>();
+                if (!startArray(p))
+                    continue;
+                while (p.nextToken() != JsonToken.END_ARRAY)
+                    ret.items.add(readOptionItem(p));
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    private static OptionItem readOptionItem(JsonParser p) throws IOException {
+        OptionItem ret = new OptionItem();
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("id")) {
+                ret.id = readText(p);
+            } else if (field.equals("ui_name")) {
+                ret.uiName = readText(p);
+            } else if (field.equals("ui_tooltip")) {
+                ret.uiTooltip = readText(p);
+            } else if (field.equals("value")) {
+                ret.value = readText(p);
+            } else if (field.equals("display")) {
+                ret.display = readText(p);
+            } else if (field.equals("param_ids")) {
+                ret.paramIds = readStringList(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    private static Group readGroup(JsonParser p) throws IOException {
+        Group ret = new Group();
+        if (!startObject(p))
+            return ret;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (field.equals("id")) {
+                ret.id = readText(p);
+            } else if (field.equals("parameters")) {
+                ret.parameters = readStringList(p);
+            } else if (field.equals("mapping")) {
+                ret.mapping = new LinkedHashMap<String, String>();
+                if (!startObject(p))
+                    continue;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = p.getCurrentName();
+                    p.nextToken();
+                    ret.mapping.put(key, readText(p));
+                }
+            } else if (field.equals("advanced")) {
+                ret.advanced = readBoolean(p);
+            } else if (field.equals("allow_multiple")) {
+                ret.allowMultiple = readBoolean(p);
+            } else if (field.equals("optional")) {
+                ret.optional = readBoolean(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns true in case current token starts object, otherwise value is skipped
+     * (it's treated as object without properties like JsonNode.get(String) does).
+     */
+    private static boolean startObject(JsonParser p) throws IOException {
+        if (p.getCurrentToken() == JsonToken.START_OBJECT)
+            return true;
+        p.skipChildren();
+        return false;
+    }
+
+    /**
+     * Returns true in case current token starts array, otherwise value is skipped
+     * (it's treated as empty list).
+     */
+    private static boolean startArray(JsonParser p) throws IOException {
+        if (p.getCurrentToken() == JsonToken.START_ARRAY)
+            return true;
+        p.skipChildren();
+        return false;
+    }
+
+    private static List<String> readStringList(JsonParser p) throws IOException {
+        List<String> ret = new ArrayList<String>();
+        if (startArray(p))
+            while (p.nextToken() != JsonToken.END_ARRAY)
+                ret.add(readText(p));
+        return ret;
+    }
+
+    private static UObject readConstant(JsonParser p) throws IOException {
+        if (p.getCurrentToken() == JsonToken.VALUE_NULL)
+            return new UObject(NullNode.getInstance());
+        return new UObject(p.readValueAsTree());
+    }
+
+    /**
+     * Coerces current value the same way as JsonNode.asText() does.
+     */
+    private static String readText(JsonParser p) throws IOException {
+        switch (p.getCurrentToken()) {
+        case VALUE_NUMBER_INT: return p.getNumberValue().toString();
+        case VALUE_NUMBER_FLOAT: return Double.toString(p.getDoubleValue());
+        case START_OBJECT:
+        case START_ARRAY: p.skipChildren(); return "";
+        default: return p.getText();
+        }
+    }
+
+    /**
+     * Coerces current value the same way as JsonNode.asLong() does.
+     */
+    private static long readLong(JsonParser p) throws IOException {
+        switch (p.getCurrentToken()) {
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT: return p.getNumberValue().longValue();
+        case VALUE_STRING: return NumberInput.parseAsLong(p.getText(), 0L);
+        case VALUE_TRUE: return 1L;
+        case START_OBJECT:
+        case START_ARRAY: p.skipChildren(); return 0L;
+        default: return 0L;
+        }
+    }
+
+    /**
+     * Coerces current value the same way as JsonNode.asDouble() does.
+     */
+    private static double readDouble(JsonParser p) throws IOException {
+        switch (p.getCurrentToken()) {
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT: return p.getNumberValue().doubleValue();
+        case VALUE_STRING: return NumberInput.parseAsDouble(p.getText(), 0.0);
+        case VALUE_TRUE: return 1.0;
+        case START_OBJECT:
+        case START_ARRAY: p.skipChildren(); return 0.0;
+        default: return 0.0;
+        }
+    }
+
+    /**
+     * Coerces current value the same way as JsonNode.asBoolean() does (only integer
+     * numbers are converted), returns 1 for true and 0 for false.
+     */
+    private static long readBoolean(JsonParser p) throws IOException {
+        boolean ret;
+        switch (p.getCurrentToken()) {
+        case VALUE_NUMBER_INT:
+            Number value = p.getNumberValue();
+            ret = value instanceof BigInteger ? ((BigInteger)value).signum() != 0 :
+                value.longValue() != 0;
+            break;
+        case VALUE_STRING: ret = p.getText().trim().equals("true"); break;
+        case VALUE_TRUE: ret = true; break;
+        case START_OBJECT:
+        case START_ARRAY: p.skipChildren(); ret = false; break;
+        default: ret = false;
+        }
+        return ret ? 1L : 0L;
+    }
+}
@@ -1,13 +1,18 @@
 package us.kbase.narrativemethodstore.db;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
@@ -28,6 +33,17 @@ public class NarrativeCategoriesIndex {
     protected Map<String, Exception> dynamicRepoModuleNameToLoadingError;
     protected boolean invalid = false;
     protected final RepoTag defaultTagForGetters;
+    // Read-only views returned by getMethods(tagName), they are prepared for main tags by
+    // prepareTagViews(). Commit hash tags never match tags of dynamic methods, so all of 
+    // them share one view of spec-repo methods built on first use. Any change of methods 
+    // drops them.
+    protected final ConcurrentMap<RepoTag, TagView> tagViews =
+            new ConcurrentHashMap<RepoTag, TagView>();
+    protected volatile TagView commitHashTagView = null;
+    // Sorted lists of apps and types used for paging, built on first use and dropped 
+    // on any change.
+    protected volatile SortedView<AppBriefInfo> appsView = null;
+    protected volatile SortedView<TypeInfo> typesView = null;
     
 	public NarrativeCategoriesIndex(RepoTag defaultTagForGetters) {
 		categories = new HashMap<String,Category>();
@@ -39,26 +55,75 @@ public class NarrativeCategoriesIndex {
 	    this.defaultTagForGetters = defaultTagForGetters;
 	}
 	
+	/**
+	 * Creates a copy of another index which could be then updated without affecting
+	 * the source one (values are shared, only maps are copied).
+	 */
+	public NarrativeCategoriesIndex(NarrativeCategoriesIndex source) {
+	    categories = new HashMap<String,Category>(source.categories);
+	    methods = new TreeMap<MethodId,MethodBriefInfo>(source.methods);
+	    apps = new HashMap<String, AppBriefInfo>(source.apps);
+	    types = new HashMap<String, TypeInfo>(source.types);
+	    dynamicRepoMethods = new TreeSet<MethodId>(source.dynamicRepoMethods);
+	    dynamicRepoModuleNameToLoadingError = new TreeMap<String, Exception>(
+	            source.dynamicRepoModuleNameToLoadingError);
+	    this.defaultTagForGetters = source.defaultTagForGetters;
+	}
+	
 	public void updateAllCategories(Map<String,Category> categories) {
 		this.categories = categories;
 	}
 	
 	public void updateAllMethods(Map<MethodId,MethodBriefInfo> methods) {
 		this.methods = methods;
+		clearTagViews();
 	}
 
 	public void updateAllApps(Map<String, AppBriefInfo> apps) {
 		this.apps = apps;
+		appsView = null;
 	}
 
 	public void updateAllTypes(Map<String, TypeInfo> types) {
 	    this.types = types;
+	    typesView = null;
 	}
 	
 	public void updateAllDynamicRepoMethods(Set<MethodId> dynamicRepoMethods,
 	        Map<String, Exception> dynamicRepoModuleNameToLoadingError) {
 	    this.dynamicRepoMethods = dynamicRepoMethods;
 	    this.dynamicRepoModuleNameToLoadingError = dynamicRepoModuleNameToLoadingError;
+	    clearTagViews();
+	}
+	
+	/**
+	 * Removes all methods of given dynamic repository (for all tags) together with 
+	 * its loading error.
+	 */
+	public void removeDynamicRepo(String repoModuleName) {
+	    removeDynamicRepoIds(methods.keySet(), repoModuleName);
+	    removeDynamicRepoIds(dynamicRepoMethods, repoModuleName);
+	    dynamicRepoModuleNameToLoadingError.remove(repoModuleName);
+	    clearTagViews();
+	}
+	
+	private static void removeDynamicRepoIds(Set<MethodId> ids, String repoModuleName) {
+	    for (Iterator<MethodId> it = ids.iterator(); it.hasNext(); ) {
+	        MethodId id = it.next();
+	        if (id.isDynamic() && id.getRepoModuleName().equals(repoModuleName))
+	            it.remove();
+	    }
+	}
+	
+	/**
+	 * Registers ids of methods of dynamic repository (brief infos should be added 
+	 * separately through addOrUpdateMethod) and error of loading it if any.
+	 */
+	public void addDynamicRepoMethods(String repoModuleName, Collection<MethodId> methodIds,
+	        Exception error) {
+	    dynamicRepoMethods.addAll(methodIds);
+	    if (error != null)
+	        dynamicRepoModuleNameToLoadingError.put(repoModuleName, error);
 	}
 	
 	public boolean isInvalid() {
@@ -92,27 +157,116 @@ public class NarrativeCategoriesIndex {
 	
 	public void addOrUpdateMethod(MethodId methodId, MethodBriefInfo briefInfo) {
 		methods.put(methodId, briefInfo);
+		clearTagViews();
 	}
 
 	public void addOrUpdateApp(String appId, AppBriefInfo briefInfo) {
 		apps.put(appId, briefInfo);
+		appsView = null;
 	}
 
 	public void addOrUpdateType(String typeName, TypeInfo typeInfo) {
 		types.put(typeName, typeInfo);
+		typesView = null;
+	}
+
+	public void removeCategory(String catId) {
+	    categories.remove(catId);
+	}
+	
+	public void removeMethod(MethodId methodId) {
+	    methods.remove(methodId);
+	    clearTagViews();
+	}
+	
+	public void removeApp(String appId) {
+	    apps.remove(appId);
+	    appsView = null;
+	}
+	
+	public void removeType(String typeName) {
+	    types.remove(typeName);
+	    typesView = null;
 	}
 
 	public Map<String,Category> getCategories() {
 		return categories;
 	}
 	
+	/**
+	 * Returns read-only map of methods visible for given tag (or default tag if it's null).
+	 * The map is shared between callers and shouldn't be changed.
+	 */
 	public Map<String,MethodBriefInfo> getMethods(String tagName) {
+	    return getTagView(tagName).methods;
+	}
+	
+	/**
+	 * Returns read-only list of methods visible for given tag (in the same order as
+	 * getMethods returns them), it's random access so any page is taken in O(limit).
+	 */
+	public List<MethodBriefInfo> getMethodList(String tagName) {
+	    return getTagView(tagName).list;
+	}
+	
+	/**
+	 * Returns read-only list of ids of methods visible for given tag which were loaded
+	 * without errors (in the same order as getMethods returns them).
+	 */
+	public List<String> getValidMethodIds(String tagName) {
+	    return getTagView(tagName).validIds;
+	}
+	
+	private void clearTagViews() {
+	    tagViews.clear();
+	    commitHashTagView = null;
+	}
+	
+	private TagView getTagView(String tagName) {
 	    RepoTag tag = tagName == null ? defaultTagForGetters : RepoTag.valueOf(tagName);
+	    if (tag.isGitCommitHash()) {
+	        TagView ret = commitHashTagView;
+	        if (ret == null) {
+	            ret = buildTagView(tag);
+	            commitHashTagView = ret;
+	        }
+	        return ret;
+	    }
+	    TagView ret = tagViews.get(tag);
+	    if (ret == null) {
+	        ret = buildTagView(tag);
+	        TagView prev = tagViews.putIfAbsent(tag, ret);
+	        if (prev != null)
+	            ret = prev;
+	    }
+	    return ret;
+	}
+	
+	/**
+	 * Prepares views of methods for main tags (dev, beta, release) and sorted lists of
+	 * apps and types. It's called once index is complete so that first requests for each 
+	 * tag don't need to build them.
+	 */
+	public void prepareTagViews() {
+	    for (RepoTag tag : RepoTag.values())
+	        if (!tagViews.containsKey(tag))
+	            tagViews.put(tag, buildTagView(tag));
+	    getAppsView();
+	    getTypesView();
+	}
+	
+	private TagView buildTagView(RepoTag tag) {
 	    Map<String, MethodBriefInfo> ret = new LinkedHashMap<String, MethodBriefInfo>();
-	    for (Map.Entry<MethodId, MethodBriefInfo> entry : methods.entrySet())
-	        if ((!entry.getKey().isDynamic()) || entry.getKey().getTag().equals(tag))
+	    List<String> validIds = new ArrayList<String>();
+	    for (Map.Entry<MethodId, MethodBriefInfo> entry : methods.entrySet()) {
+	        if ((!entry.getKey().isDynamic()) || entry.getKey().getTag().equals(tag)) {
 	            ret.put(entry.getKey().getExternalId(), entry.getValue());
-		return ret;
+	            if (entry.getValue().getLoadingError() == null)
+	                validIds.add(entry.getKey().getExternalId());
+	        }
+	    }
+		return new TagView(Collections.unmodifiableMap(ret), Collections.unmodifiableList(
+		        new ArrayList<MethodBriefInfo>(ret.values())), Collections.unmodifiableList(validIds));
 	}
 
 	public Map<MethodId,MethodBriefInfo> getAllMethods() {
@@ -127,6 +281,55 @@ public class NarrativeCategoriesIndex {
 		return types;
 	}
 	
+	/**
+	 * Returns read-only list of apps sorted by id.
+	 */
+	public List<AppBriefInfo> getAppList() {
+	    return getAppsView().list;
+	}
+	
+	/**
+	 * Returns read-only list of sorted ids of apps which were loaded without errors.
+	 */
+	public List<String> getValidAppIds() {
+	    return getAppsView().validIds;
+	}
+	
+	/**
+	 * Returns read-only list of types sorted by name.
+	 */
+	public List<TypeInfo> getTypeList() {
+	    return getTypesView().list;
+	}
+	
+	private SortedView<AppBriefInfo> getAppsView() {
+	    SortedView<AppBriefInfo> ret = appsView;
+	    if (ret == null) {
+	        List<String> validIds = new ArrayList<String>();
+	        Map<String, AppBriefInfo> sorted = new TreeMap<String, AppBriefInfo>(apps);
+	        for (Map.Entry<String, AppBriefInfo> entry : sorted.entrySet())
+	            if (entry.getValue().getLoadingError() == null)
+	                validIds.add(entry.getKey());
+	        ret = new SortedView<AppBriefInfo>(sorted.values(), validIds);
+	        appsView = ret;
+	    }
+	    return ret;
+	}
+	
+	private SortedView<TypeInfo> getTypesView() {
+	    SortedView<TypeInfo> ret = typesView;
+	    if (ret == null) {
+	        List<String> validIds = new ArrayList<String>();
+	        Map<String, TypeInfo> sorted = new TreeMap<String, TypeInfo>(types);
+	        for (Map.Entry<String, TypeInfo> entry : sorted.entrySet())
+	            if (entry.getValue().getLoadingError() == null)
+	                validIds.add(entry.getKey());
+	        ret = new SortedView<TypeInfo>(sorted.values(), validIds);
+	        typesView = ret;
+	    }
+	    return ret;
+	}
+	
 	public Set<MethodId> getDynamicRepoMethods() {
         return dynamicRepoMethods;
     }
@@ -134,4 +337,27 @@ public class NarrativeCategoriesIndex {
 	public Map<String, Exception> getDynamicRepoModuleNameToLoadingError() {
         return dynamicRepoModuleNameToLoadingError;
     }
+	
+	private static class TagView {
+	    final Map<String, MethodBriefInfo> methods;
+	    final List<MethodBriefInfo> list;
+	    final List<String> validIds;
+	    
+	    TagView(Map<String, MethodBriefInfo> methods, List<MethodBriefInfo> list,
+	            List<String> validIds) {
+	        this.methods = methods;
+	        this.list = list;
+	        this.validIds = validIds;
+	    }
+	}
+	
+	private static class SortedView<T> {
+	    final List<T> list;
+	    final List<String> validIds;
+	    
+	    SortedView(Collection<T> values, List<String> validIds) {
+	        this.list = Collections.unmodifiableList(new ArrayList<T>(values));
+	        this.validIds = Collections.unmodifiableList(validIds);
+	    }
+	}
 }
@@ -1,7 +1,8 @@
 package us.kbase.narrativemethodstore.db;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
@@ -9,11 +10,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import us.kbase.common.service.UObject;
-import us.kbase.narrativemethodstore.AutoGeneratedValue;
 import us.kbase.narrativemethodstore.CheckboxOptions;
 import us.kbase.narrativemethodstore.DropdownOption;
 import us.kbase.narrativemethodstore.DropdownOptions;
@@ -30,11 +31,9 @@ import us.kbase.narrativemethodstore.MethodSpec;
 import us.kbase.narrativemethodstore.OutputMapping;
 import us.kbase.narrativemethodstore.Publication;
 import us.kbase.narrativemethodstore.RadioOptions;
-import us.kbase.narrativemethodstore.RegexMatcher;
 import us.kbase.narrativemethodstore.ScreenShot;
 import us.kbase.narrativemethodstore.ServiceMethodInputMapping;
 import us.kbase.narrativemethodstore.ServiceMethodOutputMapping;
-import us.kbase.narrativemethodstore.SubdataSelection;
 import us.kbase.narrativemethodstore.Suggestions;
 import us.kbase.narrativemethodstore.TabOptions;
 import us.kbase.narrativemethodstore.TextAreaOptions;
@@ -59,6 +58,26 @@ public class NarrativeMethodData {
 			FileLookup lookup, String namespace, String serviceVersion,
 			ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag tag,
 			String version) throws NarrativeMethodStoreException {
+		this(methodId, readSpec(spec), display, lookup, namespace, serviceVersion, 
+		        srvUrlTemplEval, tag, version);
+	}
+	
+	/**
+	 * Parses spec.json straight from stream in one pass. Errors of JSON syntax are 
+	 * thrown as IOException like in case of reading of JsonNode.
+	 */
+	public NarrativeMethodData(String methodId, InputStream spec, Map<String, Object> display,
+	        FileLookup lookup, String namespace, String serviceVersion,
+	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag tag,
+	        String version) throws NarrativeMethodStoreException, IOException {
+	    this(methodId, readSpec(spec), display, lookup, namespace, serviceVersion, 
+	            srvUrlTemplEval, tag, version);
+	}
+	
+	private NarrativeMethodData(String methodId, MethodSpecFields spec, 
+	        Map<String, Object> display, FileLookup lookup, String namespace, 
+	        String serviceVersion, ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag tag,
+	        String version) throws NarrativeMethodStoreException {
 		try {
 			update(methodId, spec, display, lookup, namespace, serviceVersion, srvUrlTemplEval, tag, version);
 		} catch (Throwable ex) {
@@ -73,6 +92,40 @@ public class NarrativeMethodData {
 		}
 	}
 	
+	/**
+	 * Restores data which was prepared earlier (for instance stored in catalog snapshot file).
+	 */
+	public NarrativeMethodData(String methodId, MethodBriefInfo briefInfo, 
+	        MethodFullInfo fullInfo, MethodSpec methodSpec) {
+	    this.methodId = methodId;
+	    this.briefInfo = briefInfo;
+	    this.fullInfo = fullInfo;
+	    this.methodSpec = methodSpec;
+	}
+	
+	private static MethodSpecFields readSpec(JsonNode spec) 
+	        throws NarrativeMethodStoreException {
+	    try {
+	        return readSpec(UObject.getMapper().treeAsTokens(spec));
+	    } catch (IOException ex) {
+	        throw new NarrativeMethodStoreException(ex.getMessage(), ex);
+	    }
+	}
+	
+	private static MethodSpecFields readSpec(InputStream spec) throws IOException {
+	    // Parser created by mapper reads constant values of mappings into trees
+	    return readSpec(UObject.getMapper().getFactory().createParser(spec));
+	}
+	
+	private static MethodSpecFields readSpec(JsonParser p) throws IOException {
+	    try {
+	        return MethodSpecFields.read(p);
+	    } finally {
+	        // Closing returns buffers of parser for reuse
+	        p.close();
+	    }
+	}
+	
 	public MethodBriefInfo getMethodBriefInfo() {
 		return briefInfo;
 	}
@@ -90,6 +143,14 @@ public class NarrativeMethodData {
 			FileLookup lookup, String namespace, String serviceVersion,
 			ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag tag,
 			String version) throws NarrativeMethodStoreException {
+	    update(methodId, readSpec(spec), display, lookup, namespace, serviceVersion, 
+	            srvUrlTemplEval, tag, version);
+	}
+	
+	private void update(String methodId, MethodSpecFields spec, Map<String, Object> display,
+			FileLookup lookup, String namespace, String serviceVersion,
+			ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag tag,
+			String version) throws NarrativeMethodStoreException {
 		this.methodId = methodId;
 
 		briefInfo = new MethodBriefInfo()
@@ -98,11 +159,7 @@ public class NarrativeMethodData {
 							.withGitCommitHash(serviceVersion);
 		briefInfo.getAdditionalProperties().put("namespace", namespace);
 
-		List <String> categories = new ArrayList<String>(1);
-		JsonNode cats = get(spec, "categories");
-		for(int k=0; k<cats.size(); k++) {
-			categories.add(cats.get(k).asText());
-		}
+		List <String> categories = get(spec.categories, "categories");
 		briefInfo.withCategories(categories);
 		
 		String methodName = getDisplayText(display, "name", lookup);
@@ -129,14 +186,14 @@ public class NarrativeMethodData {
 		if (version == null) {
 		    // "ver" property from spec.json is still used in case of non-dynamic method 
 		    // (it's mostly when method comes from narrative_method_specs).
-		    version = get(spec, "ver").asText();
+		    version = get(spec.ver, "ver");
 		}
 		briefInfo.withVer(version);
 		
-		List <String> authors = jsonListToStringList(spec.get("authors"));
+		List <String> authors = spec.authors;
 		briefInfo.withAuthors(authors);
 
-		List <String> kbContributors = jsonListToStringList(spec.get("kb_contributors"));
+		List <String> kbContributors = spec.kbContributors;
 		
 		List<ScreenShot> screenshots = new ArrayList<ScreenShot>();
 		@SuppressWarnings("unchecked")
@@ -163,7 +220,7 @@ public class NarrativeMethodData {
 			briefInfo.withIcon(icon);
 		} catch (IllegalStateException e) { /* icon is optional, do nothing */ }
 		
-		String appType = getTextOrNull(spec.get("app_type"));
+		String appType = spec.appType;
 		if (appType == null) {
 		    appType = "app";
 		}
@@ -245,7 +302,7 @@ public class NarrativeMethodData {
 							
 							.withAuthors(authors)
 							.withKbContributors(kbContributors)
-							.withContact(get(spec, "contact").asText())
+							.withContact(get(spec.contact, "contact"))
 							
 							.withDescription(methodDescription)
 							.withTechnicalDescription(methodTechnicalDescr)
@@ -258,175 +315,60 @@ public class NarrativeMethodData {
 		
 		fullInfo.getAdditionalProperties().put("namespace", namespace);
 		
-		JsonNode widgetsNode = get(spec, "widgets");
-		WidgetSpec widgets = new WidgetSpec()
-							.withInput(getTextOrNull(widgetsNode.get("input")))
-							.withOutput(getTextOrNull(widgetsNode.get("output")));
-		JsonNode behaviorNode = get(spec, "behavior");
+		WidgetSpec widgets = get(spec.widgets, "widgets");
+		MethodSpecFields.Behavior behaviorFields = get(spec.behavior, "behavior");
         MethodBehavior behavior = new MethodBehavior();
-		if (behaviorNode.get("service-mapping") != null) {
-			JsonNode serviceMappingNode = behaviorNode.get("service-mapping");
-			JsonNode paramsMappingNode = get("behavior/service-mapping", serviceMappingNode, "input_mapping");
-			List<ServiceMethodInputMapping> paramsMapping = new ArrayList<ServiceMethodInputMapping>();
-			for (int j = 0; j < paramsMappingNode.size(); j++) {
-				JsonNode paramMappingNode = paramsMappingNode.get(j);
-				String path = "behavior/service-mapping/input_mapping/" + j;
-				ServiceMethodInputMapping paramMapping = new ServiceMethodInputMapping();
-				for (Iterator<String> it2 = paramMappingNode.fieldNames(); it2.hasNext(); ) {
-					String field = it2.next();
-					if (field.equals("target_argument_position")) {
-						paramMapping.withTargetArgumentPosition(getLongOrNull(paramMappingNode.get(field)));
-					} else if (field.equals("target_property")) {
-						paramMapping.withTargetProperty(getTextOrNull(paramMappingNode.get(field)));
-					} else if (field.equals("target_type_transform")) {
-						paramMapping.withTargetTypeTransform(getTextOrNull(paramMappingNode.get(field)));
-					} else if (field.equals("input_parameter")) {
-						paramMapping.withInputParameter(paramMappingNode.get(field).asText());
-					} else if (field.equals("narrative_system_variable")) {
-						paramMapping.withNarrativeSystemVariable(paramMappingNode.get(field).asText());
-					} else if (field.equals("constant_value")) {
-						paramMapping.withConstantValue(new UObject(paramMappingNode.get(field)));
-					} else if (field.equals("generated_value")) {
-						JsonNode generNode = paramMappingNode.get("generated_value");
-						AutoGeneratedValue agv = new AutoGeneratedValue();
-						for (Iterator<String> it3 = generNode.fieldNames(); it3.hasNext(); ) {
-							String field3 = it3.next();
-							if (field3.equals("prefix")) {
-								agv.withPrefix(generNode.get(field3).asText());
-							} else if (field3.equals("symbols")) {
-								agv.withSymbols(generNode.get(field3).asLong());
-							} else if (field3.equals("suffix")) {
-								agv.withSuffix(generNode.get(field3).asText());
-							} else {
-								throw new IllegalStateException("Unknown field [" + field + "] in generated " +
-										"value structure within path behavior/service-mapping/input_mapping/" + j + 
-										"/generated_value");
-							}
-							paramMapping.withGeneratedValue(agv);
-						}
-					} else if (field.equals("direct-mapping")) {
-					    List<String> items = jsonListToStringList(paramMappingNode.get(field));
-					    if (items != null) {
-					        paramMapping = null;
-					        for (String item : items) {
-					            paramsMapping.add(new ServiceMethodInputMapping().withInputParameter(item)
-					                    .withTargetProperty(item));
-					        }
-					    }
-					} else {
-						throw new IllegalStateException("Unknown field [" + field + "] in method parameter " +
-								"mapping structure within path " + path);
-					}
-				}
-				if (paramMapping != null)
-				    paramsMapping.add(paramMapping);
-			}
-			List<ServiceMethodOutputMapping> outputMapping = new ArrayList<ServiceMethodOutputMapping>();
-			JsonNode outputMappingNode = get("behavior/service-mapping", serviceMappingNode, "output_mapping");
-			for (int j = 0; j < outputMappingNode.size(); j++) {
-				JsonNode paramMappingNode = outputMappingNode.get(j);
-				String path = "behavior/service-mapping/output_mapping/" + j;
-				ServiceMethodOutputMapping paramMapping = new ServiceMethodOutputMapping();
-				for (Iterator<String> it2 = paramMappingNode.fieldNames(); it2.hasNext(); ) {
-					String field = it2.next();
-					if (field.equals("target_property")) {
-						paramMapping.withTargetProperty(getTextOrNull(paramMappingNode.get(field)));
-					} else if (field.equals("target_type_transform")) {
-						paramMapping.withTargetTypeTransform(getTextOrNull(paramMappingNode.get(field)));
-					} else if (field.equals("input_parameter")) {
-						paramMapping.withInputParameter(paramMappingNode.get(field).asText());
-					} else if (field.equals("narrative_system_variable")) {
-						paramMapping.withNarrativeSystemVariable(paramMappingNode.get(field).asText());
-					} else if (field.equals("constant_value")) {
-						paramMapping.withConstantValue(new UObject(paramMappingNode.get(field)));
-					} else if (field.equals("service_method_output_path")) {
-						paramMapping.withServiceMethodOutputPath(jsonListToStringList(paramMappingNode.get(field)));
-					} else {
-						throw new IllegalStateException("Unknown field [" + field + "] in method output " +
-								"mapping structure within path " + path);
-					}
-				}
-				outputMapping.add(paramMapping);
-			}
-			String moduleName = getTextOrNull(serviceMappingNode.get("name"));
-			String serviceUrl = getTextOrNull(serviceMappingNode.get("url"));
+		if (behaviorFields.serviceMapping != null) {
+			MethodSpecFields.ServiceMapping serviceMapping = behaviorFields.serviceMapping;
+			List<ServiceMethodInputMapping> paramsMapping = get("behavior/service-mapping", 
+			        serviceMapping.inputMapping, "input_mapping");
+			serviceMapping.inputMappingError.throwIfSet();
+			List<ServiceMethodOutputMapping> outputMapping = get("behavior/service-mapping", 
+			        serviceMapping.outputMapping, "output_mapping");
+			serviceMapping.outputMappingError.throwIfSet();
+			String moduleName = serviceMapping.name;
+			String serviceUrl = serviceMapping.url;
 			if (srvUrlTemplEval != null && serviceUrl != null && serviceUrl.length() > 0)
 			    serviceUrl = srvUrlTemplEval.evaluate(serviceUrl, moduleName, serviceVersion);
 			behavior
 				.withKbServiceUrl(serviceUrl)
 				.withKbServiceName(moduleName)
 				.withKbServiceVersion(serviceVersion)
-				.withKbServiceMethod(getTextOrNull(get("behavior/service-mapping", serviceMappingNode, "method")))
+				.withKbServiceMethod(get("behavior/service-mapping", serviceMapping.method, "method"))
 				.withKbServiceInputMapping(paramsMapping)
 				.withKbServiceOutputMapping(outputMapping);
-		} else if (behaviorNode.get("none") != null) {
-			JsonNode noneNode = behaviorNode.get("none");
-			List<OutputMapping> outputMapping = new ArrayList<OutputMapping>();
-			JsonNode outputMappingNode = get("behavior/none", noneNode, "output_mapping");
-			for (int j = 0; j < outputMappingNode.size(); j++) {
-				JsonNode paramMappingNode = outputMappingNode.get(j);
-				String path = "behavior/none/output_mapping/" + j;
-				OutputMapping paramMapping = new OutputMapping();
-				for (Iterator<String> it2 = paramMappingNode.fieldNames(); it2.hasNext(); ) {
-					String field = it2.next();
-					if (field.equals("target_property")) {
-						paramMapping.withTargetProperty(getTextOrNull(paramMappingNode.get(field)));
-					} else if (field.equals("target_type_transform")) {
-						paramMapping.withTargetTypeTransform(getTextOrNull(paramMappingNode.get(field)));
-					} else if (field.equals("input_parameter")) {
-						paramMapping.withInputParameter(paramMappingNode.get(field).asText());
-					} else if (field.equals("narrative_system_variable")) {
-						paramMapping.withNarrativeSystemVariable(paramMappingNode.get(field).asText());
-					} else if (field.equals("constant_value")) {
-						paramMapping.withConstantValue(new UObject(paramMappingNode.get(field)));
-					} else {
-						throw new IllegalStateException("Unknown field [" + field + "] in method output " +
-								"mapping structure within path " + path);
-					}
-				}
-				outputMapping.add(paramMapping);
-			}
+		} else if (behaviorFields.none != null) {
+			List<OutputMapping> outputMapping = get("behavior/none", 
+			        behaviorFields.none.outputMapping, "output_mapping");
+			behaviorFields.none.outputMappingError.throwIfSet();
 			behavior.withOutputMapping(outputMapping);
 		}
 		List<MethodParameter> parameters = new ArrayList<MethodParameter>();
-		JsonNode parametersNode = get(spec, "parameters");
+		List<MethodSpecFields.Param> paramsFields = get(spec.parameters, "parameters");
 		@SuppressWarnings("unchecked")
 		Map<String, Object> paramsDisplays = (Map<String, Object>)getDisplayItem("/", display, "parameters");
 		Set<String> paramIds = new TreeSet<String>();
 		Set<String> inputTypes = new TreeSet<String>();
         Set<String> outputTypes = new TreeSet<String>();
-		for (int i = 0; i < parametersNode.size(); i++) {
-			JsonNode paramNode = parametersNode.get(i);
+		for (int i = 0; i < paramsFields.size(); i++) {
+			MethodSpecFields.Param paramFields = paramsFields.get(i);
 			String paramPath = "parameters/" + i;
-			String paramId = get(paramPath, paramNode, "id").asText();
+			String paramId = get(paramPath, paramFields.id, "id");
 			String uiClass = "parameter";
 			paramIds.add(paramId);
 			@SuppressWarnings("unchecked")
 			Map<String, Object> paramDisplay = (Map<String, Object>)getDisplayItem("parameters", paramsDisplays, paramId);
-			TextOptions textOpt = null;
-			if (paramNode.has("text_options")) {
-				JsonNode optNode = get(paramPath, paramNode, "text_options");
-				JsonNode isOutputName = optNode.get("is_output_name");
-				long isOutputNameFlag = 0L;
-				
-				if(isOutputName!=null) {
-					if(isOutputName.asBoolean()){
-						isOutputNameFlag = 1L;
-					}
-				}
+			TextOptions textOpt = paramFields.textOptions;
+			if (textOpt != null) {
 				String placeholder = "";
 				try {
 					placeholder = getDisplayText("parameters/" + paramId, paramDisplay, "placeholder");
 				} catch (IllegalStateException e) { }
+				textOpt.withPlaceholder(placeholder);
 				
-				List<String> types = jsonListToStringList(optNode.get("valid_ws_types")); 
-				textOpt = new TextOptions()
-							.withValidWsTypes(types)
-							.withValidateAs(getTextOrNull(optNode.get("validate_as")))
-							.withIsOutputName(isOutputNameFlag)
-							.withPlaceholder(placeholder);
+				List<String> types = textOpt.getValidWsTypes();
 				if(types != null && types.size() > 0) {
-				    if (isOutputNameFlag == 1L) {
+				    if (textOpt.getIsOutputName() == 1L) {
 				        uiClass = "output";
                         outputTypes.addAll(types);
 				    } else {
@@ -434,186 +376,93 @@ public class NarrativeMethodData {
                         inputTypes.addAll(types);
 				    }
 				}
-				
-				// todo: add better checks of min/max numbers, like if it is numeric
-				if(optNode.get("min_int")!=null) {
-					textOpt.withMinInt(optNode.get("min_int").asLong());
-				}
-				if(optNode.get("max_int")!=null) {
-					textOpt.withMaxInt(optNode.get("max_int").asLong());
-				}
-				if(optNode.get("min_float")!=null) {
-					textOpt.withMinFloat(optNode.get("min_float").asDouble());
-				}
-				if(optNode.get("max_float")!=null) {
-					textOpt.withMaxFloat(optNode.get("max_float").asDouble());
-				}
-				
-				List<RegexMatcher> regexList = new ArrayList<RegexMatcher>();
-				if(optNode.get("regex_constraint")!=null) {
-					for(int rxi=0; rxi<optNode.get("regex_constraint").size(); rxi++) {
-						JsonNode regex = optNode.get("regex_constraint").get(rxi);
-						if(regex.get("regex")!=null && regex.get("error_text")!=null) {
-							Long match = new Long(1);
-							if(regex.get("match")!=null) {
-								if(regex.get("match").asBoolean()) {
-									match = new Long(1);
-								} else {
-									match = new Long(0);
-								}
-							}
-							regexList.add(
-									new RegexMatcher()
-										.withMatch(match)
-										.withRegex(regex.get("regex").asText())
-										.withErrorText(regex.get("error_text").asText()));
-						}
-					}
-				}
-				textOpt.withRegexConstraint(regexList);
 			}
-			TextSubdataOptions textSubdataOpt = null;
-			if (paramNode.has("textsubdata_options")) {
-				JsonNode optNode = get(paramPath, paramNode, "textsubdata_options");
-				
-				// multiselection - default is false
-				JsonNode multiselection = optNode.get("multiselection");
-				long multiselectionFlag = 0L;
-				if(multiselection!=null) {
-					if(multiselection.asBoolean()){
-						multiselectionFlag = 1L;
-					}
-				}
-				// show_src_obj - default is true
-				JsonNode show_src_obj = optNode.get("show_src_obj");
-				long show_src_objFlag = 1L;
-				if(show_src_obj!=null) {
-					if(!show_src_obj.asBoolean()){
-						show_src_objFlag = 0L;
-					}
-				}
-				// allow_custom - default is false
-				JsonNode allow_custom = optNode.get("allow_custom");
-				long allow_customFlag = 0L;
-				if(allow_custom!=null) {
-					if(allow_custom.asBoolean()){
-						allow_customFlag = 1L;
-					}
-				}
-				
+			TextSubdataOptions textSubdataOpt = paramFields.textsubdataOptions;
+			if (textSubdataOpt != null) {
 				String placeholder = "";
 				try {
 					placeholder = getDisplayText("parameters/" + paramId, paramDisplay, "placeholder");
 				} catch (IllegalStateException e) { }
 				
-				JsonNode subdataSelection = optNode.get("subdata_selection");
-				if(subdataSelection==null) {
+				if(textSubdataOpt.getSubdataSelection()==null) {
 					throw new IllegalStateException("In parameter [" + paramId + "] has textsubdata_options  " +
 							"without a subdata selection defined");
 				}
-				List <String> pathToSubdata = jsonListToStringList(subdataSelection.get("path_to_subdata"));
-				if(pathToSubdata==null) pathToSubdata = new ArrayList<String>();
-				List <String> subdata_included = jsonListToStringList(subdataSelection.get("subdata_included"));
-				if(subdata_included==null) subdata_included = new ArrayList<String>();
-				SubdataSelection ss = new SubdataSelection()
-											.withConstantRef(jsonListToStringList(subdataSelection.get("constant_ref")))
-											.withParameterId(getTextOrNull(subdataSelection.get("parameter_id")))
-											.withSubdataIncluded(subdata_included)
-											.withPathToSubdata(pathToSubdata)
-											.withSelectionId(getTextOrNull(subdataSelection.get("selection_id")))
-											.withSelectionDescription(jsonListToStringList(subdataSelection.get("selection_description")))
-											.withDescriptionTemplate(getTextOrNull(subdataSelection.get("description_template")))
-											.withServiceFunction(getTextOrNull(subdataSelection.get("service_function")))
-											.withServiceVersion(getTextOrNull(subdataSelection.get("service_version")));
-				
-				textSubdataOpt = new TextSubdataOptions()
-										.withPlaceholder(placeholder)
-										.withMultiselection(multiselectionFlag)
-										.withShowSrcObj(show_src_objFlag)
-										.withAllowCustom(allow_customFlag)
-										.withSubdataSelection(ss);
+				textSubdataOpt.withPlaceholder(placeholder);
 				// TODO: add more validation here, like if the parameter id is valid, or if there were extra fields
 				// that weren't allowed, rather than just setting things to null if they don't exist
 			}
-			CheckboxOptions cbOpt = null;
-			if (paramNode.has("checkbox_options")) {
-				JsonNode optNode = get(paramPath, paramNode, "checkbox_options");
-				long checkedValue = get(paramPath + "/checkbox_options", optNode, "checked_value").asLong();
-				long uncheckedValue = get(paramPath + "/checkbox_options", optNode, "unchecked_value").asLong();
-				cbOpt = new CheckboxOptions().withCheckedValue(checkedValue).withUncheckedValue(uncheckedValue);
+			CheckboxOptions cbOpt = paramFields.checkboxOptions;
+			if (cbOpt != null) {
+				get(paramPath + "/checkbox_options", cbOpt.getCheckedValue(), "checked_value");
+				get(paramPath + "/checkbox_options", cbOpt.getUncheckedValue(), "unchecked_value");
 			}
 			DropdownOptions ddOpt = null;
-			if (paramNode.has("dropdown_options")) {
-				JsonNode optNode = get(paramPath, paramNode, "dropdown_options");
-				optNode = get(paramPath + "/dropdown_options", optNode, "options");
+			if (paramFields.dropdownOptions != null) {
+				List<MethodSpecFields.OptionItem> items = get(paramPath + "/dropdown_options", 
+				        paramFields.dropdownOptions.items, "options");
 				List<DropdownOption> options = new ArrayList<DropdownOption>();
-				for (int j = 0; j < optNode.size(); j++) {
-					JsonNode itemNode = optNode.get(j);
-					String value = get(paramPath + "/dropdown_options/options/" + j, itemNode, "value").asText();
-					String displayText = get(paramPath + "/dropdown_options/options/" + j, itemNode, "display").asText();
+				for (int j = 0; j < items.size(); j++) {
+					MethodSpecFields.OptionItem item = items.get(j);
+					String value = get(paramPath + "/dropdown_options/options/" + j, item.value, "value");
+					String displayText = get(paramPath + "/dropdown_options/options/" + j, item.display, "display");
 					options.add(new DropdownOption().withValue(value).withDisplay(displayText));
 				}
 				ddOpt = new DropdownOptions().withOptions(options);
 			}
-			FloatSliderOptions floatOpt = null;
-			if (paramNode.has("floatslider_options")) {
-				JsonNode optNode = get(paramPath, paramNode, "floatslider_options");
-				double min = get(paramPath + "/floatslider_options", optNode, "min").asDouble();
-				double max = get(paramPath + "/floatslider_options", optNode, "max").asDouble();
-				floatOpt = new FloatSliderOptions().withMin(min).withMax(max);
+			FloatSliderOptions floatOpt = paramFields.floatsliderOptions;
+			if (floatOpt != null) {
+				get(paramPath + "/floatslider_options", floatOpt.getMin(), "min");
+				get(paramPath + "/floatslider_options", floatOpt.getMax(), "max");
 			}
-			IntSliderOptions intOpt = null;
-			if (paramNode.has("intslider_options")) {
-				JsonNode optNode = get(paramPath, paramNode, "intslider_options");
-				long min = get(paramPath + "/intslider_options", optNode, "min").asLong();
-				long max = get(paramPath + "/intslider_options", optNode, "max").asLong();
-				long step = get(paramPath + "/intslider_options", optNode, "step").asLong();
-				intOpt = new IntSliderOptions().withMin(min).withMax(max).withStep(step);
+			IntSliderOptions intOpt = paramFields.intsliderOptions;
+			if (intOpt != null) {
+				get(paramPath + "/intslider_options", intOpt.getMin(), "min");
+				get(paramPath + "/intslider_options", intOpt.getMax(), "max");
+				get(paramPath + "/intslider_options", intOpt.getStep(), "step");
 			}
 			RadioOptions radioOpt = null;
-			if (paramNode.has("radio_options")) {
-				JsonNode optNode = get(paramPath, paramNode, "radio_options");
-				optNode = get(paramPath + "/radio_options", optNode, "options");
+			if (paramFields.radioOptions != null) {
+				List<MethodSpecFields.OptionItem> items = get(paramPath + "/radio_options", 
+				        paramFields.radioOptions.items, "options");
 				List<String> idOrder = new ArrayList<String>();
 				Map<String, String> options = new LinkedHashMap<String, String>();
 				Map<String, String> tooltips = new LinkedHashMap<String, String>();
-				for (int j = 0; j < optNode.size(); j++) {
-					JsonNode itemNode = optNode.get(j);
-					String id = get(paramPath + "/radio_options/options/" + j, itemNode, "id").asText();
-					String uiName = get(paramPath + "/radio_options/options/" + j, itemNode, "ui_name").asText();
-					String uiTooltip = get(paramPath + "/radio_options/options/" + j, itemNode, "ui_tooltip").asText();
+				for (int j = 0; j < items.size(); j++) {
+					MethodSpecFields.OptionItem item = items.get(j);
+					String id = get(paramPath + "/radio_options/options/" + j, item.id, "id");
+					String uiName = get(paramPath + "/radio_options/options/" + j, item.uiName, "ui_name");
+					String uiTooltip = get(paramPath + "/radio_options/options/" + j, item.uiTooltip, "ui_tooltip");
 					idOrder.add(id);
 					options.put(id, uiName);
 					tooltips.put(id, uiTooltip);
 				}
 				radioOpt = new RadioOptions().withIdOrder(idOrder).withIdsToOptions(options).withIdsToTooltip(tooltips);
 			}
-			TextAreaOptions taOpt = null;
-			if (paramNode.has("textarea_options")) {
-				JsonNode optNode = get(paramPath, paramNode, "textarea_options");
-				long nRows = get(paramPath + "/textarea_options", optNode, "n_rows").asLong();
+			TextAreaOptions taOpt = paramFields.textareaOptions;
+			if (taOpt != null) {
+				get(paramPath + "/textarea_options", taOpt.getNRows(), "n_rows");
 				String placeholder = "";
 				try {
 					placeholder = getDisplayText("parameters/" + paramId, paramDisplay, "placeholder");
 				} catch (IllegalStateException e) { }
-				taOpt = new TextAreaOptions().withNRows(nRows).withPlaceholder(placeholder);
+				taOpt.withPlaceholder(placeholder);
 			}
 			TabOptions tabOpt = null;
-			if (paramNode.has("tab_options")) {
-				JsonNode optNode = get(paramPath, paramNode, "tab_options");
-				optNode = get(paramPath + "/tab_options", optNode, "options");
+			if (paramFields.tabOptions != null) {
+				List<MethodSpecFields.OptionItem> items = get(paramPath + "/tab_options", 
+				        paramFields.tabOptions.items, "options");
 				List<String> idOrder = new ArrayList<String>();
 				Map<String, String> options = new LinkedHashMap<String, String>();
 				Map<String, List<String>> tabIdToParamIds = new LinkedHashMap<String, List<String>>();
-				for (int j = 0; j < optNode.size(); j++) {
-					JsonNode itemNode = optNode.get(j);
-					String id = get(paramPath + "/tab_options/options/" + j, itemNode, "id").asText();
+				for (int j = 0; j < items.size(); j++) {
+					MethodSpecFields.OptionItem item = items.get(j);
+					String id = get(paramPath + "/tab_options/options/" + j, item.id, "id");
 					idOrder.add(id);
-					String uiName = get(paramPath + "/tab_options/options/" + j, itemNode, "ui_name").asText();
+					String uiName = get(paramPath + "/tab_options/options/" + j, item.uiName, "ui_name");
 					options.put(id, uiName);
-					List<String> tabParamIds = jsonListToStringList(itemNode.get("param_ids"));
-					if (tabParamIds != null) 
-						tabIdToParamIds.put(id, tabParamIds);
+					if (item.paramIds != null) 
+						tabIdToParamIds.put(id, item.paramIds);
 				}
 				tabOpt = new TabOptions().withTabIdOrder(idOrder).withTabIdToTabName(options).withTabIdToParamIds(tabIdToParamIds);
 			}
@@ -625,10 +474,7 @@ public class NarrativeMethodData {
 			try {
 				paramDescription = (String)getDisplayText("parameters/" + paramId, paramDisplay, "description");
 			} catch (IllegalStateException e) {}
-			Long disabled = 0L;
-			try {
-				disabled = jsonBooleanToRPC(get(paramPath, paramNode, "disabled"));
-			} catch (IllegalStateException e) {}
+			Long disabled = longOrDefault(paramFields.disabled, 0);
 			
 			List<String> defDefVals = Arrays.asList("");
 			MethodParameter param = new MethodParameter()
@@ -636,13 +482,13 @@ public class NarrativeMethodData {
 							.withUiName(getDisplayText("parameters/" + paramId, paramDisplay, "ui-name"))
 							.withShortHint(getDisplayText("parameters/" + paramId, paramDisplay, "short-hint"))
 							.withDescription(paramDescription)
-							.withOptional(jsonBooleanToRPC(get(paramPath, paramNode, "optional")))
-							.withAdvanced(jsonBooleanToRPC(paramNode.get("advanced"), 0))
+							.withOptional(get(paramPath, paramFields.optional, "optional"))
+							.withAdvanced(longOrDefault(paramFields.advanced, 0))
 							.withDisabled(disabled)
 							.withUiClass(uiClass)
-							.withAllowMultiple(jsonBooleanToRPC(paramNode.get("allow_multiple"), 0))
-							.withDefaultValues(jsonListToStringList(paramNode.get("default_values"), defDefVals))
-							.withFieldType(get(paramPath, paramNode, "field_type").asText())
+							.withAllowMultiple(longOrDefault(paramFields.allowMultiple, 0))
+							.withDefaultValues(paramFields.defaultValues == null ? defDefVals : paramFields.defaultValues)
+							.withFieldType(get(paramPath, paramFields.fieldType, "field_type"))
 							.withTextOptions(textOpt)
 							.withTextsubdataOptions(textSubdataOpt)
 							.withCheckboxOptions(cbOpt)
@@ -681,16 +527,16 @@ public class NarrativeMethodData {
 		
         Set<String> groupIds = new TreeSet<String>();
         List<MethodParameterGroup> groups = null;
-		JsonNode groupsNode = spec.get("parameter-groups");
-		if (groupsNode != null) {
+		List<MethodSpecFields.Group> groupsFields = spec.parameterGroups;
+		if (groupsFields != null) {
 		    groups = new ArrayList<MethodParameterGroup>();
 		    @SuppressWarnings("unchecked")
 		    Map<String, Object> groupsDisplays = (Map<String, Object>)getDisplayItem("/", display,
 		            "parameter-groups");
-		    for (int i = 0; i < groupsNode.size(); i++) {
-	            JsonNode groupNode = groupsNode.get(i);
+		    for (int i = 0; i < groupsFields.size(); i++) {
+	            MethodSpecFields.Group groupFields = groupsFields.get(i);
 	            String groupPath = "parameter-groups/" + i;
-	            String groupId = get(groupPath, groupNode, "id").asText();
+	            String groupId = get(groupPath, groupFields.id, "id");
 	            if (paramIds.contains(groupId))
 	                throw new IllegalStateException("Group id=" + groupId + " must not match " +
 	                		"any parameter id");
@@ -702,15 +548,14 @@ public class NarrativeMethodData {
 	            if (groupDescription == null) {
 	                groupDescription = getDisplayTextOptional(groupDisplay, "description", "");
 	            }
-	            List<String> parameterIds = 
-	                    jsonListToStringList(get(groupPath, groupNode, "parameters"));
+	            List<String> parameterIds = get(groupPath, groupFields.parameters, "parameters");
 	            for (String paramId : parameterIds) {
 	                if (!paramIds.contains(paramId)) {
 	                    throw new IllegalStateException("Undeclared parameter [" + paramId +
 	                            "] found within path [" + groupPath + "/parameters]");
 	                }
 	            }
-	            Map<String, String> idMapping = jsonMapToStringMap(groupNode.get("mapping"));
+	            Map<String, String> idMapping = groupFields.mapping;
 	            if (idMapping != null) {
 	                for (String paramId : idMapping.keySet()) {
 	                    if (!paramIds.contains(paramId)) {
@@ -720,8 +565,8 @@ public class NarrativeMethodData {
 	                }
 	            }
 	            String dysplayPath = "parameter-groups/" + groupId;
-                long advanced = jsonBooleanToRPC(groupNode.get("advanced"), 0);
-	            long allowMultiple = jsonBooleanToRPC(groupNode.get("allow_multiple"), 0);
+                long advanced = longOrDefault(groupFields.advanced, 0);
+	            long allowMultiple = longOrDefault(groupFields.allowMultiple, 0);
 	            if (allowMultiple == 0 && idMapping != null) {
 	                throw new IllegalStateException("Unsupported mapping found for one-copy " +
 	                		"parameter-group within path [" + groupPath + "]");
@@ -749,7 +594,7 @@ public class NarrativeMethodData {
 	                    .withUiName(getDisplayText(dysplayPath, groupDisplay, "ui-name"))
 	                    .withShortHint(getDisplayText(dysplayPath, groupDisplay, "short-hint"))
 	                    .withDescription(groupDescription)
-	                    .withOptional(jsonBooleanToRPC(groupNode.get("optional"), 0))
+	                    .withOptional(longOrDefault(groupFields.optional, 0))
 	                    .withAllowMultiple(allowMultiple)
 	                    .withAdvanced(advanced)
 	                    .withIdMapping(idMapping)
@@ -796,20 +641,19 @@ public class NarrativeMethodData {
 							.withBehavior(behavior)
 							.withParameters(parameters)
 							.withFixedParameters(fixedParameters)
-							.withJobIdOutputField(getTextOrNull(spec.get("job_id_output_field")))
+							.withJobIdOutputField(spec.jobIdOutputField)
 							.withParameterGroups(groups);
 	}
 
-	private static JsonNode get(JsonNode node, String childName) {
-		return get(null, node, childName);
+	private static <T> T get(T value, String childName) {
+		return get(null, value, childName);
 	}
 	
-	private static JsonNode get(String nodePath, JsonNode node, String childName) {
-		JsonNode ret = node.get(childName);
-		if (ret == null)
+	private static <T> T get(String nodePath, T value, String childName) {
+		if (value == null)
 			throw new IllegalStateException("Can't find sub-node [" + childName + "] within " +
 					"path [" + (nodePath == null ? "/" : nodePath) + "] in spec.json");
-		return ret;
+		return value;
 	}
 	
 	private static String getDisplayText(Map<String, Object> display, String propName, 
@@ -848,56 +692,21 @@ public class NarrativeMethodData {
 	    return ret;
 	}
 
-	private static String getTextOrNull(JsonNode node) {
-		return node == null ? null : node.asText();
-	}
-
-	private static Long getLongOrNull(JsonNode node) {
-		return node == null || node.isNull() ? null : node.asLong();
-	}
-
-	private static Long jsonBooleanToRPC(JsonNode node) {
-		return node.asBoolean() ? 1L : 0L;
-	}
-
-	private static long jsonBooleanToRPC(JsonNode node, long defaultValue) {
-	    return node == null ? defaultValue : (node.asBoolean() ? 1L : 0L);
-	}
-
-	private static List<String> jsonListToStringList(JsonNode node) {
-	    return jsonListToStringList(node, null);
-	}
-
-	private static List<String> jsonListToStringList(JsonNode node, List<String> defaultValue) {
-		if (node == null)
-			return defaultValue;
-		List<String> ret = new ArrayList<String>();
-		for (int i = 0; i < node.size(); i++)
-			ret.add(node.get(i).asText());
-		return ret;
-	}
-
-	private static Map<String, String> jsonMapToStringMap(JsonNode node) {
-		if (node == null)
-			return null;
-		Map<String, String> ret = new LinkedHashMap<String, String>();
-		for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
-			String key = it.next();
-			ret.put(key, node.get(key).asText());
-		}
-		return ret;
+	private static long longOrDefault(Long value, long defaultValue) {
+	    return value == null ? defaultValue : value;
 	}
 	
 	private static <T> T castDisplayValue(String path, Object value, TypeReference<T> type, 
 	        String typeName) {
 	    if (value == null)
 	        return null;
-	    String json = UObject.transformObjectToString(value);
 	    try {
-	        return UObject.transformStringToObject(json, type);
+	        // Converting through token buffer avoids printing and parsing of JSON text
+	        return UObject.transformObjectToObject(value, type);
 	    } catch (Exception ex) {
 	        throw new IllegalStateException("Cannot cast data within path [" + path + "] in " +
-	        		"display.yaml (" + json + ") to type \"" + typeName + "\"", ex);
+	        		"display.yaml (" + UObject.transformObjectToString(value) + ") to type \"" + 
+	        		typeName + "\"", ex);
 	    }
 	}
 }
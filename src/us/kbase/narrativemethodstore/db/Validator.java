@@ -10,8 +10,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.yaml.snakeyaml.Yaml;
-
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -20,12 +18,12 @@ import us.kbase.narrativemethodstore.ValidateAppParams;
 import us.kbase.narrativemethodstore.ValidateMethodParams;
 import us.kbase.narrativemethodstore.ValidateTypeParams;
 import us.kbase.narrativemethodstore.ValidationResults;
+import us.kbase.narrativemethodstore.db.github.YamlUtils;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 
 public class Validator {
 
 	protected static final ObjectMapper mapper = new ObjectMapper();
-	protected static final Yaml yaml = new Yaml();
 	
 	/**
 	 * Just for local testing...
@@ -55,7 +53,7 @@ public class Validator {
 		
 		// grab the relevant input
 		String spec = params.getSpecJson();
-		String display = cleanYaml(params.getDisplayYaml());
+		String display = params.getDisplayYaml();
 		boolean verbose = params.getVerbose() != null && params.getVerbose() == 1L;
 		
 		//setup results
@@ -79,7 +77,7 @@ public class Validator {
 		Map<String,Object> parsedDisplay = null;
 		Object parsedDisplayObject = null;
 		try {
-			parsedDisplayObject = yaml.load(display);
+			parsedDisplayObject = YamlUtils.load(display);
 			parsedDisplay = (Map<String,Object>) parsedDisplayObject;
 		} catch(ClassCastException e) {
 		    String message = "display.yaml could not be parsed as a structure. It was mapped to:" +
@@ -131,7 +129,7 @@ public class Validator {
 	public static ValidationResults validateApp(ValidateAppParams params) {
 		// grab the relevant input
 		String spec = params.getSpecJson();
-		String display = cleanYaml(params.getDisplayYaml());
+		String display = params.getDisplayYaml();
 		
 		//setup results
 		long isValid = 0L;
@@ -149,7 +147,7 @@ public class Validator {
 		Map<String,Object> parsedDisplay = null;
 		Object parsedDisplayObject = null;
 		try {
-			parsedDisplayObject = yaml.load(display);
+			parsedDisplayObject = YamlUtils.load(display);
 			parsedDisplay = (Map<String,Object>) parsedDisplayObject;
 		} catch(ClassCastException e) {
 			errors.add("display.yaml could not be parsed as a structure. It was mapped to:"+parsedDisplayObject.getClass().getName() +
@@ -191,7 +189,7 @@ public class Validator {
 	public static ValidationResults validateType(ValidateTypeParams params) {
 		// grab the relevant input
 		String spec = params.getSpecJson();
-		String display = cleanYaml(params.getDisplayYaml());
+		String display = params.getDisplayYaml();
 		
 		//setup results
 		long isValid = 0L;
@@ -209,7 +207,7 @@ public class Validator {
 		Map<String,Object> parsedDisplay = null;
 		Object parsedDisplayObject = null;
 		try {
-			parsedDisplayObject = yaml.load(display);
+			parsedDisplayObject = YamlUtils.load(display);
 			parsedDisplay = (Map<String,Object>) parsedDisplayObject;
 		} catch(ClassCastException e) {
 			errors.add("display.yaml could not be parsed as a structure. It was mapped to:"+parsedDisplayObject.getClass().getName() +
@@ -264,17 +262,6 @@ public class Validator {
 		};
 	}
 	
-	protected static String cleanYaml(String display) {
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < display.length(); i++) {
-			char ch = display.charAt(i);
-			if ((ch < 32 && ch != 10 && ch != 13) || ch >= 127)
-				ch = ' ';
-			sb.append(ch);
-		}
-		return sb.toString();
-	}
-	
 	private static String getErrorStackTrace(Throwable err) {
 	    StringWriter sw = new StringWriter();
 	    PrintWriter pw = new PrintWriter(sw);
@@ -0,0 +1,214 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+
+import us.kbase.narrativemethodstore.AppFullInfo;
+import us.kbase.narrativemethodstore.AppSpec;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.NarrativeMethodData;
+import us.kbase.narrativemethodstore.db.mongo.MongoUtils;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+import us.kbase.narrativemethodstore.util.PreserializedJson;
+
+/**
+ * State of the catalog as of one spec-repo commit: the categories index together
+ * with the caches of data loaded on top of it. LocalGitDB never changes a snapshot
+ * once it's published, it builds a new one and swaps the reference instead, so
+ * readers may keep using the instance they got without any locking.
+ */
+public class CatalogSnapshot {
+    private final NarrativeCategoriesIndex index;
+    private final String commitHash;
+    private final String commit;
+    private final Map<String, String> repoStamps;
+    private final String catalogVersion;
+    private final LoadingCache<MethodId, NarrativeMethodData> methodDataCache;
+    private final LoadingCache<String, AppFullInfo> appFullInfoCache;
+    private final LoadingCache<String, AppSpec> appSpecCache;
+    private final Cache<String, PreserializedJson> responseCache;
+
+    /**
+     * @param responseCacheSize maximum total length (in characters) of JSON responses
+     * cached for listing methods, 0 turns response caching off.
+     */
+    public CatalogSnapshot(final LocalGitDB db, final NarrativeCategoriesIndex index,
+            String commitHash, String commit, Map<String, String> repoStamps, int cacheSize,
+            long responseCacheSize) {
+        index.prepareTagViews();
+        this.index = index;
+        this.commitHash = commitHash;
+        this.commit = commit;
+        this.repoStamps = repoStamps;
+        this.catalogVersion = makeCatalogVersion(commitHash, repoStamps);
+        // Spec-repo files are read at commit of this snapshot even if newer one is published
+        final String snapshotCommitHash = commitHash;
+        this.methodDataCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
+                new CacheLoader<MethodId, NarrativeMethodData>() {
+                    @Override
+                    public NarrativeMethodData load(MethodId methodId) throws NarrativeMethodStoreException {
+                        return db.loadMethodDataUncached(snapshotCommitHash, methodId, index);
+                    }
+                    @Override
+                    public Map<MethodId, NarrativeMethodData> loadAll(
+                            Iterable<? extends MethodId> methodIds) throws Exception {
+                        return loadAllInParallel(db, methodIds, this);
+                    }
+                });
+        this.appFullInfoCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
+                new CacheLoader<String, AppFullInfo>() {
+                    @Override
+                    public AppFullInfo load(String appId) throws NarrativeMethodStoreException {
+                        return db.loadAppDataUncached(snapshotCommitHash, appId).getAppFullInfo();
+                    }
+                    @Override
+                    public Map<String, AppFullInfo> loadAll(Iterable<? extends String> appIds)
+                            throws Exception {
+                        return loadAllInParallel(db, appIds, this);
+                    }
+                });
+        this.appSpecCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
+                new CacheLoader<String, AppSpec>() {
+                    @Override
+                    public AppSpec load(String appId) throws NarrativeMethodStoreException {
+                        return db.loadAppDataUncached(snapshotCommitHash, appId).getAppSpec();
+                    }
+                    @Override
+                    public Map<String, AppSpec> loadAll(Iterable<? extends String> appIds)
+                            throws Exception {
+                        return loadAllInParallel(db, appIds, this);
+                    }
+                });
+        this.responseCache = responseCacheSize <= 0 ? null : CacheBuilder.newBuilder()
+                .maximumWeight(responseCacheSize).weigher(new Weigher<String, PreserializedJson>() {
+                    @Override
+                    public int weigh(String key, PreserializedJson value) {
+                        return key.length() + value.getJson().length();
+                    }
+                }).<String, PreserializedJson>build();
+    }
+
+    public NarrativeCategoriesIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return hash of spec-repo commit this snapshot was built from or null if unknown.
+     */
+    public String getCommitHash() {
+        return commitHash;
+    }
+
+    /**
+     * @return output of "git log -n 1" for the commit this snapshot was built from.
+     */
+    public String getCommit() {
+        return commit;
+    }
+
+    /**
+     * @return version stamps of dynamic repositories (see DynamicRepoDB.getRepoVersionStamps)
+     * taken before index of this snapshot was built.
+     */
+    public Map<String, String> getRepoStamps() {
+        return repoStamps;
+    }
+
+    /**
+     * @return opaque version of this snapshot, it's the same for all snapshots built
+     * from the same spec-repo commit and the same state of dynamic repositories.
+     */
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    /**
+     * Loads all keys missing in cache (Guava passes them to loadAll in one go) on 
+     * shared pool of LocalGitDB.
+     */
+    private static <K, V> Map<K, V> loadAllInParallel(LocalGitDB db, Iterable<? extends K> keys, 
+            final CacheLoader<K, V> loader) throws Exception {
+        final List<K> keyList = new ArrayList<K>();
+        List<Callable<V>> tasks = new ArrayList<Callable<V>>();
+        for (final K key : keys) {
+            keyList.add(key);
+            tasks.add(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return loader.load(key);
+                }
+            });
+        }
+        List<V> values = db.runDataLoadTasks(tasks);
+        Map<K, V> ret = new HashMap<K, V>();
+        for (int i = 0; i < keyList.size(); i++)
+            ret.put(keyList.get(i), values.get(i));
+        return ret;
+    }
+
+    private static String makeCatalogVersion(String commitHash, Map<String, String> repoStamps) {
+        StringBuilder text = new StringBuilder(String.valueOf(commitHash));
+        if (repoStamps != null)
+            for (Map.Entry<String, String> entry : repoStamps.entrySet())
+                text.append('\n').append(entry.getKey()).append('=').append(entry.getValue());
+        try {
+            return MongoUtils.getMD5(new ByteArrayInputStream(
+                    text.toString().getBytes(Charset.forName("utf-8"))));
+        } catch (NarrativeMethodStoreException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public LoadingCache<MethodId, NarrativeMethodData> getMethodDataCache() {
+        return methodDataCache;
+    }
+
+    public LoadingCache<String, AppFullInfo> getAppFullInfoCache() {
+        return appFullInfoCache;
+    }
+
+    public LoadingCache<String, AppSpec> getAppSpecCache() {
+        return appSpecCache;
+    }
+
+    /**
+     * Returns response of listing method stored for given key (which should include
+     * name of method and all its parameters) or calls loader and stores what it returns.
+     * Since every snapshot has its own cache responses never outlive the data they
+     * were made of.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends PreserializedJson> T getResponse(String key, 
+            final ResponseLoader<T> loader) throws Exception {
+        if (responseCache == null)
+            return loader.load(index);
+        try {
+            return (T)responseCache.get(key, new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return loader.load(index);
+                }
+            });
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception)
+                throw (Exception)ex.getCause();
+            throw ex;
+        }
+    }
+
+    public static interface ResponseLoader<T extends PreserializedJson> {
+        public T load(NarrativeCategoriesIndex index) throws Exception;
+    }
+}
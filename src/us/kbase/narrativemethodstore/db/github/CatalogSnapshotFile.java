@@ -0,0 +1,192 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import us.kbase.common.service.UObject;
+import us.kbase.narrativemethodstore.AppBriefInfo;
+import us.kbase.narrativemethodstore.AppFullInfo;
+import us.kbase.narrativemethodstore.AppSpec;
+import us.kbase.narrativemethodstore.Category;
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.MethodFullInfo;
+import us.kbase.narrativemethodstore.MethodSpec;
+import us.kbase.narrativemethodstore.TypeInfo;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.NarrativeMethodData;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Gzipped JSON copy of catalog snapshot stored on disk so that server could start
+ * serving right after restart without cloning spec-repo and parsing all specs.
+ * Snapshot is only valid for the same spec-repo commit and the same version stamps
+ * of dynamic repositories, it's up to LocalGitDB to check it.
+ */
+public class CatalogSnapshotFile {
+    public static final int FORMAT_VERSION = 1;
+
+    private final File file;
+    private final String codeVersion;
+
+    /**
+     * @param file location of snapshot file.
+     * @param codeVersion version of the service, snapshots stored by other versions
+     * are ignored because parsing of specs could be different there.
+     */
+    public CatalogSnapshotFile(File file, String codeVersion) {
+        this.file = file;
+        this.codeVersion = codeVersion;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void save(CatalogSnapshot snapshot, boolean withData)
+            throws NarrativeMethodStoreException {
+        NarrativeCategoriesIndex index = snapshot.getIndex();
+        SnapshotData data = new SnapshotData();
+        data.format_version = FORMAT_VERSION;
+        data.code_version = codeVersion;
+        data.commit_hash = snapshot.getCommitHash();
+        data.commit = snapshot.getCommit();
+        data.repo_stamps = snapshot.getRepoStamps();
+        data.categories = index.getCategories();
+        data.methods = new TreeMap<String, MethodBriefInfo>();
+        for (Map.Entry<MethodId, MethodBriefInfo> entry : index.getAllMethods().entrySet())
+            data.methods.put(entry.getKey().toString(), entry.getValue());
+        data.apps = index.getApps();
+        data.types = index.getTypes();
+        data.dynamic_repo_methods = new ArrayList<String>();
+        for (MethodId mId : index.getDynamicRepoMethods())
+            data.dynamic_repo_methods.add(mId.toString());
+        data.dynamic_repo_errors = new TreeMap<String, String>();
+        for (Map.Entry<String, Exception> entry :
+                index.getDynamicRepoModuleNameToLoadingError().entrySet())
+            data.dynamic_repo_errors.put(entry.getKey(), entry.getValue().getMessage());
+        if (withData) {
+            data.method_data = new TreeMap<String, MethodData>();
+            for (Map.Entry<MethodId, NarrativeMethodData> entry :
+                    snapshot.getMethodDataCache().asMap().entrySet()) {
+                MethodData md = new MethodData();
+                md.brief_info = entry.getValue().getMethodBriefInfo();
+                md.full_info = entry.getValue().getMethodFullInfo();
+                md.spec = entry.getValue().getMethodSpec();
+                data.method_data.put(entry.getKey().toString(), md);
+            }
+            data.app_full_infos = new TreeMap<String, AppFullInfo>(
+                    snapshot.getAppFullInfoCache().asMap());
+            data.app_specs = new TreeMap<String, AppSpec>(snapshot.getAppSpecCache().asMap());
+        }
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        try {
+            OutputStream os = new GZIPOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tempFile)));
+            try {
+                UObject.getMapper().writeValue(os, data);
+            } finally {
+                os.close();
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception ex) {
+            tempFile.delete();
+            throw new NarrativeMethodStoreException("Error saving catalog snapshot into " +
+                    file + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Loads snapshot from file, returns null in case file doesn't exist or it was
+     * stored by other version of service.
+     */
+    public CatalogSnapshot load(LocalGitDB db, RepoTag defaultTagForGetters,
+            int cacheSize, long responseCacheSize) throws NarrativeMethodStoreException {
+        if (!file.exists())
+            return null;
+        SnapshotData data;
+        try {
+            InputStream is = new GZIPInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                data = UObject.getMapper().readValue(is, SnapshotData.class);
+            } finally {
+                is.close();
+            }
+        } catch (Exception ex) {
+            throw new NarrativeMethodStoreException("Error loading catalog snapshot from " +
+                    file + ": " + ex.getMessage(), ex);
+        }
+        if (data.format_version == null || data.format_version != FORMAT_VERSION ||
+                data.code_version == null || !data.code_version.equals(codeVersion))
+            return null;
+        NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(defaultTagForGetters);
+        Set<MethodId> dynamicRepoMethods = new TreeSet<MethodId>();
+        for (String mId : data.dynamic_repo_methods)
+            dynamicRepoMethods.add(new MethodId(mId));
+        Map<String, Exception> dynamicRepoErrors = new TreeMap<String, Exception>();
+        for (Map.Entry<String, String> entry : data.dynamic_repo_errors.entrySet())
+            dynamicRepoErrors.put(entry.getKey(),
+                    new NarrativeMethodStoreException(entry.getValue()));
+        index.updateAllDynamicRepoMethods(dynamicRepoMethods, dynamicRepoErrors);
+        index.updateAllCategories(new HashMap<String, Category>(data.categories));
+        for (Map.Entry<String, MethodBriefInfo> entry : data.methods.entrySet())
+            index.addOrUpdateMethod(new MethodId(entry.getKey()), entry.getValue());
+        index.updateAllApps(new HashMap<String, AppBriefInfo>(data.apps));
+        index.updateAllTypes(new HashMap<String, TypeInfo>(data.types));
+        CatalogSnapshot ret = new CatalogSnapshot(db, index, data.commit_hash, data.commit,
+                data.repo_stamps, cacheSize, responseCacheSize);
+        if (data.method_data != null) {
+            for (Map.Entry<String, MethodData> entry : data.method_data.entrySet()) {
+                MethodId mId = new MethodId(entry.getKey());
+                MethodData md = entry.getValue();
+                ret.getMethodDataCache().put(mId, new NarrativeMethodData(mId.getExternalId(),
+                        md.brief_info, md.full_info, md.spec));
+            }
+        }
+        if (data.app_full_infos != null)
+            ret.getAppFullInfoCache().putAll(data.app_full_infos);
+        if (data.app_specs != null)
+            ret.getAppSpecCache().putAll(data.app_specs);
+        return ret;
+    }
+
+    public static class SnapshotData {
+        public Integer format_version;
+        public String code_version;
+        public String commit_hash;
+        public String commit;
+        public Map<String, String> repo_stamps;
+        public Map<String, Category> categories;
+        public Map<String, MethodBriefInfo> methods;
+        public Map<String, AppBriefInfo> apps;
+        public Map<String, TypeInfo> types;
+        public List<String> dynamic_repo_methods;
+        public Map<String, String> dynamic_repo_errors;
+        public Map<String, MethodData> method_data;
+        public Map<String, AppFullInfo> app_full_infos;
+        public Map<String, AppSpec> app_specs;
+    }
+
+    public static class MethodData {
+        public MethodBriefInfo brief_info;
+        public MethodFullInfo full_info;
+        public MethodSpec spec;
+    }
+}
@@ -307,5 +307,14 @@ public class FileRepoProvider implements RepoProvider {
                 throw new NarrativeMethodStoreException(ex);
             }
         }
+        
+        @Override
+        public InputStream openStream() throws NarrativeMethodStoreException {
+            try {
+                return new FileInputStream(file);
+            } catch (IOException ex) {
+                throw new NarrativeMethodStoreException(ex);
+            }
+        }
     }
 }
@@ -3,6 +3,7 @@ package us.kbase.narrativemethodstore.db.github;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Date;
 
 import org.apache.commons.io.FileUtils;
 
@@ -14,7 +15,18 @@ public class GitHubRepoProvider extends FileRepoProvider {
     protected String commitHash;
 
     public GitHubRepoProvider(URL url, String commitHash, File parentTempDir) throws NarrativeMethodStoreException {
-        super(prepareGitClone(url, generateTempDir(parentTempDir), commitHash), url);
+        this(url, commitHash, parentTempDir, false);
+    }
+
+    /**
+     * @param shallowClone if true only given commit (or head of default branch if commitHash 
+     * is null) is fetched without history, working tree is complete so files and zip of
+     * repo are the same as for full clone; full clone is made in case remote doesn't 
+     * support it.
+     */
+    public GitHubRepoProvider(URL url, String commitHash, File parentTempDir, 
+            boolean shallowClone) throws NarrativeMethodStoreException {
+        super(prepareGitClone(url, generateTempDir(parentTempDir), commitHash, shallowClone), url);
         try {
             this.commitHash = GitUtils.getCommitHash(rootDir, url);
         } catch (NarrativeMethodStoreException ex) {
@@ -23,7 +35,21 @@ public class GitHubRepoProvider extends FileRepoProvider {
         }
     }
 
-    private static File prepareGitClone(URL url, File rootDir, String commitHash) throws NarrativeMethodStoreException {
+    private static File prepareGitClone(URL url, File rootDir, String commitHash, 
+            boolean shallowClone) throws NarrativeMethodStoreException {
+        if (shallowClone) {
+            try {
+                GitUtils.gitInit(rootDir, url);
+                GitUtils.gitShallowFetch(rootDir, url, commitHash == null ? "HEAD" : commitHash);
+                GitUtils.gitCheckout(rootDir, url, "FETCH_HEAD");
+                return rootDir;
+            } catch (NarrativeMethodStoreException ex) {
+                System.out.println("[" + new Date() + "] NarrativeMethodStore.GitHubRepoProvider: " +
+                        "shallow fetch failed, falling back to full clone: " + ex.getMessage());
+                dispose(rootDir);
+                rootDir.mkdirs();
+            }
+        }
         try {
             GitUtils.gitClone(url, rootDir);
             if (commitHash != null)
@@ -0,0 +1,805 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Reads commits, trees and blobs directly from object store of local git repo (loose
+ * objects and pack files) so that files of any fetched commit could be accessed without
+ * checked out working tree and without running git. Only reading is supported, objects
+ * are fetched into repo by git itself. Instances are thread-safe.
+ */
+public class GitObjectReader {
+    public static final String TYPE_COMMIT = "commit";
+    public static final String TYPE_TREE = "tree";
+    public static final String TYPE_BLOB = "blob";
+    public static final String TYPE_TAG = "tag";
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
+    private static final String[] PACK_TYPES = {null, TYPE_COMMIT, TYPE_TREE, TYPE_BLOB, TYPE_TAG};
+    private static final int PACK_OFS_DELTA = 6;
+    private static final int PACK_REF_DELTA = 7;
+    private static final String MODE_TREE = "40000";
+    private static final long DEFAULT_CACHE_SIZE = 32 * 1024 * 1024;
+
+    private final File gitDir;
+    private final File objectsDir;
+    // Objects are immutable so they could be cached, loose objects are cached by id and
+    // packed ones by pack position only (delta bases are referred to by position)
+    private final Cache<String, GitObject> objectCache;
+    private volatile List<Pack> packs = Collections.emptyList();
+
+    /**
+     * @param gitDir ".git" folder of repo (or root folder of bare repo).
+     */
+    public GitObjectReader(File gitDir) {
+        this(gitDir, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize maximum total size (in bytes) of decompressed objects kept in memory.
+     */
+    public GitObjectReader(File gitDir, long cacheSize) {
+        this.gitDir = gitDir;
+        this.objectsDir = new File(gitDir, "objects");
+        this.objectCache = CacheBuilder.newBuilder().maximumWeight(cacheSize)
+                .weigher(new Weigher<String, GitObject>() {
+                    @Override
+                    public int weigh(String key, GitObject value) {
+                        return value.data.length + 64;
+                    }
+                }).<String, GitObject>build();
+    }
+
+    public File getGitDir() {
+        return gitDir;
+    }
+
+    /**
+     * Resolves name of reference (like HEAD, FETCH_HEAD, refs/heads/master or branch
+     * name) or full commit hash into commit hash. Annotated tags are peeled.
+     */
+    public String resolve(String ref) throws NarrativeMethodStoreException {
+        String id = resolveRef(ref, 0);
+        if (id == null)
+            throw new NarrativeMethodStoreException("Cannot resolve git reference " + ref +
+                    " in " + gitDir);
+        GitObject obj = readObject(id);
+        while (obj.type.equals(TYPE_TAG)) {
+            id = header(obj, "object");
+            obj = readObject(id);
+        }
+        return id;
+    }
+
+    private String resolveRef(String ref, int depth) throws NarrativeMethodStoreException {
+        if (depth > 10)
+            return null;
+        if (isObjectId(ref))
+            return ref;
+        List<String> names = ref.startsWith("refs/") || ref.equals("HEAD") ||
+                ref.equals("FETCH_HEAD") ? Arrays.asList(ref) : Arrays.asList("refs/" + ref,
+                        "refs/heads/" + ref, "refs/tags/" + ref, "refs/remotes/" + ref);
+        try {
+            for (String name : names) {
+                File f = new File(gitDir, name);
+                if (f.isFile()) {
+                    String text = FileUtils.readFileToString(f, "utf-8").trim();
+                    if (text.startsWith("ref:"))
+                        return resolveRef(text.substring(4).trim(), depth + 1);
+                    // FETCH_HEAD may list several refs, first one is what was fetched
+                    if (text.length() >= 40 && isObjectId(text.substring(0, 40)))
+                        return text.substring(0, 40);
+                }
+            }
+            File packedRefs = new File(gitDir, "packed-refs");
+            if (packedRefs.isFile()) {
+                for (String line : FileUtils.readLines(packedRefs, "utf-8")) {
+                    if (line.startsWith("#") || line.startsWith("^") || line.length() < 42)
+                        continue;
+                    if (names.contains(line.substring(41).trim()))
+                        return line.substring(0, 40);
+                }
+            }
+            return null;
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException("Error reading git reference " + ref +
+                    ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Points given branch (refs/heads/...) to commit, it's what git does at the end
+     * of merge, but working tree and index are not touched.
+     */
+    public void updateBranch(String branch, String commitHash) throws NarrativeMethodStoreException {
+        File f = new File(new File(new File(gitDir, "refs"), "heads"), branch);
+        try {
+            f.getParentFile().mkdirs();
+            File tmp = new File(f.getParentFile(), f.getName() + ".lock");
+            FileUtils.writeStringToFile(tmp, commitHash + "\n", "utf-8");
+            if (!tmp.renameTo(f)) {
+                FileUtils.copyFile(tmp, f);
+                tmp.delete();
+            }
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException("Error updating git branch " + branch +
+                    ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return text in the same format as output of "git log -n 1 [commitHash]".
+     */
+    public String getCommitInfo(String commitHash) throws NarrativeMethodStoreException {
+        GitObject commit = readObject(commitHash, TYPE_COMMIT);
+        StringBuilder ret = new StringBuilder("commit ").append(commitHash).append("\n");
+        List<String> parents = headers(commit, "parent");
+        if (parents.size() > 1) {
+            ret.append("Merge:");
+            for (String parent : parents)
+                ret.append(" ").append(parent.substring(0, 7));
+            ret.append("\n");
+        }
+        String author = header(commit, "author");
+        // author is "Name <email> seconds +zone"
+        int emailEnd = author.lastIndexOf('>');
+        String[] timeAndZone = author.substring(emailEnd + 1).trim().split(" ");
+        ret.append("Author: ").append(author.substring(0, emailEnd + 1)).append("\n");
+        ret.append("Date:   ").append(formatDate(Long.parseLong(timeAndZone[0]),
+                timeAndZone[1])).append("\n\n");
+        for (String line : getMessage(commit).split("\n", -1))
+            ret.append("    ").append(line).append("\n");
+        return ret.toString();
+    }
+
+    private static String formatDate(long seconds, String zone) {
+        SimpleDateFormat fmt = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy", Locale.US);
+        fmt.setTimeZone(TimeZone.getTimeZone("GMT" + zone.substring(0, 3) + ":" +
+                zone.substring(3)));
+        return fmt.format(new Date(seconds * 1000)) + " " + zone;
+    }
+
+    private static String getMessage(GitObject commit) {
+        String text = new String(commit.data, UTF8);
+        int start = text.indexOf("\n\n");
+        if (start < 0)
+            return "";
+        String message = text.substring(start + 2);
+        while (message.endsWith("\n"))
+            message = message.substring(0, message.length() - 1);
+        return message;
+    }
+
+    /**
+     * @return content of file with given path (relative to repo root, separated by '/')
+     * at given commit or null in case there is no such file.
+     */
+    public byte[] readFile(String commitHash, String path) throws NarrativeMethodStoreException {
+        TreeEntry entry = findEntry(commitHash, path);
+        if (entry == null || entry.isDirectory())
+            return null;
+        return readObject(entry.id, TYPE_BLOB).data;
+    }
+
+    /**
+     * @return true in case given path (relative to repo root) exists at given commit.
+     */
+    public boolean exists(String commitHash, String path) throws NarrativeMethodStoreException {
+        return findEntry(commitHash, path) != null;
+    }
+
+    public boolean isDirectory(String commitHash, String path) throws NarrativeMethodStoreException {
+        TreeEntry entry = findEntry(commitHash, path);
+        return entry != null && entry.isDirectory();
+    }
+
+    /**
+     * @return entries of folder with given path at given commit (empty list in case
+     * there is no such folder), "" or null path means repo root.
+     */
+    public List<TreeEntry> listDirectory(String commitHash, String path)
+            throws NarrativeMethodStoreException {
+        String treeId;
+        if (path == null || path.isEmpty()) {
+            treeId = getRootTree(commitHash);
+        } else {
+            TreeEntry entry = findEntry(commitHash, path);
+            if (entry == null || !entry.isDirectory())
+                return Collections.emptyList();
+            treeId = entry.id;
+        }
+        return new ArrayList<TreeEntry>(readTree(treeId).values());
+    }
+
+    /**
+     * @return paths of files which differ between two commits (the same as output of
+     * "git diff --name-only --no-renames").
+     */
+    public List<String> getChangedFiles(String fromCommitHash, String toCommitHash)
+            throws NarrativeMethodStoreException {
+        List<String> ret = new ArrayList<String>();
+        diffTrees(getRootTree(fromCommitHash), getRootTree(toCommitHash), "", ret);
+        Collections.sort(ret);
+        return ret;
+    }
+
+    private void diffTrees(String fromTreeId, String toTreeId, String prefix,
+            List<String> ret) throws NarrativeMethodStoreException {
+        if (fromTreeId != null && fromTreeId.equals(toTreeId))
+            return;
+        Map<String, TreeEntry> from = fromTreeId == null ?
+                Collections.<String, TreeEntry>emptyMap() : readTree(fromTreeId);
+        Map<String, TreeEntry> to = toTreeId == null ?
+                Collections.<String, TreeEntry>emptyMap() : readTree(toTreeId);
+        for (TreeEntry fromEntry : from.values()) {
+            TreeEntry toEntry = to.get(fromEntry.name);
+            if (toEntry != null && toEntry.id.equals(fromEntry.id) &&
+                    toEntry.mode.equals(fromEntry.mode))
+                continue;
+            diffEntries(fromEntry, toEntry, prefix, ret);
+        }
+        for (TreeEntry toEntry : to.values())
+            if (!from.containsKey(toEntry.name))
+                diffEntries(null, toEntry, prefix, ret);
+    }
+
+    private void diffEntries(TreeEntry fromEntry, TreeEntry toEntry, String prefix,
+            List<String> ret) throws NarrativeMethodStoreException {
+        String path = prefix + (fromEntry == null ? toEntry : fromEntry).name;
+        String fromTree = fromEntry != null && fromEntry.isDirectory() ? fromEntry.id : null;
+        String toTree = toEntry != null && toEntry.isDirectory() ? toEntry.id : null;
+        if (fromTree != null || toTree != null)
+            diffTrees(fromTree, toTree, path + "/", ret);
+        if ((fromEntry != null && !fromEntry.isDirectory()) ||
+                (toEntry != null && !toEntry.isDirectory()))
+            ret.add(path);
+    }
+
+    private String getRootTree(String commitHash) throws NarrativeMethodStoreException {
+        return header(readObject(commitHash, TYPE_COMMIT), "tree");
+    }
+
+    private TreeEntry findEntry(String commitHash, String path)
+            throws NarrativeMethodStoreException {
+        String treeId = getRootTree(commitHash);
+        TreeEntry ret = null;
+        for (String part : path.split("/")) {
+            if (part.isEmpty())
+                continue;
+            if (treeId == null)
+                return null;
+            ret = readTree(treeId).get(part);
+            if (ret == null)
+                return null;
+            treeId = ret.isDirectory() ? ret.id : null;
+        }
+        return ret;
+    }
+
+    private Map<String, TreeEntry> readTree(String treeId) throws NarrativeMethodStoreException {
+        byte[] data = readObject(treeId, TYPE_TREE).data;
+        Map<String, TreeEntry> ret = new TreeMap<String, TreeEntry>();
+        int pos = 0;
+        while (pos < data.length) {
+            int space = indexOf(data, (byte)' ', pos);
+            int zero = indexOf(data, (byte)0, space);
+            if (space < 0 || zero < 0 || zero + 21 > data.length)
+                throw new NarrativeMethodStoreException("Broken git tree object " + treeId);
+            String mode = new String(data, pos, space - pos, UTF8);
+            String name = new String(data, space + 1, zero - space - 1, UTF8);
+            String id = toHex(data, zero + 1);
+            ret.put(name, new TreeEntry(name, mode, id));
+            pos = zero + 21;
+        }
+        return ret;
+    }
+
+    private static String header(GitObject obj, String name)
+            throws NarrativeMethodStoreException {
+        List<String> ret = headers(obj, name);
+        if (ret.isEmpty())
+            throw new NarrativeMethodStoreException("Header " + name + " is not found in git " +
+                    obj.type + " object");
+        return ret.get(0);
+    }
+
+    private static List<String> headers(GitObject obj, String name) {
+        List<String> ret = new ArrayList<String>();
+        for (String line : new String(obj.data, UTF8).split("\n")) {
+            if (line.isEmpty())
+                break;
+            if (line.startsWith(name + " "))
+                ret.add(line.substring(name.length() + 1));
+        }
+        return ret;
+    }
+
+    private GitObject readObject(String id, String expectedType)
+            throws NarrativeMethodStoreException {
+        GitObject ret = readObject(id);
+        if (!ret.type.equals(expectedType))
+            throw new NarrativeMethodStoreException("Git object " + id + " is " + ret.type +
+                    " rather than " + expectedType);
+        return ret;
+    }
+
+    /**
+     * @return object with given id looking for it among loose objects first and then
+     * in pack files (list of pack files is reloaded in case it's not found there).
+     */
+    public GitObject readObject(final String id) throws NarrativeMethodStoreException {
+        try {
+            GitObject ret = objectCache.getIfPresent(id);
+            if (ret != null)
+                return ret;
+            final File loose = new File(new File(objectsDir, id.substring(0, 2)), 
+                    id.substring(2));
+            if (loose.isFile()) {
+                return objectCache.get(id, new Callable<GitObject>() {
+                    @Override
+                    public GitObject call() throws Exception {
+                        return readLooseObject(loose);
+                    }
+                });
+            }
+            ret = readPackedObject(packs, id);
+            if (ret == null)
+                ret = readPackedObject(reloadPacks(), id);
+            if (ret == null)
+                throw new NarrativeMethodStoreException("Git object " + id + " is not found in " +
+                        gitDir);
+            return ret;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NarrativeMethodStoreException)
+                throw (NarrativeMethodStoreException)ex.getCause();
+            throw new NarrativeMethodStoreException("Error reading git object " + id + ": " +
+                    ex.getCause().getMessage(), ex.getCause());
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException("Error reading git object " + id + ": " +
+                    ex.getMessage(), ex);
+        }
+    }
+
+    private static GitObject readLooseObject(File f) throws IOException,
+            NarrativeMethodStoreException {
+        byte[] data;
+        InputStream is = new FileInputStream(f);
+        try {
+            data = inflate(is, -1);
+        } finally {
+            is.close();
+        }
+        // Loose object is "type size\0content"
+        int space = indexOf(data, (byte)' ', 0);
+        int zero = indexOf(data, (byte)0, space);
+        if (space < 0 || zero < 0)
+            throw new NarrativeMethodStoreException("Broken git object file " + f);
+        return new GitObject(new String(data, 0, space, UTF8),
+                Arrays.copyOfRange(data, zero + 1, data.length));
+    }
+
+    private GitObject readPackedObject(List<Pack> packList, String id)
+            throws IOException, NarrativeMethodStoreException {
+        for (Pack pack : packList) {
+            long offset = pack.findOffset(id);
+            if (offset >= 0)
+                return readPackEntry(pack, offset);
+        }
+        return null;
+    }
+
+    private synchronized List<Pack> reloadPacks() throws IOException {
+        Map<String, Pack> known = new TreeMap<String, Pack>();
+        for (Pack pack : packs)
+            known.put(pack.name, pack);
+        List<Pack> ret = new ArrayList<Pack>();
+        File[] files = new File(objectsDir, "pack").listFiles();
+        if (files != null) {
+            for (File idx : files) {
+                String name = idx.getName();
+                if (!name.endsWith(".idx"))
+                    continue;
+                name = name.substring(0, name.length() - 4);
+                File packFile = new File(idx.getParentFile(), name + ".pack");
+                if (!packFile.isFile())
+                    continue;
+                Pack pack = known.remove(name);
+                ret.add(pack == null ? new Pack(name, idx, packFile) : pack);
+            }
+        }
+        for (Pack removed : known.values())
+            removed.close();
+        packs = ret;
+        return ret;
+    }
+
+    private GitObject readPackEntry(final Pack pack, final long offset)
+            throws IOException, NarrativeMethodStoreException {
+        try {
+            return objectCache.get(pack.name + "@" + offset, new Callable<GitObject>() {
+                @Override
+                public GitObject call() throws Exception {
+                    return readPackEntryUncached(pack, offset);
+                }
+            });
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException)ex.getCause();
+            if (ex.getCause() instanceof NarrativeMethodStoreException)
+                throw (NarrativeMethodStoreException)ex.getCause();
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private GitObject readPackEntryUncached(Pack pack, long offset)
+            throws IOException, NarrativeMethodStoreException {
+        InputStream is = pack.openAt(offset);
+        // Entry header: type in bits 4-6 of first byte, size as little-endian varint
+        int b = is.read();
+        int type = (b >> 4) & 7;
+        long size = b & 15;
+        int shift = 4;
+        while ((b & 0x80) != 0) {
+            b = is.read();
+            size |= (long)(b & 0x7f) << shift;
+            shift += 7;
+        }
+        if (type >= 1 && type <= 4)
+            return new GitObject(PACK_TYPES[type], inflate(is, (int)size));
+        GitObject base;
+        if (type == PACK_OFS_DELTA) {
+            b = is.read();
+            long baseOffset = b & 0x7f;
+            while ((b & 0x80) != 0) {
+                b = is.read();
+                baseOffset = ((baseOffset + 1) << 7) | (b & 0x7f);
+            }
+            base = readPackEntry(pack, offset - baseOffset);
+        } else if (type == PACK_REF_DELTA) {
+            byte[] baseId = new byte[20];
+            readFully(is, baseId);
+            base = readObject(toHex(baseId, 0));
+        } else {
+            throw new NarrativeMethodStoreException("Unsupported type " + type + " of entry in " +
+                    pack.packFile);
+        }
+        return new GitObject(base.type, applyDelta(base.data, inflate(is, (int)size)));
+    }
+
+    /**
+     * Applies git delta to base object, all offsets and sizes coming from delta are 
+     * checked so that broken pack data is reported as IOException.
+     */
+    private static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+        int[] pos = {0};
+        long baseSize = readDeltaSize(delta, pos);
+        long resultSize = readDeltaSize(delta, pos);
+        if (baseSize != base.length)
+            throw new IOException("Git delta doesn't match its base object");
+        if (resultSize > Integer.MAX_VALUE - 8)
+            throw new IOException("Broken git delta: result size " + resultSize + " is too large");
+        byte[] ret = new byte[(int)resultSize];
+        int out = 0;
+        int p = pos[0];
+        while (p < delta.length) {
+            int cmd = delta[p++] & 0xff;
+            if ((cmd & 0x80) != 0) {
+                // Copy from base: bits 0-3 mark offset bytes, bits 4-6 mark size bytes
+                long copyOffset = 0;
+                long copySize = 0;
+                for (int i = 0; i < 4; i++)
+                    if ((cmd & (1 << i)) != 0)
+                        copyOffset |= (long)(deltaByte(delta, p++)) << (8 * i);
+                for (int i = 0; i < 3; i++)
+                    if ((cmd & (0x10 << i)) != 0)
+                        copySize |= (long)(deltaByte(delta, p++)) << (8 * i);
+                if (copySize == 0)
+                    copySize = 0x10000;
+                if (copyOffset + copySize > base.length || out + copySize > ret.length)
+                    throw new IOException("Broken git delta: copy of " + copySize + 
+                            " bytes from offset " + copyOffset + " is out of bounds");
+                System.arraycopy(base, (int)copyOffset, ret, out, (int)copySize);
+                out += copySize;
+            } else if (cmd != 0) {
+                if (p + cmd > delta.length || out + cmd > ret.length)
+                    throw new IOException("Broken git delta: insert of " + cmd + 
+                            " bytes is out of bounds");
+                System.arraycopy(delta, p, ret, out, cmd);
+                p += cmd;
+                out += cmd;
+            } else {
+                throw new IOException("Broken git delta");
+            }
+        }
+        if (out != ret.length)
+            throw new IOException("Broken git delta");
+        return ret;
+    }
+
+    private static int deltaByte(byte[] delta, int pos) throws IOException {
+        if (pos >= delta.length)
+            throw new IOException("Broken git delta: unexpected end of data");
+        return delta[pos] & 0xff;
+    }
+
+    private static long readDeltaSize(byte[] delta, int[] pos) throws IOException {
+        long ret = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 56)
+                throw new IOException("Broken git delta: size is too large");
+            b = deltaByte(delta, pos[0]++);
+            ret |= (long)(b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return ret;
+    }
+
+    /**
+     * Inflates zlib stream, size is expected length of result or -1 if it's unknown.
+     */
+    private static byte[] inflate(InputStream is, int size) throws IOException {
+        Inflater inf = new Inflater();
+        try {
+            ByteArrayOutputStream ret = new ByteArrayOutputStream(size < 0 ? 1024 : size);
+            byte[] in = new byte[8192];
+            byte[] out = new byte[8192];
+            while (!inf.finished()) {
+                if (inf.needsInput()) {
+                    int n = is.read(in);
+                    if (n < 0)
+                        throw new EOFException("Unexpected end of compressed git data");
+                    inf.setInput(in, 0, n);
+                }
+                int n = inf.inflate(out);
+                ret.write(out, 0, n);
+                if (n == 0 && inf.needsDictionary())
+                    throw new IOException("Unsupported compressed git data");
+            }
+            if (size >= 0 && ret.size() != size)
+                throw new IOException("Unexpected size of compressed git data");
+            return ret.toByteArray();
+        } catch (DataFormatException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            inf.end();
+        }
+    }
+
+    private static void readFully(InputStream is, byte[] buf) throws IOException {
+        int done = 0;
+        while (done < buf.length) {
+            int n = is.read(buf, done, buf.length - done);
+            if (n < 0)
+                throw new EOFException();
+            done += n;
+        }
+    }
+
+    private static int indexOf(byte[] data, byte b, int from) {
+        if (from < 0)
+            return -1;
+        for (int i = from; i < data.length; i++)
+            if (data[i] == b)
+                return i;
+        return -1;
+    }
+
+    private static boolean isObjectId(String text) {
+        if (text.length() != 40)
+            return false;
+        for (char ch : text.toCharArray())
+            if (Character.digit(ch, 16) < 0)
+                return false;
+        return true;
+    }
+
+    private static String toHex(byte[] data, int offset) {
+        StringBuilder ret = new StringBuilder(40);
+        for (int i = 0; i < 20; i++) {
+            int b = data[offset + i] & 0xff;
+            ret.append(Character.forDigit(b >> 4, 16)).append(Character.forDigit(b & 15, 16));
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Closes pack files opened so far, reader can still be used after that (pack files
+     * are reopened when they're needed, reads running in other threads at the same
+     * moment reopen them too).
+     */
+    public synchronized void close() {
+        for (Pack pack : packs)
+            pack.close();
+        packs = Collections.emptyList();
+    }
+
+    public static class GitObject {
+        private final String type;
+        private final byte[] data;
+
+        public GitObject(String type, byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    public static class TreeEntry {
+        private final String name;
+        private final String mode;
+        private final String id;
+
+        public TreeEntry(String name, String mode, String id) {
+            this.name = name;
+            this.mode = mode;
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isDirectory() {
+            return mode.equals(MODE_TREE);
+        }
+    }
+
+    /**
+     * Pack file with its index (version 2), index is kept in memory, pack is read
+     * with positional reads so that it could be shared between threads.
+     */
+    private static class Pack {
+        final String name;
+        final File packFile;
+        final byte[] ids;
+        final long[] offsets;
+        final int[] fanout = new int[256];
+        private RandomAccessFile raf = null;
+
+        Pack(String name, File idxFile, File packFile) throws IOException {
+            this.name = name;
+            this.packFile = packFile;
+            byte[] idx = FileUtils.readFileToByteArray(idxFile);
+            ByteBuffer buf = ByteBuffer.wrap(idx);
+            if (buf.getInt(0) != 0xff744f63 || buf.getInt(4) != 2)
+                throw new IOException("Unsupported version of git pack index " + idxFile);
+            for (int i = 0; i < 256; i++)
+                fanout[i] = buf.getInt(8 + i * 4);
+            int count = fanout[255];
+            int idsStart = 8 + 256 * 4;
+            ids = Arrays.copyOfRange(idx, idsStart, idsStart + count * 20);
+            int offsetsStart = idsStart + count * 24;  // ids and crc32 values
+            int largeStart = offsetsStart + count * 4;
+            offsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                int value = buf.getInt(offsetsStart + i * 4);
+                offsets[i] = value >= 0 ? value : buf.getLong(largeStart + (value & 0x7fffffff) * 8);
+            }
+        }
+
+        long findOffset(String id) {
+            byte[] key = new byte[20];
+            for (int i = 0; i < 20; i++)
+                key[i] = (byte)Integer.parseInt(id.substring(i * 2, i * 2 + 2), 16);
+            int first = key[0] & 0xff;
+            int low = first == 0 ? 0 : fanout[first - 1];
+            int high = fanout[first] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(mid, key);
+                if (cmp == 0)
+                    return offsets[mid];
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return -1;
+        }
+
+        private int compare(int pos, byte[] key) {
+            for (int i = 0; i < 20; i++) {
+                int diff = (ids[pos * 20 + i] & 0xff) - (key[i] & 0xff);
+                if (diff != 0)
+                    return diff;
+            }
+            return 0;
+        }
+
+        synchronized FileChannel channel() throws IOException {
+            if (raf == null)
+                raf = new RandomAccessFile(packFile, "r");
+            return raf.getChannel();
+        }
+
+        InputStream openAt(final long offset) throws IOException {
+            return new InputStream() {
+                private FileChannel ch = channel();
+                private long pos = offset;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : (one[0] & 0xff);
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n;
+                    try {
+                        n = ch.read(ByteBuffer.wrap(b, off, len), pos);
+                    } catch (ClosedChannelException ex) {
+                        // Pack was closed by other thread (see close), positional reads
+                        // could continue on reopened file
+                        if (Thread.currentThread().isInterrupted())
+                            throw ex;
+                        ch = channel();
+                        n = ch.read(ByteBuffer.wrap(b, off, len), pos);
+                    }
+                    if (n > 0)
+                        pos += n;
+                    return n;
+                }
+            };
+        }
+
+        synchronized void close() {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignore) {}
+                raf = null;
+            }
+        }
+    }
+}
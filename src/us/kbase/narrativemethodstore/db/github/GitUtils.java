@@ -1,11 +1,12 @@
 package us.kbase.narrativemethodstore.db.github;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
+import us.kbase.common.utils.ProcessExecutor;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
 
 public class GitUtils {
@@ -23,6 +24,19 @@ public class GitUtils {
         }
     }
 
+    /**
+     * Clones given branch of git repo without checking out working tree (files are then
+     * read from git objects), returns standard output of the command.
+     */
+    public static String gitCloneNoCheckout(URL gitRepoUrl, String gitBranch, File gitLocalPath) throws NarrativeMethodStoreInitializationException {
+        try {
+            return gitCommand("git clone --no-checkout --branch "+gitBranch+" "+gitRepoUrl+" "+gitLocalPath.getAbsolutePath(), 
+                    "clone", gitLocalPath.getCanonicalFile().getParentFile(), gitRepoUrl);
+        } catch (IOException e) {
+            throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+": " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Clones the configured git repo to the target local file location, returns standard output of the command
      * if successful, otherwise throws an exception.
@@ -36,6 +50,23 @@ public class GitUtils {
         }
     }
 
+    /**
+     * Creates empty repo in given (existing) folder with origin pointing to git repo url,
+     * so that commits could be fetched into it selectively.
+     */
+    public static String gitInit(File gitLocalPath, URL gitRepoUrl) throws NarrativeMethodStoreInitializationException {
+        String ret = gitCommand("git init", "init", gitLocalPath, gitRepoUrl);
+        return ret + gitCommand("git remote add origin " + gitRepoUrl, "remote add", gitLocalPath, gitRepoUrl);
+    }
+
+    /**
+     * Fetches only given commit (hash or branch name) without its history into FETCH_HEAD.
+     * Fails if remote doesn't support shallow fetch or fetching of commits by hash.
+     */
+    public static String gitShallowFetch(File gitLocalPath, URL gitRepoUrl, String commitHashOrBranch) throws NarrativeMethodStoreInitializationException {
+        return gitCommand("git fetch --depth 1 origin " + commitHashOrBranch, "fetch", gitLocalPath, gitRepoUrl);
+    }
+
     /**
      * Runs a git pull on the local git spec repo.
      */
@@ -47,6 +78,25 @@ public class GitUtils {
         return gitCommand("git checkout " + commitHash, "checkout", gitLocalPath, gitRepoUrl);
     }
 
+    public static String getRemoteUrl(File gitLocalPath, URL gitRepoUrl) throws NarrativeMethodStoreInitializationException {
+        return gitCommand("git config --get remote.origin.url", "config --get remote.origin.url", 
+                gitLocalPath, gitRepoUrl).trim();
+    }
+
+    public static String gitFetch(File gitLocalPath, URL gitRepoUrl, String gitBranch) throws NarrativeMethodStoreInitializationException {
+        return gitCommand("git fetch origin " + gitBranch, "fetch", gitLocalPath, gitRepoUrl);
+    }
+
+    /**
+     * Points local branch to FETCH_HEAD and makes working tree exactly matching it 
+     * (local changes and untracked files are removed).
+     */
+    public static String gitResetToFetchHead(File gitLocalPath, URL gitRepoUrl, String gitBranch) throws NarrativeMethodStoreInitializationException {
+        String ret = gitCommand("git checkout -f -B " + gitBranch + " FETCH_HEAD", "checkout", 
+                gitLocalPath, gitRepoUrl);
+        return ret + gitCommand("git clean -f -d", "clean", gitLocalPath, gitRepoUrl);
+    }
+
     public static String getCommitInfo(File gitLocalPath, URL gitRepoUrl) throws NarrativeMethodStoreInitializationException {
         return gitCommand("git log -n 1", "log -n 1", gitLocalPath, gitRepoUrl);
     }
@@ -55,44 +105,42 @@ public class GitUtils {
         return gitCommand("git rev-parse HEAD", "rev-parse HEAD", gitLocalPath, gitRepoUrl).trim();
     }
     
+    /**
+     * Returns paths (relative to repo root) of files which differ between two commits.
+     * Renames are reported as deletion plus addition.
+     */
+    public static List<String> getChangedFiles(File gitLocalPath, URL gitRepoUrl, 
+            String fromCommitHash, String toCommitHash) throws NarrativeMethodStoreInitializationException {
+        String out = gitCommand("git diff --name-only --no-renames " + fromCommitHash + " " + 
+                toCommitHash, "diff", gitLocalPath, gitRepoUrl);
+        List<String> ret = new ArrayList<String>();
+        for (String line : out.split("\n")) {
+            line = line.trim();
+            if (!line.isEmpty())
+                ret.add(line);
+        }
+        return ret;
+    }
+    
+    /**
+     * Runs git command on shared process executor, command is killed in case it doesn't
+     * finish within default timeout of executor.
+     */
     public static String gitCommand(String fullCmd, String nameOfCmd, File curDir, URL gitRepoUrl) throws NarrativeMethodStoreInitializationException {
         try {
-            Process p = Runtime.getRuntime().exec(fullCmd, null, curDir);
-            
-            BufferedReader stdOut = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-            StringBuilder out = new StringBuilder();
-            StringBuilder error = new StringBuilder();
-            Thread outT = readInThread(stdOut, out);
-            Thread errT = readInThread(stdError, error);
-            
-            outT.join();
-            errT.join();
-            int exitcode = p.waitFor();
-            
-            if(exitcode!=0) {
-                throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + error);
+            ProcessExecutor.Result res = ProcessExecutor.getDefault().exec(fullCmd, curDir);
+            if (res.isTimedOut()) {
+                throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+
+                        ": command didn't finish in " + res.getDurationMs() + " ms and was killed");
             }
-            return out.toString();
+            if (res.getExitCode()!=0) {
+                throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + res.getErrors());
+            }
+            return res.getOutput();
+        } catch (NarrativeMethodStoreInitializationException e) {
+            throw e;
         } catch (Exception e) {
             throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + e.getMessage(), e);
         }
     }
-
-    private static Thread readInThread(final BufferedReader stdOut, final StringBuilder out) {
-        Thread ret = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    String s1 = null;
-                    while ((s1 = stdOut.readLine()) != null) { out.append(s1+"\n"); }
-                } catch (IOException ex) {
-                    throw new IllegalStateException(ex);
-                }
-            }
-        });
-        ret.start();
-        return ret;
-    }
-
 }
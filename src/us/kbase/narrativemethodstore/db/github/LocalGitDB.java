@@ -1,39 +1,58 @@
 package us.kbase.narrativemethodstore.db.github;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.io.FileUtils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import us.kbase.common.utils.ProcessExecutor;
 import us.kbase.narrativemethodstore.AppBriefInfo;
 import us.kbase.narrativemethodstore.AppFullInfo;
 import us.kbase.narrativemethodstore.AppSpec;
 import us.kbase.narrativemethodstore.MethodBriefInfo;
 import us.kbase.narrativemethodstore.MethodFullInfo;
 import us.kbase.narrativemethodstore.MethodSpec;
+import us.kbase.narrativemethodstore.RegisterRepoJobStatus;
 import us.kbase.narrativemethodstore.RepoDetails;
 import us.kbase.narrativemethodstore.TypeInfo;
 import us.kbase.narrativemethodstore.db.DynamicRepoDB;
@@ -61,87 +80,238 @@ public class LocalGitDB {
 	protected final ObjectMapper mapper = new ObjectMapper();
 	
 	protected long lastPullTime = -1;
-	protected String lastCommit = null;
 	
-	protected NarrativeCategoriesIndex narCatIndex;
-	protected final LoadingCache<MethodId, NarrativeMethodData> methodDataCache;
-	protected final LoadingCache<String, AppFullInfo> appFullInfoCache;
-	protected final LoadingCache<String, AppSpec> appSpecCache;
+	/**
+	 * Current state of the catalog. Readers take it once per call and never lock,
+	 * refreshing code builds a new snapshot and publishes it through this field.
+	 */
+	protected volatile CatalogSnapshot snapshot;
+	// Last few published snapshots by catalog version, they let clients page through
+	// the same state of catalog while new one is being published.
+	protected final Map<String, CatalogSnapshot> recentSnapshots = 
+	        new LinkedHashMap<String, CatalogSnapshot>();
 	protected static Thread refreshingThread = null;
-    protected boolean inGitFetch = false;
-    protected boolean gitMergeWasDoneAfterFetch = false;
-	protected boolean needToStopRefreshingThread = false;
+	protected volatile boolean needToStopRefreshingThread = false;
+	// Change counter of dynamic repositories (see DynamicRepoDB.getCatalogVersion) 
+	// seen when current snapshot was built, it's polled to detect changes made by other
+	// instances of service
+	protected volatile long dynamicReposVersion = -1;
+	private Thread dynamicReposWatcher = null;
+	// Reader of spec-repo objects used instead of working tree in case in-process git
+	// reads are turned on (see LocalGitDBOptions.isInProcessGitReads), specs are read 
+	// at commit of snapshot they are loaded for; specsCommitHash is the head of 
+	// configured branch known to the service. Reader is created once and never replaced
+	// so that loads running in other threads don't lose it.
+	protected volatile GitObjectReader objectReader = null;
+	protected volatile String specsCommitHash = null;
+	// In file mode working tree is read only for the commit it's at (workTreeCommitHash)
+	// and only under read lock of workTreeLock, which is held for write while git changes
+	// working tree. Specs of other commits (catalog versions retained after refresh, see
+	// getSnapshot(String)) are read from git objects by historyReader.
+	protected volatile String workTreeCommitHash = null;
+	protected final ReentrantReadWriteLock workTreeLock = new ReentrantReadWriteLock();
+	private GitObjectReader historyReader = null;
+	private final Object historyReaderLock = new Object();
 	
 	protected final File tempDir;
 	protected final DynamicRepoDB dynamicRepos;
 	protected final ServiceUrlTemplateEvaluater srvUrlTemplEval;
 	protected final RepoTag defaultTagForGetters;
+	protected final LocalGitDBOptions options;
+	// Shared pool loading data of methods and apps missing in caches, created on first use;
+	// it's guarded by its own lock so that readers never wait for rebuilds holding this
+	private ExecutorService dataLoadPool = null;
+	private final Object dataLoadPoolLock = new Object();
+	// Pool running background registration of repositories, created on first use; 
+	// its queue is bounded by REGISTER_REPO_QUEUE_SIZE, extra jobs are rejected
+	private ExecutorService registerRepoPool = null;
+	// Jobs of background registration by id, they are forgotten one day after last check
+	private final Cache<String, RegisterRepoJob> registerRepoJobs = CacheBuilder.newBuilder()
+	        .expireAfterAccess(1, TimeUnit.DAYS).<String, RegisterRepoJob>build();
+	// Modules being registered right now
+	private final Set<String> registeringRepos = new HashSet<String>();
+	// Parsed data of dynamic methods by content identity of their sources (see
+	// getParsedMethodDataKey), it survives rebuilds of snapshots so that spec files
+	// unchanged between rebuilds are not parsed again; tag is part of the key since
+	// it's used in urls of images, so every tag has its own parsed data
+	private final Cache<String, NarrativeMethodData> parsedMethodData = CacheBuilder.newBuilder()
+	        .maximumSize(PARSED_METHOD_DATA_CACHE_SIZE).expireAfterAccess(1, TimeUnit.DAYS)
+	        .<String, NarrativeMethodData>build();
+	public static final int PARSED_METHOD_DATA_CACHE_SIZE = 20000;
+	public static final int REGISTER_REPO_THREADS = 2;
+	public static final int REGISTER_REPO_QUEUE_SIZE = 20;
 	
 	public LocalGitDB(URL gitRepoUrl, String branch, File localPath, int refreshTimeInMinutes, 
 	        int cacheSize, DynamicRepoDB dynamicRepos, File tempDir,
 	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag defaultTagForGetters) throws NarrativeMethodStoreInitializationException {
+	    this(gitRepoUrl, branch, localPath, refreshTimeInMinutes, cacheSize, dynamicRepos, tempDir,
+	            srvUrlTemplEval, defaultTagForGetters, new LocalGitDBOptions());
+	}
+	
+	public LocalGitDB(URL gitRepoUrl, String branch, File localPath, int refreshTimeInMinutes, 
+	        int cacheSize, DynamicRepoDB dynamicRepos, File tempDir,
+	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag defaultTagForGetters,
+	        LocalGitDBOptions options) throws NarrativeMethodStoreInitializationException {
 		this.gitRepoUrl = gitRepoUrl;
 		this.gitBranch = branch;
 		this.gitLocalPath = localPath;
 		this.refreshTimeInMinutes = refreshTimeInMinutes;
 		this.cacheSize = cacheSize;
-        this.methodDataCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
-                new CacheLoader<MethodId, NarrativeMethodData>() {
-                    @Override
-                    public NarrativeMethodData load(MethodId methodId) throws NarrativeMethodStoreException {
-                        return loadMethodDataUncached(methodId, narCatIndex);
-                    }
-                });
-		this.appFullInfoCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
-				new CacheLoader<String, AppFullInfo>() {
-					@Override
-					public AppFullInfo load(String methodId) throws NarrativeMethodStoreException {
-						return loadAppDataUncached(methodId).getAppFullInfo();
-					}
-				});
-		this.appSpecCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
-				new CacheLoader<String, AppSpec>() {
-					@Override
-					public AppSpec load(String methodId) throws NarrativeMethodStoreException {
-						return loadAppDataUncached(methodId).getAppSpec();
-					}
-				});
-		if (!localPath.exists())
-			localPath.mkdirs();
-		initializeLocalRepo();
 		this.tempDir = tempDir;
         this.dynamicRepos = dynamicRepos;
         this.srvUrlTemplEval = srvUrlTemplEval;
         this.defaultTagForGetters = defaultTagForGetters;
+        this.options = options;
+        this.dynamicReposVersion = getDynamicReposVersion();
+		if (!localPath.exists())
+			localPath.mkdirs();
+        CatalogSnapshot stored = null;
+        if (options.getSnapshotFile() != null) {
+            try {
+                stored = options.getSnapshotFile().load(this, defaultTagForGetters, cacheSize,
+                        options.getResponseCacheSize());
+            } catch (Exception ex) {
+                System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " + ex.getMessage());
+            }
+        }
+        if (stored != null) {
+            // Start serving stored snapshot right away, spec-repo is cloned and snapshot
+            // is checked against it in background.
+            System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: catalog snapshot " +
+            		"was loaded from " + options.getSnapshotFile().getFile() + ", it will be verified in background");
+            publishSnapshot(stored);
+            final CatalogSnapshot prev = stored;
+            Thread verifier = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        String commit = initializeLocalRepo();
+                        verifyStoredSnapshot(prev, getLocalCommitHash(), commit);
+                    } catch (Throwable ex) {
+                        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+                        		"verifying catalog snapshot: " + ex.getMessage());
+                    }
+                    startRefreshingThread();
+                    startDynamicReposWatcher();
+                }
+            });
+            verifier.setDaemon(true);
+            verifier.start();
+            return;
+        }
+		String commit = initializeLocalRepo();
         try {
-            loadCategoriesIndex();
+            publishSnapshot(buildSnapshot(getLocalCommitHash(), commit));
         } catch (NarrativeMethodStoreInitializationException ex) {
             throw ex;
         } catch(NarrativeMethodStoreException e) {
             throw new NarrativeMethodStoreInitializationException(e.getMessage(), e);
         }
+        saveSnapshotFile(false);
+        startRefreshingThread();
+        startDynamicReposWatcher();
 	}
 		
 	public DynamicRepoDB getDynamicRepos() {
         return dynamicRepos;
     }
 	
-	protected void initializeLocalRepo() throws NarrativeMethodStoreInitializationException {
+	/**
+	 * Clones spec-repo into local folder and returns information about current commit.
+	 */
+	protected String initializeLocalRepo() throws NarrativeMethodStoreInitializationException {
+	    // Loads for snapshot stored in file wait until working tree is ready
+	    workTreeLock.writeLock().lock();
+	    try {
+	        return initializeLocalRepoUnlocked();
+	    } finally {
+	        workTreeLock.writeLock().unlock();
+	    }
+	}
+
+	private String initializeLocalRepoUnlocked() 
+	        throws NarrativeMethodStoreInitializationException {
+	    if (options.isReuseLocalClone() && reuseLocalRepo())
+	        return getLocalCommitInfo();
 		try {
 			FileUtils.deleteDirectory(gitLocalPath);
 		} catch (IOException e) {
 			throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+", error deleting old directory: " + e.getMessage(), e);
 		}
+		if (options.isInProcessGitReads()) {
+		    // Files are read from git objects so working tree is not needed
+		    System.out.println(GitUtils.gitCloneNoCheckout(gitRepoUrl, gitBranch, gitLocalPath));
+		    this.lastPullTime = System.currentTimeMillis();
+		    return getLocalCommitInfo();
+		}
 		String cloneStatus = GitUtils.gitClone(gitRepoUrl, gitBranch, gitLocalPath);
 		this.lastPullTime = System.currentTimeMillis();
-		this.lastCommit = GitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
 		System.out.println(cloneStatus);
 		try {
 		    gitPull();
 		} catch (Exception ex) {
             System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " + ex.getMessage());
 		}
-		startRefreshingThread();
+		return getLocalCommitInfo();
+	}
+
+	/**
+	 * Returns information about current commit of local clone (the same as "git log -n 1"
+	 * prints). In case of in-process git reads it also opens object store of the clone
+	 * and remembers the commit as the one specs are read at.
+	 */
+	protected String getLocalCommitInfo() throws NarrativeMethodStoreInitializationException {
+	    if (!options.isInProcessGitReads()) {
+	        String ret = GitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
+	        workTreeCommitHash = GitUtils.getCommitHash(gitLocalPath, gitRepoUrl);
+	        return ret;
+	    }
+	    try {
+	        GitObjectReader reader = objectReader;
+	        if (reader == null)
+	            reader = new GitObjectReader(new File(gitLocalPath, ".git"));
+	        String commitHash = reader.resolve("HEAD");
+	        String ret = reader.getCommitInfo(commitHash);
+	        specsCommitHash = commitHash;
+	        objectReader = reader;
+	        return ret;
+	    } catch (NarrativeMethodStoreException ex) {
+	        throw new NarrativeMethodStoreInitializationException(ex.getMessage(), ex);
+	    }
+	}
+
+	protected String getLocalCommitHash() throws NarrativeMethodStoreInitializationException {
+	    if (objectReader != null)
+	        return specsCommitHash;
+	    return GitUtils.getCommitHash(gitLocalPath, gitRepoUrl);
+	}
+
+	/**
+	 * Tries to bring existing clone of spec-repo (left by previous run of service) to
+	 * the head of configured branch. Returns false in case local folder doesn't contain
+	 * a clone of configured repo or anything goes wrong, so that it should be recloned.
+	 */
+	protected boolean reuseLocalRepo() {
+	    if (!new File(gitLocalPath, ".git").isDirectory())
+	        return false;
+	    try {
+	        String remoteUrl = GitUtils.getRemoteUrl(gitLocalPath, gitRepoUrl);
+	        if (!remoteUrl.equals(gitRepoUrl.toString())) {
+	            System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: local " +
+	            		"clone points to other repo (" + remoteUrl + "), it will be recloned");
+	            return false;
+	        }
+	        GitUtils.gitFetch(gitLocalPath, gitRepoUrl, gitBranch);
+	        GitUtils.gitResetToFetchHead(gitLocalPath, gitRepoUrl, gitBranch);
+	        this.lastPullTime = System.currentTimeMillis();
+	        System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: existing " +
+	        		"local clone of " + gitRepoUrl + " is reused");
+	        return true;
+	    } catch (Exception ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error reusing " +
+	        		"local clone, it will be recloned: " + ex.getMessage());
+	        return false;
+	    }
 	}
 
 	/**
@@ -179,56 +349,93 @@ public class LocalGitDB {
     }
 
 	protected String gitCommand(String fullCmd, String nameOfCmd, File curDir) throws NarrativeMethodStoreInitializationException {
-		try {
-			Process p = Runtime.getRuntime().exec(fullCmd, null, curDir);
-			
-			BufferedReader stdOut = new BufferedReader(new InputStreamReader(p.getInputStream()));
-			BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-			StringBuilder out = new StringBuilder();
-			StringBuilder error = new StringBuilder();
-			Thread outT = readInThread(stdOut, out);
-			Thread errT = readInThread(stdError, error);
-			
-			outT.join();
-			errT.join();
-			int exitcode = p.waitFor();
-			
-			if(exitcode!=0) {
-				throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + error);
-			}
-			return out.toString();
-		} catch (Exception e) {
-			throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + e.getMessage(), e);
-		}
-	}
-
-	private Thread readInThread(final BufferedReader stdOut, final StringBuilder out) {
-		Thread ret = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					String s1 = null;
-					while ((s1 = stdOut.readLine()) != null) { out.append(s1+"\n"); }
-				} catch (IOException ex) {
-					throw new IllegalStateException(ex);
-				}
-			}
-		});
-		ret.start();
-		return ret;
+		return GitUtils.gitCommand(fullCmd, nameOfCmd, curDir, gitRepoUrl);
 	}
 	
 	public void stopRefreshingThread() {
 	    needToStopRefreshingThread = true;
+	    // Keep what was loaded into caches for next start of the service
+	    saveSnapshotFile(true);
+	    synchronized (dataLoadPoolLock) {
+	        if (dataLoadPool != null)
+	            dataLoadPool.shutdownNow();
+	        dataLoadPool = null;
+	    }
+	    synchronized (this) {
+	        if (registerRepoPool != null)
+	            registerRepoPool.shutdownNow();
+	        registerRepoPool = null;
+	        if (objectReader != null)
+	            objectReader.close();
+	    }
+	    synchronized (historyReaderLock) {
+	        if (historyReader != null)
+	            historyReader.close();
+	        historyReader = null;
+	    }
         System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing thread was requested to stop");
 	    try {
 	        if (refreshingThread != null)
 	            refreshingThread.interrupt();
+	        synchronized (this) {
+	            if (dynamicReposWatcher != null)
+	                dynamicReposWatcher.interrupt();
+	            dynamicReposWatcher = null;
+	        }
 	    } catch (Exception ex) {
             System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error interrupting refreshing thread (" + ex.getMessage() + ")");
 	    }
 	}
 	
+	/**
+	 * Starts thread polling change counter of dynamic repositories every few seconds
+	 * (see LocalGitDBOptions.getDynamicRepoPollSeconds) so that changes registered through
+	 * other instances of service sharing the same DB are picked up without restart.
+	 */
+	private synchronized void startDynamicReposWatcher() {
+	    final int pollSeconds = options.getDynamicRepoPollSeconds();
+	    if (dynamicRepos == null || pollSeconds <= 0 || dynamicReposWatcher != null)
+	        return;
+	    dynamicReposWatcher = new Thread(new Runnable() {
+	        @Override
+	        public void run() {
+	            while (!needToStopRefreshingThread) {
+	                try {
+	                    Thread.sleep(pollSeconds * 1000L);
+	                } catch (InterruptedException ex) {
+	                    break;
+	                }
+	                if (needToStopRefreshingThread)
+	                    break;
+	                try {
+	                    long version = dynamicRepos.getCatalogVersion();
+	                    if (version != dynamicReposVersion) {
+	                        refreshDynamicRepos();
+	                        dynamicReposVersion = version;
+	                    }
+	                } catch (Throwable ex) {
+	                    System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	                    		"checking dynamic repositories for changes: " + ex.getMessage());
+	                }
+	            }
+	        }
+	    }, "NarrativeMethodStore-dynamic-repos-watcher");
+	    dynamicReposWatcher.setDaemon(true);
+	    dynamicReposWatcher.start();
+	}
+	
+	private long getDynamicReposVersion() {
+	    if (dynamicRepos == null)
+	        return -1;
+	    try {
+	        return dynamicRepos.getCatalogVersion();
+	    } catch (Exception ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	        		"reading version of dynamic repositories: " + ex.getMessage());
+	        return -1;
+	    }
+	}
+	
 	private void startRefreshingThread() {
 	    if (refreshingThread != null) {
             System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing thread was already started earlier");
@@ -239,16 +446,13 @@ public class LocalGitDB {
             public void run() {
                 System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing thread is starting");
                 while (true) {
-                    inGitFetch = true;
-                    gitMergeWasDoneAfterFetch = false;
                     try {
                         gitFetch();
-                        inGitFetch = false;
-                        checkForChanges();
+                        mergeFetchedChanges();
                     } catch (Throwable ex) {
-                        inGitFetch = false;
                         System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error doing git fetch: " + ex.getMessage());
                     }
+                    logStats();
                     if (needToStopRefreshingThread)
                         break;
                     try {
@@ -267,109 +471,492 @@ public class LocalGitDB {
 	}
 	
 	/**
-	 * We need to call this method at the beginning of every public access method.
-	 * This method refreshes file copy of specs-repo if it's necessary and clear
-	 * caches in case something was changed.
+	 * Reports statistics of external commands and of file cache of dynamic repositories
+	 * into log, it's called from refreshing thread after every check for changes.
 	 */
-	public synchronized void checkForChanges() {
-	    if (refreshingThread == null) {
-            System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing thread wasn't started for some reason");
-	        startRefreshingThread();
-	        return;
+	protected void logStats() {
+	    try {
+	        Map<String, ProcessExecutor.CommandStats> cmdStats = 
+	                ProcessExecutor.getDefault().getStats();
+	        if (!cmdStats.isEmpty())
+	            System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+	            		"external commands: " + cmdStats);
+	        CacheStats fileStats = dynamicRepos == null ? null : 
+	            dynamicRepos.getFileCacheStats();
+	        if (fileStats != null)
+	            System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+	            		"file cache of dynamic repositories: " + fileStats);
+	    } catch (Throwable ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	        		"reading statistics: " + ex.getMessage());
 	    }
-		if (inGitFetch || gitMergeWasDoneAfterFetch)
-			return;
-		gitMergeWasDoneAfterFetch = true;
+	}
+	
+	/**
+	 * Merges fetched changes into file copy of specs-repo and publishes new snapshot
+	 * of catalog in case commit was changed. It's called from refreshing thread only
+	 * so that access methods never wait for git or for index reloading.
+	 */
+	protected synchronized void mergeFetchedChanges() {
 		try {
-			String ret = gitMergeFetchHead();
+		    if (objectReader != null) {
+		        applyFetchedCommit();
+		        return;
+		    }
+			String ret;
+			workTreeLock.writeLock().lock();
+			try {
+			    workTreeCommitHash = null;
+			    ret = gitMergeFetchHead();
+			} finally {
+			    // Stays null (all snapshots are read from git objects) in case commit
+			    // of working tree is unknown
+			    workTreeCommitHash = GitUtils.getCommitHash(gitLocalPath, gitRepoUrl);
+			    workTreeLock.writeLock().unlock();
+			}
 			if (ret != null && ret.startsWith("Already up-to-date."))
 				return;
-			String commit = getCommitInfo();
-			if (!commit.equals(lastCommit)) {
-				lastCommit = commit;
-				System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing caches");
-				// recreate the categories index
-                reloadAll();
+			String commit = GitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
+			if (!commit.equals(snapshot.getCommit())) {
+				String commitHash = workTreeCommitHash;
+				publishSnapshot(loadChangedEntries(snapshot, commitHash, commit));
+				saveSnapshotFile(false);
 			}
 		} catch (Exception ex) {
 			System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error doing git merge FETCH_HEAD: " + ex.getMessage());
 		}
 	}
 
+	/**
+	 * In-process counterpart of merging FETCH_HEAD: fetched commit is read from object
+	 * store, branch is moved to it (like hard reset, there is no working tree to update)
+	 * and specs are read at this commit from now on.
+	 */
+	protected synchronized void applyFetchedCommit() throws NarrativeMethodStoreException {
+	    String commitHash = objectReader.resolve("FETCH_HEAD");
+	    if (commitHash.equals(specsCommitHash))
+	        return;
+	    String commit = objectReader.getCommitInfo(commitHash);
+	    objectReader.updateBranch(gitBranch, commitHash);
+	    // Snapshots read spec files at their own commits, so the head is moved only
+	    // after new snapshot is published
+	    publishSnapshot(loadChangedEntries(snapshot, commitHash, commit));
+	    specsCommitHash = commitHash;
+	    saveSnapshotFile(false);
+	}
+
 	public synchronized void hardRefresh() throws NarrativeMethodStoreException {
 	    reloadAll();
 	}
 	
-    public void reloadAll() throws NarrativeMethodStoreException {
+	/**
+	 * Publishes new snapshot in case state of dynamic repositories differs from the one
+	 * current snapshot was built for (changes could be made by other instances of service),
+	 * spec-repo part of catalog is left as is.
+	 */
+	public synchronized void refreshDynamicRepos() throws NarrativeMethodStoreException {
+	    CatalogSnapshot prev = snapshot;
+	    Map<String, String> repoStamps = getRepoStamps();
+	    if (repoStamps.equals(prev.getRepoStamps()))
+	        return;
+	    publishSnapshot(loadChangedDynamicRepos(prev, repoStamps));
+	    saveSnapshotFile(false);
+	}
+	
+	/**
+	 * Prepares snapshot where methods of only those dynamic repositories which stamps 
+	 * differ from stamps of previous snapshot are reloaded. Everything else (including
+	 * cached data) is carried over. In case of any problem we fall back to reloading 
+	 * of entire index.
+	 */
+	protected CatalogSnapshot loadChangedDynamicRepos(CatalogSnapshot prev, 
+	        Map<String, String> repoStamps) throws NarrativeMethodStoreException {
+	    if (prev.getRepoStamps() != null && dynamicRepos != null) {
+	        try {
+	            Set<String> changedRepos = new TreeSet<String>();
+	            Set<String> allRepos = new TreeSet<String>(repoStamps.keySet());
+	            allRepos.addAll(prev.getRepoStamps().keySet());
+	            for (String repoMN : allRepos) {
+	                String stamp = repoStamps.get(repoMN);
+	                if (stamp == null || !stamp.equals(prev.getRepoStamps().get(repoMN)))
+	                    changedRepos.add(repoMN);
+	            }
+	            System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+	            		"refreshing changed dynamic repositories: " + changedRepos);
+	            Set<String> enabledRepos = new HashSet<String>(
+	                    dynamicRepos.listRepoModuleNames(false, null));
+	            final NarrativeCategoriesIndex narCatIndex = new NarrativeCategoriesIndex(
+	                    prev.getIndex());
+	            final String commitHash = prev.getCommitHash();
+	            List<MethodId> methIds = new ArrayList<MethodId>();
+	            for (String repoMN : changedRepos) {
+	                narCatIndex.removeDynamicRepo(repoMN);
+	                if (!enabledRepos.contains(repoMN))
+	                    continue;
+	                RepoMethodIds repoMethods = loadRepoMethodIds(repoMN);
+	                narCatIndex.addDynamicRepoMethods(repoMN, repoMethods.methodIds, 
+	                        repoMethods.error);
+	                methIds.addAll(repoMethods.methodIds);
+	            }
+	            List<Callable<MethodBriefInfo>> methodTasks = new ArrayList<Callable<MethodBriefInfo>>();
+	            for (final MethodId mId : methIds) {
+	                methodTasks.add(new Callable<MethodBriefInfo>() {
+	                    @Override
+	                    public MethodBriefInfo call() {
+	                        return loadMethodBriefInfo(commitHash, mId, narCatIndex);
+	                    }
+	                });
+	            }
+	            List<MethodBriefInfo> methodInfos = runIndexBuildTasks(methodTasks);
+	            for (int i = 0; i < methIds.size(); i++)
+	                narCatIndex.addOrUpdateMethod(methIds.get(i), methodInfos.get(i));
+	            CatalogSnapshot ret = new CatalogSnapshot(this, narCatIndex, prev.getCommitHash(),
+	                    prev.getCommit(), repoStamps, cacheSize, options.getResponseCacheSize());
+	            carryOverCaches(prev, ret, Collections.<MethodId>emptySet(), changedRepos,
+	                    Collections.<String>emptySet());
+	            return ret;
+	        } catch (Exception ex) {
+	            System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+	            		"error refreshing changed dynamic repositories, whole index will be " +
+	            		"reloaded: " + ex.getMessage());
+	        }
+	    }
+	    System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing caches");
+	    return buildSnapshot(prev.getCommitHash(), prev.getCommit());
+	}
+	
+    public synchronized void reloadAll() throws NarrativeMethodStoreException {
         System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing caches");
         // recreate the categories index
-        loadCategoriesIndex();
-        methodDataCache.invalidateAll();
-        appFullInfoCache.invalidateAll();
-        appSpecCache.invalidateAll();
-    }	
+        CatalogSnapshot prev = snapshot;
+        publishSnapshot(buildSnapshot(prev.getCommitHash(), prev.getCommit()));
+        saveSnapshotFile(false);
+    }
+    
+    /**
+     * Builds entirely new snapshot for given commit of specs-repo.
+     */
+    protected CatalogSnapshot buildSnapshot(String commitHash, String commit) 
+            throws NarrativeMethodStoreException {
+        // Stamps are taken before index is built so that changes made in the middle
+        // could only make them older than the index (and not vice versa).
+        Map<String, String> repoStamps = getRepoStamps();
+        return new CatalogSnapshot(this, loadCategoriesIndex(commitHash), commitHash, commit, 
+                repoStamps, cacheSize, options.getResponseCacheSize());
+    }
+    
+    protected Map<String, String> getRepoStamps() throws NarrativeMethodStoreException {
+        if (dynamicRepos == null)
+            return new TreeMap<String, String>();
+        return dynamicRepos.getRepoVersionStamps();
+    }
+    
+    /**
+     * Compares snapshot loaded from file with actual state of specs-repo and dynamic
+     * repositories and replaces it in case something was changed.
+     */
+    protected synchronized void verifyStoredSnapshot(CatalogSnapshot stored, String commitHash, 
+            String commit) throws NarrativeMethodStoreException {
+        if (!getRepoStamps().equals(stored.getRepoStamps())) {
+            System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: dynamic " +
+            		"repositories were changed since catalog snapshot was stored, refreshing caches");
+            publishSnapshot(buildSnapshot(commitHash, commit));
+        } else if (!commitHash.equals(stored.getCommitHash())) {
+            publishSnapshot(loadChangedEntries(stored, commitHash, commit));
+        } else {
+            System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: catalog " +
+            		"snapshot is up to date");
+            return;
+        }
+        saveSnapshotFile(false);
+    }
+    
+    /**
+     * Stores current snapshot into file in case it's configured. Cached method and app data
+     * are stored too when it's requested and snapshot data mode is turned on in options.
+     */
+    protected synchronized void saveSnapshotFile(boolean withData) {
+        if (options.getSnapshotFile() == null)
+            return;
+        try {
+            options.getSnapshotFile().save(snapshot, withData && options.isSnapshotWithData());
+        } catch (Exception ex) {
+            System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " + ex.getMessage());
+        }
+    }
+    
+    /**
+     * Replaces current catalog snapshot. Previous snapshot (and its caches) stays 
+     * valid for the readers still holding it.
+     */
+    protected void publishSnapshot(CatalogSnapshot newSnapshot) {
+        synchronized (recentSnapshots) {
+            recentSnapshots.remove(newSnapshot.getCatalogVersion());
+            recentSnapshots.put(newSnapshot.getCatalogVersion(), newSnapshot);
+            Iterator<String> it = recentSnapshots.keySet().iterator();
+            while (recentSnapshots.size() > options.getRetainedSnapshots()) {
+                it.next();
+                it.remove();
+            }
+        }
+        this.snapshot = newSnapshot;
+    }
+    
+    /**
+     * Prepares snapshot for new commit of specs-repo reparsing only those categories,
+     * methods, apps and types which were touched between commits of previous snapshot 
+     * and new one. Everything else (including cached data) is carried over. In case of
+     * any problem we fall back to reloading of entire index.
+     */
+    protected CatalogSnapshot loadChangedEntries(CatalogSnapshot prev, String commitHash, 
+            String commit) throws NarrativeMethodStoreException {
+        if (prev.getCommitHash() != null) {
+            try {
+                Set<String> catIds = new TreeSet<String>();
+                Set<String> methodIds = new TreeSet<String>();
+                Set<String> appIds = new TreeSet<String>();
+                Set<String> typeNames = new TreeSet<String>();
+                List<String> changedFiles = objectReader != null ? 
+                        objectReader.getChangedFiles(prev.getCommitHash(), commitHash) :
+                        GitUtils.getChangedFiles(gitLocalPath, gitRepoUrl, 
+                                prev.getCommitHash(), commitHash);
+                for (String path : changedFiles) {
+                    String[] parts = path.split("/");
+                    if (parts.length < 2)
+                        continue;
+                    if (parts[0].equals("categories")) {
+                        catIds.add(parts[1]);
+                    } else if (parts[0].equals("methods")) {
+                        methodIds.add(parts[1]);
+                    } else if (parts[0].equals("apps")) {
+                        appIds.add(parts[1]);
+                    } else if (parts[0].equals("types")) {
+                        typeNames.add(parts[1]);
+                    }
+                }
+                System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+                		"refreshing changed entries (categories: " + catIds.size() + ", methods: " + 
+                		methodIds.size() + ", apps: " + appIds.size() + ", types: " + 
+                		typeNames.size() + ")");
+                NarrativeCategoriesIndex narCatIndex = new NarrativeCategoriesIndex(prev.getIndex());
+                for (String catId : catIds) {
+                    if (isSpecDir(commitHash, "categories/" + catId)) {
+                        narCatIndex.addOrUpdateCategory(catId, getResourceAsJson(commitHash, 
+                                "categories/"+catId+"/spec.json"), null);
+                    } else {
+                        narCatIndex.removeCategory(catId);
+                    }
+                }
+                Set<MethodId> changedMethods = new TreeSet<MethodId>();
+                for (String methodId : methodIds) {
+                    MethodId mId = new MethodId(methodId);
+                    changedMethods.add(mId);
+                    if (isSpecDir(commitHash, "methods/" + methodId)) {
+                        narCatIndex.addOrUpdateMethod(mId, loadMethodBriefInfo(commitHash, mId, 
+                                narCatIndex));
+                    } else {
+                        narCatIndex.removeMethod(mId);
+                    }
+                }
+                for (String appId : appIds) {
+                    if (isSpecDir(commitHash, "apps/" + appId)) {
+                        narCatIndex.addOrUpdateApp(appId, loadAppBriefInfo(commitHash, appId));
+                    } else {
+                        narCatIndex.removeApp(appId);
+                    }
+                }
+                for (String typeName : typeNames) {
+                    if (isSpecDir(commitHash, "types/" + typeName)) {
+                        narCatIndex.addOrUpdateType(typeName, loadTypeInfo(commitHash, typeName));
+                    } else {
+                        narCatIndex.removeType(typeName);
+                    }
+                }
+                CatalogSnapshot ret = new CatalogSnapshot(this, narCatIndex, commitHash, 
+                        commit, prev.getRepoStamps(), cacheSize, options.getResponseCacheSize());
+                carryOverCaches(prev, ret, changedMethods, Collections.<String>emptySet(), 
+                        appIds);
+                return ret;
+            } catch (Exception ex) {
+                System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+                		"error refreshing changed entries, whole index will be reloaded: " + 
+                		ex.getMessage());
+            }
+        }
+        System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing caches");
+        return buildSnapshot(commitHash, commit);
+    }
+    
+    /**
+     * Copies cached method and app data from previous snapshot into new one except
+     * for changed methods, methods of changed dynamic repositories and changed apps.
+     */
+    private static void carryOverCaches(CatalogSnapshot prev, CatalogSnapshot ret, 
+            Set<MethodId> changedMethods, Set<String> changedRepos, Set<String> changedApps) {
+        for (Map.Entry<MethodId, NarrativeMethodData> entry : 
+                prev.getMethodDataCache().asMap().entrySet()) {
+            MethodId mId = entry.getKey();
+            if (!(changedMethods.contains(mId) || (mId.isDynamic() && 
+                    changedRepos.contains(mId.getRepoModuleName()))))
+                ret.getMethodDataCache().put(mId, entry.getValue());
+        }
+        for (Map.Entry<String, AppFullInfo> entry : 
+                prev.getAppFullInfoCache().asMap().entrySet())
+            if (!changedApps.contains(entry.getKey()))
+                ret.getAppFullInfoCache().put(entry.getKey(), entry.getValue());
+        for (Map.Entry<String, AppSpec> entry : 
+                prev.getAppSpecCache().asMap().entrySet())
+            if (!changedApps.contains(entry.getKey()))
+                ret.getAppSpecCache().put(entry.getKey(), entry.getValue());
+    }
+    
+    /**
+     * @return current catalog snapshot, this method never blocks.
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * @return current snapshot in case catalogVersion is null, otherwise one of recently
+     * published snapshots having this version.
+     * @throws NarrativeMethodStoreException in case there is no such snapshot anymore.
+     */
+    public CatalogSnapshot getSnapshot(String catalogVersion) 
+            throws NarrativeMethodStoreException {
+        CatalogSnapshot ret = snapshot;
+        if (catalogVersion == null || catalogVersion.equals(ret.getCatalogVersion()))
+            return ret;
+        synchronized (recentSnapshots) {
+            ret = recentSnapshots.get(catalogVersion);
+        }
+        if (ret == null)
+            throw new NarrativeMethodStoreException("Catalog version " + catalogVersion + 
+                    " is not available anymore (current one is " + 
+                    snapshot.getCatalogVersion() + ")");
+        return ret;
+    }
 	
-	protected File getMethodsDir() {
-		return new File(gitLocalPath, "methods");
+	/*protected File getRepositoriesFile() {
+	    return new File(gitLocalPath, "repositories");
+	}*/
+
+	protected List<MethodId> listMethodIdsUncached(String commitHash, 
+	        NarrativeCategoriesIndex narCatIndex) throws NarrativeMethodStoreException {
+		List<MethodId> methodList = new ArrayList<MethodId>();
+		for (String methodId : listSpecDirs(commitHash, "methods"))
+		    methodList.add(new MethodId(methodId));
+		methodList.addAll(narCatIndex.getDynamicRepoMethods());
+		return methodList;
 	}
 
-	protected File getCategoriesDir() {
-		return new File(gitLocalPath, "categories");
+	protected List<String> listAppIdsUncached(String commitHash) throws NarrativeMethodStoreException {
+		return listSpecDirs(commitHash, "apps");
 	}
 
-	protected File getAppsDir() {
-		return new File(gitLocalPath, "apps");
+	protected List<String> listTypeNamesUncached(String commitHash) throws NarrativeMethodStoreException {
+		return listSpecDirs(commitHash, "types");
 	}
 
-	protected File getTypesDir() {
-		return new File(gitLocalPath, "types");
+	/**
+	 * Lists names of sub-folders of given folder of spec-repo (from working tree or 
+	 * from git objects at given commit in case of in-process git reads).
+	 */
+	protected List<String> listSpecDirs(String commitHash, String path) 
+	        throws NarrativeMethodStoreException {
+	    List<String> ret = new ArrayList<String>();
+	    if (lockWorkTree(commitHash)) {
+	        try {
+	            File dir = new File(gitLocalPath, path);
+	            if (!dir.exists())
+	                return ret;
+	            for (File sub : dir.listFiles()) {
+	                if (sub.isDirectory())
+	                    ret.add(sub.getName());
+	            }
+	            return ret;
+	        } finally {
+	            workTreeLock.readLock().unlock();
+	        }
+	    }
+	    for (GitObjectReader.TreeEntry entry : getObjectReader().listDirectory(
+	            specsCommit(commitHash), path))
+	        if (entry.isDirectory())
+	            ret.add(entry.getName());
+	    return ret;
 	}
 
-	/*protected File getRepositoriesFile() {
-	    return new File(gitLocalPath, "repositories");
-	}*/
+	protected boolean isSpecDir(String commitHash, String path) 
+	        throws NarrativeMethodStoreException {
+	    if (lockWorkTree(commitHash)) {
+	        try {
+	            return new File(gitLocalPath, path).isDirectory();
+	        } finally {
+	            workTreeLock.readLock().unlock();
+	        }
+	    }
+	    return getObjectReader().isDirectory(specsCommit(commitHash), path);
+	}
 
-	protected List<MethodId> listMethodIdsUncached(NarrativeCategoriesIndex narCatIndex) {
-		List<MethodId> methodList = new ArrayList<MethodId>();
-		if (getMethodsDir().exists())
-		    for (File sub : getMethodsDir().listFiles()) {
-		        if (sub.isDirectory())
-		            methodList.add(new MethodId(sub.getName()));
-		    }
-		methodList.addAll(narCatIndex.getDynamicRepoMethods());
-		return methodList;
+	protected boolean specFileExists(String commitHash, String path) {
+	    if (lockWorkTree(commitHash)) {
+	        try {
+	            return new File(gitLocalPath, path).exists();
+	        } finally {
+	            workTreeLock.readLock().unlock();
+	        }
+	    }
+	    try {
+	        return getObjectReader().exists(specsCommit(commitHash), path);
+	    } catch (NarrativeMethodStoreException ex) {
+	        return false;
+	    }
 	}
 
-	protected List<String> listAppIdsUncached() {
-		List <String> appList = new ArrayList<String>();
-		if (!getAppsDir().exists())
-			return appList;
-		for (File sub : getAppsDir().listFiles()) {
-			if (sub.isDirectory())
-				appList.add(sub.getName());
-		}
-		return appList;
+	/**
+	 * @return given commit of spec-repo or the head known to the service in case it's null
+	 * (the latter is used for checks not related to any snapshot).
+	 */
+	private String specsCommit(String commitHash) {
+	    return commitHash == null ? specsCommitHash : commitHash;
 	}
 
-	protected List<String> listTypeNamesUncached() {
-		List<String> ret = new ArrayList<String>();
-		if (!getTypesDir().exists())
-			return ret;
-		for (File sub : getTypesDir().listFiles()) {
-			if (sub.isDirectory())
-				ret.add(sub.getName());
-		}
-		return ret;
+	/**
+	 * Takes read lock of working tree in case files of given commit are read from it
+	 * (file mode, commit is null or working tree is at this commit), caller releases it.
+	 * @return false (and nothing is locked) in case files are read from git objects.
+	 */
+	protected boolean lockWorkTree(String commitHash) {
+	    if (objectReader != null)
+	        return false;
+	    workTreeLock.readLock().lock();
+	    if (commitHash == null || commitHash.equals(workTreeCommitHash))
+	        return true;
+	    workTreeLock.readLock().unlock();
+	    return false;
+	}
+
+	/**
+	 * @return reader of git objects used for files not read from working tree.
+	 */
+	protected GitObjectReader getObjectReader() {
+	    GitObjectReader reader = objectReader;
+	    if (reader != null)
+	        return reader;
+	    synchronized (historyReaderLock) {
+	        if (historyReader == null)
+	            historyReader = new GitObjectReader(new File(gitLocalPath, ".git"));
+	        return historyReader;
+	    }
 	}
 
-	public String getCommitInfo() throws NarrativeMethodStoreInitializationException {
-	    return GitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
+	public String getCommitInfo() {
+	    return snapshot.getCommit();
 	}
 	
 	public List<String> listMethodIds(boolean withErrors, String tag) {
-		checkForChanges();
 		List<String> ret = new ArrayList<String>();
-		for (Map.Entry<String, MethodBriefInfo> entry : narCatIndex.getMethods(tag).entrySet()) {
+		for (Map.Entry<String, MethodBriefInfo> entry : snapshot.getIndex().getMethods(tag).entrySet()) {
 			if (entry.getValue().getLoadingError() != null && !withErrors)
 				continue;
 			ret.add(entry.getKey());
@@ -378,9 +965,8 @@ public class LocalGitDB {
 	}
 
 	public List<String> listAppIds(boolean withErrors) {
-		checkForChanges();
 		List<String> ret = new ArrayList<String>();
-		for (Map.Entry<String, AppBriefInfo> entry : narCatIndex.getApps().entrySet()) {
+		for (Map.Entry<String, AppBriefInfo> entry : snapshot.getIndex().getApps().entrySet()) {
 			if (entry.getValue().getLoadingError() != null && !withErrors)
 				continue;
 			ret.add(entry.getKey());
@@ -394,11 +980,25 @@ public class LocalGitDB {
 	    return new String(baos.toByteArray(), Charset.forName("utf-8"));
 	}
 	
-	protected NarrativeMethodData loadMethodDataUncached(final MethodId methodId,
-	        NarrativeCategoriesIndex narCatIndex) throws NarrativeMethodStoreException {
+	private static Map<String, Object> readYamlMap(FilePointer fp) 
+	        throws NarrativeMethodStoreException, IOException {
+	    InputStream is = fp.openStream();
+	    try {
+	        return YamlUtils.getDocumentAsYamlMap(is);
+	    } finally {
+	        is.close();
+	    }
+	}
+	
+	/**
+	 * Loads data of method, spec-repo files are read at given commit (it's commit of
+	 * snapshot data is loaded for).
+	 */
+	protected NarrativeMethodData loadMethodDataUncached(String commitHash, 
+	        final MethodId methodId, NarrativeCategoriesIndex narCatIndex) 
+	                throws NarrativeMethodStoreException {
 		try {
 			// Fetch the resources needed
-			JsonNode spec = null;
 			Map<String,Object> display = null;
 			String serviceVersion = null;
 			RepoTag tag = null;
@@ -410,8 +1010,15 @@ public class LocalGitDB {
 			        throw new NarrativeMethodStoreException("Repository " + methodId.getRepoModuleName() + 
 			                " wasn't tagged with " + methodId.getTag() + " tag");
 			    serviceVersion = repo.getGitCommitHash();
-			    spec = mapper.readTree(asText(repo.getUINarrativeMethodSpec(methodId.getMethodId())));
-			    display = YamlUtils.getDocumentAsYamlMap(asText(repo.getUINarrativeMethodDisplay(methodId.getMethodId())));
+			    FilePointer specFile = repo.getUINarrativeMethodSpec(methodId.getMethodId());
+			    FilePointer displayFile = repo.getUINarrativeMethodDisplay(methodId.getMethodId());
+			    String parsedKey = getParsedMethodDataKey(methodId, repo, specFile, displayFile);
+			    if (parsedKey != null) {
+			        NarrativeMethodData ret = parsedMethodData.getIfPresent(parsedKey);
+			        if (ret != null)
+			            return ret;
+			    }
+			    display = readYamlMap(displayFile);
 			    tag = methodId.getTag();
 			    fl = new FileLookup() {
                     @Override
@@ -430,16 +1037,32 @@ public class LocalGitDB {
                     }
                 };
                 version = repo.getModuleVersion();
+                // Spec is parsed in one pass straight from stream of stored file
+                InputStream specIs = specFile.openStream();
+                NarrativeMethodData data;
+                try {
+                    data = new NarrativeMethodData(methodId.getExternalId(), specIs, display, 
+                            fl, methodId.getRepoModuleName(), serviceVersion, srvUrlTemplEval, 
+                            tag, version);
+                } finally {
+                    specIs.close();
+                }
+                if (parsedKey != null)
+                    parsedMethodData.put(parsedKey, data);
+                return data;
 			} else {
-			    spec = getResourceAsJson("methods/"+methodId+"/spec.json");
-			    display = getResourceAsYamlMap("methods/"+methodId+"/display.yaml");
-			    fl = createFileLookup(new File(getMethodsDir(), methodId.getMethodId()));
+			    InputStream specIs = openResource(commitHash, "methods/"+methodId+"/spec.json");
+			    try {
+			        display = getResourceAsYamlMap(commitHash, "methods/"+methodId+"/display.yaml");
+			        fl = createFileLookup(commitHash, "methods/" + methodId.getMethodId());
+			        // Initialize the actual data
+			        return new NarrativeMethodData(methodId.getExternalId(), specIs, display,
+			                fl, methodId.getRepoModuleName(), serviceVersion, srvUrlTemplEval, 
+			                tag, version);
+			    } finally {
+			        specIs.close();
+			    }
 			}
-
-			// Initialize the actual data
-			NarrativeMethodData data = new NarrativeMethodData(methodId.getExternalId(), spec, display,
-					fl, methodId.getRepoModuleName(), serviceVersion, srvUrlTemplEval, tag, version);
-			return data;
 		} catch (NarrativeMethodStoreException ex) {
 			throw ex;
 		} catch (Exception ex) {
@@ -450,33 +1073,51 @@ public class LocalGitDB {
 		}
 	}
 
-	protected FileLookup createFileLookup(final File dir) {
+	/**
+	 * Builds key identifying content parsed into data of dynamic method. File ids of 
+	 * stored spec and display are never reused for other content, so equal keys mean 
+	 * equal results of parsing. Returns null in case files have no ids (files aren't
+	 * stored in database) and data can't be memoized.
+	 */
+	private static String getParsedMethodDataKey(MethodId methodId, RepoProvider repo,
+	        FilePointer specFile, FilePointer displayFile) {
+	    if (specFile == null || specFile.getFileId() == null || 
+	            displayFile == null || displayFile.getFileId() == null)
+	        return null;
+	    return methodId.getRepoModuleName() + "/" + methodId.getMethodId() + "/" +
+	            repo.getGitCommitHash() + "/" + repo.getModuleVersion() + "/" + 
+	            methodId.getTag() + "/" + specFile.getFileId().getId() + "/" + 
+	            displayFile.getFileId().getId();
+	}
+
+	protected FileLookup createFileLookup(final String commitHash, final String dirPath) {
 		return new FileLookup() {
 			@Override
 			public String loadFileContent(String fileName) {
-				File f = new File(dir, fileName);
-				if (f.exists())
+				String path = dirPath + "/" + fileName;
+				if (specFileExists(commitHash, path))
 					try {
-						return TextUtils.text(f);
+						return getResource(commitHash, path);
 					} catch (IOException ignore) {}
 				return null;
 			}
 			@Override
 			public boolean fileExists(String fileName) {
-			    return new File(dir, fileName).exists();
+			    return specFileExists(commitHash, dirPath + "/" + fileName);
 			}
 		};
 	}
 
-	protected NarrativeAppData loadAppDataUncached(final String appId) throws NarrativeMethodStoreException {
+	protected NarrativeAppData loadAppDataUncached(String commitHash, final String appId) 
+	        throws NarrativeMethodStoreException {
 		try {
 			// Fetch the resources needed
-			JsonNode spec = getResourceAsJson("apps/"+appId+"/spec.json");
-			Map<String,Object> display = getResourceAsYamlMap("apps/"+appId+"/display.yaml");
+			JsonNode spec = getResourceAsJson(commitHash, "apps/"+appId+"/spec.json");
+			Map<String,Object> display = getResourceAsYamlMap(commitHash, "apps/"+appId+"/display.yaml");
 
 			// Initialize the actual data
 			NarrativeAppData data = new NarrativeAppData(appId, spec, display,
-					createFileLookup(new File(getAppsDir(), appId)));
+					createFileLookup(commitHash, "apps/" + appId));
 			return data;
 		} catch (NarrativeMethodStoreException ex) {
 			throw ex;
@@ -488,15 +1129,16 @@ public class LocalGitDB {
 		}
 	}
 
-	protected NarrativeTypeData loadTypeDataUncached(final String typeName) throws NarrativeMethodStoreException {
+	protected NarrativeTypeData loadTypeDataUncached(String commitHash, final String typeName) 
+	        throws NarrativeMethodStoreException {
 		try {
 			// Fetch the resources needed
-			JsonNode spec = getResourceAsJson("types/"+typeName+"/spec.json");
-			Map<String,Object> display = getResourceAsYamlMap("types/"+typeName+"/display.yaml");
+			JsonNode spec = getResourceAsJson(commitHash, "types/"+typeName+"/spec.json");
+			Map<String,Object> display = getResourceAsYamlMap(commitHash, "types/"+typeName+"/display.yaml");
 
 			// Initialize the actual data
 			NarrativeTypeData data = new NarrativeTypeData(typeName, spec, display,
-					createFileLookup(new File(getTypesDir(), typeName)));
+					createFileLookup(commitHash, "types/" + typeName));
 			return data;
 		} catch (NarrativeMethodStoreException ex) {
 			throw ex;
@@ -509,12 +1151,12 @@ public class LocalGitDB {
 
 	public MethodBriefInfo getMethodBriefInfo(String methodId, String tag)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
+		CatalogSnapshot snapshot = this.snapshot;
 		MethodId mId = new MethodId(methodId, notNull(tag));
-		MethodBriefInfo ret = narCatIndex.getAllMethods().get(mId);
+		MethodBriefInfo ret = snapshot.getIndex().getAllMethods().get(mId);
 		if (ret == null && mId.isDynamic()) {
 	        try {
-	            ret = methodDataCache.get(mId).getMethodBriefInfo();
+	            ret = snapshot.getMethodDataCache().get(mId).getMethodBriefInfo();
 	        } catch (ExecutionException e) {
 	            if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 	                throw (NarrativeMethodStoreException)e.getCause();
@@ -526,22 +1168,24 @@ public class LocalGitDB {
 
 	public AppBriefInfo getAppBriefInfo(String appId)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
-		return narCatIndex.getApps().get(appId);
+		return snapshot.getIndex().getApps().get(appId);
 	}
 
 	public TypeInfo getTypeInfo(String typeName)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
-		return narCatIndex.getTypes().get(typeName);
+		return snapshot.getIndex().getTypes().get(typeName);
 	}
 	
 	public MethodFullInfo getMethodFullInfo(String methodId, String tag)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
+	    return getMethodFullInfo(snapshot, methodId, tag);
+	}
+	
+	public MethodFullInfo getMethodFullInfo(CatalogSnapshot snapshot, String methodId, 
+	        String tag) throws NarrativeMethodStoreException {
         MethodId mId = new MethodId(methodId, notNull(tag));
 		try {
-			return methodDataCache.get(mId).getMethodFullInfo();
+			return snapshot.getMethodDataCache().get(mId).getMethodFullInfo();
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -551,9 +1195,13 @@ public class LocalGitDB {
 
 	public AppFullInfo getAppFullInfo(String appId)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
+	    return getAppFullInfo(snapshot, appId);
+	}
+	
+	public AppFullInfo getAppFullInfo(CatalogSnapshot snapshot, String appId)
+	        throws NarrativeMethodStoreException {
 		try {
-			return appFullInfoCache.get(appId);
+			return snapshot.getAppFullInfoCache().get(appId);
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -563,9 +1211,13 @@ public class LocalGitDB {
 
 	public MethodSpec getMethodSpec(String methodId, String tag)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
+	    return getMethodSpec(snapshot, methodId, tag);
+	}
+	
+	public MethodSpec getMethodSpec(CatalogSnapshot snapshot, String methodId, String tag)
+	        throws NarrativeMethodStoreException {
 		try {
-			return methodDataCache.get(new MethodId(methodId, notNull(tag))).getMethodSpec();
+			return snapshot.getMethodDataCache().get(new MethodId(methodId, notNull(tag))).getMethodSpec();
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -575,9 +1227,13 @@ public class LocalGitDB {
 
 	public AppSpec getAppSpec(String appId)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
+	    return getAppSpec(snapshot, appId);
+	}
+	
+	public AppSpec getAppSpec(CatalogSnapshot snapshot, String appId)
+	        throws NarrativeMethodStoreException {
 		try {
-			return appSpecCache.get(appId);
+			return snapshot.getAppSpecCache().get(appId);
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -585,24 +1241,82 @@ public class LocalGitDB {
 		}
 	}
 
+	/**
+	 * Returns full infos of several methods in the same order as ids, all methods
+	 * missing in cache are loaded together (see runDataLoadTasks).
+	 */
+	public List<MethodFullInfo> getMethodFullInfos(CatalogSnapshot snapshot, 
+	        List<String> methodIds, String tag) throws NarrativeMethodStoreException {
+	    List<MethodFullInfo> ret = new ArrayList<MethodFullInfo>();
+	    for (NarrativeMethodData data : getMethodData(snapshot, methodIds, tag))
+	        ret.add(data.getMethodFullInfo());
+	    return ret;
+	}
+
+	public List<MethodSpec> getMethodSpecs(CatalogSnapshot snapshot, 
+	        List<String> methodIds, String tag) throws NarrativeMethodStoreException {
+	    List<MethodSpec> ret = new ArrayList<MethodSpec>();
+	    for (NarrativeMethodData data : getMethodData(snapshot, methodIds, tag))
+	        ret.add(data.getMethodSpec());
+	    return ret;
+	}
+	
+	private List<NarrativeMethodData> getMethodData(CatalogSnapshot snapshot, 
+	        List<String> methodIds, String tag) throws NarrativeMethodStoreException {
+	    List<MethodId> mIds = new ArrayList<MethodId>();
+	    for (String methodId : methodIds)
+	        mIds.add(new MethodId(methodId, notNull(tag)));
+	    Map<MethodId, NarrativeMethodData> loaded;
+	    try {
+	        loaded = snapshot.getMethodDataCache().getAll(mIds);
+	    } catch (ExecutionException e) {
+	        if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
+	            throw (NarrativeMethodStoreException)e.getCause();
+	        throw new NarrativeMethodStoreException("Error loading full info for methods " + mIds + " (" + e.getMessage() + ")", e);
+	    }
+	    List<NarrativeMethodData> ret = new ArrayList<NarrativeMethodData>();
+	    for (MethodId mId : mIds)
+	        ret.add(loaded.get(mId));
+	    return ret;
+	}
+
+	public List<AppFullInfo> getAppFullInfos(CatalogSnapshot snapshot, List<String> appIds)
+	        throws NarrativeMethodStoreException {
+	    return getAll(snapshot.getAppFullInfoCache(), appIds);
+	}
+
+	public List<AppSpec> getAppSpecs(CatalogSnapshot snapshot, List<String> appIds)
+	        throws NarrativeMethodStoreException {
+	    return getAll(snapshot.getAppSpecCache(), appIds);
+	}
+	
+	private static <T> List<T> getAll(LoadingCache<String, T> cache, List<String> appIds) 
+	        throws NarrativeMethodStoreException {
+	    Map<String, T> loaded;
+	    try {
+	        loaded = cache.getAll(appIds);
+	    } catch (ExecutionException e) {
+	        if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
+	            throw (NarrativeMethodStoreException)e.getCause();
+	        throw new NarrativeMethodStoreException("Error loading full info for apps " + appIds + " (" + e.getMessage() + ")", e);
+	    }
+	    List<T> ret = new ArrayList<T>();
+	    for (String appId : appIds)
+	        ret.add(loaded.get(appId));
+	    return ret;
+	}
+
 	public List<String> listCategoryIds() throws NarrativeMethodStoreException {
-		checkForChanges();
-		return listCategoryIdsUncached();
+		return listCategoryIdsUncached(snapshot.getCommitHash());
 	}
 	
-	protected List<String> listCategoryIdsUncached() throws NarrativeMethodStoreException {
-		List <String> catList = new ArrayList<String>();
-		for (File sub : getCategoriesDir().listFiles()) {
-			if (sub.isDirectory())
-				catList.add(sub.getName());
-		}
-		return catList;
+	protected List<String> listCategoryIdsUncached(String commitHash) throws NarrativeMethodStoreException {
+		return listSpecDirs(commitHash, "categories");
 	}
 	
 	
 	public NarrativeCategoriesIndex getCategoriesIndex() {
-		checkForChanges();
-		return narCatIndex;
+		return snapshot.getIndex();
 	}
 	
 	private File getTempDir() {
@@ -610,108 +1324,292 @@ public class LocalGitDB {
 	}
 	
 	/**
-	 * Reloads from files the entire categories index
+	 * Reloads from files (at given commit of spec-repo) the entire categories index, 
+	 * the result isn't visible to readers until it's published as part of new snapshot.
 	 */
-	protected synchronized void loadCategoriesIndex() throws NarrativeMethodStoreException {
+	protected NarrativeCategoriesIndex loadCategoriesIndex(final String commitHash) 
+	        throws NarrativeMethodStoreException {
 	    Set<MethodId> dynamicRepoMethods = new TreeSet<MethodId>();
 	    Map<String, Exception> dynamicRepoModuleNameToLoadingError = new TreeMap<String, Exception>();
         if (dynamicRepos != null) {
-            for (String repoMN : dynamicRepos.listRepoModuleNames(false, null)) {
-                for (RepoTag tag : RepoTag.values()) {
-                    try {
-                        RepoProvider repo = dynamicRepos.getRepoDetails(repoMN, tag);
-                        if (repo == null)
-                            continue;
-                        for (String methodId : repo.listUINarrativeMethodIDs()) {
-                            dynamicRepoMethods.add(new MethodId(repoMN, methodId, tag));
-                        }
-                    } catch (Exception ex) {
-                        if (tag.equals(RepoTag.dev))
-                            dynamicRepoModuleNameToLoadingError.put(repoMN, ex);
+            List<Callable<RepoMethodIds>> tasks = new ArrayList<Callable<RepoMethodIds>>();
+            for (final String repoMN : dynamicRepos.listRepoModuleNames(false, null)) {
+                tasks.add(new Callable<RepoMethodIds>() {
+                    @Override
+                    public RepoMethodIds call() {
+                        return loadRepoMethodIds(repoMN);
                     }
-                }
+                });
+            }
+            for (RepoMethodIds repoMethods : runIndexBuildTasks(tasks)) {
+                dynamicRepoMethods.addAll(repoMethods.methodIds);
+                if (repoMethods.error != null)
+                    dynamicRepoModuleNameToLoadingError.put(repoMethods.repoModuleName, 
+                            repoMethods.error);
             }
         }
 
-        NarrativeCategoriesIndex narCatIndex = new NarrativeCategoriesIndex(defaultTagForGetters);  // create a new index
+        final NarrativeCategoriesIndex narCatIndex = new NarrativeCategoriesIndex(defaultTagForGetters);  // create a new index
         narCatIndex.updateAllDynamicRepoMethods(dynamicRepoMethods, dynamicRepoModuleNameToLoadingError);
-		try {
-			List<String> catIds = listCategoryIdsUncached(); // iterate over each category
-			for(String catId : catIds) {
-				JsonNode spec = getResourceAsJson("categories/"+catId+"/spec.json");
-				//Map<String,Object> display = getResourceAsYamlMap("categories/"+catId+"/display.yaml");
-				Map<String,Object> display = null;
-				narCatIndex.addOrUpdateCategory(catId, spec, display);
-			}
-			
-			List<MethodId> methIds = listMethodIdsUncached(narCatIndex); // iterate over each category
-			for(MethodId mId : methIds) {
-				// TODO: check cache for data instead of loading it all directly; Roman: I doubt it's a good 
-				// idea to check cache first cause narrative engine more likely loads list of all categories 
-				// before any full infos and specs.
-				MethodBriefInfo mbi;
-				try {
-					NarrativeMethodData data = loadMethodDataUncached(mId, narCatIndex);
-					mbi = data.getMethodBriefInfo();
-				} catch (NarrativeMethodStoreException ex) {
-					mbi = ex.getErrorMethod();
-				}
-				narCatIndex.addOrUpdateMethod(mId, mbi);
-			}
+        // Entries are parsed by index build tasks (in parallel if it's configured) but
+        // added into index in order of listing so that result is the same in any mode.
+        List<String> catIds = listCategoryIdsUncached(commitHash); // iterate over each category
+        List<Callable<JsonNode>> catTasks = new ArrayList<Callable<JsonNode>>();
+        for (final String catId : catIds) {
+            catTasks.add(new Callable<JsonNode>() {
+                @Override
+                public JsonNode call() throws Exception {
+                    return getResourceAsJson(commitHash, "categories/"+catId+"/spec.json");
+                }
+            });
+        }
+        List<JsonNode> catSpecs = runIndexBuildTasks(catTasks);
+        for (int i = 0; i < catIds.size(); i++) {
+            //Map<String,Object> display = getResourceAsYamlMap("categories/"+catId+"/display.yaml");
+            Map<String,Object> display = null;
+            narCatIndex.addOrUpdateCategory(catIds.get(i), catSpecs.get(i), display);
+        }
 
-			List<String> appIds = listAppIdsUncached(); // iterate over each category
-			for(String appId : appIds) {
-				AppBriefInfo abi;
-				try {
-					NarrativeAppData data = loadAppDataUncached(appId);
-					abi = data.getAppBriefInfo();
-				} catch (NarrativeMethodStoreException ex) {
-					abi = ex.getErrorApp();
-				}
-				narCatIndex.addOrUpdateApp(appId, abi);
-			}
+        List<MethodId> methIds = listMethodIdsUncached(commitHash, narCatIndex); // iterate over each category
+        List<Callable<MethodBriefInfo>> methodTasks = new ArrayList<Callable<MethodBriefInfo>>();
+        for (final MethodId mId : methIds) {
+            // TODO: check cache for data instead of loading it all directly; Roman: I doubt it's a good 
+            // idea to check cache first cause narrative engine more likely loads list of all categories 
+            // before any full infos and specs.
+            methodTasks.add(new Callable<MethodBriefInfo>() {
+                @Override
+                public MethodBriefInfo call() {
+                    return loadMethodBriefInfo(commitHash, mId, narCatIndex);
+                }
+            });
+        }
+        List<MethodBriefInfo> methodInfos = runIndexBuildTasks(methodTasks);
+        for (int i = 0; i < methIds.size(); i++)
+            narCatIndex.addOrUpdateMethod(methIds.get(i), methodInfos.get(i));
 
-			List<String> typeNames = listTypeNamesUncached(); // iterate over each category
-			for(String typeName : typeNames) {
-				TypeInfo ti;
-				try {
-					NarrativeTypeData data = loadTypeDataUncached(typeName);
-					ti = data.getTypeInfo();
-				} catch (NarrativeMethodStoreException ex) {
-					ti = ex.getErrorType();
-				}
-				narCatIndex.addOrUpdateType(typeName, ti);
-			}
-			this.narCatIndex = narCatIndex;
-		} catch (IOException e) {
-			throw new NarrativeMethodStoreException("Cannot load category index : "+e.getMessage(),e);
-		}
-		
-		return;
+        List<String> appIds = listAppIdsUncached(commitHash); // iterate over each category
+        List<Callable<AppBriefInfo>> appTasks = new ArrayList<Callable<AppBriefInfo>>();
+        for (final String appId : appIds) {
+            appTasks.add(new Callable<AppBriefInfo>() {
+                @Override
+                public AppBriefInfo call() {
+                    return loadAppBriefInfo(commitHash, appId);
+                }
+            });
+        }
+        List<AppBriefInfo> appInfos = runIndexBuildTasks(appTasks);
+        for (int i = 0; i < appIds.size(); i++)
+            narCatIndex.addOrUpdateApp(appIds.get(i), appInfos.get(i));
+
+        List<String> typeNames = listTypeNamesUncached(commitHash); // iterate over each category
+        List<Callable<TypeInfo>> typeTasks = new ArrayList<Callable<TypeInfo>>();
+        for (final String typeName : typeNames) {
+            typeTasks.add(new Callable<TypeInfo>() {
+                @Override
+                public TypeInfo call() {
+                    return loadTypeInfo(commitHash, typeName);
+                }
+            });
+        }
+        List<TypeInfo> typeInfos = runIndexBuildTasks(typeTasks);
+        for (int i = 0; i < typeNames.size(); i++)
+            narCatIndex.addOrUpdateType(typeNames.get(i), typeInfos.get(i));
+        return narCatIndex;
+	}
+	
+	/**
+	 * Runs tasks of index building using up to indexBuildThreads threads and returns 
+	 * results in the same order as tasks were given.
+	 */
+	protected <T> List<T> runIndexBuildTasks(List<Callable<T>> tasks) 
+	        throws NarrativeMethodStoreException {
+	    List<T> ret = new ArrayList<T>();
+	    int threads = Math.min(options.getIndexBuildThreads(), tasks.size());
+	    try {
+	        if (threads <= 1) {
+	            for (Callable<T> task : tasks)
+	                ret.add(task.call());
+	            return ret;
+	        }
+	        ExecutorService pool = Executors.newFixedThreadPool(threads);
+	        try {
+	            return runTasks(pool, tasks);
+	        } finally {
+	            pool.shutdownNow();
+	        }
+	    } catch (NarrativeMethodStoreException e) {
+	        throw e;
+	    } catch (Exception e) {
+	        throw new NarrativeMethodStoreException("Cannot load category index : "+e.getMessage(),e);
+	    }
+	}
+	
+	/**
+	 * Runs loading of data of several methods or apps on shared pool bounded by
+	 * data-load-threads option. Results are returned in order of tasks, the first 
+	 * failure is rethrown.
+	 */
+	protected <T> List<T> runDataLoadTasks(List<Callable<T>> tasks) throws Exception {
+	    if (tasks.size() <= 1 || options.getDataLoadThreads() <= 1) {
+	        List<T> ret = new ArrayList<T>();
+	        for (Callable<T> task : tasks)
+	            ret.add(task.call());
+	        return ret;
+	    }
+	    ExecutorService pool;
+	    synchronized (dataLoadPoolLock) {
+	        if (dataLoadPool == null)
+	            dataLoadPool = Executors.newFixedThreadPool(options.getDataLoadThreads(),
+	                    new ThreadFactoryBuilder().setDaemon(true)
+	                    .setNameFormat("NarrativeMethodStore-data-load-%d").build());
+	        pool = dataLoadPool;
+	    }
+	    return runTasks(pool, tasks);
+	}
+	
+	private static <T> List<T> runTasks(ExecutorService pool, List<Callable<T>> tasks) 
+	        throws Exception {
+	    List<Future<T>> futures = new ArrayList<Future<T>>();
+	    for (Callable<T> task : tasks)
+	        futures.add(pool.submit(task));
+	    try {
+	        List<T> ret = new ArrayList<T>();
+	        for (Future<T> future : futures) {
+	            try {
+	                ret.add(future.get());
+	            } catch (ExecutionException e) {
+	                if (e.getCause() instanceof Exception)
+	                    throw (Exception)e.getCause();
+	                throw e;
+	            }
+	        }
+	        return ret;
+	    } finally {
+	        for (Future<T> future : futures)
+	            future.cancel(true);
+	    }
+	}
+	
+	private static class RepoMethodIds {
+	    final String repoModuleName;
+	    final List<MethodId> methodIds = new ArrayList<MethodId>();
+	    Exception error = null;
+	    
+	    RepoMethodIds(String repoModuleName) {
+	        this.repoModuleName = repoModuleName;
+	    }
+	}
+	
+	private RepoMethodIds loadRepoMethodIds(String repoMN) {
+	    RepoMethodIds ret = new RepoMethodIds(repoMN);
+	    for (RepoTag tag : RepoTag.values()) {
+	        try {
+	            RepoProvider repo = dynamicRepos.getRepoDetails(repoMN, tag);
+	            if (repo == null)
+	                continue;
+	            for (String methodId : repo.listUINarrativeMethodIDs()) {
+	                ret.methodIds.add(new MethodId(repoMN, methodId, tag));
+	            }
+	        } catch (Exception ex) {
+	            if (tag.equals(RepoTag.dev))
+	                ret.error = ex;
+	        }
+	    }
+	    return ret;
+	}
+
+	/**
+	 * Loads brief info of method for index, in case of parsing error brief info 
+	 * describing this error is returned.
+	 */
+	protected MethodBriefInfo loadMethodBriefInfo(String commitHash, MethodId mId, 
+	        NarrativeCategoriesIndex narCatIndex) {
+	    try {
+	        return loadMethodDataUncached(commitHash, mId, narCatIndex).getMethodBriefInfo();
+	    } catch (NarrativeMethodStoreException ex) {
+	        return ex.getErrorMethod();
+	    }
+	}
+
+	protected AppBriefInfo loadAppBriefInfo(String commitHash, String appId) {
+	    try {
+	        return loadAppDataUncached(commitHash, appId).getAppBriefInfo();
+	    } catch (NarrativeMethodStoreException ex) {
+	        return ex.getErrorApp();
+	    }
+	}
+
+	protected TypeInfo loadTypeInfo(String commitHash, String typeName) {
+	    try {
+	        return loadTypeDataUncached(commitHash, typeName).getTypeInfo();
+	    } catch (NarrativeMethodStoreException ex) {
+	        return ex.getErrorType();
+	    }
 	}
 
     public String getFullMethodName(String repoModuleName, String shortMethodId) {
         return repoModuleName + "/" + shortMethodId;
     }
 	
-	protected JsonNode getResourceAsJson(String path) throws JsonProcessingException, IOException {
-		File f = new File(gitLocalPath, path);
-		return getAsJson(f);
+	protected JsonNode getResourceAsJson(String commitHash, String path) 
+	        throws JsonProcessingException, IOException {
+		InputStream is = openResource(commitHash, path);
+		try {
+			return mapper.readTree(is);
+		} finally {
+			is.close();
+		}
 	}
 	
-	protected String getResource(String path) throws IOException {
-		File f = new File(gitLocalPath, path);
-		return TextUtils.text(f);
+	protected String getResource(String commitHash, String path) throws IOException {
+		return TextUtils.text(openResource(commitHash, path));
 	}
 	
-	protected Map<String,Object> getResourceAsYamlMap(String path) throws IOException {
-		File f = new File(gitLocalPath, path);
-		String document = TextUtils.text(f);
-		return YamlUtils.getDocumentAsYamlMap(document);
+	/**
+	 * Opens file of spec-repo for reading (from working tree or from git objects at
+	 * given commit in case of in-process git reads or when working tree is at other
+	 * commit).
+	 */
+	protected InputStream openResource(String commitHash, String path) throws IOException {
+		if (lockWorkTree(commitHash)) {
+			try {
+				// File is read entirely so that working tree isn't changed in the middle
+				return new ByteArrayInputStream(readWorkTreeFile(path));
+			} finally {
+				workTreeLock.readLock().unlock();
+			}
+		}
+		commitHash = specsCommit(commitHash);
+		byte[] data;
+		try {
+			data = getObjectReader().readFile(commitHash, path);
+		} catch (NarrativeMethodStoreException ex) {
+			throw new IOException(ex.getMessage(), ex);
+		}
+		if (data == null)
+			throw new FileNotFoundException(path + " (not found in commit " + commitHash + ")");
+		return new ByteArrayInputStream(data);
+	}
+	
+	/**
+	 * Reads file of working tree, it's called under read lock of workTreeLock.
+	 */
+	protected byte[] readWorkTreeFile(String path) throws IOException {
+		return FileUtils.readFileToByteArray(new File(gitLocalPath, path));
+	}
+	
+	protected Map<String,Object> getResourceAsYamlMap(String commitHash, String path) 
+	        throws IOException {
+		InputStream is = openResource(commitHash, path);
+		try {
+			return YamlUtils.getDocumentAsYamlMap(is);
+		} finally {
+			is.close();
+		}
 	}
 
 	protected JsonNode getAsJson(File f) throws JsonProcessingException, IOException {
-		return mapper.readTree(TextUtils.text(f));
+		return mapper.readTree(f);
 	}
 	
 	private boolean bool(Long value) {
@@ -729,42 +1627,187 @@ public class LocalGitDB {
 	}
 
 	public long registerRepo(String userId, String url, String commitHash) throws NarrativeMethodStoreException {
+	    return registerRepo(userId, url, commitHash, new RegisterRepoJob(null, url, userId));
+	}
+	
+	/**
+	 * Starts registration of repository on background thread. Only global admins can
+	 * register repositories so other users are rejected before job is queued.
+	 * @return id of job which could be passed to getRegisterRepoJobStatus.
+	 */
+	public String registerRepoAsync(final String userId, final String url, 
+	        final String commitHash) throws NarrativeMethodStoreException {
+	    if (!dynamicRepos.isGlobalAdmin(userId))
+	        throw new NarrativeMethodStoreException("User " + userId + " is not global admin");
+	    final RegisterRepoJob job = new RegisterRepoJob(UUID.randomUUID().toString(), url, 
+	            userId);
+	    registerRepoJobs.put(job.getJobId(), job);
+	    try {
+	        getRegisterRepoPool().submit(new Runnable() {
+	            @Override
+	            public void run() {
+	                try {
+	                    registerRepo(userId, url, commitHash, job);
+	                } catch (Throwable ex) {
+	                    System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	                            "registering repository " + url + " (job " + job.getJobId() + "): " + 
+	                            ex.getMessage());
+	                }
+	            }
+	        });
+	    } catch (RejectedExecutionException ex) {
+	        registerRepoJobs.invalidate(job.getJobId());
+	        throw new NarrativeMethodStoreException("Too many repositories are waiting for " +
+	        		"registration (limit is " + REGISTER_REPO_QUEUE_SIZE + "), please try " +
+	        		"again later");
+	    }
+	    return job.getJobId();
+	}
+	
+	/**
+	 * Returns status of registration job, it's available only to user who started the
+	 * job and to global admins.
+	 */
+	public RegisterRepoJobStatus getRegisterRepoJobStatus(String userId, String jobId) 
+	        throws NarrativeMethodStoreException {
+	    RegisterRepoJob job = registerRepoJobs.getIfPresent(jobId);
+	    if (job == null)
+	        throw new NarrativeMethodStoreException("Registration job " + jobId + 
+	                " is not found");
+	    if (!job.getUserId().equals(userId) && !dynamicRepos.isGlobalAdmin(userId))
+	        throw new NarrativeMethodStoreException("User " + userId + " is not allowed " +
+	        		"to check registration job " + jobId);
+	    return job.getStatus();
+	}
+	
+	private synchronized ExecutorService getRegisterRepoPool() {
+	    if (registerRepoPool == null)
+	        registerRepoPool = new ThreadPoolExecutor(REGISTER_REPO_THREADS, 
+	                REGISTER_REPO_THREADS, 0L, TimeUnit.MILLISECONDS, 
+	                new ArrayBlockingQueue<Runnable>(REGISTER_REPO_QUEUE_SIZE),
+	                new ThreadFactoryBuilder().setDaemon(true)
+	                .setNameFormat("NarrativeMethodStore-register-repo-%d").build());
+	    return registerRepoPool;
+	}
+	
+	/**
+	 * Clones repository, validates its methods (in parallel on data loading pool), stores 
+	 * it in DB and updates catalog reporting progress into given job. In case module
+	 * was registered earlier it's kept in building state until new version is stored.
+	 */
+	private long registerRepo(String userId, String url, String commitHash, 
+	        RegisterRepoJob job) throws NarrativeMethodStoreException {
 	    RepoProvider pvd = null;
 	    try {
-	        pvd = new GitHubRepoProvider(new URL(url), commitHash, getTempDir());
-            String serviceVersion = pvd.getGitCommitHash();
-            StringBuilder errors = new StringBuilder();
-            for (String methodId : pvd.listUINarrativeMethodIDs()) {
-                try {
-                    JsonNode spec = mapper.readTree(asText(pvd.getUINarrativeMethodSpec(methodId)));
-                    Map<String, Object> display = YamlUtils.getDocumentAsYamlMap(asText(
-                            pvd.getUINarrativeMethodDisplay(methodId)));
-                    // Initialize the actual data
-                    new NarrativeMethodData(pvd.getModuleName() + "/" + methodId, 
-                            spec, display, createFileLookup(new File(getMethodsDir(), methodId)), 
-                            pvd.getModuleName(), serviceVersion, srvUrlTemplEval, RepoTag.dev, pvd.getModuleVersion());
-                } catch (Exception ex) {
-                    if (errors.length() > 0)
-                        errors.append("; ");
-                    errors.append("Error parsing method [" + methodId + "]: " + ex.getMessage());
-                }
-            }
-            if (errors.length() > 0)
-                throw new NarrativeMethodStoreException(errors.toString());
-	        dynamicRepos.registerRepo(userId, pvd);
-	        // TODO: Index invalidation is temp solution, we need to substitute it by small 
-	        // corrections related to this particular repo.
-	        hardRefresh();
-	        return dynamicRepos.getRepoLastVersion(pvd.getModuleName(), null);
+	        job.setStage(RegisterRepoJob.STAGE_CLONING, 0);
+	        pvd = new GitHubRepoProvider(new URL(url), commitHash, getTempDir(), 
+	                options.isShallowRepoClone());
+	        String moduleName = pvd.getModuleName();
+	        job.setModuleName(moduleName);
+	        synchronized (registeringRepos) {
+	            if (!registeringRepos.add(moduleName))
+	                throw new NarrativeMethodStoreException("Repository " + moduleName + 
+	                        " is already being registered");
+	        }
+	        RepoState prevState = null;
+	        try {
+	            // Module is kept in building state for the whole job (including validation)
+	            if (dynamicRepos.isRepoRegistered(moduleName, true)) {
+	                RepoState state = dynamicRepos.getRepoState(moduleName);
+	                dynamicRepos.setRepoState(userId, moduleName, RepoState.building);
+	                prevState = state;
+	            }
+	            validateRepoMethods(pvd, job);
+	            job.setStage(RegisterRepoJob.STAGE_SAVING, 0);
+	            dynamicRepos.registerRepo(userId, pvd);
+	            // Registered version is in ready state now
+	            prevState = null;
+	            refreshDynamicRepos();
+	            long ret = dynamicRepos.getRepoLastVersion(moduleName, null);
+	            job.complete(ret);
+	            return ret;
+	        } finally {
+	            if (prevState != null) {
+	                try {
+	                    dynamicRepos.setRepoState(userId, moduleName, prevState);
+	                } catch (Exception ex) {
+	                    System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+	                    		"error restoring state of repository " + moduleName + ": " + 
+	                    		ex.getMessage());
+	                }
+	            }
+	            synchronized (registeringRepos) {
+	                registeringRepos.remove(moduleName);
+	            }
+	        }
 	    } catch (MalformedURLException ex) {
-	        throw new NarrativeMethodStoreException("Error parsing repository url: " + 
-	                url + " (" + ex.getMessage() + ")", ex);
+	        NarrativeMethodStoreException ret = new NarrativeMethodStoreException(
+	                "Error parsing repository url: " + url + " (" + ex.getMessage() + ")", ex);
+	        job.fail(ret);
+	        throw ret;
+	    } catch (NarrativeMethodStoreException ex) {
+	        job.fail(ex);
+	        throw ex;
+	    } catch (RuntimeException ex) {
+	        job.fail(ex);
+	        throw ex;
 	    } finally {
 	        if (pvd != null)
 	            pvd.dispose();
 	    }
 	}
 	
+	private void validateRepoMethods(final RepoProvider pvd, final RegisterRepoJob job) 
+	        throws NarrativeMethodStoreException {
+	    final String serviceVersion = pvd.getGitCommitHash();
+	    List<String> methodIds = pvd.listUINarrativeMethodIDs();
+	    job.setStage(RegisterRepoJob.STAGE_VALIDATING, methodIds.size());
+	    List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+	    for (final String methodId : methodIds) {
+	        tasks.add(new Callable<String>() {
+	            @Override
+	            public String call() {
+	                try {
+	                    Map<String, Object> display = readYamlMap(
+	                            pvd.getUINarrativeMethodDisplay(methodId));
+	                    InputStream spec = pvd.getUINarrativeMethodSpec(methodId).openStream();
+	                    try {
+	                        // Initialize the actual data
+	                        new NarrativeMethodData(pvd.getModuleName() + "/" + methodId, 
+	                                spec, display, createFileLookup(null, "methods/" + methodId), 
+	                                pvd.getModuleName(), serviceVersion, srvUrlTemplEval, RepoTag.dev, pvd.getModuleVersion());
+	                    } finally {
+	                        spec.close();
+	                    }
+	                    return null;
+	                } catch (Exception ex) {
+	                    return "Error parsing method [" + methodId + "]: " + ex.getMessage();
+	                } finally {
+	                    job.incrementProgress();
+	                }
+	            }
+	        });
+	    }
+	    List<String> results;
+	    try {
+	        results = runDataLoadTasks(tasks);
+	    } catch (NarrativeMethodStoreException ex) {
+	        throw ex;
+	    } catch (Exception ex) {
+	        throw new NarrativeMethodStoreException(ex);
+	    }
+	    StringBuilder errors = new StringBuilder();
+	    for (String error : results) {
+	        if (error == null)
+	            continue;
+	        if (errors.length() > 0)
+	            errors.append("; ");
+	        errors.append(error);
+	    }
+	    if (errors.length() > 0)
+	        throw new NarrativeMethodStoreException(errors.toString());
+	}
+	
 	private void checkIfRepoDisabled(String moduleName, Long withDisabled) 
 	        throws NarrativeMethodStoreException {
 	    if (bool(withDisabled))
@@ -829,7 +1872,7 @@ public class LocalGitDB {
 	public void setRepoState(String userId, String moduleName, String repoState)
 	        throws NarrativeMethodStoreException {
 	    dynamicRepos.setRepoState(userId, moduleName, RepoState.valueOf(repoState));
-	    hardRefresh();
+	    refreshDynamicRepos();
 	}
 	
 	public String getRepoState(String moduleName) throws NarrativeMethodStoreException {
@@ -868,6 +1911,6 @@ public class LocalGitDB {
     public void pushRepoToTag(String repoModuleName, String tagName, String userId) 
             throws NarrativeMethodStoreException {
         dynamicRepos.pushRepoToTag(repoModuleName, RepoTag.valueOf(tagName), userId);
-        hardRefresh();
+        refreshDynamicRepos();
     }
 }
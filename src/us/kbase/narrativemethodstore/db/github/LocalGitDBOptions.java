@@ -0,0 +1,150 @@
+package us.kbase.narrativemethodstore.db.github;
+
+/**
+ * Optional tuning parameters of LocalGitDB. Defaults keep the behavior of
+ * LocalGitDB created without options.
+ */
+public class LocalGitDBOptions {
+    private int indexBuildThreads = 1;
+    private CatalogSnapshotFile snapshotFile = null;
+    private boolean snapshotWithData = false;
+    private boolean reuseLocalClone = false;
+    private long responseCacheSize = 0;
+    private int retainedSnapshots = 1;
+    private int dataLoadThreads = 1;
+    private int dynamicRepoPollSeconds = 0;
+    private boolean shallowRepoClone = false;
+    private boolean inProcessGitReads = false;
+
+    /**
+     * @return number of threads used for parsing specs while categories index
+     * is being (re)built, 1 means all parsing is done in calling thread.
+     */
+    public int getIndexBuildThreads() {
+        return indexBuildThreads;
+    }
+
+    public LocalGitDBOptions withIndexBuildThreads(int indexBuildThreads) {
+        this.indexBuildThreads = indexBuildThreads < 1 ? 1 : indexBuildThreads;
+        return this;
+    }
+
+    /**
+     * @return file where catalog snapshot is stored for quick restart of service or null
+     * in case this feature is turned off.
+     */
+    public CatalogSnapshotFile getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public LocalGitDBOptions withSnapshotFile(CatalogSnapshotFile snapshotFile) {
+        this.snapshotFile = snapshotFile;
+        return this;
+    }
+
+    /**
+     * @return true in case parsed method and app data cached in memory should be stored
+     * in snapshot file on shutdown (in addition to categories index).
+     */
+    public boolean isSnapshotWithData() {
+        return snapshotWithData;
+    }
+
+    public LocalGitDBOptions withSnapshotWithData(boolean snapshotWithData) {
+        this.snapshotWithData = snapshotWithData;
+        return this;
+    }
+
+    /**
+     * @return true in case existing clone of spec-repo in local folder should be updated
+     * (fetch and hard reset to configured branch) on startup instead of recloning it.
+     */
+    public boolean isReuseLocalClone() {
+        return reuseLocalClone;
+    }
+
+    public LocalGitDBOptions withReuseLocalClone(boolean reuseLocalClone) {
+        this.reuseLocalClone = reuseLocalClone;
+        return this;
+    }
+
+    /**
+     * @return maximum total length (in characters) of pre-serialized JSON responses of 
+     * listing methods kept for current catalog snapshot, 0 means no caching.
+     */
+    public long getResponseCacheSize() {
+        return responseCacheSize;
+    }
+
+    public LocalGitDBOptions withResponseCacheSize(long responseCacheSize) {
+        this.responseCacheSize = responseCacheSize < 0 ? 0 : responseCacheSize;
+        return this;
+    }
+
+    /**
+     * @return number of last published catalog snapshots kept in memory so that clients
+     * could page through them by catalog version (including current one).
+     */
+    public int getRetainedSnapshots() {
+        return retainedSnapshots;
+    }
+
+    public LocalGitDBOptions withRetainedSnapshots(int retainedSnapshots) {
+        this.retainedSnapshots = retainedSnapshots < 1 ? 1 : retainedSnapshots;
+        return this;
+    }
+
+    /**
+     * @return maximum number of threads loading data of methods and apps missing in
+     * caches when many of them are requested at once, 1 means loading in calling thread.
+     */
+    public int getDataLoadThreads() {
+        return dataLoadThreads;
+    }
+
+    public LocalGitDBOptions withDataLoadThreads(int dataLoadThreads) {
+        this.dataLoadThreads = dataLoadThreads < 1 ? 1 : dataLoadThreads;
+        return this;
+    }
+
+    /**
+     * @return interval (in seconds) of checking dynamic repositories for changes made by
+     * other instances of service sharing the same DB, 0 means no checking.
+     */
+    public int getDynamicRepoPollSeconds() {
+        return dynamicRepoPollSeconds;
+    }
+
+    public LocalGitDBOptions withDynamicRepoPollSeconds(int dynamicRepoPollSeconds) {
+        this.dynamicRepoPollSeconds = dynamicRepoPollSeconds < 0 ? 0 : dynamicRepoPollSeconds;
+        return this;
+    }
+
+    /**
+     * @return true in case repositories being registered should be fetched at requested
+     * commit only (without history, working tree is complete) instead of full clone; full
+     * clone is made in case git server doesn't support it.
+     */
+    public boolean isShallowRepoClone() {
+        return shallowRepoClone;
+    }
+
+    public LocalGitDBOptions withShallowRepoClone(boolean shallowRepoClone) {
+        this.shallowRepoClone = shallowRepoClone;
+        return this;
+    }
+
+    /**
+     * @return true in case spec-repo is cloned without working tree and its files, commit
+     * info and changes between commits are read directly from git objects in-process
+     * (git is only run for clone and fetch).
+     */
+    public boolean isInProcessGitReads() {
+        return inProcessGitReads;
+    }
+
+    public LocalGitDBOptions withInProcessGitReads(boolean inProcessGitReads) {
+        this.inProcessGitReads = inProcessGitReads;
+        return this;
+    }
+}
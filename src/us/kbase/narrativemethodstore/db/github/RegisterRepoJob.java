@@ -0,0 +1,83 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import us.kbase.narrativemethodstore.RegisterRepoJobStatus;
+
+/**
+ * Progress of registration of dynamic repository. It's updated by the thread doing
+ * registration and read by callers checking status, so all access is synchronized.
+ */
+public class RegisterRepoJob {
+    public static final String STAGE_QUEUED = "queued";
+    public static final String STAGE_CLONING = "cloning";
+    public static final String STAGE_VALIDATING = "validating";
+    public static final String STAGE_SAVING = "saving";
+    public static final String STAGE_COMPLETE = "complete";
+    public static final String STAGE_ERROR = "error";
+
+    private final String jobId;
+    private final String gitUrl;
+    private final String userId;
+    private final long startTime;
+    private String moduleName = null;
+    private String stage = STAGE_QUEUED;
+    private long progress = 0;
+    private long total = 0;
+    private String error = null;
+    private Long version = null;
+    private Long finishTime = null;
+
+    public RegisterRepoJob(String jobId, String gitUrl, String userId) {
+        this.jobId = jobId;
+        this.gitUrl = gitUrl;
+        this.userId = userId;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * @return user who started registration.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    public synchronized void setModuleName(String moduleName) {
+        this.moduleName = moduleName;
+    }
+
+    public synchronized void setStage(String stage, long total) {
+        this.stage = stage;
+        this.progress = 0;
+        this.total = total;
+    }
+
+    public synchronized void incrementProgress() {
+        progress++;
+    }
+
+    public synchronized void complete(long version) {
+        this.stage = STAGE_COMPLETE;
+        this.version = version;
+        this.finishTime = System.currentTimeMillis();
+    }
+
+    public synchronized void fail(Throwable ex) {
+        this.stage = STAGE_ERROR;
+        this.error = ex.getMessage() == null ? ex.getClass().getName() : ex.getMessage();
+        this.finishTime = System.currentTimeMillis();
+    }
+
+    public synchronized boolean isFinished() {
+        return finishTime != null;
+    }
+
+    public synchronized RegisterRepoJobStatus getStatus() {
+        return new RegisterRepoJobStatus().withJobId(jobId).withGitUrl(gitUrl)
+                .withModuleName(moduleName).withStage(stage).withProgress(progress)
+                .withTotal(total).withError(error).withVersion(version)
+                .withStartTime(startTime).withFinishTime(finishTime);
+    }
+}
@@ -1,6 +1,12 @@
 package us.kbase.narrativemethodstore.db.github;
 
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.Map;
 
 import org.yaml.snakeyaml.Yaml;
@@ -11,20 +17,71 @@ import us.kbase.common.service.UObject;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 
 public class YamlUtils {
-    private static final Yaml yaml = new Yaml();
+    private static final Charset UTF8 = Charset.forName("utf-8");
+    // Yaml instances aren't thread-safe and specs are parsed concurrently (cache loaders,
+    // parallel index build), so each thread gets its own parser.
+    private static final ThreadLocal<Yaml> yaml = new ThreadLocal<Yaml>() {
+        @Override
+        protected Yaml initialValue() {
+            return new Yaml();
+        }
+    };
 
     public static Map<String,Object> getDocumentAsYamlMap(String document) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < document.length(); i++) {
-            char ch = document.charAt(i);
-            if ((ch < 32 && ch != 10 && ch != 13) || ch >= 127)
-                ch = ' ';
-            sb.append(ch);
+        return asMap(load(document));
+    }
+
+    /**
+     * Parses document read from stream (as UTF-8), characters are sanitized on the fly
+     * so that document is never copied as a whole. Stream isn't closed.
+     */
+    public static Map<String,Object> getDocumentAsYamlMap(InputStream is) throws IOException {
+        return asMap(load(new SanitizingReader(new InputStreamReader(is, UTF8))));
+    }
+
+    /**
+     * Parses sanitized document with parser of current thread, result may be not a map
+     * (it's up to caller to check).
+     */
+    public static Object load(String document) {
+        return load(new SanitizingReader(new StringReader(document)));
+    }
+
+    private static Object load(Reader sanitized) {
+        return yaml.get().load(sanitized);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String,Object> asMap(Object data) {
+        return (Map<String, Object>)data;
+    }
+
+    /**
+     * Replaces control characters (except line breaks) and non-ASCII characters with 
+     * spaces while text is being read.
+     */
+    public static class SanitizingReader extends FilterReader {
+        public SanitizingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int ch = super.read();
+            return ch < 0 ? ch : sanitize((char)ch);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int ret = super.read(cbuf, off, len);
+            for (int i = off; i < off + ret; i++)
+                cbuf[i] = sanitize(cbuf[i]);
+            return ret;
+        }
+
+        private static char sanitize(char ch) {
+            return (ch < 32 && ch != 10 && ch != 13) || ch >= 127 ? ' ' : ch;
         }
-        document = sb.toString();
-        @SuppressWarnings("unchecked")
-        Map<String,Object> data = (Map<String, Object>) yaml.load(document);
-        return data;
     }
 
     public static <T> T getPropertyNotNull(String source, Map<String,Object> map, String key, 
@@ -0,0 +1,127 @@
+package us.kbase.narrativemethodstore.db.github.test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.db.github.GitHubRepoProvider;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
+
+public class GitHubRepoProviderTest {
+    private static final String repoModuleName = "GenomeFeatureComparator";
+    private static final String methodId = "compare_genome_features";
+
+    private static File workDir;
+    private static URL bareRepoUrl;
+    private static String commit1;
+    private static String commit2;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        workDir = us.kbase.narrativemethodstore.util.FileUtils.generateTempDir(
+                new File("test/temp"), "github_provider_", ".temp");
+        File srcDir = new File(workDir, "src");
+        FileUtils.copyDirectory(new File("test/data/test_repo_1"), srcDir);
+        git("init", srcDir);
+        git("add -A", srcDir);
+        git("-c user.name=test -c user.email=test@test commit -m first", srcDir);
+        commit1 = GitUtils.getCommitHash(srcDir, null);
+        FileUtils.writeStringToFile(new File(srcDir, "README.md"), "Second version");
+        git("-c user.name=test -c user.email=test@test commit -a -m second", srcDir);
+        commit2 = GitUtils.getCommitHash(srcDir, null);
+        File bareDir = new File(workDir, "bare.git");
+        git("clone --bare " + srcDir.getAbsolutePath() + " " + bareDir.getAbsolutePath(), workDir);
+        // URL with host is kept by java as is, git needs "file://" for shallow fetch
+        bareRepoUrl = new URL("file://localhost" + bareDir.getAbsolutePath());
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        if (workDir != null)
+            FileUtils.deleteDirectory(workDir);
+    }
+
+    @Test
+    public void testShallowClone() throws Exception {
+        GitHubRepoProvider pvd = new GitHubRepoProvider(bareRepoUrl, commit1, workDir, true);
+        try {
+            Assert.assertEquals(commit1, pvd.getGitCommitHash());
+            Assert.assertEquals(repoModuleName, pvd.getModuleName());
+            Assert.assertEquals("[" + methodId + "]", pvd.listUINarrativeMethodIDs().toString());
+            Assert.assertNotNull(pvd.getUINarrativeMethodSpec(methodId));
+            Assert.assertEquals(1, pvd.listUIWidgetIds().size());
+            File rootDir = pvd.getReadmeFile().getFile().getParentFile();
+            Assert.assertTrue(new File(rootDir, "Dockerfile").exists());
+            Assert.assertTrue(new File(rootDir, "service").exists());
+            Assert.assertEquals("1", git("rev-list --count HEAD", rootDir).trim());
+            // Whole working tree is checked out so that stored data is the same as for full clone
+            GitHubRepoProvider fullPvd = new GitHubRepoProvider(bareRepoUrl, commit1, workDir);
+            try {
+                File fullRootDir = fullPvd.getReadmeFile().getFile().getParentFile();
+                Map<String, String> files = listFiles(rootDir);
+                Assert.assertEquals(listFiles(fullRootDir), files);
+                Assert.assertTrue(files.containsKey("service/Makefile"));
+                Assert.assertNull(pvd.getRepoZip());
+                Assert.assertNull(fullPvd.getRepoZip());
+                Assert.assertEquals(FileUtils.readFileToString(fullPvd.getUINarrativeMethodSpec(
+                        methodId).getFile()), FileUtils.readFileToString(
+                                pvd.getUINarrativeMethodSpec(methodId).getFile()));
+            } finally {
+                fullPvd.dispose();
+            }
+        } finally {
+            pvd.dispose();
+        }
+        pvd = new GitHubRepoProvider(bareRepoUrl, null, workDir, true);
+        try {
+            Assert.assertEquals(commit2, pvd.getGitCommitHash());
+        } finally {
+            pvd.dispose();
+        }
+    }
+
+    @Test
+    public void testFullClone() throws Exception {
+        GitHubRepoProvider pvd = new GitHubRepoProvider(bareRepoUrl, commit1, workDir);
+        try {
+            Assert.assertEquals(commit1, pvd.getGitCommitHash());
+            File rootDir = pvd.getReadmeFile().getFile().getParentFile();
+            Assert.assertTrue(new File(rootDir, "Dockerfile").exists());
+            Assert.assertEquals("2", git("rev-list --count " + commit2, rootDir).trim());
+        } finally {
+            pvd.dispose();
+        }
+    }
+
+    private static Map<String, String> listFiles(File rootDir) throws Exception {
+        Map<String, String> ret = new TreeMap<String, String>();
+        listFiles(rootDir, "", ret);
+        return ret;
+    }
+
+    private static void listFiles(File dir, String prefix, Map<String, String> ret) 
+            throws Exception {
+        for (File f : dir.listFiles()) {
+            if (f.getName().equals(".git"))
+                continue;
+            if (f.isDirectory()) {
+                listFiles(f, prefix + f.getName() + "/", ret);
+            } else {
+                // Single-byte charset keeps binary content intact
+                ret.put(prefix + f.getName(), FileUtils.readFileToString(f, "ISO-8859-1"));
+            }
+        }
+    }
+
+    private static String git(String args, File dir) throws Exception {
+        return GitUtils.gitCommand("git " + args, args, dir, null);
+    }
+}
@@ -0,0 +1,135 @@
+package us.kbase.narrativemethodstore.db.github.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.db.github.GitObjectReader;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
+
+public class GitObjectReaderTest {
+    private static final String specPath =
+            "ui/narrative/methods/compare_genome_features/spec.json";
+
+    private static File workDir;
+    private static File repoDir;
+    private static String commit1;
+    private static String commit2;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        workDir = us.kbase.narrativemethodstore.util.FileUtils.generateTempDir(
+                new File("test/temp"), "git_reader_", ".temp");
+        repoDir = new File(workDir, "repo");
+        FileUtils.copyDirectory(new File("test/data/test_repo_1"), repoDir);
+        git("init", repoDir);
+        git("symbolic-ref HEAD refs/heads/master", repoDir);
+        git("add -A", repoDir);
+        git("-c user.name=test -c user.email=test@test commit -m first", repoDir);
+        commit1 = GitUtils.getCommitHash(repoDir, null);
+        File spec = new File(repoDir, specPath);
+        FileUtils.writeStringToFile(spec, FileUtils.readFileToString(spec) + "\n");
+        FileUtils.deleteDirectory(new File(repoDir, "service"));
+        FileUtils.writeStringToFile(new File(repoDir, "data/new.txt"), "New file");
+        git("add -A", repoDir);
+        git("-c user.name=test -c user.email=test@test commit -m second", repoDir);
+        commit2 = GitUtils.getCommitHash(repoDir, null);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        if (workDir != null)
+            FileUtils.deleteDirectory(workDir);
+    }
+
+    @Test
+    public void testLooseObjects() throws Exception {
+        checkReader(new GitObjectReader(new File(repoDir, ".git")));
+    }
+
+    @Test
+    public void testPackedObjects() throws Exception {
+        File packedDir = new File(workDir, "packed");
+        git("clone --no-local " + repoDir.getAbsolutePath() + " " + packedDir.getAbsolutePath(),
+                workDir);
+        git("gc --aggressive", packedDir);
+        File[] loose = new File(packedDir, ".git/objects").listFiles();
+        for (File dir : loose)
+            Assert.assertFalse(dir.getName(), dir.getName().length() == 2);
+        checkReader(new GitObjectReader(new File(packedDir, ".git")));
+    }
+
+    @Test
+    public void testCloseWhileReading() throws Exception {
+        File packedDir = new File(workDir, "packed_close");
+        git("clone --no-local " + repoDir.getAbsolutePath() + " " + packedDir.getAbsolutePath(),
+                workDir);
+        git("gc", packedDir);
+        // Small cache makes every read go to pack file
+        final GitObjectReader reader = new GitObjectReader(new File(packedDir, ".git"), 1);
+        final byte[] expected = reader.readFile(commit2, specPath);
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+        Thread[] threads = new Thread[3];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++)
+                            if (!Arrays.equals(expected, reader.readFile(commit2, specPath)))
+                                throw new IllegalStateException("Wrong content");
+                    } catch (Exception ex) {
+                        errors.add(ex);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < 200; i++)
+            reader.close();
+        for (Thread t : threads)
+            t.join();
+        reader.close();
+        Assert.assertEquals("[]", errors.toString());
+    }
+
+    private static void checkReader(GitObjectReader reader) throws Exception {
+        try {
+            Assert.assertEquals(commit2, reader.resolve("HEAD"));
+            Assert.assertEquals(commit2, reader.resolve("master"));
+            Assert.assertEquals(commit1, reader.resolve(commit1));
+            Assert.assertEquals(GitUtils.getCommitInfo(repoDir, null), reader.getCommitInfo(commit2));
+            Assert.assertTrue(Arrays.equals(FileUtils.readFileToByteArray(
+                    new File(repoDir, specPath)), reader.readFile(commit2, specPath)));
+            Assert.assertEquals(new String(reader.readFile(commit1, specPath)) + "\n",
+                    new String(reader.readFile(commit2, specPath)));
+            Assert.assertNull(reader.readFile(commit2, "service/Makefile"));
+            Assert.assertNotNull(reader.readFile(commit1, "service/Makefile"));
+            Assert.assertTrue(reader.isDirectory(commit2, "ui/narrative/methods"));
+            Assert.assertFalse(reader.isDirectory(commit2, specPath));
+            Assert.assertFalse(reader.exists(commit2, "service"));
+            List<String> names = new ArrayList<String>();
+            for (GitObjectReader.TreeEntry entry : reader.listDirectory(commit2, "ui"))
+                names.add(entry.getName());
+            Assert.assertEquals("[narrative, widgets]", names.toString());
+            List<String> expected = GitUtils.getChangedFiles(repoDir, null, commit1, commit2);
+            Collections.sort(expected);
+            Assert.assertEquals(expected, reader.getChangedFiles(commit1, commit2));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String git(String args, File dir) throws Exception {
+        return GitUtils.gitCommand("git " + args, args, dir, null);
+    }
+}
@@ -0,0 +1,785 @@
+package us.kbase.narrativemethodstore.db.github.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.AppBriefInfo;
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.MethodFullInfo;
+import us.kbase.narrativemethodstore.TypeInfo;
+import us.kbase.narrativemethodstore.db.DynamicRepoDB;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.github.CatalogSnapshot;
+import us.kbase.narrativemethodstore.db.github.CatalogSnapshotFile;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
+import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+import us.kbase.narrativemethodstore.db.github.LocalGitDBOptions;
+import us.kbase.narrativemethodstore.db.github.MethodId;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+import us.kbase.narrativemethodstore.util.PreserializedList;
+
+public class LocalGitDBTest {
+    private static final String methodDir = "test/data/validation/methods/generate_heatmaps";
+    private static final String moduleDir = "test/data/test_repo_1";
+    private static final String moduleName = "GenomeFeatureComparator";
+    private static final String admin = "admin";
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static File workDir;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        workDir = us.kbase.narrativemethodstore.util.FileUtils.generateTempDir(
+                new File("test/temp"), "local_git_db_", ".temp");
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        if (workDir != null)
+            FileUtils.deleteDirectory(workDir);
+    }
+
+    @Test
+    public void testIncrementalReindex() throws Exception {
+        checkIncrementalReindex("files", new LocalGitDBOptions());
+    }
+
+    @Test
+    public void testIncrementalReindexInProcess() throws Exception {
+        checkIncrementalReindex("objects", new LocalGitDBOptions().withInProcessGitReads(true));
+    }
+
+    private static void checkIncrementalReindex(String name, LocalGitDBOptions options)
+            throws Exception {
+        File origin = createSpecRepo(new File(workDir, name + "_origin"));
+        TestLocalGitDB db = new TestLocalGitDB(origin, new File(workDir, name + "_local"),
+                options);
+        try {
+            dump(db);  // loads data into caches of first snapshot
+            String commit1 = db.getSnapshot().getCommitHash();
+            changeSpecRepo(origin);
+            db.refresh();
+            CatalogSnapshot incremental = db.getSnapshot();
+            Assert.assertFalse(commit1.equals(incremental.getCommitHash()));
+            Assert.assertEquals(GitUtils.getCommitHash(origin, null), incremental.getCommitHash());
+            NarrativeCategoriesIndex index = incremental.getIndex();
+            Assert.assertEquals("[a1, a2, a4]",
+                    new TreeSet<String>(index.getApps().keySet()).toString());
+            Assert.assertEquals("[T.t1, T.t2, T.t4]",
+                    new TreeSet<String>(index.getTypes().keySet()).toString());
+            Assert.assertEquals("[m1, m2, m4]", listMethodIds(index).toString());
+            Assert.assertEquals("Method m1 v2",
+                    index.getAllMethods().get(new MethodId("m1")).getName());
+            Assert.assertEquals("App a1 v2", index.getApps().get("a1").getName());
+            Assert.assertEquals("Type T.t1 v2", index.getTypes().get("T.t1").getName());
+            String incrementalDump = dump(db);
+            db.reloadAll();
+            Assert.assertNotSame(incremental, db.getSnapshot());
+            Assert.assertEquals(incrementalDump, dump(db));
+        } finally {
+            db.stopRefreshingThread();
+        }
+    }
+
+    @Test
+    public void testSnapshotFile() throws Exception {
+        File origin = createSpecRepo(new File(workDir, "snapshot_origin"));
+        File file = new File(workDir, "snapshot.json.gz");
+        LocalGitDBOptions options = new LocalGitDBOptions().withSnapshotWithData(true)
+                .withSnapshotFile(new CatalogSnapshotFile(file, "1.0"));
+        TestLocalGitDB db = new TestLocalGitDB(origin, new File(workDir, "snapshot_local1"),
+                options);
+        String catalogVersion = db.getSnapshot().getCatalogVersion();
+        String expectedDump;
+        try {
+            expectedDump = dump(db);
+        } finally {
+            db.stopRefreshingThread();  // stores loaded data into file
+        }
+        Assert.assertTrue(file.exists());
+        // Matching file is served right away (together with stored data) and verified
+        db = new TestLocalGitDB(origin, new File(workDir, "snapshot_local2"), options);
+        try {
+            Assert.assertEquals(catalogVersion, db.getSnapshot().getCatalogVersion());
+            Assert.assertEquals(3, db.getSnapshot().getMethodDataCache().size());
+            Assert.assertEquals(3, db.getSnapshot().getAppFullInfoCache().size());
+            CatalogSnapshot stored = db.getSnapshot();
+            db.waitForVerification();
+            Assert.assertSame(stored, db.getSnapshot());
+            Assert.assertEquals(expectedDump, dump(db));
+        } finally {
+            db.stopRefreshingThread();
+        }
+        // Stale file is served until verification replaces it with actual commit
+        changeSpecRepo(origin);
+        String commit2 = GitUtils.getCommitHash(origin, null);
+        db = new TestLocalGitDB(origin, new File(workDir, "snapshot_local3"), options);
+        try {
+            Assert.assertEquals(catalogVersion, db.getSnapshot().getCatalogVersion());
+            db.waitForVerification();
+            Assert.assertEquals(commit2, db.getSnapshot().getCommitHash());
+            expectedDump = dump(db);
+            db.reloadAll();
+            Assert.assertEquals(expectedDump, dump(db));
+        } finally {
+            db.stopRefreshingThread();
+        }
+        // File stored by other version of service is ignored
+        db = new TestLocalGitDB(origin, new File(workDir, "snapshot_local4"),
+                new LocalGitDBOptions().withSnapshotFile(new CatalogSnapshotFile(file, "2.0")));
+        try {
+            checkBuiltFromScratch(db, commit2);
+        } finally {
+            db.stopRefreshingThread();
+        }
+        // Corrupt file is ignored too
+        FileUtils.writeStringToFile(file, "Not a snapshot");
+        db = new TestLocalGitDB(origin, new File(workDir, "snapshot_local5"), options);
+        try {
+            checkBuiltFromScratch(db, commit2);
+        } finally {
+            db.stopRefreshingThread();
+        }
+    }
+
+    @Test
+    public void testReuseLocalClone() throws Exception {
+        File origin = createSpecRepo(new File(workDir, "reuse_origin"));
+        File localDir = new File(workDir, "reuse_local");
+        LocalGitDBOptions options = new LocalGitDBOptions().withReuseLocalClone(true);
+        TestLocalGitDB db = new TestLocalGitDB(origin, localDir, options);
+        db.stopRefreshingThread();
+        // Marker disappears in case local folder is recloned
+        File marker = new File(localDir, ".git/reuse_marker");
+        FileUtils.writeStringToFile(marker, "Not recloned");
+        changeSpecRepo(origin);
+        String commit2 = GitUtils.getCommitHash(origin, null);
+        db = new TestLocalGitDB(origin, localDir, options);
+        try {
+            Assert.assertTrue(marker.exists());
+            Assert.assertEquals(commit2, GitUtils.getCommitHash(localDir, null));
+            Assert.assertEquals(commit2, db.getSnapshot().getCommitHash());
+            Assert.assertTrue(new File(localDir, "methods/m4").exists());
+            Assert.assertFalse(new File(localDir, "methods/m3").exists());
+            Assert.assertEquals("[m1, m2, m4]", listMethodIds(db.getSnapshot().getIndex())
+                    .toString());
+        } finally {
+            db.stopRefreshingThread();
+        }
+        // Clone of other repo is replaced
+        File otherOrigin = createSpecRepo(new File(workDir, "reuse_other_origin"));
+        db = new TestLocalGitDB(otherOrigin, localDir, options);
+        try {
+            Assert.assertFalse(marker.exists());
+            String otherCommit = GitUtils.getCommitHash(otherOrigin, null);
+            Assert.assertEquals(otherCommit, GitUtils.getCommitHash(localDir, null));
+            Assert.assertEquals(otherCommit, db.getSnapshot().getCommitHash());
+            Assert.assertTrue(new File(localDir, "methods/m3").exists());
+        } finally {
+            db.stopRefreshingThread();
+        }
+    }
+
+    @Test
+    public void testPagingWithCatalogVersion() throws Exception {
+        checkPagingWithCatalogVersion("paging_files", new LocalGitDBOptions());
+    }
+
+    @Test
+    public void testPagingWithCatalogVersionInProcess() throws Exception {
+        checkPagingWithCatalogVersion("paging_objects",
+                new LocalGitDBOptions().withInProcessGitReads(true));
+    }
+
+    private static void checkPagingWithCatalogVersion(String name, LocalGitDBOptions options)
+            throws Exception {
+        File origin = createSpecRepo(new File(workDir, name + "_origin"));
+        TestLocalGitDB db = new TestLocalGitDB(origin, new File(workDir, name + "_local"),
+                options.withRetainedSnapshots(2));
+        try {
+            String version1 = db.getSnapshot().getCatalogVersion();
+            // First page is taken before refresh, second one after it
+            List<String> methodIds = new ArrayList<String>(db.getSnapshot(version1).getIndex()
+                    .getValidMethodIds(null).subList(0, 2));
+            List<String> appIds = new ArrayList<String>(db.getSnapshot(version1).getIndex()
+                    .getValidAppIds().subList(0, 2));
+            List<String> typeNames = new ArrayList<String>();
+            for (TypeInfo type : db.getSnapshot(version1).getIndex().getTypeList().subList(0, 2))
+                typeNames.add(type.getTypeName());
+            changeSpecRepo(origin);
+            db.refresh();
+            String version2 = db.getSnapshot().getCatalogVersion();
+            Assert.assertFalse(version1.equals(version2));
+            CatalogSnapshot pinned = db.getSnapshot(version1);
+            Assert.assertEquals(version1, pinned.getCatalogVersion());
+            methodIds.addAll(pinned.getIndex().getValidMethodIds(null).subList(2, 3));
+            appIds.addAll(pinned.getIndex().getValidAppIds().subList(2, 3));
+            for (TypeInfo type : pinned.getIndex().getTypeList().subList(2, 3))
+                typeNames.add(type.getTypeName());
+            Assert.assertEquals("[m1, m2, m3]", methodIds.toString());
+            Assert.assertEquals("[a1, a2, a3]", appIds.toString());
+            Assert.assertEquals("[T.t1, T.t2, T.t3]", typeNames.toString());
+            // Data of pinned version is loaded at its commit
+            Assert.assertEquals("Method m1", db.getMethodFullInfo(pinned, "m1", null).getName());
+            Assert.assertEquals("Method m3", db.getMethodFullInfo(pinned, "m3", null).getName());
+            Assert.assertEquals("App a1", db.getAppFullInfo(pinned, "a1").getName());
+            Assert.assertEquals("Method m1 v2", db.getMethodFullInfo(db.getSnapshot(version2),
+                    "m1", null).getName());
+            Assert.assertEquals("[m1, m2, m4]", db.getSnapshot(null).getIndex()
+                    .getValidMethodIds(null).toString());
+            // Only two recent versions are retained
+            writeMethod(origin, "m5", "Method m5");
+            commit(origin, "third");
+            db.refresh();
+            String version3 = db.getSnapshot().getCatalogVersion();
+            Assert.assertEquals(version2, db.getSnapshot(version2).getCatalogVersion());
+            try {
+                db.getSnapshot(version1);
+                Assert.fail("Version should be expired");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertEquals("Catalog version " + version1 + " is not available " +
+                		"anymore (current one is " + version3 + ")", ex.getMessage());
+            }
+        } finally {
+            db.stopRefreshingThread();
+        }
+    }
+
+    @Test
+    public void testMergeDuringLoad() throws Exception {
+        File origin = createSpecRepo(new File(workDir, "merge_origin"));
+        final TestLocalGitDB db = new TestLocalGitDB(origin, new File(workDir, "merge_local"),
+                new LocalGitDBOptions());
+        try {
+            final CatalogSnapshot snapshot1 = db.getSnapshot();
+            final List<Exception> errors = Collections.synchronizedList(
+                    new ArrayList<Exception>());
+            final List<String> names = Collections.synchronizedList(new ArrayList<String>());
+            db.pauseReading("methods/m1/display.yaml");
+            Thread loader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        names.add(db.getMethodFullInfo(snapshot1, "m1", null).getName());
+                    } catch (Exception ex) {
+                        errors.add(ex);
+                    }
+                }
+            });
+            loader.start();
+            db.waitForPausedReading();
+            changeSpecRepo(origin);
+            Thread merger = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        db.refresh();
+                    } catch (Exception ex) {
+                        errors.add(ex);
+                    }
+                }
+            });
+            merger.start();
+            // Merge has to wait until file of old commit is read
+            long deadline = System.currentTimeMillis() + 60000;
+            while (!db.isWaitingForWorkTree(merger) && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            Assert.assertTrue(db.isWaitingForWorkTree(merger));
+            db.resumeReading();
+            loader.join();
+            merger.join();
+            Assert.assertEquals("[]", errors.toString());
+            Assert.assertEquals("[Method m1]", names.toString());
+            String commit2 = GitUtils.getCommitHash(origin, null);
+            Assert.assertEquals(commit2, db.getSnapshot().getCommitHash());
+            // Old snapshot keeps data of its commit, entries not loaded yet are read from
+            // git objects since working tree is at new commit now
+            Assert.assertEquals("Method m1",
+                    db.getMethodFullInfo(snapshot1, "m1", null).getName());
+            Assert.assertEquals("App a1", db.getAppFullInfo(snapshot1, "a1").getName());
+            Assert.assertEquals("Method m3",
+                    db.getMethodFullInfo(snapshot1, "m3", null).getName());
+            Assert.assertEquals("Method m1 v2",
+                    db.getMethodFullInfo(db.getSnapshot(), "m1", null).getName());
+            Assert.assertEquals("App a1 v2", db.getAppFullInfo(db.getSnapshot(), "a1").getName());
+        } finally {
+            db.stopRefreshingThread();
+        }
+    }
+
+    @Test
+    public void testParsedMethodDataReuse() throws Exception {
+        File origin = createSpecRepo(new File(workDir, "parsed_origin"));
+        File module = createModuleRepo(new File(workDir, "parsed_module"));
+        String moduleUrl = fileUrl(module);
+        TestLocalGitDB db = new TestLocalGitDB(origin, new File(workDir, "parsed_local"),
+                new MemoryDynamicRepoDB(admin), new LocalGitDBOptions());
+        try {
+            String methodId = moduleName + "/compare_genome_features";
+            db.registerRepo(admin, moduleUrl, null);
+            CatalogSnapshot snapshot1 = db.getSnapshot();
+            MethodFullInfo dev1 = db.getMethodFullInfo(snapshot1, methodId, "dev");
+            // Unchanged files registered again are not parsed again
+            db.registerRepo(admin, moduleUrl, null);
+            Assert.assertNotSame(snapshot1, db.getSnapshot());
+            Assert.assertSame(dev1, db.getMethodFullInfo(db.getSnapshot(), methodId, "dev"));
+            // The same files under other tag are parsed with urls of this tag
+            db.pushRepoToTag(moduleName, "beta", admin);
+            MethodFullInfo beta1 = db.getMethodFullInfo(db.getSnapshot(), methodId, "beta");
+            Assert.assertNotSame(dev1, beta1);
+            Assert.assertTrue(dev1.getScreenshots().get(0).getUrl().endsWith("&tag=dev"));
+            Assert.assertTrue(beta1.getScreenshots().get(0).getUrl().endsWith("&tag=beta"));
+            Assert.assertSame(dev1, db.getMethodFullInfo(db.getSnapshot(), methodId, "dev"));
+            // Changed spec.json registered again gives new data
+            File specFile = new File(module,
+                    "ui/narrative/methods/compare_genome_features/spec.json");
+            FileUtils.writeStringToFile(specFile, FileUtils.readFileToString(specFile)
+                    .replace("\"ver\" : \"1.0.0\"", "\"ver\" : \"1.0.1\""));
+            commit(module, "second");
+            db.registerRepo(admin, moduleUrl, null);
+            MethodFullInfo dev2 = db.getMethodFullInfo(db.getSnapshot(), methodId, "dev");
+            Assert.assertEquals("1.0.0", dev1.getVer());
+            Assert.assertEquals("1.0.1", dev2.getVer());
+            Assert.assertSame(beta1, db.getMethodFullInfo(db.getSnapshot(), methodId, "beta"));
+        } finally {
+            db.stopRefreshingThread();
+        }
+    }
+
+    @Test
+    public void testIncrementalDynamicRepoReindex() throws Exception {
+        File origin = createSpecRepo(new File(workDir, "dynamic_origin"));
+        File module = createModuleRepo(new File(workDir, "dynamic_module"));
+        String moduleUrl = fileUrl(module);
+        TestLocalGitDB db = new TestLocalGitDB(origin, new File(workDir, "dynamic_local"),
+                new MemoryDynamicRepoDB(admin), new LocalGitDBOptions());
+        try {
+            dumpTags(db);  // loads data of spec-repo into caches of first snapshot
+            String methodId = moduleName + "/compare_genome_features/";
+            db.registerRepo(admin, moduleUrl, null);
+            checkDynamicReindex(db, "[" + methodId + "dev]");
+            db.pushRepoToTag(moduleName, "beta", admin);
+            checkDynamicReindex(db, "[" + methodId + "beta, " + methodId + "dev]");
+            db.pushRepoToTag(moduleName, "release", admin);
+            checkDynamicReindex(db, "[" + methodId + "beta, " + methodId + "dev, " +
+                    methodId + "release]");
+            File displayFile = new File(module,
+                    "ui/narrative/methods/compare_genome_features/display.yaml");
+            FileUtils.writeStringToFile(displayFile, FileUtils.readFileToString(displayFile)
+                    .replace("Compare Genome Features", "Compare Genome Features v2"));
+            commit(module, "second");
+            db.registerRepo(admin, moduleUrl, null);
+            checkDynamicReindex(db, "[" + methodId + "beta, " + methodId + "dev, " +
+                    methodId + "release]");
+            Assert.assertEquals("Compare Genome Features v2", db.getMethodFullInfo(
+                    db.getSnapshot(), moduleName + "/compare_genome_features", "dev").getName());
+            Assert.assertEquals("Compare Genome Features", db.getMethodFullInfo(
+                    db.getSnapshot(), moduleName + "/compare_genome_features", "release")
+                    .getName());
+            db.setRepoState(admin, moduleName, "disabled");
+            checkDynamicReindex(db, "[]");
+            db.setRepoState(admin, moduleName, "ready");
+            checkDynamicReindex(db, "[" + methodId + "beta, " + methodId + "dev, " +
+                    methodId + "release]");
+        } finally {
+            db.stopRefreshingThread();
+        }
+    }
+
+    /**
+     * Checks that snapshot updated incrementally after change of dynamic repository
+     * is the same as the one built from scratch.
+     */
+    private static void checkDynamicReindex(TestLocalGitDB db, String dynamicMethodIds)
+            throws Exception {
+        CatalogSnapshot incremental = db.getSnapshot();
+        // Data of spec-repo is carried over only by incremental update
+        Assert.assertNotNull(incremental.getMethodDataCache().getIfPresent(new MethodId("m1")));
+        Assert.assertEquals(dynamicMethodIds, new TreeSet<MethodId>(
+                incremental.getIndex().getDynamicRepoMethods()).toString());
+        String incrementalDump = dumpTags(db);
+        db.reloadAll();
+        Assert.assertNotSame(incremental, db.getSnapshot());
+        Assert.assertEquals(incrementalDump, dumpTags(db));
+    }
+
+    @Test
+    public void testResponseCache() throws Exception {
+        File origin = createSpecRepo(new File(workDir, "response_origin"));
+        File module = createModuleRepo(new File(workDir, "response_module"));
+        MemoryDynamicRepoDB dynamicRepos = new MemoryDynamicRepoDB(admin);
+        TestLocalGitDB cached = new TestLocalGitDB(origin, new File(workDir, 
+                "response_local1"), dynamicRepos, new LocalGitDBOptions()
+                .withResponseCacheSize(1000000));
+        TestLocalGitDB uncached = new TestLocalGitDB(origin, new File(workDir,
+                "response_local2"), dynamicRepos, new LocalGitDBOptions()
+                .withResponseCacheSize(0));
+        try {
+            cached.registerRepo(admin, fileUrl(module), null);
+            cached.pushRepoToTag(moduleName, "beta", admin);
+            uncached.refreshDynamicRepos();
+            String commitHash1 = GitUtils.getCommitHash(module, null);
+            String commitHash2 = GitUtils.getCommitHash(origin, null);
+            List<String> tags = Arrays.asList(null, "dev", "beta", "release", commitHash1,
+                    commitHash2);
+            CatalogSnapshot snapshot1 = cached.getSnapshot();
+            Map<String, String> responses1 = listMethodResponses(snapshot1, tags);
+            Assert.assertEquals(responses1, listMethodResponses(uncached.getSnapshot(), tags));
+            // Cached responses are served as is, every tag and page has its own entry
+            Assert.assertSame(listMethods(snapshot1, "beta", 1L, 2L), 
+                    listMethods(snapshot1, "beta", 1L, 2L));
+            Assert.assertNotSame(listMethods(snapshot1, "beta", 1L, 2L), 
+                    listMethods(snapshot1, "beta", 2L, 2L));
+            Assert.assertEquals(4, listMethods(snapshot1, "beta", null, null).size());
+            Assert.assertEquals(3, listMethods(snapshot1, "release", null, null).size());
+            // All commit hash tags share one view with methods of spec-repo only
+            NarrativeCategoriesIndex index1 = snapshot1.getIndex();
+            Assert.assertSame(index1.getMethodList(commitHash1), 
+                    index1.getMethodList(commitHash2));
+            Assert.assertEquals("[m1, m2, m3]", index1.getValidMethodIds(commitHash1)
+                    .toString());
+            // New snapshot doesn't serve responses cached in previous one
+            cached.pushRepoToTag(moduleName, "release", admin);
+            uncached.refreshDynamicRepos();
+            CatalogSnapshot snapshot2 = cached.getSnapshot();
+            Assert.assertNotSame(snapshot1, snapshot2);
+            Map<String, String> responses2 = listMethodResponses(snapshot2, tags);
+            Assert.assertEquals(responses2, listMethodResponses(uncached.getSnapshot(), tags));
+            Assert.assertEquals(4, listMethods(snapshot2, "release", null, null).size());
+            Assert.assertFalse(responses1.get("release:null:null").equals(
+                    responses2.get("release:null:null")));
+            Assert.assertEquals(responses1.get("beta:null:null"), 
+                    responses2.get("beta:null:null"));
+            Assert.assertNotSame(index1.getMethodList(commitHash1), 
+                    snapshot2.getIndex().getMethodList(commitHash1));
+            // Previous snapshot keeps serving its own state
+            Assert.assertEquals(responses1, listMethodResponses(snapshot1, tags));
+        } finally {
+            cached.stopRefreshingThread();
+            uncached.stopRefreshingThread();
+        }
+    }
+
+    /**
+     * Lists methods like list_methods of server does, response is cached in snapshot
+     * under "method:tag:offset:limit" key.
+     */
+    private static List<MethodBriefInfo> listMethods(CatalogSnapshot snapshot, 
+            final String tag, final Long offset, final Long limit) throws Exception {
+        return snapshot.getResponse("list_methods:" + tag + ":" + offset + ":" + limit,
+                new CatalogSnapshot.ResponseLoader<PreserializedList<MethodBriefInfo>>() {
+            @Override
+            public PreserializedList<MethodBriefInfo> load(NarrativeCategoriesIndex index) {
+                List<MethodBriefInfo> methods = index.getMethodList(tag);
+                int from = offset == null ? 0 : Math.min((int)(long)offset, methods.size());
+                int to = limit == null ? methods.size() : 
+                    Math.min(from + (int)(long)limit, methods.size());
+                return new PreserializedList<MethodBriefInfo>(methods.subList(from, to));
+            }
+        });
+    }
+
+    /**
+     * Serializes responses of listing methods for all combinations of given tags and
+     * several pages, checking that every response is the same as serialized plain list.
+     */
+    private static Map<String, String> listMethodResponses(CatalogSnapshot snapshot, 
+            List<String> tags) throws Exception {
+        Long[][] pages = {{null, null}, {0L, 2L}, {2L, 2L}, {1L, null}, {null, 3L}, 
+                {5L, 10L}};
+        Map<String, String> ret = new TreeMap<String, String>();
+        for (String tag : tags) {
+            for (Long[] page : pages) {
+                List<MethodBriefInfo> response = listMethods(snapshot, tag, page[0], page[1]);
+                String json = mapper.writeValueAsString(response);
+                Assert.assertEquals(mapper.writeValueAsString(
+                        new ArrayList<MethodBriefInfo>(response)), json);
+                ret.put(tag + ":" + page[0] + ":" + page[1], json);
+            }
+        }
+        return ret;
+    }
+
+    private static void checkBuiltFromScratch(TestLocalGitDB db, String commitHash) {
+        Assert.assertEquals(commitHash, db.getSnapshot().getCommitHash());
+        Assert.assertEquals(0, db.getSnapshot().getMethodDataCache().size());
+        Assert.assertEquals(0, db.getVerifications());
+    }
+
+    private static Set<String> listMethodIds(NarrativeCategoriesIndex index) {
+        Set<String> ret = new TreeSet<String>();
+        for (MethodId mId : index.getAllMethods().keySet())
+            ret.add(mId.toString());
+        return ret;
+    }
+
+    /**
+     * Serializes index and data of all methods and apps of current snapshot, loading
+     * errors are not expected.
+     */
+    private static String dump(LocalGitDB db) throws Exception {
+        CatalogSnapshot snapshot = db.getSnapshot();
+        NarrativeCategoriesIndex index = snapshot.getIndex();
+        Map<String, MethodBriefInfo> methods = new TreeMap<String, MethodBriefInfo>();
+        for (Map.Entry<MethodId, MethodBriefInfo> entry : index.getAllMethods().entrySet()) {
+            Assert.assertNull(entry.getValue().getLoadingError());
+            methods.put(entry.getKey().toString(), entry.getValue());
+        }
+        for (AppBriefInfo app : index.getApps().values())
+            Assert.assertNull(app.getLoadingError());
+        for (TypeInfo type : index.getTypes().values())
+            Assert.assertNull(type.getLoadingError());
+        List<String> methodIds = new ArrayList<String>(methods.keySet());
+        List<String> appIds = new ArrayList<String>(index.getApps().keySet());
+        Map<String, Object> ret = new LinkedHashMap<String, Object>();
+        ret.put("categories", new TreeMap<String, Object>(index.getCategories()));
+        ret.put("methods", methods);
+        ret.put("apps", new TreeMap<String, Object>(index.getApps()));
+        ret.put("types", new TreeMap<String, Object>(index.getTypes()));
+        ret.put("method_full_infos", db.getMethodFullInfos(snapshot, methodIds, null));
+        ret.put("method_specs", db.getMethodSpecs(snapshot, methodIds, null));
+        ret.put("app_full_infos", db.getAppFullInfos(snapshot, appIds));
+        ret.put("app_specs", db.getAppSpecs(snapshot, appIds));
+        return mapper.writeValueAsString(ret);
+    }
+
+    /**
+     * Serializes index and data of methods visible under each of main tags (methods of
+     * dynamic repositories are included), loading errors are not expected.
+     */
+    private static String dumpTags(LocalGitDB db) throws Exception {
+        CatalogSnapshot snapshot = db.getSnapshot();
+        NarrativeCategoriesIndex index = snapshot.getIndex();
+        Assert.assertEquals("{}", index.getDynamicRepoModuleNameToLoadingError().toString());
+        Map<String, Object> ret = new LinkedHashMap<String, Object>();
+        ret.put("categories", new TreeMap<String, Object>(index.getCategories()));
+        for (String tag : Arrays.asList("dev", "beta", "release")) {
+            Map<String, MethodBriefInfo> methods = new TreeMap<String, MethodBriefInfo>(
+                    index.getMethods(tag));
+            for (MethodBriefInfo method : methods.values())
+                Assert.assertNull(method.getLoadingError());
+            List<String> methodIds = index.getValidMethodIds(tag);
+            Map<String, Object> tagDump = new LinkedHashMap<String, Object>();
+            tagDump.put("methods", methods);
+            tagDump.put("method_ids", methodIds);
+            tagDump.put("method_full_infos", db.getMethodFullInfos(snapshot, methodIds, tag));
+            tagDump.put("method_specs", db.getMethodSpecs(snapshot, methodIds, tag));
+            ret.put(tag, tagDump);
+        }
+        return mapper.writeValueAsString(ret);
+    }
+
+    /**
+     * Creates spec-repo with one category, three methods, three apps and three types
+     * and commits it.
+     */
+    private static File createSpecRepo(File repoDir) throws Exception {
+        FileUtils.writeStringToFile(new File(repoDir, "categories/active/spec.json"),
+                "{\"name\": \"Active\", \"ver\": \"1\", \"tooltip\": \"Active\", \"parent\": []}");
+        for (int i = 1; i <= 3; i++) {
+            writeMethod(repoDir, "m" + i, "Method m" + i);
+            writeApp(repoDir, "a" + i, "App a" + i, "m" + i);
+            writeType(repoDir, "T.t" + i, "Type T.t" + i, "m" + i);
+        }
+        git("init", repoDir);
+        git("symbolic-ref HEAD refs/heads/master", repoDir);
+        commit(repoDir, "first");
+        return repoDir;
+    }
+
+    /**
+     * Adds m4/a4/T.t4, modifies m1/a1/T.t1 and deletes m3/a3/T.t3 in one commit.
+     */
+    private static void changeSpecRepo(File repoDir) throws Exception {
+        writeMethod(repoDir, "m4", "Method m4");
+        writeApp(repoDir, "a4", "App a4", "m4");
+        writeType(repoDir, "T.t4", "Type T.t4", "m4");
+        writeMethod(repoDir, "m1", "Method m1 v2");
+        writeApp(repoDir, "a1", "App a1 v2", "m2");
+        writeType(repoDir, "T.t1", "Type T.t1 v2", "m2");
+        FileUtils.deleteDirectory(new File(repoDir, "methods/m3"));
+        FileUtils.deleteDirectory(new File(repoDir, "apps/a3"));
+        FileUtils.deleteDirectory(new File(repoDir, "types/T.t3"));
+        commit(repoDir, "second");
+    }
+
+    /**
+     * Creates git repository of dynamic module from test module folder and commits it.
+     */
+    private static File createModuleRepo(File repoDir) throws Exception {
+        FileUtils.copyDirectory(new File(moduleDir), repoDir);
+        git("init", repoDir);
+        commit(repoDir, "first");
+        return repoDir;
+    }
+
+    private static String fileUrl(File repoDir) throws IOException {
+        return "file://localhost" + repoDir.getCanonicalPath();
+    }
+
+    private static void writeMethod(File repoDir, String methodId, String name)
+            throws Exception {
+        File dir = new File(repoDir, "methods/" + methodId);
+        FileUtils.copyFile(new File(methodDir, "spec.json"), new File(dir, "spec.json"));
+        String display = FileUtils.readFileToString(new File(methodDir, "display.yaml"));
+        display = display.replaceFirst("(?m)^name\\s*:.*$", "name: " + name);
+        FileUtils.writeStringToFile(new File(dir, "display.yaml"), display);
+    }
+
+    private static void writeApp(File repoDir, String appId, String name, String methodId)
+            throws Exception {
+        File dir = new File(repoDir, "apps/" + appId);
+        FileUtils.writeStringToFile(new File(dir, "spec.json"),
+                "{\"ver\": \"1.0.0\", \"authors\": [\"test\"], \"contact\": \"test@test\", " +
+                "\"categories\": [\"active\"], " +
+                "\"steps\": [{\"step-id\": \"step1\", \"method-id\": \"" + methodId + "\"}]}");
+        FileUtils.writeStringToFile(new File(dir, "display.yaml"),
+                "name: " + name + "\n" +
+                "subtitle: Subtitle of " + appId + "\n" +
+                "tooltip: Tooltip of " + appId + "\n" +
+                "description: Description of " + appId + "\n" +
+                "header: Header of " + appId + "\n" +
+                "screenshots: []\n" +
+                "step-descriptions:\n" +
+                "    step1: Runs " + methodId + "\n");
+    }
+
+    private static void writeType(File repoDir, String typeName, String name, String methodId)
+            throws Exception {
+        File dir = new File(repoDir, "types/" + typeName);
+        FileUtils.writeStringToFile(new File(dir, "spec.json"),
+                "{\"view_method_ids\": [\"" + methodId + "\"], \"import_method_ids\": []}");
+        FileUtils.writeStringToFile(new File(dir, "display.yaml"),
+                "name: " + name + "\n" +
+                "subtitle: Subtitle of " + typeName + "\n" +
+                "tooltip: Tooltip of " + typeName + "\n" +
+                "description: Description of " + typeName + "\n" +
+                "icon: icon.png\n");
+    }
+
+    private static void commit(File repoDir, String message) throws Exception {
+        git("add -A", repoDir);
+        git("-c user.name=test -c user.email=test@test commit -m " + message, repoDir);
+    }
+
+    private static String git(String args, File dir) throws Exception {
+        return GitUtils.gitCommand("git " + args, args, dir, null);
+    }
+
+    /**
+     * Changes of spec-repo are pulled by test itself rather than by refreshing thread.
+     */
+    private static class TestLocalGitDB extends LocalGitDB {
+        public TestLocalGitDB(File origin, File localDir, LocalGitDBOptions options)
+                throws Exception {
+            this(origin, localDir, null, options);
+        }
+
+        public TestLocalGitDB(File origin, File localDir, DynamicRepoDB dynamicRepos,
+                LocalGitDBOptions options) throws Exception {
+            super(new URL(fileUrl(origin)), "master", localDir, 100000, 100, dynamicRepos,
+                    new File(workDir, "tmp"), null, RepoTag.dev, options);
+        }
+
+        @Override
+        protected String gitFetch() throws NarrativeMethodStoreInitializationException {
+            return "";
+        }
+
+        public void refresh() throws Exception {
+            super.gitFetch();
+            mergeFetchedChanges();
+        }
+
+        // No initializers, verification and reading of files may happen before
+        // constructor of this class
+        private int verifications;
+        private volatile String pausedPath;
+        private volatile CountDownLatch pausedReadReached;
+        private volatile CountDownLatch pausedReadResume;
+
+        @Override
+        protected void verifyStoredSnapshot(CatalogSnapshot stored, String commitHash,
+                String commit) throws NarrativeMethodStoreException {
+            try {
+                super.verifyStoredSnapshot(stored, commitHash, commit);
+            } finally {
+                synchronized (this) {
+                    verifications++;
+                    notifyAll();
+                }
+            }
+        }
+
+        @Override
+        protected byte[] readWorkTreeFile(String path) throws IOException {
+            CountDownLatch resume = pausedReadResume;
+            if (resume != null && path.equals(pausedPath)) {
+                pausedReadReached.countDown();
+                try {
+                    resume.await(60, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            return super.readWorkTreeFile(path);
+        }
+
+        /**
+         * Makes next reading of given file of working tree wait for resumeReading.
+         */
+        public void pauseReading(String path) {
+            pausedPath = path;
+            pausedReadReached = new CountDownLatch(1);
+            pausedReadResume = new CountDownLatch(1);
+        }
+
+        public void waitForPausedReading() throws Exception {
+            Assert.assertTrue(pausedReadReached.await(60, TimeUnit.SECONDS));
+        }
+
+        public void resumeReading() {
+            CountDownLatch resume = pausedReadResume;
+            pausedReadResume = null;
+            resume.countDown();
+        }
+
+        public boolean isWaitingForWorkTree(Thread thread) {
+            return workTreeLock.hasQueuedThread(thread);
+        }
+
+        public synchronized int getVerifications() {
+            return verifications;
+        }
+
+        public synchronized void waitForVerification() throws Exception {
+            long deadline = System.currentTimeMillis() + 60000;
+            while (verifications == 0 && System.currentTimeMillis() < deadline)
+                wait(1000);
+            Assert.assertEquals(1, verifications);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package us.kbase.narrativemethodstore.db.github.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.cache.CacheStats;
+
+import us.kbase.narrativemethodstore.db.DynamicRepoDB;
+import us.kbase.narrativemethodstore.db.FileId;
+import us.kbase.narrativemethodstore.db.FilePointer;
+import us.kbase.narrativemethodstore.db.JsonRepoProvider;
+import us.kbase.narrativemethodstore.db.JsonRepoProvider.RepoData;
+import us.kbase.narrativemethodstore.db.RepoProvider;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * In-memory storage of dynamic repositories for tests which don't need MongoDB. It
+ * follows MongoDynamicRepoDB: every registration is new version kept in history, tags
+ * point to versions, stored files are deduplicated by module, name and content and
+ * are never changed under their ids.
+ */
+public class MemoryDynamicRepoDB implements DynamicRepoDB {
+    private final Set<String> globalAdmins;
+    private final Map<String, RepoInfo> repos = new TreeMap<String, RepoInfo>();
+    private final Map<String, StoredFile> files = new HashMap<String, StoredFile>();
+    private long lastVersion = 0;
+    private long catalogVersion = 0;
+
+    public MemoryDynamicRepoDB(String... globalAdmins) {
+        this.globalAdmins = new HashSet<String>(Arrays.asList(globalAdmins));
+    }
+
+    @Override
+    public synchronized boolean isRepoRegistered(String repoModuleName,
+            boolean withDisabled) {
+        RepoInfo info = repos.get(repoModuleName);
+        return info != null && (withDisabled || info.state != RepoState.disabled);
+    }
+
+    @Override
+    public synchronized void registerRepo(String userId, RepoProvider repoDetails)
+            throws NarrativeMethodStoreException {
+        checkAdmin(userId);
+        RepoData data = JsonRepoProvider.repoProviderToData(this, repoDetails);
+        RepoInfo info = repos.get(data.moduleName);
+        if (info == null) {
+            info = new RepoInfo();
+            repos.put(data.moduleName, info);
+        }
+        info.lastVersion = ++lastVersion;
+        info.history.put(info.lastVersion, data);
+        info.state = RepoState.ready;
+        catalogVersion++;
+    }
+
+    @Override
+    public synchronized Long getRepoLastVersion(String repoModuleName, RepoTag tag)
+            throws NarrativeMethodStoreException {
+        RepoInfo info = getRepoInfo(repoModuleName);
+        if (tag == null || tag.equals(RepoTag.dev))
+            return info.lastVersion;
+        if (tag.equals(RepoTag.beta))
+            return info.betaVersion;
+        if (tag.equals(RepoTag.release))
+            return info.releaseVersion;
+        List<Long> versions = listRepoVersions(repoModuleName, tag);
+        return versions.isEmpty() ? null : Collections.max(versions);
+    }
+
+    @Override
+    public synchronized List<String> listRepoModuleNames(boolean withDisabled,
+            RepoTag tag) throws NarrativeMethodStoreException {
+        List<String> ret = new ArrayList<String>();
+        for (Map.Entry<String, RepoInfo> entry : repos.entrySet())
+            if ((withDisabled || entry.getValue().state != RepoState.disabled) &&
+                    getRepoLastVersion(entry.getKey(), tag) != null)
+                ret.add(entry.getKey());
+        return ret;
+    }
+
+    @Override
+    public synchronized RepoProvider getRepoDetails(String repoModuleName, RepoTag tag)
+            throws NarrativeMethodStoreException {
+        Long version = getRepoLastVersion(repoModuleName, tag);
+        return version == null ? null : getRepoDetailsHistory(repoModuleName, version);
+    }
+
+    @Override
+    public synchronized List<Long> listRepoVersions(String repoModuleName, RepoTag tag)
+            throws NarrativeMethodStoreException {
+        RepoInfo info = getRepoInfo(repoModuleName);
+        List<Long> ret = new ArrayList<Long>();
+        for (Map.Entry<Long, RepoData> entry : info.history.entrySet()) {
+            long version = entry.getKey();
+            if (tag == null || tag.equals(RepoTag.dev) ||
+                    (tag.equals(RepoTag.beta) && info.betaVersions.contains(version)) ||
+                    (tag.equals(RepoTag.release) && info.releaseVersions.contains(version)) ||
+                    (tag.isGitCommitHash() &&
+                            tag.toString().equals(entry.getValue().gitCommitHash)))
+                ret.add(version);
+        }
+        return ret;
+    }
+
+    @Override
+    public synchronized RepoProvider getRepoDetailsHistory(String repoModuleName,
+            long version) throws NarrativeMethodStoreException {
+        RepoData data = getRepoInfo(repoModuleName).history.get(version);
+        if (data == null)
+            throw new NarrativeMethodStoreException("Repository " + repoModuleName +
+                    " wasn't registered");
+        return new JsonRepoProvider(this, data);
+    }
+
+    @Override
+    public synchronized void pushRepoToTag(String repoModuleName, RepoTag tag,
+            String userId) throws NarrativeMethodStoreException {
+        RepoInfo info = getRepoInfo(repoModuleName);
+        checkAdmin(userId);
+        if (tag == null || tag.equals(RepoTag.dev))
+            return;
+        if (tag.equals(RepoTag.beta)) {
+            info.betaVersion = info.lastVersion;
+            info.betaVersions.add(info.betaVersion);
+        } else if (tag.equals(RepoTag.release)) {
+            if (info.betaVersion == null)
+                throw new NarrativeMethodStoreException("Repository " + repoModuleName +
+                        " cannot be released cause it was never pushed to beta tag");
+            info.releaseVersion = info.betaVersion;
+            info.releaseVersions.add(info.releaseVersion);
+        } else {
+            throw new NarrativeMethodStoreException("Unsupported tag: " + tag);
+        }
+        catalogVersion++;
+    }
+
+    @Override
+    public synchronized Set<String> listRepoOwners(String repoModuleName)
+            throws NarrativeMethodStoreException {
+        return new TreeSet<String>(getRepoDetails(repoModuleName, null).listOwners());
+    }
+
+    @Override
+    public synchronized boolean isRepoOwner(String repoModuleName, String userId)
+            throws NarrativeMethodStoreException {
+        return globalAdmins.contains(userId) ||
+                listRepoOwners(repoModuleName).contains(userId);
+    }
+
+    @Override
+    public boolean isGlobalAdmin(String userId) {
+        return globalAdmins.contains(userId);
+    }
+
+    @Override
+    public synchronized RepoState getRepoState(String repoModuleName)
+            throws NarrativeMethodStoreException {
+        return getRepoInfo(repoModuleName).state;
+    }
+
+    @Override
+    public synchronized void setRepoState(String userId, String repoModuleName,
+            RepoState state) throws NarrativeMethodStoreException {
+        checkAdmin(userId);
+        getRepoInfo(repoModuleName).state = state;
+        catalogVersion++;
+    }
+
+    @Override
+    public synchronized Map<String, String> getRepoVersionStamps() {
+        Map<String, String> ret = new TreeMap<String, String>();
+        for (Map.Entry<String, RepoInfo> entry : repos.entrySet()) {
+            RepoInfo info = entry.getValue();
+            ret.put(entry.getKey(), info.state + ":" + info.lastVersion + ":" +
+                    info.betaVersion + ":" + info.releaseVersion);
+        }
+        return ret;
+    }
+
+    @Override
+    public synchronized long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    @Override
+    public FileId saveFile(String moduleName, final File file)
+            throws NarrativeMethodStoreException {
+        return saveFile(moduleName, new FileProvider() {
+            @Override
+            public InputStream openStream() throws NarrativeMethodStoreException {
+                try {
+                    return new FileInputStream(file);
+                } catch (IOException ex) {
+                    throw new NarrativeMethodStoreException(ex);
+                }
+            }
+            @Override
+            public long length() {
+                return file.length();
+            }
+            @Override
+            public String getName() {
+                return file.getName();
+            }
+        });
+    }
+
+    @Override
+    public synchronized FileId saveFile(String moduleName, FileProvider file)
+            throws NarrativeMethodStoreException {
+        StoredFile ret = new StoredFile();
+        ret.moduleName = moduleName;
+        ret.fileName = file.getName();
+        InputStream is = file.openStream();
+        try {
+            ret.data = IOUtils.toByteArray(is);
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+        for (Map.Entry<String, StoredFile> entry : files.entrySet())
+            if (entry.getValue().isSameAs(ret))
+                return new FileId(entry.getKey());
+        String fileId = String.valueOf(files.size() + 1);
+        files.put(fileId, ret);
+        return new FileId(fileId);
+    }
+
+    @Override
+    public synchronized FilePointer loadFile(final FileId fileId)
+            throws NarrativeMethodStoreException {
+        final StoredFile file = files.get(fileId.getId());
+        if (file == null)
+            throw new NarrativeMethodStoreException("File with id=" + fileId.getId() +
+                    " wasn't found");
+        return new FilePointer() {
+            @Override
+            public FileId getFileId() {
+                return fileId;
+            }
+            @Override
+            public File getFile() {
+                return null;
+            }
+            @Override
+            public String getName() {
+                return file.fileName;
+            }
+            @Override
+            public long length() {
+                return file.data.length;
+            }
+            @Override
+            public void saveToStream(OutputStream os) throws NarrativeMethodStoreException {
+                try {
+                    os.write(file.data);
+                } catch (IOException ex) {
+                    throw new NarrativeMethodStoreException(ex);
+                }
+            }
+            @Override
+            public InputStream openStream() {
+                return new ByteArrayInputStream(file.data);
+            }
+        };
+    }
+
+    @Override
+    public CacheStats getFileCacheStats() {
+        return null;
+    }
+
+    private RepoInfo getRepoInfo(String repoModuleName)
+            throws NarrativeMethodStoreException {
+        RepoInfo ret = repos.get(repoModuleName);
+        if (ret == null)
+            throw new NarrativeMethodStoreException("Repository " + repoModuleName +
+                    " wasn't registered");
+        return ret;
+    }
+
+    private void checkAdmin(String userId) throws NarrativeMethodStoreException {
+        if (!globalAdmins.contains(userId))
+            throw new NarrativeMethodStoreException("User " + userId +
+                    " is not global admin");
+    }
+
+    private static class RepoInfo {
+        private final Map<Long, RepoData> history = new TreeMap<Long, RepoData>();
+        private final Set<Long> betaVersions = new HashSet<Long>();
+        private final Set<Long> releaseVersions = new HashSet<Long>();
+        private RepoState state;
+        private long lastVersion;
+        private Long betaVersion;
+        private Long releaseVersion;
+    }
+
+    private static class StoredFile {
+        private String moduleName;
+        private String fileName;
+        private byte[] data;
+
+        private boolean isSameAs(StoredFile other) {
+            return moduleName.equals(other.moduleName) &&
+                    fileName.equals(other.fileName) && Arrays.equals(data, other.data);
+        }
+    }
+}
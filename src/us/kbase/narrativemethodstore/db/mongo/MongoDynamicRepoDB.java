@@ -1,25 +1,41 @@
 package us.kbase.narrativemethodstore.db.mongo;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.net.URL;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.IOUtils;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
 import org.jongo.Jongo;
 import org.jongo.MongoCollection;
 
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 import com.mongodb.DB;
-import com.mongodb.MongoException.DuplicateKey;
 
 import us.kbase.auth.AuthToken;
 import us.kbase.common.mongo.GetMongoDB;
@@ -43,7 +59,21 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     private final boolean isReadOnly;
     private final URL shockUrl;
     private final AuthToken serviceToken;
+    // Files never change once stored, so they are cached by id (null means no caching)
+    private final Cache<String, CachedFile> fileCache;
+    // Rows of repo_history never change, so providers are cached by module and version
+    private final Cache<String, RepoProvider> repoDetailsCache;
+    // Documents of repo_info (module state and versions behind tags) and versions of 
+    // commit hash tags are only kept for a short time since other instances of service 
+    // may change them, own changes drop them right away
+    private final Cache<String, Map<String, Object>> repoInfoCache;
+    private final Cache<String, Optional<Long>> commitVersionCache;
+    // Last value of change counter seen by getCatalogVersion
+    private volatile long lastCatalogVersion = -1;
     public static final long MAX_MONGO_FILE_LENGTH = 1024 * 1024;
+    public static final int FILE_CHUNK_SIZE = 255 * 1024;
+    public static final int REPO_DETAILS_CACHE_SIZE = 10000;
+    public static final long REPO_INFO_CACHE_TTL_MS = 5000;
     ////////////////////////////////////////////////////////////////////
     private static final String TABLE_REPO_INFO = "repo_info";
     private static final String FIELD_RI_MODULE_NAME = "module_name";
@@ -52,6 +82,9 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     private static final String FIELD_RI_LAST_BETA_VERSION = "last_beta_version";
     private static final String FIELD_RI_LAST_RELEASE_VERSION = "last_release_version";
     private static final String FIELD_RI_STATE = "state";
+    private static final String REPO_INFO_PROJECTION = String.format(
+            "{%s:1,%s:1,%s:1,%s:1,%s:1}", FIELD_RI_MODULE_NAME, FIELD_RI_STATE, 
+            FIELD_RI_LAST_VERSION, FIELD_RI_LAST_BETA_VERSION, FIELD_RI_LAST_RELEASE_VERSION);
     ////////////////////////////////////////////////////////////////////
     private static final String TABLE_REPO_HISTORY = "repo_history";
     private static final String FIELD_RH_MODULE_NAME = "module_name";
@@ -66,13 +99,52 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     private static final String FIELD_RF_FILE_NAME = "file_name";
     private static final String FIELD_RF_LENGTH = "length";
     private static final String FIELD_RF_MD5 = "md5";
+    private static final String FIELD_RF_SHA256 = "sha256";
+    // Legacy hex text form of file content, new files are stored as binary in "data"
     private static final String FIELD_RF_HEX_DATA = "hex_data";
+    private static final String FIELD_RF_DATA = "data";
     private static final String FIELD_RF_SHOCK_NODE_ID = "shock_node_id";
+    // Number of chunks in case file is stored in TABLE_REPO_FILE_CHUNKS
+    private static final String FIELD_RF_CHUNKS = "chunks";
+    ////////////////////////////////////////////////////////////////////
+    private static final String TABLE_CATALOG_VERSION = "catalog_version";
+    private static final String FIELD_CV_NAME = "name";
+    private static final String FIELD_CV_VERSION = "version";
+    private static final String CATALOG_VERSION_NAME = "dynamic_repos";
+
+    private static final String TABLE_REPO_FILE_CHUNKS = "repo_file_chunks";
+    private static final String FIELD_RFC_FILE_ID = "file_id";
+    private static final String FIELD_RFC_NUMBER = "n";
+    private static final String FIELD_RFC_DATA = "data";
     
     public MongoDynamicRepoDB(String host, String database, String dbUser, String dbPwd,
             List<String> globalAdminUserIds, boolean isReadOnly, URL shockUrl,
             AuthToken serviceToken) throws NarrativeMethodStoreException {
+        this(host, database, dbUser, dbPwd, globalAdminUserIds, isReadOnly, shockUrl,
+                serviceToken, 0);
+    }
+    
+    /**
+     * @param fileCacheSize maximum total size (in bytes) of content and metadata of files
+     * cached in memory, 0 turns caching off.
+     */
+    public MongoDynamicRepoDB(String host, String database, String dbUser, String dbPwd,
+            List<String> globalAdminUserIds, boolean isReadOnly, URL shockUrl,
+            AuthToken serviceToken, long fileCacheSize) throws NarrativeMethodStoreException {
         this.isReadOnly = isReadOnly;
+        this.fileCache = fileCacheSize <= 0 ? null : CacheBuilder.newBuilder()
+                .maximumWeight(fileCacheSize).weigher(new Weigher<String, CachedFile>() {
+                    @Override
+                    public int weigh(String fileId, CachedFile value) {
+                        return value.weight();
+                    }
+                }).recordStats().<String, CachedFile>build();
+        this.repoDetailsCache = CacheBuilder.newBuilder().maximumSize(REPO_DETAILS_CACHE_SIZE)
+                .<String, RepoProvider>build();
+        this.repoInfoCache = CacheBuilder.newBuilder().expireAfterWrite(REPO_INFO_CACHE_TTL_MS, 
+                TimeUnit.MILLISECONDS).<String, Map<String, Object>>build();
+        this.commitVersionCache = CacheBuilder.newBuilder().expireAfterWrite(
+                REPO_INFO_CACHE_TTL_MS, TimeUnit.MILLISECONDS).<String, Optional<Long>>build();
         this.shockUrl = shockUrl;
         this.serviceToken = serviceToken;
         try {
@@ -85,6 +157,8 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
             if (!isReadOnly)
                 ensureIndeces();
             globalAdmins = new HashSet<String>(globalAdminUserIds);
+            if (!isReadOnly)
+                startHexDataMigration();
         } catch (Exception ex) {
             throw new NarrativeMethodStoreException(ex);
         }
@@ -103,16 +177,78 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         repoFiles.ensureIndex(String.format("{%s:1}", FIELD_RF_FILE_ID), "{unique:true}");
         repoFiles.ensureIndex(String.format("{%s:1,%s:1,%s:1,%s:1}", FIELD_RF_MODULE_NAME, 
                 FIELD_RF_FILE_NAME, FIELD_RF_LENGTH, FIELD_RF_MD5), "{unique:false}");
+        repoFiles.ensureIndex(String.format("{%s:1,%s:1,%s:1,%s:1}", FIELD_RF_MODULE_NAME, 
+                FIELD_RF_FILE_NAME, FIELD_RF_LENGTH, FIELD_RF_SHA256), "{unique:false}");
+        MongoCollection repoFileChunks = jdb.getCollection(TABLE_REPO_FILE_CHUNKS);
+        repoFileChunks.ensureIndex(String.format("{%s:1,%s:1}", FIELD_RFC_FILE_ID, 
+                FIELD_RFC_NUMBER), "{unique:true}");
+        MongoCollection catalogVersion = jdb.getCollection(TABLE_CATALOG_VERSION);
+        catalogVersion.ensureIndex(String.format("{%s:1}", FIELD_CV_NAME), "{unique:true}");
     }
     
     @Override
     public boolean isRepoRegistered(String repoModuleName, boolean withDisabled)
             throws NarrativeMethodStoreException {
-        List<String> dis = MongoUtils.getProjection(jdb.getCollection(TABLE_REPO_INFO),
-                String.format("{%s:#}", FIELD_RI_MODULE_NAME), 
-                FIELD_RI_STATE, String.class, repoModuleName);
-        return dis.size() > 0 && (withDisabled || 
-                RepoState.valueOf(dis.get(0)) != RepoState.disabled);
+        Map<String, Object> info = getRepoInfo(repoModuleName);
+        return info != null && (withDisabled || 
+                RepoState.valueOf(info.get(FIELD_RI_STATE).toString()) != RepoState.disabled);
+    }
+    
+    /**
+     * Returns repo_info document of given module (it may be up to REPO_INFO_CACHE_TTL_MS 
+     * old in case it was changed by other instance) or null if module wasn't registered.
+     */
+    private Map<String, Object> getRepoInfo(String repoModuleName) {
+        Map<String, Object> ret = repoInfoCache.getIfPresent(repoModuleName);
+        if (ret == null) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> info = jdb.getCollection(TABLE_REPO_INFO).findOne(
+                    String.format("{%s:#}", FIELD_RI_MODULE_NAME), repoModuleName)
+                    .projection(REPO_INFO_PROJECTION).as(Map.class);
+            if (info == null)
+                return null;
+            ret = Collections.unmodifiableMap(info);
+            repoInfoCache.put(repoModuleName, ret);
+        }
+        return ret;
+    }
+    
+    private void dropRepoInfo(String repoModuleName) {
+        repoInfoCache.invalidate(repoModuleName);
+        commitVersionCache.invalidateAll();
+    }
+    
+    /**
+     * Increments change counter read by getCatalogVersion, it's called after every 
+     * change of repo_info or repo_history.
+     */
+    private void bumpCatalogVersion() {
+        jdb.getCollection(TABLE_CATALOG_VERSION).update(String.format("{%s:#}", FIELD_CV_NAME), 
+                CATALOG_VERSION_NAME).upsert().with(String.format("{$inc:{%s:1}}", 
+                        FIELD_CV_VERSION));
+    }
+    
+    @Override
+    public long getCatalogVersion() throws NarrativeMethodStoreException {
+        List<Long> ret = MongoUtils.getProjection(jdb.getCollection(TABLE_CATALOG_VERSION),
+                String.format("{%s:#}", FIELD_CV_NAME), FIELD_CV_VERSION, Long.class,
+                CATALOG_VERSION_NAME);
+        long version = ret.isEmpty() || ret.get(0) == null ? 0 : ret.get(0);
+        if (version != lastCatalogVersion) {
+            // Some instance changed dynamic repos, cached repo_info is not trusted anymore
+            repoInfoCache.invalidateAll();
+            commitVersionCache.invalidateAll();
+            lastCatalogVersion = version;
+        }
+        return version;
+    }
+    
+    private Map<String, Object> getRepoInfoChecked(String repoModuleName)
+            throws NarrativeMethodStoreException {
+        Map<String, Object> ret = getRepoInfo(repoModuleName);
+        if (ret == null)
+            throwRepoWasntRegistered(repoModuleName);
+        return ret;
     }
     
     private void checkRepoRegistered(String repoModuleName, List<?> rows)
@@ -148,6 +284,7 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         checkAdmin(userId);
         String repoModuleName = repoDetails.getModuleName();
         long newVersion = System.currentTimeMillis();
+        dropRepoInfo(repoModuleName);
         boolean wasReg = isRepoRegistered(repoModuleName, true);
         if (wasReg) {
             long oldVersion = getRepoLastVersion(repoModuleName);
@@ -193,6 +330,8 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
                     FIELD_RI_LAST_VERSION, FIELD_RI_STATE), 
                     repoModuleName, newVersion, RepoState.ready);
         }
+        bumpCatalogVersion();
+        dropRepoInfo(repoModuleName);
     }
     
     /*private boolean isDockerImageInUse(String dockerImage) 
@@ -205,11 +344,12 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     
     private long getRepoLastVersion(String repoModuleName)
             throws NarrativeMethodStoreException {
-        List<Long> vers = MongoUtils.getProjection(jdb.getCollection(TABLE_REPO_INFO),
-                String.format("{%s:#}", FIELD_RI_MODULE_NAME), 
-                FIELD_RI_LAST_VERSION, Long.class, repoModuleName);
-        checkRepoRegistered(repoModuleName, vers);
-        return vers.get(0);
+        return getVersionField(getRepoInfoChecked(repoModuleName), FIELD_RI_LAST_VERSION);
+    }
+    
+    private static Long getVersionField(Map<String, Object> info, String versionField) {
+        Object ret = info.get(versionField);
+        return ret == null ? null : ((Number)ret).longValue();
     }
 
     @Override
@@ -217,24 +357,25 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
             throws NarrativeMethodStoreException {
         if (tag == null || tag.equals(RepoTag.dev))
             return getRepoLastVersion(repoModuleName);
-        List<Long> vers;
-        if (tag != null && tag.isGitCommitHash()) {
-            vers = listRepoVersions(repoModuleName, tag);
-        } else {
-            String versionField = null;
-            if (tag.equals(RepoTag.beta)) {
-                versionField = FIELD_RI_LAST_BETA_VERSION;
-            } else if (tag.equals(RepoTag.release)) {
-                versionField = FIELD_RI_LAST_RELEASE_VERSION;
-            } else {
-                throw new NarrativeMethodStoreException("Unsupported tag: " + tag);
+        if (tag.isGitCommitHash()) {
+            String key = repoModuleName + ":" + tag;
+            Optional<Long> ret = commitVersionCache.getIfPresent(key);
+            if (ret == null) {
+                List<Long> vers = listRepoVersions(repoModuleName, tag);
+                ret = Optional.fromNullable(vers.size() == 0 ? null : Collections.max(vers));
+                commitVersionCache.put(key, ret);
             }
-            vers = MongoUtils.getProjection(jdb.getCollection(TABLE_REPO_INFO),
-                    String.format("{%s:#}", FIELD_RI_MODULE_NAME), 
-                    versionField, Long.class, repoModuleName);
+            return ret.orNull();
+        }
+        String versionField = null;
+        if (tag.equals(RepoTag.beta)) {
+            versionField = FIELD_RI_LAST_BETA_VERSION;
+        } else if (tag.equals(RepoTag.release)) {
+            versionField = FIELD_RI_LAST_RELEASE_VERSION;
+        } else {
+            throw new NarrativeMethodStoreException("Unsupported tag: " + tag);
         }
-        checkRepoRegistered(repoModuleName, vers);
-        return vers.size() == 0 ? null : Collections.max(vers);
+        return getVersionField(getRepoInfoChecked(repoModuleName), versionField);
     }
 
     @Override
@@ -302,11 +443,17 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     @Override
     public RepoProvider getRepoDetailsHistory(String repoModuleName,
             long version) throws NarrativeMethodStoreException {
+        String key = repoModuleName + ":" + version;
+        RepoProvider cached = repoDetailsCache.getIfPresent(key);
+        if (cached != null)
+            return cached;
         List<RepoData> ret = MongoUtils.getProjection(jdb.getCollection(TABLE_REPO_HISTORY),
                 String.format("{%s:#,%s:#}", FIELD_RH_MODULE_NAME, FIELD_RH_VERSION), 
                 FIELD_RH_REPO_DATA, RepoData.class, repoModuleName, version);
         checkRepoRegistered(repoModuleName, ret);
-        return new JsonRepoProvider(this, ret.get(0));
+        RepoProvider provider = new JsonRepoProvider(this, ret.get(0));
+        repoDetailsCache.put(key, provider);
+        return provider;
     }
 
     @Override
@@ -352,6 +499,8 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         }
         data2.update(String.format("{%s:#,%s:#}", FIELD_RH_MODULE_NAME, FIELD_RH_VERSION), 
                 repoModuleName, changedVer).with("#", hist);
+        bumpCatalogVersion();
+        dropRepoInfo(repoModuleName);
     }
     
     @Override
@@ -369,6 +518,11 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         return listRepoOwners(repoModuleName).contains(userId);
     }
 
+    @Override
+    public boolean isGlobalAdmin(String userId) throws NarrativeMethodStoreException {
+        return globalAdmins.contains(userId);
+    }
+
     private void checkAdmin(String userId)
             throws NarrativeMethodStoreException {
         if (!globalAdmins.contains(userId))
@@ -395,11 +549,7 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     @Override
     public RepoState getRepoState(String repoModuleName)
             throws NarrativeMethodStoreException {
-        List<String> state = MongoUtils.getProjection(jdb.getCollection(TABLE_REPO_INFO),
-                String.format("{%s:#}", FIELD_RI_MODULE_NAME), 
-                FIELD_RI_STATE, String.class, repoModuleName);
-        checkRepoRegistered(repoModuleName, state);
-        return RepoState.valueOf(state.get(0));
+        return RepoState.valueOf(getRepoInfoChecked(repoModuleName).get(FIELD_RI_STATE).toString());
     }
     
     @Override
@@ -421,6 +571,26 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         obj.put(FIELD_RI_STATE, state);
         info.update(String.format("{%s:#}", FIELD_RI_MODULE_NAME), 
                 repoModuleName).with("#", obj);
+        bumpCatalogVersion();
+        dropRepoInfo(repoModuleName);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<String, String> getRepoVersionStamps()
+            throws NarrativeMethodStoreException {
+        Map<String, String> ret = new TreeMap<String, String>();
+        for (Map<String, Object> info : jdb.getCollection(TABLE_REPO_INFO).find().projection(
+                REPO_INFO_PROJECTION).as(Map.class)) {
+            // Stamps are always read from DB, so cached documents are replaced by fresh
+            // ones to make sure index rebuilt after stamps change sees the same state
+            repoInfoCache.put((String)info.get(FIELD_RI_MODULE_NAME), 
+                    Collections.unmodifiableMap(info));
+            ret.put((String)info.get(FIELD_RI_MODULE_NAME), info.get(FIELD_RI_STATE) + ":" + 
+                    info.get(FIELD_RI_LAST_VERSION) + ":" + info.get(FIELD_RI_LAST_BETA_VERSION) + 
+                    ":" + info.get(FIELD_RI_LAST_RELEASE_VERSION));
+        }
+        return ret;
     }
     
     @Override
@@ -445,7 +615,12 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         });
     }
     
-    @SuppressWarnings({ "unchecked", "rawtypes" })
+    /**
+     * Stores file content reading it only once. Files are deduplicated by module name, 
+     * file name, length and SHA-256 of content which are computed while content is 
+     * being stored (for large files stored chunks are dropped in case the same file 
+     * is found after that).
+     */
     @Override
     public FileId saveFile(String moduleName, FileProvider file) 
             throws NarrativeMethodStoreException {
@@ -453,52 +628,23 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
             throwChangeOperation();
         String fileName = file.getName();
         long length = file.length();
-        InputStream is = file.openStream();
-        String md5 = MongoUtils.getMD5(is);
-        try {
-            is.close();
-        } catch (IOException ex) {
-            throw new NarrativeMethodStoreException(ex);
-        }
         MongoCollection files = jdb.getCollection(TABLE_REPO_FILES);
-        Iterator<Map> it = files.find(String.format("{%s:#,%s:#,%s:#,%s:#}", 
-                FIELD_RF_MODULE_NAME, FIELD_RF_FILE_NAME, FIELD_RF_LENGTH, FIELD_RF_MD5), 
-                moduleName, fileName, length, md5).as(Map.class).iterator();
-        while (it.hasNext()) {
-            Map<String, Object> obj = it.next();
-            is = file.openStream();
-            try {
-                OutputComparatorStream ocs = new OutputComparatorStream(is);
-                loadFile(obj, ocs);
-                if (!ocs.isDifferent()) {
-                    String fileId = (String)obj.get(FIELD_RF_FILE_ID);
-                    //System.out.println("File was found: " + fileName + ", " + length + ", " + md5 + " -> " + fileId);
-                    return new FileId(fileId);
-                }
-            } finally {
-                try {
-                    is.close();
-                } catch (IOException ex) {
-                    throw new NarrativeMethodStoreException(ex);
-                }
-            }
-        }
-        // We couldn't find file which is equal to save request. 
-        // Let's store original copy of it.
-        String hexData = null;
-        String shockNodeId = null;
-        is = file.openStream();
+        MessageDigest sha256Digest = MongoUtils.getDigest("SHA-256");
+        MessageDigest md5Digest = MongoUtils.getDigest("MD5");
+        // Ids are unique without asking database, so there is nothing to retry
+        String fileId = new ObjectId().toString();
+        byte[] data = null;
+        Integer chunks = null;
+        InputStream is = new DigestInputStream(new DigestInputStream(file.openStream(), 
+                sha256Digest), md5Digest);
         try {
-            if (length <= MAX_MONGO_FILE_LENGTH || shockUrl == null) {
-                hexData = MongoUtils.streamToHex(is);
+            if (length <= MAX_MONGO_FILE_LENGTH) {
+                data = IOUtils.toByteArray(is);
             } else {
-                try {
-                    BasicShockClient cl = new BasicShockClient(shockUrl, serviceToken);
-                    shockNodeId = cl.addNode(is, fileName, "JSON").getId().getId();
-                } catch (Exception ex) {
-                    throw new NarrativeMethodStoreException(ex);
-                }
+                chunks = saveFileChunks(fileId, is);
             }
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException(ex);
         } finally {
             try {
                 is.close();
@@ -506,23 +652,24 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
                 throw new NarrativeMethodStoreException(ex);
             }
         }
-        long fileIdNum = System.currentTimeMillis();
-        while (true) {
-            try {
-                files.insert(String.format("{%s:#}", FIELD_RF_FILE_ID), "" + fileIdNum);
-                break;
-            } catch (DuplicateKey ex) {
-                fileIdNum++;
-            }
+        String sha256 = MongoUtils.byteToHex(sha256Digest.digest());
+        String md5 = MongoUtils.byteToHex(md5Digest.digest());
+        List<String> existingFileIds = MongoUtils.getProjection(files, String.format(
+                "{%s:#,%s:#,%s:#,%s:#}", FIELD_RF_MODULE_NAME, FIELD_RF_FILE_NAME, 
+                FIELD_RF_LENGTH, FIELD_RF_SHA256), FIELD_RF_FILE_ID, String.class, 
+                moduleName, fileName, length, sha256);
+        if (!existingFileIds.isEmpty()) {
+            if (chunks != null)
+                jdb.getCollection(TABLE_REPO_FILE_CHUNKS).remove(String.format("{%s:#}", 
+                        FIELD_RFC_FILE_ID), fileId);
+            return new FileId(existingFileIds.get(0));
         }
-        String fileId = String.valueOf(fileIdNum);
-        files.update(String.format("{%s:#}", FIELD_RF_FILE_ID), 
-                fileId).with(String.format("{%s:#,%s:#,%s:#,%s:#,%s:#,%s:#,%s:#}", 
-                        FIELD_RF_FILE_ID, FIELD_RF_MODULE_NAME, FIELD_RF_FILE_NAME, 
-                        FIELD_RF_LENGTH, FIELD_RF_MD5, FIELD_RF_HEX_DATA, 
-                        FIELD_RF_SHOCK_NODE_ID), fileId, moduleName, fileName, length, 
-                        md5, hexData, shockNodeId);
-        //System.out.println("File was saved: " + fileName + ", " + length + ", " + md5 + " -> " + fileId);
+        // Document is complete right after single insert, chunks (if any) are already there
+        files.insert(String.format("{%s:#,%s:#,%s:#,%s:#,%s:#,%s:#,%s:#,%s:#}", 
+                FIELD_RF_FILE_ID, FIELD_RF_MODULE_NAME, FIELD_RF_FILE_NAME, 
+                FIELD_RF_LENGTH, FIELD_RF_MD5, FIELD_RF_SHA256, FIELD_RF_DATA, 
+                FIELD_RF_CHUNKS), fileId, moduleName, fileName, length, 
+                md5, sha256, data, chunks);
         return new FileId(fileId);
     }
     
@@ -541,27 +688,117 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     @Override
     public FilePointer loadFile(FileId fileId)
             throws NarrativeMethodStoreException {
-        Map<String, Object> obj = getFileObject(fileId);
-        String fileName = (String)obj.get(FIELD_RF_FILE_NAME);
-        long length = (Long)obj.get(FIELD_RF_LENGTH);
-        return new DbFilePointer(fileId, fileName, length);
+        CachedFile file = getCachedFile(fileId);
+        return new DbFilePointer(fileId, file.fileName, file.length);
     }
 
     private void loadFile(FileId fileId, OutputStream target) 
             throws NarrativeMethodStoreException {
-        loadFile(getFileObject(fileId), target);
+        CachedFile file = getCachedFile(fileId);
+        if (file.data == null) {
+            // Large file stored in chunks or in Shock
+            loadFile(getFileObject(fileId), target);
+        } else {
+            try {
+                target.write(file.data);
+            } catch (IOException ex) {
+                throw new NarrativeMethodStoreException(ex);
+            }
+        }
+    }
+    
+    /**
+     * Small files are read from their cached content, large ones stored in chunks are
+     * read chunk by chunk and ones stored in Shock are piped from a separate thread.
+     */
+    private InputStream openFile(FileId fileId) throws NarrativeMethodStoreException {
+        CachedFile file = getCachedFile(fileId);
+        if (file.data != null)
+            return new ByteArrayInputStream(file.data);
+        final Map<String, Object> obj = getFileObject(fileId);
+        Number chunks = (Number)obj.get(FIELD_RF_CHUNKS);
+        if (chunks != null)
+            return new ChunksInputStream(fileId.getId(), chunks.intValue());
+        final FileErrorPipe ret = new FileErrorPipe();
+        final PipedOutputStream os;
+        try {
+            os = new PipedOutputStream(ret);
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        }
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loadFile(obj, os);
+                } catch (Throwable ex) {
+                    ret.error = ex;
+                } finally {
+                    try {
+                        os.close();
+                    } catch (IOException ignore) {}
+                }
+            }
+        }, "NarrativeMethodStore-file-pipe");
+        t.setDaemon(true);
+        t.start();
+        return ret;
+    }
+    
+    private CachedFile getCachedFile(FileId fileId) throws NarrativeMethodStoreException {
+        CachedFile ret = fileCache == null ? null : fileCache.getIfPresent(fileId.getId());
+        if (ret == null) {
+            Map<String, Object> obj = getFileObject(fileId);
+            byte[] data = getBinaryData(obj.get(FIELD_RF_DATA));
+            String hexData = (String)obj.get(FIELD_RF_HEX_DATA);
+            if (data == null && hexData != null) {
+                try {
+                    data = MongoUtils.hexToBytes(hexData);
+                } catch (IllegalArgumentException ex) {
+                    throw new NarrativeMethodStoreException(ex);
+                }
+            }
+            ret = new CachedFile((String)obj.get(FIELD_RF_FILE_NAME), 
+                    (Long)obj.get(FIELD_RF_LENGTH), data);
+            if (fileCache != null)
+                fileCache.put(fileId.getId(), ret);
+        }
+        return ret;
+    }
+    
+    @Override
+    public CacheStats getFileCacheStats() {
+        return fileCache == null ? null : fileCache.stats();
+    }
+    
+    /**
+     * @return total weight (size of content and metadata in bytes) of files cached in
+     * memory, 0 in case caching is turned off.
+     */
+    public long getFileCacheWeight() {
+        long ret = 0;
+        if (fileCache != null)
+            for (CachedFile file : fileCache.asMap().values())
+                ret += file.weight();
+        return ret;
     }
     
     private void loadFile(Map<String, Object> obj, OutputStream target) 
             throws NarrativeMethodStoreException {
         try {
+            byte[] data = getBinaryData(obj.get(FIELD_RF_DATA));
             String hexData = (String)obj.get(FIELD_RF_HEX_DATA);
-            if (hexData == null) {
+            Number chunks = (Number)obj.get(FIELD_RF_CHUNKS);
+            if (data != null) {
+                target.write(data);
+            } else if (chunks != null) {
+                loadFileChunks((String)obj.get(FIELD_RF_FILE_ID), chunks.intValue(), target);
+            } else if (hexData != null) {
+                MongoUtils.writeHexAsBytes(hexData, target);
+            } else {
                 String shockNodeId = (String)obj.get(FIELD_RF_SHOCK_NODE_ID);
                 BasicShockClient cl = new BasicShockClient(shockUrl, serviceToken);
                 cl.getFile(new ShockNodeId(shockNodeId), target);
-            } else {
-                target.write(MongoUtils.hexToBytes(hexData));
             }
         } catch (IOException ex) {
             throw new NarrativeMethodStoreException(ex);
@@ -574,6 +811,104 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         }
     }
     
+    /**
+     * Stores content of large file as a sequence of chunks reading only one chunk into
+     * memory at a time.
+     * @return number of chunks.
+     */
+    private int saveFileChunks(String fileId, InputStream is) throws IOException {
+        MongoCollection chunks = jdb.getCollection(TABLE_REPO_FILE_CHUNKS);
+        byte[] buffer = new byte[FILE_CHUNK_SIZE];
+        int n = 0;
+        while (true) {
+            int len = IOUtils.read(is, buffer);
+            if (len == 0)
+                break;
+            chunks.insert(String.format("{%s:#,%s:#,%s:#}", FIELD_RFC_FILE_ID, 
+                    FIELD_RFC_NUMBER, FIELD_RFC_DATA), fileId, n, 
+                    len == buffer.length ? buffer : Arrays.copyOf(buffer, len));
+            n++;
+            if (len < buffer.length)
+                break;
+        }
+        return n;
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private void loadFileChunks(String fileId, int chunkCount, OutputStream target) 
+            throws IOException, NarrativeMethodStoreException {
+        MongoCollection chunks = jdb.getCollection(TABLE_REPO_FILE_CHUNKS);
+        int n = 0;
+        for (Map chunk : chunks.find(String.format("{%s:#}", FIELD_RFC_FILE_ID), fileId)
+                .sort(String.format("{%s:1}", FIELD_RFC_NUMBER)).as(Map.class)) {
+            if (((Number)chunk.get(FIELD_RFC_NUMBER)).intValue() != n)
+                throw new NarrativeMethodStoreException("Chunk " + n + " of file with id=" + 
+                        fileId + " is not found");
+            target.write(getBinaryData(chunk.get(FIELD_RFC_DATA)));
+            n++;
+        }
+        if (n != chunkCount)
+            throw new NarrativeMethodStoreException("File with id=" + fileId + " has " + 
+                    n + " chunks instead of " + chunkCount);
+    }
+    
+    private static byte[] getBinaryData(Object value) {
+        if (value instanceof Binary)
+            return ((Binary)value).getData();
+        return (byte[])value;
+    }
+    
+    /**
+     * Starts background thread converting files stored in legacy hex form into binary
+     * ones. Files are readable in both forms, so it's safe to serve them meanwhile.
+     */
+    public void startHexDataMigration() {
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int count = migrateHexData();
+                    if (count > 0)
+                        System.out.println("[" + new Date() + "] NarrativeMethodStore.MongoDynamicRepoDB: " + 
+                                count + " files were converted from hex to binary form");
+                } catch (Exception ex) {
+                    System.err.println("[" + new Date() + "] NarrativeMethodStore.MongoDynamicRepoDB: " +
+                            "error converting files from hex to binary form: " + ex.getMessage());
+                }
+            }
+        }, "NarrativeMethodStore-hex-data-migration");
+        t.setDaemon(true);
+        t.start();
+    }
+    
+    /**
+     * Converts all files stored in legacy hex form into binary form one by one.
+     * @return number of converted files.
+     */
+    @SuppressWarnings("unchecked")
+    public int migrateHexData() throws NarrativeMethodStoreException {
+        if (isReadOnly)
+            throwChangeOperation();
+        MongoCollection files = jdb.getCollection(TABLE_REPO_FILES);
+        List<String> fileIds = MongoUtils.getProjection(files, String.format(
+                "{%s:{$exists:true}}", FIELD_RF_HEX_DATA), FIELD_RF_FILE_ID, String.class);
+        int ret = 0;
+        for (String fileId : fileIds) {
+            Map<String, Object> obj = files.findOne(String.format("{%s:#}", FIELD_RF_FILE_ID), 
+                    fileId).as(Map.class);
+            String hexData = obj == null ? null : (String)obj.get(FIELD_RF_HEX_DATA);
+            if (hexData == null)
+                continue;
+            byte[] data = MongoUtils.hexToBytes(hexData);
+            // Condition on hex field makes concurrent migrations harmless
+            files.update(String.format("{%s:#,%s:{$exists:true}}", FIELD_RF_FILE_ID, 
+                    FIELD_RF_HEX_DATA), fileId).with(String.format("{$set:{%s:#},$unset:{%s:1}}", 
+                            FIELD_RF_DATA, FIELD_RF_HEX_DATA), data);
+            ret++;
+        }
+        return ret;
+    }
+    
     public class DbFilePointer implements FilePointer {
         private final FileId fileId;
         private final String fileName;
@@ -610,6 +945,116 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
                 throws NarrativeMethodStoreException {
             loadFile(fileId, os);
         }
+        
+        @Override
+        public InputStream openStream() throws NarrativeMethodStoreException {
+            return openFile(fileId);
+        }
+    }
+    
+    /**
+     * Reads content of large file fetching its chunks one by one.
+     */
+    private class ChunksInputStream extends InputStream {
+        private final String fileId;
+        private final int chunkCount;
+        @SuppressWarnings("rawtypes")
+        private final Iterator<Map> chunks;
+        private byte[] chunk = new byte[0];
+        private int pos = 0;
+        private int n = 0;
+        
+        ChunksInputStream(String fileId, int chunkCount) {
+            this.fileId = fileId;
+            this.chunkCount = chunkCount;
+            this.chunks = jdb.getCollection(TABLE_REPO_FILE_CHUNKS).find(String.format(
+                    "{%s:#}", FIELD_RFC_FILE_ID), fileId).sort(String.format("{%s:1}", 
+                            FIELD_RFC_NUMBER)).as(Map.class).iterator();
+        }
+        
+        private boolean nextChunk() throws IOException {
+            while (pos >= chunk.length) {
+                if (!chunks.hasNext()) {
+                    if (n != chunkCount)
+                        throw new IOException("File with id=" + fileId + " has " + 
+                                n + " chunks instead of " + chunkCount);
+                    return false;
+                }
+                @SuppressWarnings("rawtypes")
+                Map next = chunks.next();
+                if (((Number)next.get(FIELD_RFC_NUMBER)).intValue() != n)
+                    throw new IOException("Chunk " + n + " of file with id=" + 
+                            fileId + " is not found");
+                chunk = getBinaryData(next.get(FIELD_RFC_DATA));
+                pos = 0;
+                n++;
+            }
+            return true;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk())
+                return -1;
+            return chunk[pos++] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!nextChunk())
+                return -1;
+            int ret = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk, pos, b, off, ret);
+            pos += ret;
+            return ret;
+        }
+    }
+    
+    /**
+     * Pipe which reports error of writing thread to reader instead of plain end of data.
+     */
+    private static class FileErrorPipe extends PipedInputStream {
+        volatile Throwable error = null;
+        
+        FileErrorPipe() {
+            super(FILE_CHUNK_SIZE);
+        }
+        
+        private int check(int ret) throws IOException {
+            if (ret < 0 && error != null)
+                throw new IOException("Error loading file: " + error.getMessage(), error);
+            return ret;
+        }
+        
+        @Override
+        public synchronized int read() throws IOException {
+            return check(super.read());
+        }
+        
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            return check(super.read(b, off, len));
+        }
+    }
+    
+    private static class CachedFile {
+        final String fileName;
+        final long length;
+        // Content of files stored in repo_files documents, null for large files
+        final byte[] data;
+        
+        CachedFile(String fileName, long length, byte[] data) {
+            this.fileName = fileName;
+            this.length = length;
+            this.data = data;
+        }
+        
+        int weight() {
+            return 100 + (fileName == null ? 0 : fileName.length() * 2) + 
+                    (data == null ? 0 : data.length);
+        }
     }
     
     public static class RepoHistory {
@@ -2,6 +2,7 @@ package us.kbase.narrativemethodstore.db.mongo;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.util.ArrayList;
@@ -19,6 +20,15 @@ import com.google.common.collect.Lists;
 
 public class MongoUtils {
     private static final String HEXES = "0123456789abcdef";
+    private static final int[] HEX_VALUES = new int[128];
+    static {
+        for (int i = 0; i < HEX_VALUES.length; i++)
+            HEX_VALUES[i] = -1;
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEXES.charAt(i)] = i;
+            HEX_VALUES[Character.toUpperCase(HEXES.charAt(i))] = i;
+        }
+    }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public static <T> List<T> getProjection(MongoCollection infos,
@@ -105,13 +115,48 @@ public class MongoUtils {
     }
     
     public static byte[] hexToBytes(String hex) {
-        hex = hex.toLowerCase();
         byte[] ret = new byte[hex.length() / 2];
-        for (int i = 0; i < ret.length; i++)
-            ret[i] = (byte)Integer.parseInt(hex.substring(i * 2, (i + 1) * 2), 16);
+        decodeHex(hex, 0, ret, ret.length);
         return ret;
     }
     
+    /**
+     * Decodes hex text into target stream by chunks without making whole byte array.
+     */
+    public static void writeHexAsBytes(String hex, OutputStream target) throws IOException {
+        byte[] buffer = new byte[10000];
+        int total = hex.length() / 2;
+        for (int pos = 0; pos < total; pos += buffer.length) {
+            int len = Math.min(buffer.length, total - pos);
+            decodeHex(hex, pos * 2, buffer, len);
+            target.write(buffer, 0, len);
+        }
+    }
+    
+    private static void decodeHex(String hex, int offset, byte[] target, int len) {
+        for (int i = 0; i < len; i++) {
+            int pos = offset + i * 2;
+            target[i] = (byte)((hexValue(hex, pos) << 4) | hexValue(hex, pos + 1));
+        }
+    }
+    
+    private static int hexValue(String hex, int pos) {
+        char ch = hex.charAt(pos);
+        int ret = ch < HEX_VALUES.length ? HEX_VALUES[ch] : -1;
+        if (ret < 0)
+            throw new IllegalArgumentException("Wrong hex character at position " + pos + ": " + ch);
+        return ret;
+    }
+    
+    public static MessageDigest getDigest(String algorithm) 
+            throws NarrativeMethodStoreException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (Exception ex) {
+            throw new NarrativeMethodStoreException(ex);
+        }
+    }
+    
     public static String getMD5(InputStream is) throws NarrativeMethodStoreException {
         try {
             MessageDigest digest = MessageDigest.getInstance("MD5");
@@ -6,10 +6,12 @@ import java.net.ServerSocket;
 import java.nio.file.Files;
 import java.util.Arrays;
 
-import us.kbase.common.utils.ProcessHelper;
+import us.kbase.common.utils.ProcessExecutor;
 import us.kbase.narrativemethodstore.util.TextUtils;
 
 public class MongoDBHelper {
+    private static final long COMMAND_TIMEOUT_MS = 60000;
+    
     private String tempDirName = "test/temp";
     private final String testName;
     
@@ -70,7 +72,7 @@ public class MongoDBHelper {
                 mongodExePath + " --nojournal --config " + configFile.getAbsolutePath() + " >out.txt 2>err.txt & pid=$!",
                 "echo $pid > pid.txt"
                 ), scriptFile);
-        ProcessHelper.cmd("bash", scriptFile.getCanonicalPath()).exec(dir);
+        exec(dir, "bash", scriptFile.getCanonicalPath());
         boolean ready = false;
         int waitSec = 120;
         for (int n = 0; n < waitSec; n++) {
@@ -99,12 +101,27 @@ public class MongoDBHelper {
             File pidFile = new File(dir, "pid.txt");
             if (pidFile.exists()) {
                 String pid = TextUtils.lines(pidFile).get(0).trim();
-                ProcessHelper.cmd("kill", pid).exec(dir);
+                exec(dir, "kill", pid);
                 System.out.println(dir.getName() + " was stopped");
             }
         } catch (Exception ignore) {}
     }
     
+    /**
+     * Runs short command (mongod started by script runs in background with its own 
+     * output files) on shared executor, so it's killed after timeout.
+     */
+    private static void exec(File dir, String... cmdParts) throws Exception {
+        ProcessExecutor.Result res = ProcessExecutor.getDefault().exec(cmdParts, dir, 
+                COMMAND_TIMEOUT_MS);
+        if (res.isTimedOut())
+            throw new IllegalStateException("Command " + Arrays.asList(cmdParts) + 
+                    " didn't finish in " + res.getDurationMs() + " ms and was killed");
+        if (res.getExitCode() != 0)
+            throw new IllegalStateException("Command " + Arrays.asList(cmdParts) + 
+                    " failed: " + res.getErrors());
+    }
+    
     private static int findFreePort() {
         try (ServerSocket socket = new ServerSocket(0)) {
             return socket.getLocalPort();
@@ -8,6 +8,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -15,6 +17,7 @@ import java.util.Map;
 
 import junit.framework.Assert;
 
+import org.apache.commons.io.IOUtils;
 import org.jongo.Jongo;
 import org.jongo.MongoCollection;
 import org.junit.After;
@@ -35,6 +38,7 @@ import us.kbase.narrativemethodstore.MethodBriefInfo;
 import us.kbase.narrativemethodstore.MethodParameter;
 import us.kbase.narrativemethodstore.MethodSpec;
 import us.kbase.narrativemethodstore.TextOptions;
+import us.kbase.narrativemethodstore.db.FileId;
 import us.kbase.narrativemethodstore.db.FileLookup;
 import us.kbase.narrativemethodstore.db.FilePointer;
 import us.kbase.narrativemethodstore.db.JsonRepoProvider;
@@ -44,7 +48,9 @@ import us.kbase.narrativemethodstore.db.DynamicRepoDB.RepoState;
 import us.kbase.narrativemethodstore.db.docker.DockerImageBuilder;
 import us.kbase.narrativemethodstore.db.github.FileRepoProvider;
 import us.kbase.narrativemethodstore.db.github.GitHubRepoProvider;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
 import us.kbase.narrativemethodstore.db.github.PySrvRepoPreparator;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
 import us.kbase.narrativemethodstore.db.github.YamlUtils;
 import us.kbase.narrativemethodstore.db.mongo.MongoDynamicRepoDB;
 import us.kbase.narrativemethodstore.db.mongo.OutputComparatorStream;
@@ -131,6 +137,11 @@ public class MongoDynamicRepoDBTest {
             RepoProvider savedRP = db.getRepoDetails(repoModuleName, null);
             Assert.assertEquals(JsonRepoProvider.repoProviderToJsonString(db, pvd), 
                     JsonRepoProvider.repoProviderToJsonString(db, savedRP));
+            // History rows are immutable so the same provider is returned from cache
+            Assert.assertSame(savedRP, db.getRepoDetails(repoModuleName, null));
+            Assert.assertNull(db.getRepoLastVersion(repoModuleName, RepoTag.beta));
+            db.pushRepoToTag(repoModuleName, RepoTag.beta, globalAdmin);
+            Assert.assertEquals(ver2, (long)db.getRepoLastVersion(repoModuleName, RepoTag.beta));
             if (!localFiles) {
                 Assert.assertFalse(savedRP.getGitCommitHash().contains("\n"));
                 Assert.assertEquals(40, savedRP.getGitCommitHash().length());
@@ -196,6 +207,183 @@ public class MongoDynamicRepoDBTest {
         }
     }
     
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCatalogVersion() throws Exception {
+        String host = "localhost:" + dbHelper.getMongoPort();
+        String dbName = "test_catalog_version_mongo";
+        String admin = "admin";
+        // Two instances of service sharing the same DB
+        MongoDynamicRepoDB db1 = new MongoDynamicRepoDB(host, dbName, null, null, 
+                Arrays.asList(admin), false, shockUrl, shockToken);
+        MongoDynamicRepoDB db2 = new MongoDynamicRepoDB(host, dbName, null, null, 
+                Arrays.asList(admin), true, shockUrl, shockToken);
+        long ver0 = db2.getCatalogVersion();
+        RepoProvider pvd = new FileRepoProvider(new File("test/data/test_repo_1"));
+        String moduleName = pvd.getModuleName();
+        db1.registerRepo(admin, pvd);
+        long ver1 = db2.getCatalogVersion();
+        Assert.assertTrue(ver1 > ver0);
+        Assert.assertEquals(db1.getRepoLastVersion(moduleName, null), 
+                db2.getRepoLastVersion(moduleName, null));
+        Assert.assertNull(db2.getRepoLastVersion(moduleName, RepoTag.beta));
+        db1.pushRepoToTag(moduleName, RepoTag.beta, admin);
+        long ver2 = db2.getCatalogVersion();
+        Assert.assertTrue(ver2 > ver1);
+        // Cached repo_info of second instance is dropped once change is seen
+        Assert.assertEquals(db1.getRepoLastVersion(moduleName, null), 
+                db2.getRepoLastVersion(moduleName, RepoTag.beta));
+        db1.setRepoState(admin, moduleName, RepoState.disabled);
+        Assert.assertTrue(db2.getCatalogVersion() > ver2);
+        Assert.assertEquals(RepoState.disabled, db2.getRepoState(moduleName));
+        Assert.assertEquals(db1.getRepoVersionStamps(), db2.getRepoVersionStamps());
+    }
+    
+    @Test
+    public void testShallowCloneRegistration() throws Exception {
+        String host = "localhost:" + dbHelper.getMongoPort();
+        String admin = "admin";
+        String methodId = "compare_genome_features";
+        File srcDir = new File(dbHelper.getWorkDir(), "shallow_src");
+        org.apache.commons.io.FileUtils.copyDirectory(new File("test/data/test_repo_1"), srcDir);
+        GitUtils.gitCommand("git init", "init", srcDir, null);
+        GitUtils.gitCommand("git add -A", "add", srcDir, null);
+        GitUtils.gitCommand("git -c user.name=test -c user.email=test@test commit -m first", 
+                "commit", srcDir, null);
+        File bareDir = new File(dbHelper.getWorkDir(), "shallow_bare.git");
+        GitUtils.gitCommand("git clone --bare " + srcDir.getAbsolutePath() + " " + 
+                bareDir.getAbsolutePath(), "clone", dbHelper.getWorkDir(), null);
+        URL url = new URL("file://localhost" + bareDir.getAbsolutePath());
+        MongoDynamicRepoDB db = new MongoDynamicRepoDB(host, dbName, null, null, 
+                Arrays.asList(admin), false, shockUrl, shockToken);
+        RepoProvider shallowPvd = new GitHubRepoProvider(url, null, dbHelper.getWorkDir(), true);
+        RepoProvider fullPvd = new GitHubRepoProvider(url, null, dbHelper.getWorkDir(), false);
+        try {
+            db.registerRepo(admin, shallowPvd);
+            RepoProvider saved = db.getRepoDetails(shallowPvd.getModuleName(), null);
+            Assert.assertEquals(fullPvd.getGitCommitHash(), saved.getGitCommitHash());
+            // Stored data (including repo zip) is the same as for repo registered from full clone
+            Assert.assertEquals(JsonRepoProvider.repoProviderToJsonString(db, fullPvd), 
+                    JsonRepoProvider.repoProviderToJsonString(db, saved));
+            Assert.assertNull(saved.getRepoZip());
+            Assert.assertEquals(TextUtils.text(new File(srcDir, "ui/narrative/methods/" + 
+                    methodId + "/spec.json")), asText(saved.getUINarrativeMethodSpec(methodId)));
+            Assert.assertEquals(TextUtils.text(new File(srcDir, "ui/narrative/methods/" + 
+                    methodId + "/display.yaml")), asText(saved.getUINarrativeMethodDisplay(methodId)));
+            Assert.assertEquals(fullPvd.listScreenshotIDs(methodId), 
+                    saved.listScreenshotIDs(methodId));
+        } finally {
+            shallowPvd.dispose();
+            fullPvd.dispose();
+        }
+    }
+    
+    @Test
+    public void testFileCache() throws Exception {
+        String host = "localhost:" + dbHelper.getMongoPort();
+        String admin = "admin";
+        String moduleName = "FileCacheTest";
+        long cacheSize = 5000;
+        MongoDynamicRepoDB db = new MongoDynamicRepoDB(host, dbName, null, null, 
+                Arrays.asList(admin), false, shockUrl, shockToken, cacheSize);
+        File dir = new File(dbHelper.getWorkDir(), "file_cache");
+        dir.mkdirs();
+        int fileCount = 10;
+        List<FileId> fileIds = new ArrayList<FileId>();
+        List<String> texts = new ArrayList<String>();
+        for (int i = 0; i < fileCount; i++) {
+            // Content is different for every file so that they are not deduplicated
+            String text = repeat("" + i, 1000);
+            File f = new File(dir, "file" + i + ".txt");
+            Files.write(f.toPath(), text.getBytes());
+            fileIds.add(db.saveFile(moduleName, f));
+            texts.add(text);
+        }
+        Assert.assertEquals(0, db.getFileCacheStats().requestCount());
+        Assert.assertEquals(texts.get(0), asText(db.loadFile(fileIds.get(0))));
+        Assert.assertEquals(1, db.getFileCacheStats().missCount());
+        Assert.assertEquals(texts.get(0), asText(db.loadFile(fileIds.get(0))));
+        Assert.assertTrue(db.getFileCacheStats().hitCount() > 0);
+        for (int i = 0; i < fileCount; i++) {
+            Assert.assertEquals(texts.get(i), asText(db.loadFile(fileIds.get(i))));
+            Assert.assertTrue("Cache weight: " + db.getFileCacheWeight(), 
+                    db.getFileCacheWeight() <= cacheSize);
+        }
+        // Every file weighs more than 1000 bytes, so no more than 4 of them fit
+        Assert.assertTrue("Evictions: " + db.getFileCacheStats().evictionCount(), 
+                db.getFileCacheStats().evictionCount() >= fileCount - 4);
+        // File larger than whole cache is never kept
+        String bigText = repeat("x", (int)cacheSize * 2);
+        File bigFile = new File(dir, "big.txt");
+        Files.write(bigFile.toPath(), bigText.getBytes());
+        FileId bigFileId = db.saveFile(moduleName, bigFile);
+        long misses = db.getFileCacheStats().missCount();
+        Assert.assertEquals(bigText, asText(db.loadFile(bigFileId)));
+        Assert.assertEquals(bigText, asText(db.loadFile(bigFileId)));
+        Assert.assertEquals(misses + 4, db.getFileCacheStats().missCount());
+        Assert.assertTrue(db.getFileCacheWeight() <= cacheSize);
+        // Evicted files are loaded from DB again
+        Assert.assertEquals(texts.get(0), asText(db.loadFile(fileIds.get(0))));
+        // Caching could be turned off
+        MongoDynamicRepoDB db2 = new MongoDynamicRepoDB(host, dbName, null, null, 
+                Arrays.asList(admin), true, shockUrl, shockToken);
+        Assert.assertEquals(texts.get(1), asText(db2.loadFile(fileIds.get(1))));
+        Assert.assertNull(db2.getFileCacheStats());
+        Assert.assertEquals(0, db2.getFileCacheWeight());
+    }
+    
+    @Test
+    public void testHexDataMigration() throws Exception {
+        String host = "localhost:" + dbHelper.getMongoPort();
+        MongoDynamicRepoDB db = new MongoDynamicRepoDB(host, dbName, null, null, 
+                Arrays.asList("admin"), false, shockUrl, shockToken);
+        MongoCollection files = new Jongo(GetMongoDB.getDB(host, dbName, 0, 10))
+                .getCollection("repo_files");
+        // File stored by older version of service
+        files.insert("{file_id:#,module_name:#,file_name:#,length:#,md5:#,hex_data:#}", 
+                "1", "Legacy", "test.txt", 5L, "5d41402abc4b2a76b9719d911017c592", 
+                "68656C6c6f");
+        FileId fileId = new FileId("1");
+        Assert.assertEquals("hello", asText(db.loadFile(fileId)));
+        db.migrateHexData();
+        Map<String, Object> obj = findFile(files, "1");
+        Assert.assertNull(obj.get("hex_data"));
+        Assert.assertNotNull(obj.get("data"));
+        Assert.assertEquals("hello", asText(db.loadFile(fileId)));
+        // New files are stored in binary form right away
+        FileId fileId2 = db.saveFile("Legacy", new File("test/data/test_repo_1/README.md"));
+        obj = findFile(files, fileId2.getId());
+        Assert.assertNull(obj.get("hex_data"));
+        Assert.assertEquals(64, ((String)obj.get("sha256")).length());
+        Assert.assertEquals(fileId2.getId(), db.saveFile("Legacy", 
+                new File("test/data/test_repo_1/README.md")).getId());
+        Assert.assertEquals(new String(Files.readAllBytes(
+                new File("test/data/test_repo_1/README.md").toPath()), Charset.forName("utf-8")), 
+                asText(db.loadFile(fileId2)));
+        // Large files are stored in chunks
+        File bigFile = new File(dbHelper.getWorkDir(), "big.bin");
+        byte[] bigData = new byte[(int)MongoDynamicRepoDB.MAX_MONGO_FILE_LENGTH + 
+                MongoDynamicRepoDB.FILE_CHUNK_SIZE * 2 + 1];
+        for (int i = 0; i < bigData.length; i++)
+            bigData[i] = (byte)i;
+        Files.write(bigFile.toPath(), bigData);
+        FileId fileId3 = db.saveFile("Legacy", bigFile);
+        obj = findFile(files, fileId3.getId());
+        Assert.assertNull(obj.get("data"));
+        Assert.assertEquals(7, ((Number)obj.get("chunks")).intValue());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        db.loadFile(fileId3).saveToStream(baos);
+        Assert.assertTrue(Arrays.equals(bigData, baos.toByteArray()));
+        // Streams read the same content chunk by chunk
+        InputStream is = db.loadFile(fileId3).openStream();
+        baos = new ByteArrayOutputStream();
+        copyStreams(is, baos, 1000);
+        Assert.assertTrue(Arrays.equals(bigData, baos.toByteArray()));
+        Assert.assertEquals("hello", new String(IOUtils.toByteArray(
+                db.loadFile(fileId).openStream()), Charset.forName("utf-8")));
+        Assert.assertEquals(fileId3.getId(), db.saveFile("Legacy", bigFile).getId());
+    }
+    
     @Test
     public void testPy() throws Exception {
         File repoDir = FileUtils.generateTempDir(
@@ -256,6 +444,18 @@ public class MongoDynamicRepoDBTest {
         Assert.assertEquals("genomeA", parser.getMethodSpec().getParameters().get(0).getId());
     }
     
+    private static String repeat(String text, int count) {
+        StringBuilder ret = new StringBuilder();
+        for (int i = 0; i < count; i++)
+            ret.append(text);
+        return ret.toString();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> findFile(MongoCollection files, String fileId) {
+        return files.findOne("{file_id:#}", fileId).as(Map.class);
+    }
+    
     private static String asText(FilePointer fp) throws NarrativeMethodStoreException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         fp.saveToStream(baos);
@@ -1,5 +1,7 @@
 package us.kbase.narrativemethodstore.db.test;
 
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
 import java.util.Map;
 
 import org.junit.Assert;
@@ -9,7 +11,9 @@ import org.junit.rules.ExpectedException;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import us.kbase.common.service.UObject;
 import us.kbase.narrativemethodstore.MethodParameterGroup;
 import us.kbase.narrativemethodstore.db.FileLookup;
 import us.kbase.narrativemethodstore.db.NarrativeMethodData;
@@ -95,25 +99,94 @@ public class NarrativeMethodDataTest {
         Assert.assertEquals(1L, (long)group.getWithBorder());
     }
 
+    @Test
+    public void testStreamParsing() throws Exception {
+        for (int num = 1; num <= 9; num++) {
+            String spec = loadTextResource("spec_" + num + ".properties");
+            Assert.assertEquals("spec_" + num, describe(new ObjectMapper().readTree(spec), num),
+                    describe(spec.getBytes("utf-8"), num));
+        }
+    }
+
+    @Test
+    public void testStreamParsingErrorOrder() throws Exception {
+        // Errors are reported in the same order as before regardless of order of
+        // properties, behavior is checked after contact
+        ObjectNode spec = (ObjectNode)new ObjectMapper().readTree(
+                loadTextResource("spec_1.properties"));
+        ObjectNode reordered = new ObjectMapper().createObjectNode();
+        reordered.put("behavior", spec.get("behavior"));
+        ((ObjectNode)reordered.get("behavior").get("service-mapping").get("input_mapping")
+                .get(0)).put("unknown_field", 1);
+        spec.remove("behavior");
+        spec.remove("contact");
+        reordered.setAll(spec);
+        byte[] data = new ObjectMapper().writeValueAsBytes(reordered);
+        try {
+            load(data, 1);
+            Assert.fail("Spec without contact shouldn't be parsed");
+        } catch (NarrativeMethodStoreException ex) {
+            Assert.assertEquals("Can't find sub-node [contact] within path [/] in spec.json",
+                    ex.getMessage());
+            Assert.assertEquals("Reads Set Editor", ex.getErrorMethod().getName());
+        }
+        reordered.put("contact", "help@kbase.us");
+        try {
+            load(new ObjectMapper().writeValueAsBytes(reordered), 1);
+            Assert.fail("Unknown field of mapping shouldn't be accepted");
+        } catch (NarrativeMethodStoreException ex) {
+            Assert.assertEquals("Unknown field [unknown_field] in method parameter mapping " +
+            		"structure within path behavior/service-mapping/input_mapping/0", 
+            		ex.getMessage());
+        }
+    }
+
+    /**
+     * Loads data from spec given as JsonNode or as bytes and describes result or error.
+     */
+    private static String describe(Object spec, int num) throws Exception {
+        try {
+            NarrativeMethodData data = spec instanceof JsonNode ? load((JsonNode)spec, num) :
+                load((byte[])spec, num);
+            return UObject.transformObjectToString(Arrays.asList(data.getMethodBriefInfo(),
+                    data.getMethodFullInfo(), data.getMethodSpec()));
+        } catch (NarrativeMethodStoreException ex) {
+            return "Error: " + ex.getMessage() + ", method: " + 
+                    UObject.transformObjectToString(ex.getErrorMethod());
+        }
+    }
+
     private static NarrativeMethodData load(int num) throws Exception {
-        FileLookup fl = new FileLookup() {
-            @Override
-            public String loadFileContent(String fileName) {
-                return null;
-            }
-            @Override
-            public boolean fileExists(String fileName) {
-                return false;
-            }
-        };
-        JsonNode spec = new ObjectMapper().readTree(
-                loadTextResource("spec_" + num + ".properties"));
-        Map<String,Object> display = YamlUtils.getDocumentAsYamlMap(
-                loadTextResource("display_" + num + ".properties"));
+        return load(new ObjectMapper().readTree(loadTextResource("spec_" + num + ".properties")),
+                num);
+    }
+
+    private static NarrativeMethodData load(JsonNode spec, int num) throws Exception {
         return new NarrativeMethodData("method_" + num, 
-                spec, display, fl, null, null, null, null, null);
+                spec, loadDisplay(num), NO_FILES, null, null, null, null, null);
     }
-    
+
+    private static NarrativeMethodData load(byte[] spec, int num) throws Exception {
+        return new NarrativeMethodData("method_" + num, new ByteArrayInputStream(spec),
+                loadDisplay(num), NO_FILES, null, null, null, null, null);
+    }
+
+    private static Map<String,Object> loadDisplay(int num) throws Exception {
+        return YamlUtils.getDocumentAsYamlMap(
+                loadTextResource("display_" + num + ".properties"));
+    }
+
+    private static final FileLookup NO_FILES = new FileLookup() {
+        @Override
+        public String loadFileContent(String fileName) {
+            return null;
+        }
+        @Override
+        public boolean fileExists(String fileName) {
+            return false;
+        }
+    };
+
     private static String loadTextResource(String name) throws Exception {
         return TextUtils.text(NarrativeMethodDataTest.class.getResourceAsStream(name));
     }
@@ -0,0 +1,68 @@
+package us.kbase.narrativemethodstore.db.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+
+import us.kbase.narrativemethodstore.db.github.YamlUtils;
+
+/**
+ * Measures throughput of display.yaml parsing by YamlUtils for growing number of threads.
+ * Usage: YamlParsingBenchmark [parses-per-thread] [max-threads]
+ */
+public class YamlParsingBenchmark {
+    private static final String[] displayFiles = {
+        "test/data/validation/methods/generate_heatmaps/display.yaml",
+        "test/data/test_repo_1/ui/narrative/methods/compare_genome_features/display.yaml"
+    };
+
+    public static void main(String[] args) throws Exception {
+        final int parsesPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) :
+            Runtime.getRuntime().availableProcessors();
+        final List<byte[]> docs = new ArrayList<byte[]>();
+        for (String path : displayFiles)
+            docs.add(FileUtils.readFileToByteArray(new File(path)));
+        // warm-up
+        run(docs, 1, parsesPerThread);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long time = run(docs, threads, parsesPerThread);
+            long total = (long)threads * parsesPerThread;
+            System.out.println("threads: " + threads + ", parses: " + total + ", time: " +
+                    time + " ms, throughput: " + (total * 1000 / Math.max(1, time)) + " docs/s");
+        }
+    }
+
+    private static long run(final List<byte[]> docs, int threads, final int parsesPerThread)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int keys = 0;
+                        for (int i = 0; i < parsesPerThread; i++)
+                            keys += YamlUtils.getDocumentAsYamlMap(new ByteArrayInputStream(
+                                    docs.get(i % docs.size()))).size();
+                        return keys;
+                    }
+                });
+            }
+            long start = System.currentTimeMillis();
+            for (Future<Integer> future : pool.invokeAll(tasks))
+                future.get();
+            return System.currentTimeMillis() - start;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.junit.Test;
 import us.kbase.common.service.JsonServerSyslog;
 import us.kbase.common.service.ServerException;
 import us.kbase.common.service.Tuple4;
+import us.kbase.common.service.UObject;
 import us.kbase.narrativemethodstore.AppFullInfo;
 import us.kbase.narrativemethodstore.AppSpec;
 import us.kbase.narrativemethodstore.Category;
@@ -48,6 +49,7 @@ import us.kbase.narrativemethodstore.NarrativeMethodStoreClient;
 import us.kbase.narrativemethodstore.NarrativeMethodStoreServer;
 import us.kbase.narrativemethodstore.Publication;
 import us.kbase.narrativemethodstore.RegexMatcher;
+import us.kbase.narrativemethodstore.RegisterRepoJobStatus;
 import us.kbase.narrativemethodstore.RepoDetails;
 import us.kbase.narrativemethodstore.Status;
 import us.kbase.narrativemethodstore.TextSubdataOptions;
@@ -183,6 +185,31 @@ public class FullServerTest {
 	}
 	
 	
+	@Test
+	public void testListMethodsPaging() throws Exception {
+	    // Responses are cached by server under method:tag:offset:limit key
+	    for (String tag : Arrays.asList(null, "dev", "release", 
+	            "00f008a265785ddfa70f21794738953bbf5895d0")) {
+	        List<MethodBriefInfo> all = CLIENT.listMethods(new ListParams().withTag(tag));
+	        Assert.assertTrue(all.size() > 3);
+	        Assert.assertEquals(UObject.transformObjectToString(all), 
+	                UObject.transformObjectToString(CLIENT.listMethods(
+	                        new ListParams().withTag(tag))));
+	        Assert.assertEquals(UObject.transformObjectToString(all),
+	                UObject.transformObjectToString(new ArrayList<MethodBriefInfo>(
+	                        SERVER.listMethods(new ListParams().withTag(tag), null))));
+	        long[][] pages = {{0, 2}, {2, 2}, {1, 0}, {all.size() - 1, 10}};
+	        for (long[] page : pages) {
+	            List<MethodBriefInfo> expected = all.subList((int)page[0], page[1] == 0 ? 
+	                    all.size() : (int)Math.min(page[0] + page[1], all.size()));
+	            ListParams params = new ListParams().withTag(tag).withOffset(page[0])
+	                    .withLimit(page[1] == 0 ? null : page[1]);
+	            Assert.assertEquals(UObject.transformObjectToString(expected), 
+	                    UObject.transformObjectToString(CLIENT.listMethods(params)));
+	        }
+	    }
+	}
+	
 	@Test
 	public void testGetCategory() throws Exception {
 		//first just check that we didn't get anything if we didn't ask for anything
@@ -1089,6 +1116,22 @@ public class FullServerTest {
 		assertTrue("Type validation results of test_method_1 type info is null", results.getTypeInfo()==null);
 	}
 	
+	@Test
+	public void testListMethodIdsAndNamesNotModified() throws Exception {
+	    String catalogVersion = CLIENT.status().getCatalogVersion();
+	    Map<String, String> idsAndNames = CLIENT.listMethodIdsAndNames(
+	            new ListMethodIdsAndNamesParams().withCatalogVersion(catalogVersion));
+	    Assert.assertNotNull(idsAndNames);
+	    Assert.assertFalse(idsAndNames.isEmpty());
+	    Assert.assertEquals(idsAndNames, CLIENT.listMethodIdsAndNames(
+	            new ListMethodIdsAndNamesParams()));
+	    // Repeated call with current version means client already has this response
+	    Assert.assertNull(CLIENT.listMethodIdsAndNames(
+	            new ListMethodIdsAndNamesParams().withIfNotModified(catalogVersion)));
+	    Assert.assertNotNull(CLIENT.listMethodIdsAndNames(
+	            new ListMethodIdsAndNamesParams().withIfNotModified("unknown")));
+	}
+	
 	@SuppressWarnings("static-access")
     @Test
 	public void testDynamicRepos() throws Exception {
@@ -1099,7 +1142,18 @@ public class FullServerTest {
 	        Map<String,MethodBriefInfo> methods = CLIENT.listCategories(new ListCategoriesParams().withLoadMethods(1L)).getE2();
 	        MethodBriefInfo bi = methods.get(methodId);
 	        Assert.assertNull(bi);
+	        String catalogVersion0 = CLIENT.status().getCatalogVersion();
+	        Map<String, String> idsAndNames0 = CLIENT.listMethodIdsAndNames(
+	                new ListMethodIdsAndNamesParams().withTag("dev"));
 	        SERVER.getLocalGitDB().registerRepo(admin1, gitUrl, null);
+	        // Version pinned before registration still gives catalog state it was issued for
+	        Assert.assertFalse(catalogVersion0.equals(CLIENT.status().getCatalogVersion()));
+	        Assert.assertEquals(idsAndNames0, CLIENT.listMethodIdsAndNames(
+	                new ListMethodIdsAndNamesParams().withTag("dev").withCatalogVersion(catalogVersion0)));
+	        Assert.assertNotNull(CLIENT.listMethodIdsAndNames(
+	                new ListMethodIdsAndNamesParams().withTag("dev").withIfNotModified(catalogVersion0)));
+	        Assert.assertTrue(CLIENT.listMethodIdsAndNames(
+	                new ListMethodIdsAndNamesParams().withTag("dev")).containsKey(methodId));
             Assert.assertEquals(2, CLIENT.listMethods(new ListParams().withTag("dev")).size() -
                     CLIENT.listMethods(new ListParams().withTag("release")).size());
             Assert.assertEquals(2, CLIENT.listMethodsSpec(new ListParams().withTag("dev")).size() -
@@ -1218,6 +1272,25 @@ public class FullServerTest {
             checkMethod(methodId2, 1, "contigset_id", "Contig Set Id", "dev");
             checkMethod(methodId2, 1, "contigset_id", "Contig Set Id", "beta");
             checkMethod(methodId2, 1, "contigset_id", "Contig Set Id", "release");
+            // register again on background and wait for the job
+            String jobId = SERVER.getLocalGitDB().registerRepoAsync(admin1, gitUrl2, 
+                    "0a11f2d6d2011f5590dd07ccfa6679b0166dd922");
+            RegisterRepoJobStatus jobStatus = waitForRegisterRepoJob(admin1, jobId);
+            Assert.assertEquals(jobStatus.getError(), "complete", jobStatus.getStage());
+            Assert.assertEquals(gitUrl2, jobStatus.getGitUrl());
+            Assert.assertEquals(moduleName2, jobStatus.getModuleName());
+            Assert.assertEquals(db.getRepoLastVersion(moduleName2, null), jobStatus.getVersion());
+            Assert.assertEquals("ready", db.getRepoState(moduleName2).toString());
+            checkMethod(methodId2, 1, "contigset_id", "Contig Set Id", "dev");
+            // Many catalog versions were published since then, first one is not retained
+            try {
+                CLIENT.listMethodIdsAndNames(new ListMethodIdsAndNamesParams().withTag("dev")
+                        .withCatalogVersion(catalogVersion0));
+                Assert.fail("Expired catalog version shouldn't be supported");
+            } catch (ServerException ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith(
+                        "Catalog version " + catalogVersion0 + " is not available anymore"));
+            }
 	    } catch (ServerException ex) {
 	        System.err.println(ex.getData());
 	        throw ex;
@@ -1225,6 +1298,66 @@ public class FullServerTest {
 	}
 
 
+    @Test
+    public void testRegisterRepoAsyncFailure() throws Exception {
+        String gitUrl = "not_a_url";
+        String jobId = SERVER.getLocalGitDB().registerRepoAsync(admin1, gitUrl, null);
+        RegisterRepoJobStatus jobStatus = waitForRegisterRepoJob(admin1, jobId);
+        Assert.assertEquals("error", jobStatus.getStage());
+        Assert.assertEquals(jobId, jobStatus.getJobId());
+        Assert.assertEquals(gitUrl, jobStatus.getGitUrl());
+        Assert.assertNull(jobStatus.getModuleName());
+        Assert.assertNull(jobStatus.getVersion());
+        Assert.assertTrue(jobStatus.getError(), 
+                jobStatus.getError().startsWith("Error parsing repository url: " + gitUrl));
+        Assert.assertNotNull(jobStatus.getFinishTime());
+        Assert.assertTrue(jobStatus.getFinishTime() >= jobStatus.getStartTime());
+        // job is visible to other admins but not to other users
+        Assert.assertEquals("error", SERVER.getLocalGitDB().getRegisterRepoJobStatus(
+                admin2, jobId).getStage());
+        String user = "rsutormin";
+        try {
+            SERVER.getLocalGitDB().getRegisterRepoJobStatus(user, jobId);
+            Assert.fail("Only owner of job or admin can check its status");
+        } catch (Exception ex) {
+            Assert.assertEquals("User " + user + " is not allowed to check registration " +
+            		"job " + jobId, ex.getMessage());
+        }
+        try {
+            SERVER.getLocalGitDB().getRegisterRepoJobStatus(admin1, "unknown_job");
+            Assert.fail("Unknown job shouldn't be found");
+        } catch (Exception ex) {
+            Assert.assertEquals("Registration job unknown_job is not found", ex.getMessage());
+        }
+    }
+    
+    @Test
+    public void testRegisterRepoAsyncNotAdmin() throws Exception {
+        String user = "rsutormin";
+        String gitUrl = "https://github.com/kbaseIncubator/contigcount";
+        try {
+            SERVER.getLocalGitDB().registerRepoAsync(user, gitUrl, null);
+            Assert.fail("Only admin can register dynamic repos");
+        } catch (Exception ex) {
+            Assert.assertEquals("User " + user + " is not global admin", ex.getMessage());
+        }
+    }
+    
+    private static RegisterRepoJobStatus waitForRegisterRepoJob(String userId, 
+            String jobId) throws Exception {
+        long start = System.currentTimeMillis();
+        while (true) {
+            RegisterRepoJobStatus ret = SERVER.getLocalGitDB().getRegisterRepoJobStatus(
+                    userId, jobId);
+            if (ret.getFinishTime() != null)
+                return ret;
+            if (System.currentTimeMillis() - start > 600000)
+                Assert.fail("Registration job " + jobId + " is not finished in 10 minutes, " +
+                		"stage: " + ret.getStage());
+            Thread.sleep(500);
+        }
+    }
+
     private static void checkMethod(String methodId, int paramCount, String param1id,
             String param1name, String tag) throws Exception {
         MethodSpec ms = CLIENT.getMethodSpec(new GetMethodParams().withIds(Arrays.asList(methodId)).withTag(tag)).get(0);
@@ -0,0 +1,37 @@
+package us.kbase.narrativemethodstore.util;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Value returned from RPC method which was already encoded into JSON, so that it 
+ * could be written into response as is any number of times. Implementations are 
+ * collections wrapping original data in order to keep signatures of RPC methods.
+ */
+public interface PreserializedJson {
+
+    /**
+     * @return original data (plain collection) this JSON was made of.
+     */
+    public Object getData();
+
+    public String getJson();
+    
+    public static class Serializer extends JsonSerializer<PreserializedJson> {
+        @Override
+        public void serialize(PreserializedJson value, JsonGenerator jgen,
+                SerializerProvider provider) throws IOException, JsonProcessingException {
+            if (jgen instanceof TokenBuffer) {
+                // Token buffers (used for conversions into trees) can't accept raw JSON
+                provider.defaultSerializeValue(value.getData(), jgen);
+            } else {
+                jgen.writeRawValue(value.getJson());
+            }
+        }
+    }
+}
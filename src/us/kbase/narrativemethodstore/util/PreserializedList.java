@@ -0,0 +1,39 @@
+package us.kbase.narrativemethodstore.util;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import us.kbase.common.service.UObject;
+
+@JsonSerialize(using = PreserializedJson.Serializer.class)
+public class PreserializedList<T> extends AbstractList<T> implements PreserializedJson {
+    private final List<T> data;
+    private final String json;
+    
+    public PreserializedList(List<T> data) {
+        this.data = data;
+        this.json = UObject.transformObjectToString(data);
+    }
+    
+    @Override
+    public T get(int index) {
+        return data.get(index);
+    }
+    
+    @Override
+    public int size() {
+        return data.size();
+    }
+    
+    @Override
+    public Object getData() {
+        return data;
+    }
+    
+    @Override
+    public String getJson() {
+        return json;
+    }
+}
@@ -0,0 +1,45 @@
+package us.kbase.narrativemethodstore.util;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import us.kbase.common.service.UObject;
+
+@JsonSerialize(using = PreserializedJson.Serializer.class)
+public class PreserializedMap<K, V> extends AbstractMap<K, V> implements PreserializedJson {
+    private final Map<K, V> data;
+    private final String json;
+    
+    public PreserializedMap(Map<K, V> data) {
+        this.data = data;
+        this.json = UObject.transformObjectToString(data);
+    }
+    
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return data.entrySet();
+    }
+    
+    @Override
+    public V get(Object key) {
+        return data.get(key);
+    }
+    
+    @Override
+    public int size() {
+        return data.size();
+    }
+    
+    @Override
+    public Object getData() {
+        return data;
+    }
+    
+    @Override
+    public String getJson() {
+        return json;
+    }
+}